@@ -77,6 +77,11 @@ public:
    virtual core::Error setActivePlot(int index) = 0;
    virtual core::Error removePlot(int index) = 0;
 
+   // image of the plot at the given index rendered at the current display
+   // size, without making it the active plot
+   virtual core::Error renderPlotImage(int index,
+                                       std::string* pImageFilename) = 0;
+
    // actions on active plot   
    virtual core::Error savePlotAsImage(const core::FilePath& filePath,
                                        const std::string& format,
@@ -90,6 +95,13 @@ public:
    virtual core::Error savePlotAsMetafile(const core::FilePath& filePath,
                                           int widthPx,
                                           int heightPx) = 0;
+
+   // quick low resolution png of the active plot: the layout is that of a
+   // widthPx x heightPx rendering but with scale times as many pixels
+   virtual core::Error savePlotPreview(const core::FilePath& filePath,
+                                       int widthPx,
+                                       int heightPx,
+                                       double scale) = 0;
       
    // display
    virtual bool hasOutput() const = 0 ;
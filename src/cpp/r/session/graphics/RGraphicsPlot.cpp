@@ -26,6 +26,9 @@
 #include <r/RExec.hpp>
 #include <r/session/RGraphics.hpp>
 
+#include "RGraphicsUtils.hpp"
+#include "RGraphicsFileDevice.hpp"
+
 using namespace core ;
 
 namespace r {
@@ -190,6 +193,73 @@ Error Plot::renderFromDisplaySnapshot(SEXP snapshot)
 }
    
 
+Error Plot::renderImageFromSnapshot()
+{
+   // we can use our cached representation if we don't need an update and our
+   // rendered size is the same as the current graphics device size
+   DisplaySize displaySize = graphicsDevice_.displaySize();
+   if ( !needsUpdate_ &&
+        (renderedSize() == displaySize) &&
+        imageFilePath(storageUuid()).exists() )
+   {
+      return Success();
+   }
+
+   if (!hasValidStorage())
+      return Error(errc::PlotFileError, ERROR_LOCATION);
+
+   // generate a new storage uuid (the old image may still be cached by
+   // the client at its old size)
+   std::string storageUuid = core::system::generateUuid();
+
+   // copy the snapshot to the new storage
+   Error error = snapshotFilePath().copy(snapshotFilePath(storageUuid));
+   if (error)
+      return Error(errc::PlotFileError, error, ERROR_LOCATION);
+
+   // replay the snapshot into a file device the size of the display (this
+   // leaves the display, which may be showing another plot, untouched)
+   {
+      RestorePreviousGraphicsDeviceScope restoreScope;
+
+      error = file_device::create(displaySize.width,
+                                  displaySize.height,
+                                  imageFilePath(storageUuid));
+      if (!error)
+      {
+         error = r::exec::RFunction(".rs.restoreGraphics",
+                                    string_utils::utf8ToSystem(snapshotFilePath().absolutePath())).call();
+
+         // close the device to save the file
+         Error closeError = r::exec::RFunction("dev.off").call();
+         if (!error)
+            error = closeError;
+      }
+   }
+   if (error)
+   {
+      snapshotFilePath(storageUuid).removeIfExists();
+      imageFilePath(storageUuid).removeIfExists();
+      return Error(errc::PlotRenderingError, error, ERROR_LOCATION);
+   }
+
+   // save rendered size
+   renderedSize_ = displaySize;
+
+   // save manipulator (if any)
+   saveManipulator(storageUuid);
+
+   // delete existing files (if any)
+   Error removeError = removeFiles();
+
+   // update state
+   storageUuid_ = storageUuid;
+   needsUpdate_ = false;
+
+   // return error status
+   return removeError;
+}
+
 std::string Plot::imageFilename() const
 {
    return imageFilePath(storageUuid()).filename();
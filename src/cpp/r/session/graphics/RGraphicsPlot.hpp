@@ -62,6 +62,7 @@ public:
    
    core::Error renderFromDisplay();
    core::Error renderFromDisplaySnapshot(SEXP snapshot);
+   core::Error renderImageFromSnapshot();
    std::string imageFilename() const;
    
    core::Error renderToDisplay();
@@ -221,6 +221,30 @@ Error PlotManager::removePlot(int index)
    return Success();
 }
 
+// NOTE: the active plot's image is the one written by render (the display
+// may have changes which haven't been rendered yet) so it is returned as is
+Error PlotManager::renderPlotImage(int index, std::string* pImageFilename)
+{
+   if (!isValidPlotIndex(index))
+      return plotIndexError(index, ERROR_LOCATION);
+
+   if (index != activePlot_)
+   {
+      // make sure the graphics path exists (may have been blown away
+      // by call to dev.off or other call to removeAllPlots)
+      Error error = graphicsPath_.ensureDirectory();
+      if (error)
+         return Error(errc::PlotFileError, error, ERROR_LOCATION);
+
+      error = plots_[index]->renderImageFromSnapshot();
+      if (error)
+         return error;
+   }
+
+   *pImageFilename = plots_[index]->imageFilename();
+   return Success();
+}
+
 Error PlotManager::savePlotAsFile(const boost::function<Error()>&
                                      deviceCreationFunction)
 {
@@ -312,6 +336,37 @@ Error PlotManager::savePlotAsBitmapFile(const FilePath& targetPath,
    return savePlotAsFile(deviceCreationCode);
 }
 
+Error PlotManager::savePlotPreview(const FilePath& filePath,
+                                   int widthPx,
+                                   int heightPx,
+                                   double scale)
+{
+   // scaling the resolution along with the pixel dimensions keeps the size
+   // in inches (and therefore the layout) the same as the display device,
+   // which has a resolution of 72
+   int width = std::max(1, static_cast<int>(widthPx * scale + 0.5));
+   int height = std::max(1, static_cast<int>(heightPx * scale + 0.5));
+   int res = std::max(1, static_cast<int>(72 * scale + 0.5));
+
+   std::string extraParams;
+#ifdef __APPLE__
+   extraParams += ", type = \"quartz\"";
+#endif
+
+   boost::format fmt(
+      "{ require(grDevices, quietly=TRUE); "
+      "  png(filename=\"%1%\", width=%2%, height=%3%, res=%4%, "
+      "      pointsize = 12 %5%); }");
+   std::string deviceCreationCode = boost::str(fmt %
+                                               string_utils::utf8ToSystem(filePath.absolutePath()) %
+                                               width %
+                                               height %
+                                               res %
+                                               extraParams);
+
+   return savePlotAsFile(deviceCreationCode);
+}
+
 Error PlotManager::savePlotAsPdf(const FilePath& filePath, 
                                  double widthInches,
                                  double heightInches)
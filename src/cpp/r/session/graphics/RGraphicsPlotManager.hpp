@@ -70,6 +70,8 @@ public:
    virtual int activePlotIndex() const;
    virtual core::Error setActivePlot(int index) ;
    virtual core::Error removePlot(int index);
+   virtual core::Error renderPlotImage(int index,
+                                       std::string* pImageFilename);
    
    // actions on active plot
    virtual core::Error savePlotAsImage(const core::FilePath& filePath,
@@ -85,6 +87,11 @@ public:
                                           int widthPx,
                                           int heightPx);
 
+   virtual core::Error savePlotPreview(const core::FilePath& filePath,
+                                       int widthPx,
+                                       int heightPx,
+                                       double scale);
+
    // display
    virtual bool hasOutput() const;
    virtual bool hasChanges() const;
@@ -14,6 +14,7 @@
 #include "SessionClientEventService.hpp"
 
 #include <algorithm>
+#include <limits>
 
 #include <boost/function.hpp>
 
@@ -171,11 +172,24 @@ void ClientEventService::addClientEvent(const json::Object& eventObject)
 }
 
 void ClientEventService::setClientEventResult(
+                                       std::size_t maxEvents,
                                        core::json::JsonRpcResponse* pResponse)
 {
    LOCK_MUTEX(mutex_)
    {
-      pResponse->setResult(clientEvents_);
+      // send no more than the client asked for. events beyond the limit
+      // stay in clientEvents_ and go out with the next response (which
+      // will be immediate since they are still pending)
+      if (clientEvents_.size() <= maxEvents)
+      {
+         pResponse->setResult(clientEvents_);
+      }
+      else
+      {
+         json::Array batch(clientEvents_.begin(),
+                           clientEvents_.begin() + maxEvents);
+         pResponse->setResult(batch);
+      }
    }
    END_LOCK_MUTEX
 }
@@ -271,6 +285,32 @@ void ClientEventService::run()
             ptrConnection->sendJsonRpcError(paramError);
             continue;
          }
+
+         // clients may also tell us how long they are willing to wait for
+         // events and how many events they want per response (older clients
+         // only send the last event id)
+         time_duration requestWait = maxRequestSec;
+         std::size_t maxBatchSize = std::numeric_limits<std::size_t>::max();
+         if (request.params.size() >= 3)
+         {
+            int maxWaitMs = 0, clientMaxBatchSize = 0;
+            paramError = json::readParam(request.params, 1, &maxWaitMs);
+            if (!paramError)
+               paramError = json::readParam(request.params,
+                                            2,
+                                            &clientMaxBatchSize);
+            if (paramError)
+            {
+               ptrConnection->sendJsonRpcError(paramError);
+               continue;
+            }
+
+            if (maxWaitMs > 0)
+               requestWait = std::min<time_duration>(requestWait,
+                                                     milliseconds(maxWaitMs));
+            if (clientMaxBatchSize > 0)
+               maxBatchSize = clientMaxBatchSize;
+         }
            
          // remove all events already seen by the client from our internal list
          erasePreviouslyDeliveredEvents(lastClientEventIdSeen);
@@ -286,7 +326,7 @@ void ClientEventService::run()
          {
             // wait for the specified maximum time
             if (havePendingClientEvents() || clientEventQueue.hasEvents() ||
-                clientEventQueue.waitForEvent(maxRequestSec))
+                clientEventQueue.waitForEvent(requestWait))
             {
                // ...got at least one event
                
@@ -334,7 +374,7 @@ void ClientEventService::run()
             // event service shouldn't interact with automatic event service
             // starting/re-starting)
             json::JsonRpcResponse response;
-            setClientEventResult(&response);
+            setClientEventResult(maxBatchSize, &response);
             response.setField(kEventsPending, "false");
             ptrConnection->sendJsonRpcResponse(response);
          }
@@ -56,7 +56,8 @@ private:
    void erasePreviouslyDeliveredEvents(int lastClientEventIdSeen);
    bool havePendingClientEvents();
    void addClientEvent(const core::json::Object& eventObject);
-   void setClientEventResult(core::json::JsonRpcResponse* pResponse);
+   void setClientEventResult(std::size_t maxEvents,
+                             core::json::JsonRpcResponse* pResponse);
 
   
 private:
@@ -171,6 +171,7 @@ const char * const kLocatorCompleted = "locator_completed";
 const char * const kHandleUnsavedChangesCompleted = "handle_unsaved_changes_completed";
 const char * const kQuitSession = "quit_session" ;   
 const char * const kInterrupt = "interrupt";
+const char * const kRpcBatch = "rpc_batch";
 
 // convenience function for disallowing suspend (note still doesn't override
 // the presence of s_forceSuspend = 1)
@@ -584,6 +585,158 @@ void handleRpcRequest(const core::json::JsonRpcRequest& request,
 
 }
 
+// state of an rpc_batch request: the responses of the individual calls are
+// collected here and sent together once the last call completes
+struct RpcBatch
+{
+   RpcBatch(boost::shared_ptr<HttpConnection> ptrConnection,
+            boost::posix_time::ptime executeStartTime,
+            std::size_t count)
+      : ptrConnection(ptrConnection),
+        executeStartTime(executeStartTime),
+        responses(count),
+        pending(count)
+   {
+   }
+
+   boost::shared_ptr<HttpConnection> ptrConnection;
+   boost::posix_time::ptime executeStartTime;
+   std::vector<json::JsonRpcResponse> responses;
+   std::size_t pending;
+};
+
+void endHandleBatchedRpcRequest(boost::shared_ptr<RpcBatch> pBatch,
+                                std::size_t index,
+                                const core::Error& executeError,
+                                json::JsonRpcResponse* pJsonRpcResponse)
+{
+   json::JsonRpcResponse& callResponse = pBatch->responses[index];
+   if (executeError)
+      callResponse.setError(executeError);
+   else
+      callResponse = *pJsonRpcResponse;
+
+   if (--pBatch->pending > 0)
+      return;
+
+   // all calls are complete
+   bool detect = false, afterResponse = false;
+   BOOST_FOREACH(json::JsonRpcResponse& response, pBatch->responses)
+   {
+      detect = detect || !response.suppressDetectChanges();
+      afterResponse = afterResponse || response.hasAfterResponse();
+   }
+
+   if (detect)
+      detectChanges(module_context::ChangeSourceRPC);
+
+   // note whether events are pending on each response (the client feeds
+   // each one to the original caller's response handling)
+   bool eventsPending = afterResponse || 
+      clientEventQueue().eventAddedSince(pBatch->executeStartTime);
+
+   json::Array results;
+   BOOST_FOREACH(json::JsonRpcResponse& response, pBatch->responses)
+   {
+      json::Object rawResponse = response.getRawResponse();
+      if (!eventsPending)
+         rawResponse[kEventsPending] = "false";
+      results.push_back(rawResponse);
+   }
+
+   json::JsonRpcResponse batchResponse;
+   batchResponse.setResult(results);
+   if (!eventsPending)
+      batchResponse.setField(kEventsPending, "false");
+   pBatch->ptrConnection->sendJsonRpcResponse(batchResponse);
+
+   // run after response functions (then detect changes again)
+   if (afterResponse)
+   {
+      BOOST_FOREACH(json::JsonRpcResponse& response, pBatch->responses)
+      {
+         if (response.hasAfterResponse())
+            response.runAfterResponse();
+      }
+      if (detect)
+         detectChanges(module_context::ChangeSourceRPC);
+   }
+}
+
+// handle several rpc calls sent in a single request. the only param is an 
+// array of {method, params} objects. the result is an array containing the
+// response to each call. only methods which return their result directly
+// (rather than via an async handle) can be batched
+void handleRpcBatchRequest(const core::json::JsonRpcRequest& request,
+                           boost::shared_ptr<HttpConnection> ptrConnection)
+{
+   using namespace boost::posix_time;
+   ptime executeStartTime = microsec_clock::universal_time();
+
+   json::Array calls;
+   Error error = json::readParam(request.params, 0, &calls);
+   if (error)
+   {
+      ptrConnection->sendJsonRpcError(error);
+      return;
+   }
+
+   if (calls.empty())
+   {
+      json::JsonRpcResponse response;
+      response.setResult(json::Array());
+      ptrConnection->sendJsonRpcResponse(response);
+      return;
+   }
+
+   boost::shared_ptr<RpcBatch> pBatch(
+            new RpcBatch(ptrConnection, executeStartTime, calls.size()));
+
+   for (std::size_t i = 0; i < calls.size(); i++)
+   {
+      json::JsonRpcFunctionContinuation continuation =
+                  boost::bind(endHandleBatchedRpcRequest, pBatch, i, _1, _2);
+
+      json::JsonRpcRequest call;
+      call.sourceWindow = request.sourceWindow;
+      call.clientId = request.clientId;
+      call.version = request.version;
+      call.isBackgroundConnection = request.isBackgroundConnection;
+
+      if (!json::isType<json::Object>(calls[i]))
+      {
+         continuation(Error(json::errc::InvalidRequest, ERROR_LOCATION), 
+                      NULL);
+         continue;
+      }
+      const json::Object& callObject = calls[i].get_obj();
+      error = json::readObject(callObject, "method", &call.method);
+      if (!error)
+         error = json::readObject(callObject, 
+                                  "params", 
+                                  json::Array(), 
+                                  &call.params);
+      if (error)
+      {
+         continuation(error, NULL);
+         continue;
+      }
+
+      json::JsonRpcAsyncMethods::const_iterator it =
+                                     s_jsonRpcMethods.find(call.method);
+      if (it == s_jsonRpcMethods.end() || !it->second.first)
+      {
+         Error executeError(json::errc::MethodNotFound, ERROR_LOCATION);
+         executeError.addProperty("method", call.method);
+         LOG_ERROR(executeError);
+         continuation(executeError, NULL);
+         continue;
+      }
+
+      it->second.second(call, continuation);
+   }
+}
+
 bool isMethod(const std::string& uri, const std::string& method)
 {
    return boost::algorithm::ends_with(uri, method);
@@ -721,6 +874,14 @@ void handleConnection(boost::shared_ptr<HttpConnection> ptrConnection,
                r::exec::setInterruptsPending(true);
          }
 
+         // batch of rpc calls
+         else if ( jsonRpcRequest.method == kRpcBatch )
+         {
+            jsonRpcRequest.isBackgroundConnection =
+                  (connectionType == BackgroundConnection);
+            handleRpcBatchRequest(jsonRpcRequest, ptrConnection);
+         }
+
          // other rpc method, handle it
          else
          {
@@ -245,6 +245,17 @@ SEXP dataViewerHook(SEXP call, SEXP op, SEXP args, SEXP rho)
       // append document footer
       html += "</body></html>\n";
 
+      // keep the data around so the viewer can page through all of it
+      // (the html above is a static preview, used for printing and when
+      // the data is no longer available)
+      std::string cacheKey;
+      r::exec::RFunction registerFx(".rs.registerDataViewerData");
+      registerFx.addParam(dataSEXP);
+      registerFx.addParam(title);
+      error = registerFx.call(&cacheKey);
+      if (error)
+         LOG_ERROR(error);
+
       // fire show data event
       json::Object dataItem;
       dataItem["title"] = title;
@@ -253,6 +264,8 @@ SEXP dataViewerHook(SEXP call, SEXP op, SEXP args, SEXP rho)
       dataItem["variables"] = columnCount;
       dataItem["displayedVariables"] = displayedColumns;
       dataItem["contentUrl"] = content_urls::provision(title, html, ".htm");
+      if (!cacheKey.empty())
+         dataItem["cacheKey"] = cacheKey;
       ClientEvent event(client_events::kShowData, dataItem);
       module_context::enqueClientEvent(event);
 
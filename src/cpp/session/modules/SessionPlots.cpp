@@ -91,6 +91,24 @@ Error clearPlots(const json::JsonRpcRequest& request,
    return Success();
 }
 
+Error getPlotImage(const json::JsonRpcRequest& request,
+                   json::JsonRpcResponse* pResponse)
+{
+   int index;
+   Error error = json::readParam(request.params, 0, &index);
+   if (error)
+      return error;
+
+   // render the image (if necessary) at the current display size
+   std::string filename;
+   error = r::session::graphics::display().renderPlotImage(index, &filename);
+   if (error)
+      return error;
+
+   pResponse->setResult(filename);
+   return Success();
+}
+
 Error refreshPlot(const json::JsonRpcRequest& request,
                   json::JsonRpcResponse* pResponse)
 {
@@ -493,6 +511,42 @@ void handleZoomPngRequest(const http::Request& request,
       LOG_ERROR(error);
 }
 
+void handlePreviewPngRequest(const http::Request& request,
+                             http::Response* pResponse)
+{
+   // get the width and height parameters (these are the size of the
+   // display the preview is for, not of the preview itself)
+   int width, height;
+   if (!extractSizeParams(request, 10, 5000, &width, &height, pResponse))
+      return ;
+
+   // get the scale (defaults to half resolution)
+   double scale = 0.5;
+   if (!request.queryParamValue("scale").empty() &&
+       !request.queryParamValue("scale", predicate::range(0.1, 1.0), &scale))
+   {
+      pResponse->setError(http::status::BadRequest, "invalid scale");
+      return;
+   }
+
+   // generate the image
+   using namespace r::session;
+   FilePath imagePath = module_context::tempFile("plot", "png");
+   Error error = graphics::display().savePlotPreview(imagePath,
+                                                     width,
+                                                     height,
+                                                     scale);
+   if (error)
+   {
+      pResponse->setError(http::status::InternalServerError,
+                          error.code().message());
+      return;
+   }
+
+   // return it
+   setTemporaryFileResponse(imagePath, request, pResponse);
+}
+
 void handlePngRequest(const http::Request& request, 
                       http::Response* pResponse)
 {
@@ -724,6 +778,7 @@ Error initialize()
       (bind(registerRpcMethod, "remove_plot", removePlot))
       (bind(registerRpcMethod, "clear_plots", clearPlots))
       (bind(registerRpcMethod, "refresh_plot", refreshPlot))
+      (bind(registerRpcMethod, "get_plot_image", getPlotImage))
       (bind(registerRpcMethod, "save_plot_as", savePlotAs))
       (bind(registerRpcMethod, "save_plot_as_pdf", savePlotAsPdf))
       (bind(registerRpcMethod, "copy_plot_to_clipboard_metafile", copyPlotToClipboardMetafile))
@@ -734,6 +789,7 @@ Error initialize()
       (bind(registerUriHandler, kGraphics "/plot_zoom_png", handleZoomPngRequest))
       (bind(registerUriHandler, kGraphics "/plot_zoom", handleZoomRequest))
       (bind(registerUriHandler, kGraphics "/plot.png", handlePngRequest))
+      (bind(registerUriHandler, kGraphics "/plot_preview.png", handlePreviewPngRequest))
       (bind(registerUriHandler, kGraphics, handleGraphicsRequest));
    return initBlock.execute();
 }
@@ -28,7 +28,9 @@ namespace source_control {
 
 // The size threshold at which we warn the user that the thing they are
 // requesting might slow down the app and are they sure they want to proceed?
-const size_t WARN_SIZE = 200 * 1024;
+// (The client only renders the visible part of a diff, so this is mostly
+// about transfer and parse time; 100k line diffs fit comfortably.)
+const size_t WARN_SIZE = 10 * 1024 * 1024;
 
 class VCSStatus
 {
@@ -15,11 +15,48 @@ package org.rstudio.core.client;
 import java.util.ArrayList;
 import java.util.Iterator;
 
+/**
+ * Reads delimited text a line at a time. By default fields are separated
+ * by commas and may be quoted with double quotes (a quote within a quoted
+ * field is escaped by doubling it).
+ */
 public class CsvReader implements Iterable<String[]>
 {
    public CsvReader(String data)
+   {
+      this(data, ",", "\"");
+   }
+
+   /**
+    * Reads text whose fields are separated by any of the characters in
+    * separators and may be quoted with any of the characters in quotes. If
+    * separators is empty then fields are separated by runs of spaces and
+    * tabs, and leading and trailing whitespace is ignored (as with R's
+    * read.table).
+    */
+   public CsvReader(String data, String separators, String quotes)
    {
       data_ = data;
+      separators_ = separators;
+      quotes_ = quotes;
+   }
+
+   /**
+    * Unquoted fields equal to one of these (ignoring surrounding
+    * whitespace) are returned as null.
+    */
+   public void setNaStrings(String[] naStrings)
+   {
+      naStrings_ = naStrings;
+   }
+
+   /**
+    * Text from an unquoted comment character to the end of the line is
+    * ignored.
+    */
+   public void setCommentChar(char commentChar)
+   {
+      commentChar_ = commentChar;
    }
 
    public Iterator<String[]> iterator()
@@ -43,35 +80,61 @@ public class CsvReader implements Iterable<String[]>
             final int IN_QUOTE = 2;
             final int QUOTE_ENDED = 3;
 
+            boolean whitespace = separators_.length() == 0;
             int state = START;
+            char quote = 0;
             for ( ; pos < data_.length(); pos++)
             {
                char c = data_.charAt(pos);
 
-               if (c == '\n' && state != IN_QUOTE)
-               {
-                  pos++;
-                  break;
-               }
-               if (c == ',' && state != IN_QUOTE)
+               if (state != IN_QUOTE)
                {
-                  if (state != QUOTE_ENDED)
-                     list.add(chunk.toString());
-                  chunk = new StringBuilder();
-                  state = START;
-                  continue;
+                  if (c == '\n')
+                  {
+                     pos++;
+                     break;
+                  }
+                  if (c == '\r' && pos < data_.length() - 1 &&
+                      data_.charAt(pos+1) == '\n')
+                  {
+                     continue;
+                  }
+                  if (c == commentChar_)
+                  {
+                     // skip to the end of the line
+                     while (pos < data_.length() - 1 &&
+                            data_.charAt(pos+1) != '\n')
+                     {
+                        pos++;
+                     }
+                     continue;
+                  }
+                  if (whitespace ? (c == ' ' || c == '\t')
+                                 : separators_.indexOf(c) != -1)
+                  {
+                     // runs of whitespace count as one separator
+                     if (whitespace && state == START)
+                        continue;
+
+                     if (state != QUOTE_ENDED)
+                        list.add(unquotedField(chunk));
+                     chunk = new StringBuilder();
+                     state = START;
+                     continue;
+                  }
                }
-               if (c == '"' && state == START)
+               if (state == START && quotes_.indexOf(c) != -1)
                {
+                  quote = c;
                   state = IN_QUOTE;
                   continue;
                }
-               if (c == '"' && state == IN_QUOTE)
+               if (state == IN_QUOTE && c == quote)
                {
                   int lookahead = (pos < data_.length() - 1)
                                   ? data_.charAt(pos+1)
                                   : -1;
-                  if (lookahead == '"')
+                  if (lookahead == quote)
                   {
                      chunk.append((char)lookahead);
                      pos++;
@@ -88,10 +151,14 @@ public class CsvReader implements Iterable<String[]>
                chunk.append(c);
             }
 
-            if (state != QUOTE_ENDED)
+            if (state == IN_QUOTE)
             {
                list.add(chunk.toString());
             }
+            else if (state != QUOTE_ENDED && !(whitespace && state == START))
+            {
+               list.add(unquotedField(chunk));
+            }
 
             return list.toArray(new String[0]);
          }
@@ -103,5 +170,24 @@ public class CsvReader implements Iterable<String[]>
       };
    }
 
+   private String unquotedField(StringBuilder chunk)
+   {
+      String field = chunk.toString();
+      if (naStrings_ != null)
+      {
+         String trimmed = field.trim();
+         for (String naString : naStrings_)
+         {
+            if (trimmed.equals(naString))
+               return null;
+         }
+      }
+      return field;
+   }
+
    private final String data_;
+   private final String separators_;
+   private final String quotes_;
+   private String[] naStrings_;
+   private int commentChar_ = -1;
 }
@@ -0,0 +1,134 @@
+/*
+ * RingQueue.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.core.client;
+
+/**
+ * Array-backed double-ended queue. Adding and removing at either end is
+ * amortized O(1), unlike ArrayList.remove(0) which shifts every element.
+ * (java.util.ArrayDeque is not available in GWT's JRE emulation.)
+ */
+public class RingQueue<T>
+{
+   public RingQueue()
+   {
+      this(16);
+   }
+
+   public RingQueue(int initialCapacity)
+   {
+      items_ = new Object[Math.max(1, initialCapacity)];
+   }
+
+   public int size()
+   {
+      return size_;
+   }
+
+   public boolean isEmpty()
+   {
+      return size_ == 0;
+   }
+
+   public void addLast(T item)
+   {
+      ensureCapacity();
+      items_[(head_ + size_) % items_.length] = item;
+      size_++;
+   }
+
+   public void addFirst(T item)
+   {
+      ensureCapacity();
+      head_ = (head_ - 1 + items_.length) % items_.length;
+      items_[head_] = item;
+      size_++;
+   }
+
+   /**
+    * Removes and returns the first item, or null if the queue is empty.
+    */
+   @SuppressWarnings("unchecked")
+   public T pollFirst()
+   {
+      if (size_ == 0)
+         return null;
+      T item = (T) items_[head_];
+      items_[head_] = null;
+      head_ = (head_ + 1) % items_.length;
+      size_--;
+      return item;
+   }
+
+   /**
+    * Removes and returns the last item, or null if the queue is empty.
+    */
+   @SuppressWarnings("unchecked")
+   public T pollLast()
+   {
+      if (size_ == 0)
+         return null;
+      int index = (head_ + size_ - 1) % items_.length;
+      T item = (T) items_[index];
+      items_[index] = null;
+      size_--;
+      return item;
+   }
+
+   @SuppressWarnings("unchecked")
+   public T peekFirst()
+   {
+      return size_ == 0 ? null : (T) items_[head_];
+   }
+
+   @SuppressWarnings("unchecked")
+   public T peekLast()
+   {
+      return size_ == 0 ? null
+                        : (T) items_[(head_ + size_ - 1) % items_.length];
+   }
+
+   /**
+    * @param index 0 for the first item, size()-1 for the last
+    */
+   @SuppressWarnings("unchecked")
+   public T get(int index)
+   {
+      if (index < 0 || index >= size_)
+         throw new IndexOutOfBoundsException();
+      return (T) items_[(head_ + index) % items_.length];
+   }
+
+   public void clear()
+   {
+      for (int i = 0; i < size_; i++)
+         items_[(head_ + i) % items_.length] = null;
+      head_ = 0;
+      size_ = 0;
+   }
+
+   private void ensureCapacity()
+   {
+      if (size_ < items_.length)
+         return;
+
+      Object[] items = new Object[items_.length * 2];
+      for (int i = 0; i < size_; i++)
+         items[i] = items_[(head_ + i) % items_.length];
+      items_ = items;
+      head_ = 0;
+   }
+
+   private Object[] items_;
+   private int head_ = 0;
+   private int size_ = 0;
+}
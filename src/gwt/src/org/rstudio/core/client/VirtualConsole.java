@@ -12,12 +12,12 @@
  */
 package org.rstudio.core.client;
 
-import org.rstudio.core.client.regex.Match;
-import org.rstudio.core.client.regex.Pattern;
-
 /**
  * Simulates a console that behaves like the R console, specifically with
  * regard to \r (carriage return) and \b (backspace) characters.
+ *
+ * This class deliberately avoids GWT-only APIs so that it can also be
+ * exercised on the JVM.
  */
 public class VirtualConsole
 {
@@ -27,28 +27,23 @@ public class VirtualConsole
 
    public void submit(String data)
    {
-      if (StringUtil.isNullOrEmpty(data))
-         return;
-
-      if (CONTROL_SPECIAL.match(data, 0) == null)
-      {
-         text(data);
+      if (data == null || data.length() == 0)
          return;
-      }
 
       int tail = 0;
-      Match match = CONTROL.match(data, 0);
-      while (match != null)
+      int length = data.length();
+      for (int i = 0; i < length; i++)
       {
-         int pos = match.getIndex();
+         char c = data.charAt(i);
+         if (c != '\r' && c != '\b' && c != '\n' && c != '\f')
+            continue;
 
          // If we passed over any plain text on the way to this control
          // character, add it.
-         text(data.substring(tail, pos));
+         text(data, tail, i);
+         tail = i + 1;
 
-         tail = pos + 1;
-
-         switch (data.charAt(pos))
+         switch (c)
          {
             case '\r':
                carriageReturn();
@@ -62,24 +57,42 @@ public class VirtualConsole
             case '\f':
                formfeed();
                break;
-            default:
-               assert false : "Unknown control char, please check regex";
-               text(data.charAt(pos) + "");
-               break;
          }
-
-         match = match.nextMatch();
       }
 
       // If there was any plain text after the last control character, add it
-      text(data.substring(tail));
+      text(data, tail, length);
+   }
+
+   public boolean isEmpty()
+   {
+      return o.length() == 0;
+   }
+
+   /**
+    * Removes and returns everything up to and including the last newline,
+    * leaving only the current (unterminated) line in the buffer. Lines that
+    * have been taken can no longer be affected by \r or \b.
+    */
+   public String takeCompletedLines()
+   {
+      int lastNewline = o.lastIndexOf("\n");
+      if (lastNewline < 0)
+         return "";
+
+      int taken = lastNewline + 1;
+      String completed = o.substring(0, taken);
+      o.delete(0, taken);
+      pos = Math.max(0, pos - taken);
+      return completed;
    }
 
    private void backspace()
    {
       if (pos == 0)
          return;
-      o.deleteCharAt(--pos);
+      pos--;
+      o.deleteCharAt(pos);
    }
 
    private void carriageReturn()
@@ -96,20 +109,39 @@ public class VirtualConsole
       while (pos < o.length() && o.charAt(pos) != '\n')
          pos++;
       // Now we're either at the end of the buffer, or on top of a '\n'
-      text("\n");
+      if (pos < o.length())
+      {
+         // Overwriting a '\n' with a '\n' changes nothing
+         pos++;
+         return;
+      }
+      o.append('\n');
+      pos++;
    }
 
    private void formfeed()
    {
       o.setLength(0);
+      pos = 0;
    }
 
-   private void text(String text)
+   private void text(String data, int start, int end)
    {
-      assert text.indexOf('\r') < 0 && text.indexOf('\b') < 0;
+      int length = end - start;
+      if (length <= 0)
+         return;
 
-      o.replace(pos, pos + text.length(), text);
-      pos += text.length();
+      if (pos == o.length())
+      {
+         // Fast path: appending to the end of the buffer
+         o.append(data, start, end);
+      }
+      else
+      {
+         int overwriteEnd = Math.min(pos + length, o.length());
+         o.replace(pos, overwriteEnd, data.substring(start, end));
+      }
+      pos += length;
    }
 
    @Override
@@ -127,6 +159,4 @@ public class VirtualConsole
 
    private final StringBuilder o = new StringBuilder();
    private int pos = 0;
-   private static final Pattern CONTROL = Pattern.create("[\r\b\f\n]");
-   private static final Pattern CONTROL_SPECIAL = Pattern.create("[\r\b\f]");
 }
@@ -58,6 +58,13 @@ public interface FileSystemContext
     */
    void refresh();
 
+   /**
+    * Hints that the user may soon navigate to the given directory (e.g.
+    * they are hovering over it), so its contents can be fetched ahead of
+    * time. Contexts are free to ignore this.
+    */
+   void prefetch(FileSystemItem directory);
+
    /**
     * Begin creating a folder with the specified name in the current directory.
     * An onContentsChanged() callback will be fired when it is complete (if
@@ -29,6 +29,10 @@ public abstract class PosixFileSystemContext implements FileSystemContext
       callbacks_ = callbacks;
    }
 
+   public void prefetch(FileSystemItem directory)
+   {
+   }
+
    public String combine(String root, String name)
    {
       if (name == null || name.length() == 0)
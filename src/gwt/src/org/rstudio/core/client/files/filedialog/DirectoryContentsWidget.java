@@ -12,6 +12,7 @@
  */
 package org.rstudio.core.client.files.filedialog;
 
+import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.TableElement;
 import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.event.dom.client.*;
@@ -20,6 +21,7 @@ import com.google.gwt.event.logical.shared.SelectionEvent;
 import com.google.gwt.event.logical.shared.SelectionHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.resources.client.ImageResource;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.FlexTable;
 import com.google.gwt.user.client.ui.HTMLTable;
@@ -124,6 +126,24 @@ public class DirectoryContentsWidget
             event.preventDefault();
          }
       });
+      // directories the mouse rests on are listed ahead of time
+      table_.addDomHandler(new MouseOverHandler()
+      {
+         public void onMouseOver(MouseOverEvent event)
+         {
+            hoverItem_ = itemForElement(
+                  Element.as(event.getNativeEvent().getEventTarget()));
+            hoverTimer_.schedule(HOVER_PREFETCH_DELAY_MS);
+         }
+      }, MouseOverEvent.getType());
+      table_.addDomHandler(new MouseOutHandler()
+      {
+         public void onMouseOut(MouseOutEvent event)
+         {
+            hoverItem_ = null;
+            hoverTimer_.cancel();
+         }
+      }, MouseOutEvent.getType());
       table_.addKeyDownHandler(new KeyDownHandler()
       {
          public void onKeyDown(KeyDownEvent event)
@@ -233,6 +253,30 @@ public class DirectoryContentsWidget
 
       SelectionEvent.fire(DirectoryContentsWidget.this,
                           getSelectedItem());
+
+      prefetch(getSelectedItem());
+   }
+
+   private void prefetch(FileSystemItem item)
+   {
+      if (item != null && item.isDirectory())
+         context_.prefetch(item);
+   }
+
+   // Returns the item in the row containing the given element, if any
+   private FileSystemItem itemForElement(Element el)
+   {
+      for (; el != null && el != table_.getElement(); el = el.getParentElement())
+      {
+         if (el.getTagName().equalsIgnoreCase("tr"))
+         {
+            int row = TableRowElement.as(el).getRowIndex();
+            if (row >= 0 && row < table_.getRowCount())
+               return items_.get(table_.getText(row, COL_NAME));
+            return null;
+         }
+      }
+      return null;
    }
 
    public String getSelectedValue()
@@ -397,5 +441,16 @@ public class DirectoryContentsWidget
    private final FileDialogStyles styles_ = FileDialogResources.INSTANCE.styles();
 
    private final FocusImpl focusImpl_ = FocusImpl.getFocusImplForPanel();
+
+   private FileSystemItem hoverItem_;
+   private final Timer hoverTimer_ = new Timer()
+   {
+      @Override
+      public void run()
+      {
+         prefetch(hoverItem_);
+      }
+   };
+   private static final int HOVER_PREFETCH_DELAY_MS = 250;
    private final FileSystemContext context_;
 }
@@ -55,6 +55,16 @@ public class RpcRequest
       clientVersion_ = new JSONNumber(clientVersion);
    }
    
+   public String getMethod()
+   {
+      return method_;
+   }
+   
+   public JSONArray getParams()
+   {
+      return params_;
+   }
+   
    public void send(RpcRequestCallback callback)
    {
       // final references for access from anonymous class
@@ -62,23 +72,7 @@ public class RpcRequest
       final RpcRequestCallback requestCallback = callback ;
       
       // build json request object
-      JSONObject request = new JSONObject() ;
-      request.put("method", new JSONString(method_)) ;
-      if ( params_ != null )
-         request.put("params", params_);  
-      if ( kwparams_ != null)
-         request.put("kwparams", kwparams_);
-      
-      // add src window if we have it
-      if (sourceWindow_ != null)
-         request.put("sourceWnd", sourceWindow_);
-      
-      // add client id if we have it
-      if (clientId_ != null)
-         request.put("clientId", clientId_);
-      
-      // add client version
-      request.put("version", clientVersion_);
+      JSONObject request = toJSONObject() ;
       
       // configure request builder
       RequestBuilder builder = new RequestBuilder(RequestBuilder.POST, url_);
@@ -183,8 +177,39 @@ public class RpcRequest
       }
    }
    
+   /**
+    * Logs the request when it is sent as one of the calls of a batch
+    * request rather than by send(); the response is logged by
+    * logBatchResponse.
+    */
+   public void logBatchRequest()
+   {
+      requestLogEntry_ = RequestLog.log(
+                              Integer.toString(Random.nextInt()),
+                              redactLog_ ? "[REDACTED]"
+                                         : toJSONObject().toString());
+   }
+   
+   public void logBatchResponse(int responseType, String response)
+   {
+      if (requestLogEntry_ != null)
+         requestLogEntry_.logResponse(responseType, response);
+   }
+   
+   /**
+    * True if the request has been cancelled. A request that is waiting to
+    * be sent as part of a batch has no HTTP request of its own to cancel,
+    * so whoever sends the batch must check this.
+    */
+   public boolean isCancelled()
+   {
+      return cancelled_;
+   }
+   
    public void cancel()
    {
+      cancelled_ = true;
+      
       if (request_ != null)
       {
          request_.cancel();
@@ -198,6 +223,29 @@ public class RpcRequest
       }
    }
      
+   private JSONObject toJSONObject()
+   {
+      JSONObject request = new JSONObject() ;
+      request.put("method", new JSONString(method_)) ;
+      if ( params_ != null )
+         request.put("params", params_);  
+      if ( kwparams_ != null)
+         request.put("kwparams", kwparams_);
+      
+      // add src window if we have it
+      if (sourceWindow_ != null)
+         request.put("sourceWnd", sourceWindow_);
+      
+      // add client id if we have it
+      if (clientId_ != null)
+         request.put("clientId", clientId_);
+      
+      // add client version
+      request.put("version", clientVersion_);
+      
+      return request;
+   }
+   
    final private String url_ ;
    final private String method_ ;
    final private JSONArray params_ ;
@@ -208,6 +256,7 @@ public class RpcRequest
    final private JSONNumber clientVersion_;
    private Request request_ = null;
    private RequestLogEntry requestLogEntry_ = null;
+   private boolean cancelled_ = false;
    
      
 }
@@ -13,6 +13,7 @@
 package org.rstudio.core.client.widget;
 
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Frame;
@@ -42,7 +43,7 @@ public class ImageFrame extends Frame
             else
             {
                setupContent(getElement());
-               replaceLocation(getElement(), url_);
+               replaceLocation(getElement(), url_, null);
             }
          }
       }.schedule(100);
@@ -63,24 +64,45 @@ public class ImageFrame extends Frame
    }
    
    public void setImageUrl(String url)
+   {
+      setImageUrl(url, null);
+   }
+   
+   // onLoaded (if provided) is executed once the image has loaded (or 
+   // failed to load)
+   public void setImageUrl(String url, Command onLoaded)
    {
       url_ = url;
-      if (isAttached())
-         replaceLocation(getElement(), url);
+      if (!isAttached() || !replaceLocation(getElement(), url, onLoaded))
+      {
+         if (onLoaded != null)
+            onLoaded.execute();
+      }
    }
 
-   private native final boolean replaceLocation(Element el, String url) /*-{
+   private native final boolean replaceLocation(Element el, 
+                                                String url,
+                                                Command onLoaded) /*-{
       if (!el.contentWindow.document)
          return false;
       var img = el.contentWindow.document.getElementById('img');
       if (!img)
          return false;
+      img.onload = img.onerror = null;
       if (url && url != 'javascript:false') {
          img.style.display = 'inline';
+         if (onLoaded) {
+            img.onload = img.onerror = $entry(function() {
+               img.onload = img.onerror = null;
+               onLoaded.@com.google.gwt.user.client.Command::execute()();
+            });
+         }
          img.src = url;
       }
       else {
          img.style.display = 'none';
+         if (onLoaded)
+            onLoaded.@com.google.gwt.user.client.Command::execute()();
       }
       return true;
    }-*/;
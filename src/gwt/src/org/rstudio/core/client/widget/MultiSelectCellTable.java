@@ -30,6 +30,8 @@ import org.rstudio.core.client.BrowseCap;
 import org.rstudio.core.client.command.KeyboardShortcut;
 import org.rstudio.core.client.dom.DomUtils;
 
+import java.util.List;
+
 public class MultiSelectCellTable<T> extends CellTable<T>
       implements HasKeyDownHandlers, HasClickHandlers, HasMouseDownHandlers,
                  HasContextMenuHandlers
@@ -165,7 +167,7 @@ public class MultiSelectCellTable<T> extends CellTable<T>
                   event.preventDefault();
                   event.stopPropagation();
 
-                  for (T item : getVisibleItems())
+                  for (T item : getSelectableItems())
                      getSelectionModel().setSelected(item, true);
                }
             }
@@ -310,6 +312,15 @@ public class MultiSelectCellTable<T> extends CellTable<T>
       return true;
    }
 
+   /**
+    * The items selected by select all. Subclasses that render only part of
+    * their data should return all of it.
+    */
+   protected List<T> getSelectableItems()
+   {
+      return getVisibleItems();
+   }
+
    @Override
    public HandlerRegistration addClickHandler(ClickHandler handler)
    {
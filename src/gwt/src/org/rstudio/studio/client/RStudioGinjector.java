@@ -32,6 +32,7 @@ import org.rstudio.studio.client.workbench.model.RemoteFileSystemContext;
 import org.rstudio.studio.client.workbench.model.Session;
 import org.rstudio.studio.client.workbench.prefs.model.UIPrefs;
 import org.rstudio.studio.client.workbench.views.console.shell.assist.RCompletionManager;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageCatalog;
 import org.rstudio.studio.client.workbench.views.source.DocsMenu;
 import org.rstudio.studio.client.workbench.views.source.editors.text.AceEditor;
 import org.rstudio.studio.client.workbench.views.vcs.svn.SVNCommandHandler;
@@ -61,4 +62,5 @@ public interface RStudioGinjector extends Ginjector
    Commands getCommands();
    UIPrefs getUIPrefs();
    Session getSession();
+   PackageCatalog getPackageCatalog();
 }
@@ -16,12 +16,22 @@ import org.rstudio.studio.client.server.*;
 import org.rstudio.studio.client.workbench.codesearch.model.CodeSearchServerOperations;
 import org.rstudio.studio.client.workbench.views.help.model.HelpServerOperations;
 
+import java.util.ArrayList;
+
 public interface CodeToolsServerOperations extends HelpServerOperations,
                                                    CodeSearchServerOperations
 {
    void getCompletions(String line, int cursorPos, 
          ServerRequestCallback<Completions> completions);
 
+   /**
+    * Gets the objects on the search path for local completion, skipping
+    * the attached packages named in cachedScopes.
+    */
+   void getCompletionIndex(
+         ArrayList<String> cachedScopes,
+         ServerRequestCallback<CompletionIndexUpdate> requestCallback);
+
    void getHelpAtCursor(
          String line, int cursorPos,
          ServerRequestCallback<org.rstudio.studio.client.server.Void> callback);
@@ -0,0 +1,43 @@
+/*
+ * CompletionIndexUpdate.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.codetools;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayString;
+
+public class CompletionIndexUpdate extends JavaScriptObject
+{
+   protected CompletionIndexUpdate()
+   {
+   }
+
+   /**
+    * The search path, e.g. [".GlobalEnv", "package:stats", ...]
+    */
+   public final native JsArrayString getScopes() /*-{
+      return this.scopes ;
+   }-*/;
+
+   /**
+    * The names of the objects in the given scope, or null if the scope
+    * wasn't sent (because the client said it already had it)
+    */
+   public final native JsArrayString getObjects(String scope) /*-{
+      var objects = this.objects[scope] ;
+      return objects ? objects : null ;
+   }-*/;
+
+   public final native JsArrayString getNamespaces() /*-{
+      return this.namespaces ;
+   }-*/;
+}
@@ -0,0 +1,287 @@
+/*
+ * RTokenStream.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.r;
+
+import org.rstudio.core.client.patch.SubstringDiff;
+
+/**
+ * The tokens of an R document, kept up to date incrementally as the
+ * document is edited.
+ *
+ * Tokens are stored as parallel arrays of start offsets and types (tokens
+ * are contiguous, so each token ends where the next one starts). Since the
+ * tokenization starting at any token boundary depends only on the text
+ * that follows it, an edit is handled by re-lexing from the start of the
+ * token that contains the character before the edit until a new token
+ * starts (after the edit) at the same place an old token started. From
+ * there on the old tokens are still valid and are just shifted.
+ */
+public class RTokenStream
+{
+   public RTokenStream(String text)
+   {
+      text_ = "";
+      applyEdit(0, 0, text);
+   }
+
+   public String getText()
+   {
+      return text_;
+   }
+
+   public int getTokenCount()
+   {
+      return count_;
+   }
+
+   public int getTokenType(int index)
+   {
+      return types_[checkIndex(index)] & TYPE_MASK;
+   }
+
+   public int getTokenStart(int index)
+   {
+      return starts_[checkIndex(index)];
+   }
+
+   public int getTokenEnd(int index)
+   {
+      checkIndex(index);
+      return index + 1 < count_ ? starts_[index + 1] : text_.length();
+   }
+
+   public String getTokenText(int index)
+   {
+      return text_.substring(getTokenStart(index), getTokenEnd(index));
+   }
+
+   public RToken getToken(int index)
+   {
+      int type = getTokenType(index);
+      int start = getTokenStart(index);
+      int end = getTokenEnd(index);
+      String content = text_.substring(start, end);
+      if (type == RToken.STRING)
+      {
+         return new RStringToken(type,
+                                 content,
+                                 start,
+                                 end - start,
+                                 (types_[index] & WELL_FORMED) != 0);
+      }
+      return new RToken(type, content, start, end - start);
+   }
+
+   /**
+    * Returns the index of the token containing the given offset, or -1 if
+    * the offset is outside the text.
+    */
+   public int getTokenIndexAt(int offset)
+   {
+      if (offset < 0 || offset >= text_.length())
+         return -1;
+
+      int low = 0;
+      int high = count_ - 1;
+      while (low < high)
+      {
+         int mid = (low + high + 1) >>> 1;
+         if (starts_[mid] <= offset)
+            low = mid;
+         else
+            high = mid - 1;
+      }
+      return low;
+   }
+
+   public void applyEdit(SubstringDiff diff)
+   {
+      applyEdit(diff.getOffset(), diff.getLength(), diff.getReplacement());
+   }
+
+   /**
+    * Replaces removedLength characters at offset with the inserted text and
+    * re-lexes the affected tokens.
+    */
+   public void applyEdit(int offset, int removedLength, String inserted)
+   {
+      if (offset < 0 || removedLength < 0 ||
+          offset + removedLength > text_.length())
+      {
+         throw new IndexOutOfBoundsException();
+      }
+
+      String text = text_.substring(0, offset) +
+                    inserted +
+                    text_.substring(offset + removedLength);
+      int delta = inserted.length() - removedLength;
+      int editEnd = offset + inserted.length();
+
+      // The first token that may change. The token containing the char
+      // before the edit is included because it may be extended (e.g. an
+      // identifier being typed)
+      int first = offset > 0 ? getTokenIndexAt(offset - 1) : 0;
+      first = Math.max(0, first);
+
+      // A ` or % without a match further on becomes a one-character error
+      // token, so inserting a matching one after it changes that token
+      first = Math.min(first, unmatchedDelimiterBefore(first, inserted));
+
+      int restart = first < count_ ? starts_[first] : 0;
+
+      // Re-lex until a token starts where an old token started (or EOF)
+      int[] newStarts = new int[16];
+      int[] newTypes = new int[16];
+      int newCount = 0;
+      int resync = count_;   // the first old token that is still valid
+
+      RTokenizer tokenizer = new RTokenizer(text, restart);
+      int old = first;
+      while (true)
+      {
+         int type = tokenizer.nextTokenType();
+         if (type == RTokenizer.EOF)
+            break;
+
+         int start = tokenizer.getTokenStart();
+         if (start >= editEnd)
+         {
+            int oldStart = start - delta;
+            while (old < count_ && starts_[old] < oldStart)
+               old++;
+            if (old < count_ && starts_[old] == oldStart)
+            {
+               resync = old;
+               break;
+            }
+         }
+
+         if (newCount == newStarts.length)
+         {
+            newStarts = grow(newStarts);
+            newTypes = grow(newTypes);
+         }
+         newStarts[newCount] = start;
+         newTypes[newCount] = type |
+               (type == RToken.STRING && tokenizer.isWellFormed() ? WELL_FORMED
+                                                                   : 0);
+         newCount++;
+      }
+
+      splice(first, resync, newStarts, newTypes, newCount, delta);
+      text_ = text;
+      changedFrom_ = first;
+      changedTo_ = first + newCount;
+   }
+
+   /**
+    * The index of the first token that was (re-)lexed by the last edit.
+    */
+   public int getChangedFrom()
+   {
+      return changedFrom_;
+   }
+
+   /**
+    * The index just past the last token that was (re-)lexed by the last
+    * edit. Tokens from here on were only shifted.
+    */
+   public int getChangedTo()
+   {
+      return changedTo_;
+   }
+
+   private int unmatchedDelimiterBefore(int index, String inserted)
+   {
+      boolean backtick = inserted.indexOf('`') >= 0;
+      boolean percent = inserted.indexOf('%') >= 0;
+      if (!backtick && !percent)
+         return index;
+
+      for (int i = 0; i < index && i < count_; i++)
+      {
+         if ((types_[i] & TYPE_MASK) != RToken.ERROR)
+            continue;
+         char c = text_.charAt(starts_[i]);
+         if ((backtick && c == '`') || (percent && c == '%'))
+            return i;
+      }
+      return index;
+   }
+
+   // Replaces tokens [from, to) with the given tokens and shifts the tokens
+   // from 'to' onward by delta
+   private void splice(int from,
+                       int to,
+                       int[] starts,
+                       int[] types,
+                       int count,
+                       int delta)
+   {
+      int tail = count_ - to;
+      int newCount = from + count + tail;
+      if (newCount > starts_.length)
+      {
+         int capacity = Math.max(newCount, starts_.length * 2);
+         int[] s = new int[capacity];
+         int[] t = new int[capacity];
+         System.arraycopy(starts_, 0, s, 0, from);
+         System.arraycopy(types_, 0, t, 0, from);
+         System.arraycopy(starts_, to, s, from + count, tail);
+         System.arraycopy(types_, to, t, from + count, tail);
+         starts_ = s;
+         types_ = t;
+      }
+      else if (from + count != to)
+      {
+         System.arraycopy(starts_, to, starts_, from + count, tail);
+         System.arraycopy(types_, to, types_, from + count, tail);
+      }
+
+      System.arraycopy(starts, 0, starts_, from, count);
+      System.arraycopy(types, 0, types_, from, count);
+
+      if (delta != 0)
+      {
+         for (int i = from + count; i < newCount; i++)
+            starts_[i] += delta;
+      }
+
+      count_ = newCount;
+   }
+
+   private int checkIndex(int index)
+   {
+      if (index < 0 || index >= count_)
+         throw new IndexOutOfBoundsException();
+      return index;
+   }
+
+   private static int[] grow(int[] array)
+   {
+      int[] result = new int[array.length * 2];
+      System.arraycopy(array, 0, result, 0, array.length);
+      return result;
+   }
+
+   private String text_;
+   private int[] starts_ = new int[16];
+   private int[] types_ = new int[16];
+   private int count_ = 0;
+   private int changedFrom_ = 0;
+   private int changedTo_ = 0;
+
+   // token types fit in 16 bits; the flag marks well formed strings
+   private static final int TYPE_MASK = 0xFFFF;
+   private static final int WELL_FORMED = 0x10000;
+}
@@ -0,0 +1,77 @@
+/*
+ * RTokenStreamCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.r;
+
+import com.google.inject.Singleton;
+import org.rstudio.core.client.patch.SubstringDiff;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps an RTokenStream per document (keyed by document id) so that code
+ * which needs the tokens of a document only re-lexes what changed since
+ * the last time it asked. The least recently used streams are discarded
+ * once more than MAX_DOCUMENTS are held.
+ */
+@Singleton
+public class RTokenStreamCache
+{
+   /**
+    * Returns the tokens of the document, which currently has the given
+    * text. If the document has been tokenized before, the difference from
+    * the previous text is applied as a single edit.
+    */
+   public RTokenStream getTokens(String docId, String text)
+   {
+      RTokenStream stream = streams_.get(docId);
+      if (stream == null)
+      {
+         stream = new RTokenStream(text);
+         streams_.put(docId, stream);
+      }
+      else if (!stream.getText().equals(text))
+      {
+         stream.applyEdit(new SubstringDiff(stream.getText(), text));
+      }
+      return stream;
+   }
+
+   /**
+    * Applies an edit to the document's tokens, if the document is being
+    * tracked.
+    */
+   public void applyEdit(String docId, SubstringDiff diff)
+   {
+      RTokenStream stream = streams_.get(docId);
+      if (stream != null && !diff.isEmpty())
+         stream.applyEdit(diff);
+   }
+
+   public void remove(String docId)
+   {
+      streams_.remove(docId);
+   }
+
+   private final LinkedHashMap<String, RTokenStream> streams_ =
+         new LinkedHashMap<String, RTokenStream>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, RTokenStream> e)
+      {
+         return size() > MAX_DOCUMENTS;
+      }
+   };
+
+   private static final int MAX_DOCUMENTS = 20;
+}
@@ -12,19 +12,35 @@
  */
 package org.rstudio.studio.client.common.r;
 
-import org.rstudio.core.client.regex.Match;
-import org.rstudio.core.client.regex.Pattern;
-
 import java.util.ArrayList;
 
+/**
+ * Tokenizes R code. Tokens are recognized by scanning character classes
+ * directly rather than with regular expressions, since this runs on the
+ * typing hot path (completion, literal parsing).
+ *
+ * Besides nextToken(), which returns a new RToken (including a copy of its
+ * text), the tokenizer can be driven with nextTokenType(), which only
+ * reports the type and the offsets of each token in the source.
+ */
 public class RTokenizer
 {
    public RTokenizer(String data)
+   {
+      this(data, 0) ;
+   }
+
+   /**
+    * Creates a tokenizer that starts at the given offset, which must be the
+    * start of a token (as tokenization at any token start depends only on
+    * the text that follows).
+    */
+   public RTokenizer(String data, int start)
    {
       this.data_ = data ;
-      this.pos_ = 0 ;
+      this.pos_ = start ;
    }
-   
+
    public static ArrayList<RToken> asTokens(String code)
    {
       ArrayList<RToken> results = new ArrayList<RToken>() ;
@@ -37,11 +53,36 @@ public class RTokenizer
 
    public RToken nextToken()
    {
-      if (eol())
+      int type = nextTokenType() ;
+      if (type == EOF)
          return null ;
-      
+
+      String content = data_.substring(tokenStart_, pos_) ;
+      if (type == RToken.STRING)
+      {
+         return new RStringToken(type,
+                                 content,
+                                 tokenStart_,
+                                 pos_ - tokenStart_,
+                                 wellFormed_) ;
+      }
+      return new RToken(type, content, tokenStart_, pos_ - tokenStart_) ;
+   }
+
+   /**
+    * Advances past the next token without creating it.
+    *
+    * @return The type of the token, or EOF if there are no more tokens. The
+    *    token spans getTokenStart() to getTokenEnd() in the source.
+    */
+   public int nextTokenType()
+   {
+      tokenStart_ = pos_ ;
+      if (eol())
+         return EOF ;
+
       char c = peek() ;
-      
+
       switch (c)
       {
       case '(': case ')':
@@ -71,19 +112,15 @@ public class RTokenizer
       case '\u00A0': case '\u3000':
          return matchWhitespace() ;
       }
-      
+
       char cNext = peek(1, false) ;
-      
+
       if ((c >= '0' && c <= '9')
             || (c == '.' && cNext >= '0' && cNext <= '9'))
       {
-         RToken numberToken = matchNumber() ;
-         if (numberToken.getLength() > 0)
-            return numberToken ;
-         
-         assert false : "matchNumber() returned a zero-length token" ;
+         return matchNumber() ;
       }
-      
+
       if (Character.isLetter(c) || c == '.')
       {
          // From Section 10.3.2, identifiers must not start with
@@ -95,40 +132,60 @@ public class RTokenizer
          return matchIdentifier() ;
       }
 
-      RToken oper = matchOperator() ;
-      if (oper != null)
+      int oper = matchOperator() ;
+      if (oper != EOF)
          return oper ;
-      
+
       // Error!!
       return consumeToken(RToken.ERROR, 1) ;
    }
-   
-   private RToken matchWhitespace()
+
+   /**
+    * The offset of the token last returned by nextTokenType().
+    */
+   public int getTokenStart()
+   {
+      return tokenStart_ ;
+   }
+
+   /**
+    * The offset just past the token last returned by nextTokenType().
+    */
+   public int getTokenEnd()
    {
-      String whitespace = peek("[\\s\\u00A0]+") ;
-      assert whitespace != null ;
-      return consumeToken(RToken.WHITESPACE, whitespace.length()) ;
+      return pos_ ;
    }
-   
-   private RToken matchStringLiteral()
+
+   /**
+    * Whether the string token last returned by nextTokenType() was
+    * terminated by a matching quote.
+    */
+   public boolean isWellFormed()
+   {
+      return wellFormed_ ;
+   }
+
+   private int matchWhitespace()
+   {
+      while (!eol() && isWhitespace(peek()))
+         pos_++ ;
+      return RToken.WHITESPACE ;
+   }
+
+   private int matchStringLiteral()
    {
-      int start = pos_ ;
       char quot = eat() ;
-      
+
       assert quot == '"' || quot == '\'' ;
-      
-      boolean wellFormed = false ;
-      
+
+      wellFormed_ = false ;
+
       while (!eol())
       {
-         eatUntil("[\\\\\'\"]", true) ;
-         if (eol())
-            break ;
-         
          char c = eat() ;
          if (c == quot)
          {
-            wellFormed = true ;
+            wellFormed_ = true ;
             break ;
          }
 
@@ -138,71 +195,85 @@ public class RTokenizer
                eat() ;
             // Actually the escape expression can be longer than
             // just the backslash plus one character--but we don't
-            // need to distinguish escape expressions from other 
+            // need to distinguish escape expressions from other
             // literal text other than for the purposes of breaking
             // out of the string
          }
       }
-      
-      return new RStringToken(RToken.STRING, 
-                        data_.substring(start, pos_), 
-                        start, 
-                        pos_-start, wellFormed) ;
+
+      return RToken.STRING ;
    }
-   
-   private RToken matchNumber()
+
+   private int matchNumber()
    {
-      String num = peek("0x[0-9a-fA-F]*L?") ;
-      if (num == null)
-         num = peek("[0-9]*(\\.[0-9]*)?([eE][+-]?[0-9]*)?[Li]?") ;
+      if (peek() == '0' && peek(1, false) == 'x')
+      {
+         // 0x[0-9a-fA-F]*L?
+         pos_ += 2 ;
+         while (!eol() && isHexDigit(peek()))
+            pos_++ ;
+         eatIf('L') ;
+      }
+      else
+      {
+         // [0-9]*(\.[0-9]*)?([eE][+-]?[0-9]*)?[Li]?
+         eatDigits() ;
+         if (eatIf('.'))
+            eatDigits() ;
+         if (eatIf('e') || eatIf('E'))
+         {
+            if (!eatIf('+'))
+               eatIf('-') ;
+            eatDigits() ;
+         }
+         if (!eatIf('L'))
+            eatIf('i') ;
+      }
 
-      // We should only be in this method if 0-9 was matched, so this should
-      // be a safe assumption
-      assert num != null ;
+      // We should only be in this method if 0-9 was matched, so the number
+      // can't be empty
+      assert pos_ > tokenStart_ : "matchNumber() matched nothing" ;
 
-      return consumeToken(RToken.NUMBER, num.length()) ;
+      return RToken.NUMBER ;
    }
-   
-   private RToken matchIdentifier()
+
+   private int matchIdentifier()
    {
-      int start = pos_ ;
       eat() ;
-      String rest = peek("[\\w.]*") ;
-      pos_ += (rest != null ? rest : "").length() ;
-      return new RToken(RToken.ID, 
-                        data_.substring(start, pos_), 
-                        start, 
-                        pos_ - start) ;
+      while (!eol() && isIdentifierChar(peek()))
+         pos_++ ;
+      return RToken.ID ;
    }
 
-   private RToken matchQuotedIdentifier()
+   private int matchQuotedIdentifier()
    {
-      String iden = peek("`[^`]*`") ;
-      if (iden == null)
+      int end = data_.indexOf('`', pos_ + 1) ;
+      if (end < 0)
          return consumeToken(RToken.ERROR, 1);
       else
-         return consumeToken(RToken.ID, iden.length());
+         return consumeToken(RToken.ID, end + 1 - pos_);
    }
 
-   private RToken matchComment()
+   private int matchComment()
    {
-      String comment = peek("#.*?$");
-      return consumeToken(RToken.COMMENT, comment.length());
+      while (!eol() && !isLineTerminator(peek()))
+         pos_++ ;
+      return RToken.COMMENT ;
    }
-   
-   private RToken matchUserOperator()
+
+   private int matchUserOperator()
    {
-      String oper = peek("%[^%]*%") ;
-      if (oper == null)
+      int end = data_.indexOf('%', pos_ + 1) ;
+      if (end < 0)
          return consumeToken(RToken.ERROR, 1) ;
       else
-         return consumeToken(RToken.UOPER, oper.length()) ;
+         return consumeToken(RToken.UOPER, end + 1 - pos_) ;
    }
-   
-   private RToken matchOperator()
+
+   private int matchOperator()
    {
       char cNext = peek(1, false) ;
-      
+
       switch (peek())
       {
       case '+': case '*': case '/':
@@ -223,7 +294,7 @@ public class RTokenizer
       case '!': // also !=
          return consumeToken(RToken.OPER, cNext == '=' ? 2 : 1) ;
       default:
-         return null ;
+         return EOF ;
       }
    }
 
@@ -231,73 +302,91 @@ public class RTokenizer
    {
       return pos_ >= data_.length() ;
    }
-   
+
    private char peek()
    {
       return peek(0, true) ;
    }
-   
+
    private char peek(int lookahead, boolean throwOnEOL)
    {
       if (!throwOnEOL && (pos_ + lookahead) >= data_.length())
          return 0 ;
       return data_.charAt(pos_ + lookahead) ;
    }
-   
+
    private char eat()
    {
       char result = data_.charAt(pos_) ;
       pos_++ ; // don't inline--we want the previous line to throw if EOL
       return result ;
    }
-   
-   private String peek(String regex)
+
+   private boolean eatIf(char c)
    {
-      Match match = Pattern.create(regex).match(data_, pos_) ;
-      if (match == null)
-         return null ;
-      int idx = match.getIndex() ;
-      if (idx != pos_)
-         return null ;
-      
-      return match.getValue() ;
+      if (eol() || peek() != c)
+         return false ;
+      pos_++ ;
+      return true ;
    }
-   
-   private String eatUntil(String regex, boolean eatAllOnFailure)
+
+   private void eatDigits()
    {
-      int start = pos_ ;
-      Match match = Pattern.create(regex).match(data_, pos_) ;
-      if (match == null)
-      {
-         if (eatAllOnFailure)
-         {
-            pos_ = data_.length() ;
-            return data_.substring(start) ;
-         }
-         else
-         {
-            return null ;
-         }
-      }
-      else
-      {
-         pos_ = match.getIndex() ;
-         return data_.substring(start, pos_) ;
-      }
+      while (!eol() && peek() >= '0' && peek() <= '9')
+         pos_++ ;
    }
-   
-   private RToken consumeToken(int tokenType, int length)
+
+   private int consumeToken(int tokenType, int length)
    {
       if (length == 0)
          throw new IllegalArgumentException("Can't create zero-length token") ;
       if (pos_ + length > data_.length())
          throw new IllegalArgumentException("Premature EOF") ;
-      
-      int start = pos_ ;
+
       pos_ += length ;
-      return new RToken(tokenType, data_.substring(start, pos_), start, length) ;
+      return tokenType ;
+   }
+
+   private static boolean isHexDigit(char c)
+   {
+      return (c >= '0' && c <= '9') ||
+             (c >= 'a' && c <= 'f') ||
+             (c >= 'A' && c <= 'F') ;
    }
-   
+
+   // [\w.] (ASCII only, as in JavaScript regular expressions)
+   private static boolean isIdentifierChar(char c)
+   {
+      return (c >= 'a' && c <= 'z') ||
+             (c >= 'A' && c <= 'Z') ||
+             (c >= '0' && c <= '9') ||
+             c == '_' || c == '.' ;
+   }
+
+   // JavaScript's \s
+   private static boolean isWhitespace(char c)
+   {
+      switch (c)
+      {
+      case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+      case '\u00A0': case '\u1680': case '\u180E': case '\u2028':
+      case '\u2029': case '\u202F': case '\u205F': case '\u3000':
+      case '\uFEFF':
+         return true ;
+      default:
+         return c >= '\u2000' && c <= '\u200A' ;
+      }
+   }
+
+   private static boolean isLineTerminator(char c)
+   {
+      return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' ;
+   }
+
+   public static final int EOF = -1 ;
+
    private final String data_ ;
    private int pos_ ;
+   private int tokenStart_ ;
+   private boolean wellFormed_ ;
 }
@@ -0,0 +1,539 @@
+/*
+ * ConsoleOutputBuffer.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.shell;
+
+import org.rstudio.core.client.VirtualConsole;
+
+import java.util.ArrayList;
+
+/**
+ * Line-indexed scrollback for console-style output. Lines are kept in a ring
+ * buffer whose capacity is the maximum number of output lines, so once the
+ * buffer is full appending a line evicts the oldest one in constant time.
+ *
+ * Each line is a list of styled segments (e.g. a prompt followed by the
+ * command that was entered at it). The last line may be left open, in which
+ * case subsequent "continuous" output is appended to it and may rewrite it
+ * using \r and \b. Lines are only ever addressed by index, so callers can
+ * render any window of the scrollback without touching the rest.
+ *
+ * The buffer also keeps the height of each line (measured by the renderer,
+ * or else estimated by its HeightEstimator) in a Fenwick tree indexed by
+ * ring slot, so the offset of any line and the line at any offset can be
+ * found in O(log n) as lines are added, changed and evicted.
+ */
+public class ConsoleOutputBuffer
+{
+   public interface HeightEstimator
+   {
+      /**
+       * The height a line that hasn't been measured is expected to have.
+       */
+      int estimateHeight(Line line);
+   }
+
+   public static class Segment
+   {
+      Segment(String className, String text)
+      {
+         className_ = className;
+         text_ = text;
+      }
+
+      public String getClassName()
+      {
+         return className_;
+      }
+
+      public String getText()
+      {
+         return text_;
+      }
+
+      private final String className_;
+      private String text_;
+   }
+
+   public static class Line
+   {
+      public int getSegmentCount()
+      {
+         return segments_.size();
+      }
+
+      public Segment getSegment(int index)
+      {
+         return segments_.get(index);
+      }
+
+      /**
+       * True if the line ended with a newline; false if it is the last line
+       * of the buffer and more output may still be added to it.
+       */
+      public boolean isTerminated()
+      {
+         return terminated_;
+      }
+
+      public int length()
+      {
+         int length = 0;
+         for (int i = 0; i < segments_.size(); i++)
+            length += segments_.get(i).getText().length();
+         return length;
+      }
+
+      /**
+       * The height the line was measured at when it was last rendered, or
+       * if it hasn't been measured since it last changed, its estimated
+       * height.
+       */
+      public int getHeight()
+      {
+         return height_;
+      }
+
+      private Segment addSegment(String className, String text)
+      {
+         Segment segment = new Segment(className, text);
+         segments_.add(segment);
+         return segment;
+      }
+
+      private final ArrayList<Segment> segments_ = new ArrayList<Segment>(1);
+      private boolean terminated_;
+      private int height_;
+   }
+
+   /**
+    * @param maxLines The maximum number of lines to retain, or a value <= 0
+    *    for no limit
+    */
+   public ConsoleOutputBuffer(int maxLines)
+   {
+      maxLines_ = maxLines;
+      ring_ = new Line[initialCapacity(maxLines)];
+      heightTree_ = new int[ring_.length + 1];
+   }
+
+   public int getMaxLines()
+   {
+      return maxLines_;
+   }
+
+   public void setMaxLines(int maxLines)
+   {
+      if (maxLines == maxLines_)
+         return;
+
+      // Keep the newest lines that fit in the new limit
+      int keep = maxLines > 0 ? Math.min(size_, maxLines) : size_;
+      Line[] ring = new Line[Math.max(keep, initialCapacity(maxLines))];
+      for (int i = 0; i < keep; i++)
+         ring[i] = getLine(size_ - keep + i);
+
+      firstLineNumber_ += size_ - keep;
+      ring_ = ring;
+      head_ = 0;
+      size_ = keep;
+      maxLines_ = maxLines;
+      rebuildHeightTree();
+      version_++;
+   }
+
+   /**
+    * Sets the estimator for the heights of lines that haven't been
+    * measured, and discards all measurements (e.g. because the width or
+    * font they were rendered with has changed). This is O(n), whereas
+    * keeping the heights up to date is O(log n) per line changed. Until an
+    * estimator is set all lines have a height of 0.
+    */
+   public void setHeightEstimator(HeightEstimator estimator)
+   {
+      heightEstimator_ = estimator;
+      for (int i = 0; i < size_; i++)
+      {
+         Line line = getLine(i);
+         line.height_ = estimateHeight(line);
+      }
+      rebuildHeightTree();
+   }
+
+   /**
+    * Records the height a line was rendered at. It is kept until the line
+    * changes or setHeightEstimator is called.
+    */
+   public void setLineHeight(int index, int height)
+   {
+      Line line = getLine(index);
+      setHeight(slot(index), line, height);
+   }
+
+   /**
+    * The sum of the heights of all lines.
+    */
+   public int getTotalHeight()
+   {
+      return totalHeight_;
+   }
+
+   /**
+    * The sum of the heights of the lines before the given one.
+    */
+   public int getLineTop(int index)
+   {
+      if (index < 0 || index > size_)
+         throw new IndexOutOfBoundsException();
+
+      int end = head_ + index;
+      if (end <= ring_.length)
+         return getSlotsHeight(end) - getSlotsHeight(head_);
+      return totalHeight_ - getSlotsHeight(head_) +
+             getSlotsHeight(end - ring_.length);
+   }
+
+   /**
+    * The index of the line that covers the given offset from the top of
+    * the first line. Offsets before the first line or past the last are
+    * clamped to them. The buffer must not be empty.
+    */
+   public int getLineAt(int top)
+   {
+      if (size_ == 0)
+         throw new IndexOutOfBoundsException();
+      if (top >= totalHeight_)
+         return size_ - 1;
+
+      // The offset of the same point from the top of slot 0, which comes
+      // round to the slots before the head if the ring has wrapped
+      int target = Math.max(0, top) + getSlotsHeight(head_);
+      if (target >= totalHeight_)
+         target -= totalHeight_;
+
+      // Descend the tree for the last slot that starts at or before target
+      int slot = 0;
+      int step = 1;
+      while (step * 2 < heightTree_.length)
+         step *= 2;
+      for (; step > 0; step /= 2)
+      {
+         int next = slot + step;
+         if (next < heightTree_.length && heightTree_[next] <= target)
+         {
+            slot = next;
+            target -= heightTree_[next];
+         }
+      }
+
+      int index = (slot - head_ + ring_.length) % ring_.length;
+      return Math.min(index, size_ - 1);
+   }
+
+   /**
+    * The number of lines currently held (including an open last line).
+    */
+   public int getLineCount()
+   {
+      return size_;
+   }
+
+   /**
+    * The absolute number of the oldest line still held. This increases by
+    * one every time a line is evicted, so (getFirstLineNumber() + index)
+    * identifies a line independently of how many have been trimmed.
+    */
+   public int getFirstLineNumber()
+   {
+      return firstLineNumber_;
+   }
+
+   /**
+    * Incremented on every modification; callers that render the buffer can
+    * compare versions to find out whether anything changed.
+    */
+   public int getVersion()
+   {
+      return version_;
+   }
+
+   /**
+    * @param index 0 for the oldest line held, getLineCount()-1 for the newest
+    */
+   public Line getLine(int index)
+   {
+      if (index < 0 || index >= size_)
+         throw new IndexOutOfBoundsException();
+      return ring_[(head_ + index) % ring_.length];
+   }
+
+   /**
+    * Appends text to the buffer.
+    *
+    * @param continuous If true, the text continues any preceding continuous
+    *    output of the same class, so \r and \b in it can rewrite the current
+    *    line. Otherwise the text is interpreted on its own.
+    */
+   public void append(String text, String className, boolean continuous)
+   {
+      if (text == null || text.length() == 0)
+         return;
+
+      version_++;
+
+      if (!continuous)
+      {
+         // Make sure e.g. a prompt that follows unterminated output appears
+         // on its own line
+         if (openSegment_ != null && openSegment_.getText().length() > 0)
+            terminateLine();
+         endContinuousOutput();
+
+         appendLines(VirtualConsole.consolify(text), className);
+         return;
+      }
+
+      if (openConsole_ == null || !className.equals(openClassName_))
+      {
+         endContinuousOutput();
+         openConsole_ = new VirtualConsole();
+         openClassName_ = className;
+      }
+
+      openConsole_.submit(text);
+
+      String completed = openConsole_.takeCompletedLines();
+      int start = 0;
+      while (start < completed.length())
+      {
+         int newline = completed.indexOf('\n', start);
+         setOpenSegmentText(completed.substring(start, newline));
+         terminateLine();
+         start = newline + 1;
+      }
+
+      if (!openConsole_.isEmpty() || openSegment_ != null)
+         setOpenSegmentText(openConsole_.toString());
+   }
+
+   /**
+    * Appends all lines of another buffer to this one. If this buffer ends
+    * with an open line, the first line of the other buffer is joined to it.
+    */
+   public void appendAll(ConsoleOutputBuffer other)
+   {
+      endContinuousOutput();
+      for (int i = 0; i < other.getLineCount(); i++)
+      {
+         Line line = other.getLine(i);
+         Line target = openLine();
+         for (int j = 0; j < line.getSegmentCount(); j++)
+         {
+            Segment segment = line.getSegment(j);
+            target.addSegment(segment.getClassName(), segment.getText());
+         }
+         if (line.isTerminated())
+            target.terminated_ = true;
+         updateLastLineHeight();
+      }
+      version_++;
+   }
+
+   public void clear()
+   {
+      ring_ = new Line[initialCapacity(maxLines_)];
+      firstLineNumber_ += size_;
+      head_ = 0;
+      size_ = 0;
+      rebuildHeightTree();
+      endContinuousOutput();
+      version_++;
+   }
+
+   private void appendLines(String text, String className)
+   {
+      int start = 0;
+      while (start < text.length())
+      {
+         int newline = text.indexOf('\n', start);
+         int end = newline < 0 ? text.length() : newline;
+         Line line = openLine();
+         if (end > start)
+         {
+            line.addSegment(className, text.substring(start, end));
+            updateLastLineHeight();
+         }
+         if (newline < 0)
+            break;
+         line.terminated_ = true;
+         start = newline + 1;
+      }
+   }
+
+   private void setOpenSegmentText(String text)
+   {
+      if (openSegment_ == null)
+         openSegment_ = openLine().addSegment(openClassName_, text);
+      else
+         openSegment_.text_ = text;
+      updateLastLineHeight();
+   }
+
+   private void terminateLine()
+   {
+      openLine().terminated_ = true;
+      openSegment_ = null;
+   }
+
+   private void endContinuousOutput()
+   {
+      openConsole_ = null;
+      openClassName_ = null;
+      openSegment_ = null;
+   }
+
+   /**
+    * Returns the last line if it is still open, otherwise adds a new line
+    * (evicting the oldest if the buffer is full) and returns that.
+    */
+   private Line openLine()
+   {
+      if (size_ > 0)
+      {
+         Line last = getLine(size_ - 1);
+         if (!last.terminated_)
+            return last;
+      }
+
+      Line line = new Line();
+      int height = estimateHeight(line);
+      if (maxLines_ > 0 && size_ == maxLines_)
+      {
+         setHeight(head_, ring_[head_], 0);
+         ring_[head_] = line;
+         setHeight(head_, line, height);
+         head_ = (head_ + 1) % ring_.length;
+         firstLineNumber_++;
+      }
+      else
+      {
+         if (size_ == ring_.length)
+            grow();
+         int slot = slot(size_);
+         ring_[slot] = line;
+         setHeight(slot, line, height);
+         size_++;
+      }
+      return line;
+   }
+
+   // The last line changed, so any measurement of it is out of date
+   private void updateLastLineHeight()
+   {
+      if (heightEstimator_ == null)
+         return;
+
+      Line line = getLine(size_ - 1);
+      setHeight(slot(size_ - 1), line, estimateHeight(line));
+   }
+
+   private int estimateHeight(Line line)
+   {
+      return heightEstimator_ != null ? heightEstimator_.estimateHeight(line)
+                                      : 0;
+   }
+
+   private int slot(int index)
+   {
+      return (head_ + index) % ring_.length;
+   }
+
+   private void setHeight(int slot, Line line, int height)
+   {
+      int delta = height - line.height_;
+      line.height_ = height;
+      if (delta == 0)
+         return;
+
+      totalHeight_ += delta;
+      for (int i = slot + 1; i < heightTree_.length; i += i & -i)
+         heightTree_[i] += delta;
+   }
+
+   // The sum of the heights of the lines in the first count ring slots
+   private int getSlotsHeight(int count)
+   {
+      int height = 0;
+      for (int i = count; i > 0; i -= i & -i)
+         height += heightTree_[i];
+      return height;
+   }
+
+   private void rebuildHeightTree()
+   {
+      heightTree_ = new int[ring_.length + 1];
+      totalHeight_ = 0;
+      for (int slot = 0; slot < ring_.length; slot++)
+      {
+         if (ring_[slot] != null)
+         {
+            heightTree_[slot + 1] += ring_[slot].height_;
+            totalHeight_ += ring_[slot].height_;
+         }
+      }
+      for (int i = 1; i < heightTree_.length; i++)
+      {
+         int parent = i + (i & -i);
+         if (parent < heightTree_.length)
+            heightTree_[parent] += heightTree_[i];
+      }
+   }
+
+   private void grow()
+   {
+      int capacity = ring_.length * 2;
+      if (maxLines_ > 0)
+         capacity = Math.min(capacity, maxLines_);
+
+      Line[] ring = new Line[capacity];
+      for (int i = 0; i < size_; i++)
+         ring[i] = getLine(i);
+      ring_ = ring;
+      head_ = 0;
+      rebuildHeightTree();
+   }
+
+   private static int initialCapacity(int maxLines)
+   {
+      return maxLines > 0 ? Math.min(maxLines, INITIAL_CAPACITY)
+                          : INITIAL_CAPACITY;
+   }
+
+   private int maxLines_;
+   private Line[] ring_;
+   private int head_ = 0;
+   private int size_ = 0;
+   private int firstLineNumber_ = 0;
+   private int version_ = 0;
+
+   private HeightEstimator heightEstimator_;
+   // Fenwick tree of the line heights by ring slot (1-based), and their sum
+   private int[] heightTree_;
+   private int totalHeight_ = 0;
+
+   // State of the continuous output that the open line ends with, if any
+   private VirtualConsole openConsole_;
+   private String openClassName_;
+   private Segment openSegment_;
+
+   private static final int INITIAL_CAPACITY = 256;
+}
@@ -0,0 +1,306 @@
+/*
+ * ConsoleOutputWidget.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.shell;
+
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.PreElement;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.HasClickHandlers;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.google.gwt.safehtml.shared.SafeHtmlUtils;
+import com.google.gwt.user.client.ui.Widget;
+import org.rstudio.core.client.StringUtil;
+
+/**
+ * Renders a ConsoleOutputBuffer, materializing only the lines that fall in
+ * the visible window (plus some overscan) into the DOM. The lines above and
+ * below the window are represented by spacers, so the cost of rendering
+ * and scrolling depends on the size of the viewport rather than the size of
+ * the scrollback.
+ *
+ * Output wraps, so lines aren't all the same height. Each rendered line is
+ * measured and its height recorded in the buffer until the line or the
+ * layout (width or font) changes; lines that have never been rendered are
+ * estimated from their length. The buffer keeps running sums of the
+ * heights, so finding the lines in view is O(log n) in the size of the
+ * scrollback. When measuring lines changes the height of the content above
+ * the viewport, render() returns the difference so the caller can scroll
+ * by it and keep the output in view from jumping.
+ */
+public class ConsoleOutputWidget extends Widget implements HasClickHandlers
+{
+   public ConsoleOutputWidget(ConsoleOutputBuffer buffer,
+                              String outputClassName)
+   {
+      buffer_ = buffer;
+      outputClassName_ = outputClassName;
+
+      Document doc = Document.get();
+      DivElement outer = doc.createDivElement();
+      topSpacer_ = doc.createDivElement();
+      content_ = doc.createPreElement();
+      content_.setClassName(outputClassName);
+      bottomSpacer_ = doc.createDivElement();
+      outer.appendChild(topSpacer_);
+      outer.appendChild(content_);
+      outer.appendChild(bottomSpacer_);
+
+      setElement(outer);
+      getElement().setTabIndex(0);
+
+      buffer_.setHeightEstimator(estimator_);
+   }
+
+   public HandlerRegistration addClickHandler(ClickHandler handler)
+   {
+      return addDomHandler(handler, ClickEvent.getType());
+   }
+
+   public ConsoleOutputBuffer getBuffer()
+   {
+      return buffer_;
+   }
+
+   public void setBuffer(ConsoleOutputBuffer buffer)
+   {
+      buffer_ = buffer;
+      buffer_.setHeightEstimator(estimator_);
+      renderedFirst_ = -1;
+      renderedLast_ = -1;
+   }
+
+   /**
+    * Forces the font metrics to be measured again, and the lines to be
+    * measured again as they are rendered (e.g. after the font size
+    * changes).
+    */
+   public void invalidateMetrics()
+   {
+      metricsMeasured_ = false;
+      renderedFirst_ = -1;
+      renderedLast_ = -1;
+   }
+
+   /**
+    * Brings the rendered window up to date.
+    *
+    * @param visibleTop The offset of the top of the viewport relative to the
+    *    top of this widget, in pixels. Values past the end are clamped, so
+    *    Integer.MAX_VALUE renders the last page of output.
+    * @param visibleHeight The height of the viewport in pixels
+    * @param preserveContent If true and the currently rendered lines are
+    *    still (partly) in view, leave them alone rather than re-rendering.
+    *    This keeps e.g. a text selection in the output intact.
+    * @return The number of pixels the line at the top of the viewport moved
+    *    down by as a result of rendering
+    */
+   public int render(int visibleTop, int visibleHeight, boolean preserveContent)
+   {
+      updateMetrics();
+
+      int count = buffer_.getLineCount();
+      int firstLineNumber = buffer_.getFirstLineNumber();
+
+      int totalHeight = buffer_.getTotalHeight();
+      int maxTop = Math.max(0, totalHeight - visibleHeight);
+      visibleTop = Math.max(0, Math.min(visibleTop, maxTop));
+
+      // Find the lines in view, and where the top one starts
+      int anchor = count > 0 ? buffer_.getLineAt(visibleTop) : 0;
+      int anchorTop = buffer_.getLineTop(anchor);
+      int lastVisible = anchor;
+      int bottom = anchorTop;
+      while (lastVisible < count && bottom < visibleTop + visibleHeight)
+         bottom += buffer_.getLine(lastVisible++).getHeight();
+
+      int first = Math.max(0, anchor - OVERSCAN_LINES);
+      int last = Math.min(count, lastVisible + OVERSCAN_LINES);
+
+      if (preserveContent
+          && renderedFirst_ >= firstLineNumber
+          && renderedLast_ <= firstLineNumber + count
+          && renderedFirst_ < firstLineNumber + last
+          && renderedLast_ > firstLineNumber + first)
+      {
+         first = renderedFirst_ - firstLineNumber;
+         last = renderedLast_ - firstLineNumber;
+         setSpacerHeights(first, last, count);
+         return 0;
+      }
+
+      if (firstLineNumber + first == renderedFirst_
+          && firstLineNumber + last == renderedLast_
+          && buffer_.getVersion() == renderedVersion_)
+      {
+         return 0;
+      }
+
+      content_.setInnerHTML(renderLines(first, last));
+      measureLines(first);
+      setSpacerHeights(first, last, count);
+
+      renderedFirst_ = firstLineNumber + first;
+      renderedLast_ = firstLineNumber + last;
+      renderedVersion_ = buffer_.getVersion();
+
+      return buffer_.getLineTop(anchor) - anchorTop;
+   }
+
+   private void setSpacerHeights(int first, int last, int count)
+   {
+      topSpacer_.getStyle().setHeight(buffer_.getLineTop(first), Unit.PX);
+      bottomSpacer_.getStyle().setHeight(
+            buffer_.getTotalHeight() - buffer_.getLineTop(last), Unit.PX);
+   }
+
+   private String renderLines(int first, int last)
+   {
+      // Each line gets a span of its own so that it can be measured
+      SafeHtmlBuilder sb = new SafeHtmlBuilder();
+      for (int i = first; i < last; i++)
+      {
+         ConsoleOutputBuffer.Line line = buffer_.getLine(i);
+         sb.appendHtmlConstant("<span>");
+         for (int j = 0; j < line.getSegmentCount(); j++)
+         {
+            ConsoleOutputBuffer.Segment segment = line.getSegment(j);
+            String className = segment.getClassName();
+            if (StringUtil.isNullOrEmpty(className)
+                || className.equals(outputClassName_))
+            {
+               sb.appendEscaped(segment.getText());
+            }
+            else
+            {
+               sb.appendHtmlConstant("<span class=\"" +
+                                     SafeHtmlUtils.htmlEscape(className) +
+                                     "\">");
+               sb.appendEscaped(segment.getText());
+               sb.appendHtmlConstant("</span>");
+            }
+         }
+         if (line.isTerminated())
+            sb.appendEscaped("\n");
+         sb.appendHtmlConstant("</span>");
+      }
+      return sb.toSafeHtml().asString();
+   }
+
+   /**
+    * Records the heights of the rendered lines, the first of which is
+    * first. A line's span starts at the same offset from the top of its
+    * first line box as any other's, so the height of each line is the
+    * distance to the next one's span (or to the bottom of the content).
+    */
+   private void measureLines(int first)
+   {
+      Element span = content_.getFirstChildElement();
+      if (span == null || content_.getOffsetHeight() <= 0)
+         return;
+
+      int lead = span.getOffsetTop() - content_.getOffsetTop();
+      int contentBottom = content_.getOffsetTop() + content_.getOffsetHeight();
+      for (int i = first; span != null; i++)
+      {
+         Element next = span.getNextSiblingElement();
+         int bottom = next != null ? next.getOffsetTop() - lead
+                                   : contentBottom;
+         int height = bottom - (span.getOffsetTop() - lead);
+         if (height > 0)
+            buffer_.setLineHeight(i, height);
+         span = next;
+      }
+   }
+
+   private void updateMetrics()
+   {
+      // Lines wrap differently at a different width
+      int contentWidth = content_.getClientWidth();
+      if (contentWidth != contentWidth_)
+      {
+         contentWidth_ = contentWidth;
+         buffer_.setHeightEstimator(estimator_);
+      }
+
+      if (metricsMeasured_)
+         return;
+
+      PreElement probe = Document.get().createPreElement();
+      probe.setClassName(outputClassName_);
+      probe.getStyle().setProperty("whiteSpace", "pre");
+      probe.getStyle().setProperty("display", "inline-block");
+      probe.setInnerText(PROBE_TEXT);
+      getElement().appendChild(probe);
+      int height = probe.getOffsetHeight();
+      int width = probe.getOffsetWidth();
+      probe.removeFromParent();
+
+      // Not attached or not visible yet; use the defaults and measure again
+      // next time
+      if (height <= 0)
+      {
+         lineHeight_ = DEFAULT_LINE_HEIGHT;
+         charWidth_ = DEFAULT_CHAR_WIDTH;
+         return;
+      }
+
+      lineHeight_ = height;
+      charWidth_ = (double) width / PROBE_TEXT.length();
+      metricsMeasured_ = true;
+      buffer_.setHeightEstimator(estimator_);
+   }
+
+   private ConsoleOutputBuffer buffer_;
+   private final String outputClassName_;
+   private final DivElement topSpacer_;
+   private final PreElement content_;
+   private final DivElement bottomSpacer_;
+
+   // Estimates the height of a line that hasn't been rendered yet from how
+   // many rows it will wrap onto
+   private final ConsoleOutputBuffer.HeightEstimator estimator_ =
+         new ConsoleOutputBuffer.HeightEstimator()
+   {
+      public int estimateHeight(ConsoleOutputBuffer.Line line)
+      {
+         int rows = 1;
+         if (contentWidth_ > 0)
+         {
+            rows = Math.max(1, (int) Math.ceil(line.length() * charWidth_ /
+                                               contentWidth_));
+         }
+         return rows * lineHeight_;
+      }
+   };
+
+   private boolean metricsMeasured_ = false;
+   private int lineHeight_ = DEFAULT_LINE_HEIGHT;
+   private double charWidth_ = DEFAULT_CHAR_WIDTH;
+   private int contentWidth_ = 0;
+   // Absolute line numbers (see ConsoleOutputBuffer.getFirstLineNumber())
+   // of the rendered window, and the buffer version it reflects
+   private int renderedFirst_ = -1;
+   private int renderedLast_ = -1;
+   private int renderedVersion_ = -1;
+
+   private static final String PROBE_TEXT =
+         "abcdefghijklmnopqrstuvwxyz0123456789";
+   private static final int DEFAULT_LINE_HEIGHT = 16;
+   private static final double DEFAULT_CHAR_WIDTH = 7;
+   private static final int OVERSCAN_LINES = 50;
+}
@@ -13,13 +13,10 @@
 package org.rstudio.studio.client.common.shell;
 
 import com.google.gwt.core.client.Scheduler;
-import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.Document;
-import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.SpanElement;
 import com.google.gwt.dom.client.Style.Unit;
-import com.google.gwt.dom.client.Text;
 import com.google.gwt.event.dom.client.*;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.Element;
@@ -50,7 +47,8 @@ public class ShellWidget extends Composite implements ShellDisplay,
 
       SelectInputClickHandler secondaryInputHandler = new SelectInputClickHandler();
 
-      output_ = new PreWidget();
+      output_ = new ConsoleOutputWidget(new ConsoleOutputBuffer(-1),
+                                        styles_.output());
       output_.setStylePrimaryName(styles_.output());
       output_.addClickHandler(secondaryInputHandler);
 
@@ -142,6 +140,13 @@ public class ShellWidget extends Composite implements ShellDisplay,
       scrollPanel_.addStyleName("ace_scroller");
       scrollPanel_.addClickHandler(secondaryInputHandler);
       scrollPanel_.addKeyDownHandler(secondaryInputHandler);
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         public void onScroll(ScrollEvent event)
+         {
+            renderOutput();
+         }
+      });
 
       secondaryInputHandler.setInput(editor);
 
@@ -151,7 +156,10 @@ public class ShellWidget extends Composite implements ShellDisplay,
          protected void performAction(boolean shouldSchedulePassive)
          {
             if (!DomUtils.selectionExists())
+            {
                scrollPanel_.scrollToBottom();
+               renderOutput();
+            }
          }
       };
 
@@ -191,6 +199,7 @@ public class ShellWidget extends Composite implements ShellDisplay,
             // moves to it scrolling ensues.
             input_.forceCursorChange();
             scrollPanel_.scrollToBottom();
+            renderOutput();
          }
       });
    }
@@ -203,21 +212,21 @@ public class ShellWidget extends Composite implements ShellDisplay,
    public void consoleWriteError(String error)
    {
       clearPendingInput();
-      output(error, styles_.error(), false);
+      output(error, styles_.error());
       scrollToBottomAsync();
    }
 
    public void consoleWriteOutput(String output)
    {
       clearPendingInput();
-      output(output, styles_.output(), false);
+      output(output, styles_.output());
       scrollToBottomAsync();
    }
 
    public void consoleWriteInput(String input)
    {
       clearPendingInput();
-      output(input, styles_.command() + KEYWORD_CLASS_NAME, false);
+      output(input, styles_.command() + KEYWORD_CLASS_NAME);
       scrollToBottomAsync();
    }
 
@@ -229,7 +238,7 @@ public class ShellWidget extends Composite implements ShellDisplay,
 
    public void consoleWritePrompt(String prompt)
    {
-      output(prompt, styles_.prompt() + KEYWORD_CLASS_NAME, false);
+      output(prompt, styles_.prompt() + KEYWORD_CLASS_NAME);
       scrollToBottomAsync();
    }
 
@@ -255,169 +264,101 @@ public class ShellWidget extends Composite implements ShellDisplay,
       scrollPanel_.scrollToBottom();
    }
 
-   private boolean output(String text,
-                          String className,
-                          boolean addToTop)
+   private void output(String text, String className)
    {
       if (text.indexOf('\f') >= 0)
          clearOutput();
 
-      Node node;
+      // Plain output is continuous across chunks, so that control characters
+      // in one chunk can pound over parts of the previous output
       boolean isOutput = StringUtil.isNullOrEmpty(className)
                          || className.equals(styles_.output());
 
-      if (isOutput && !addToTop && trailingOutput_ != null)
-      {
-         // Short-circuit the case where we're appending output to the
-         // bottom, and there's already some output there. We need to
-         // treat this differently in case the new output uses control
-         // characters to pound over parts of the previous output.
-
-         int oldLineCount = DomUtils.countLines(trailingOutput_, true);
-         trailingOutputConsole_.submit(text);
-         trailingOutput_.setNodeValue(
-               ensureNewLine(trailingOutputConsole_.toString()));
-         int newLineCount = DomUtils.countLines(trailingOutput_, true);
-         lines_ += newLineCount - oldLineCount;
-      }
-      else
-      {
-         Element outEl = output_.getElement();
+      output_.getBuffer().append(text, className, isOutput);
+      renderOutputAsync();
+   }
 
-         text = VirtualConsole.consolify(text);
-         if (isOutput)
-         {
-            VirtualConsole console = new VirtualConsole();
-            console.submit(text);
-            String consoleSnapshot = console.toString();
-
-            // We use ensureNewLine to make sure that even if output
-            // doesn't end with \n, a prompt will appear on its own line.
-            // However, if we call ensureNewLine indiscriminantly (i.e.
-            // on an output that's going to be followed by another output)
-            // we can end up inserting newlines where they don't belong.
-            //
-            // It's safe to add a newline when we're appending output to
-            // the end of the console, because if the next append is also
-            // output, we'll use the contents of VirtualConsole and the
-            // newline we add here will be plowed over.
-            //
-            // If we're prepending output to the top of the console, then
-            // it's safe to add a newline if the next chunk (which is already
-            // there) is something besides output.
-            if (!addToTop ||
-                (!outEl.hasChildNodes()
-                 || outEl.getFirstChild().getNodeType() != Node.TEXT_NODE))
-            {
-               consoleSnapshot = ensureNewLine(consoleSnapshot);
-            }
+   private void renderOutputAsync()
+   {
+      if (renderPending_)
+         return;
 
-            node = Document.get().createTextNode(consoleSnapshot);
-            if (!addToTop)
-            {
-               trailingOutput_ = (Text) node;
-               trailingOutputConsole_ = console;
-            }
-         }
-         else
+      renderPending_ = true;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         public void execute()
          {
-            SpanElement span = Document.get().createSpanElement();
-            span.setClassName(className);
-            span.setInnerText(text);
-            node = span;
-            if (!addToTop)
-            {
-               trailingOutput_ = null;
-               trailingOutputConsole_ = null;
-            }
+            renderOutput();
          }
-
-         if (addToTop)
-            outEl.insertFirst(node);
-         else
-            outEl.appendChild(node);
-
-         lines_ += DomUtils.countLines(node, true);
-      }
-      return !trimExcess();
+      });
    }
 
-   private String ensureNewLine(String s)
+   /**
+    * Renders the part of the output that is currently scrolled into view.
+    */
+   private void renderOutput()
    {
-      if (s.length() == 0 || s.charAt(s.length() - 1) == '\n')
-         return s;
-      else
-         return s + '\n';
-   }
+      renderPending_ = false;
 
-   private boolean trimExcess()
-   {
-      if (maxLines_ <= 0)
-         return false;  // No limit in effect
+      boolean selectionExists = DomUtils.selectionExists();
+      boolean atBottom = scrollPanel_.isScrolledToBottom();
+      int visibleTop = atBottom
+                       ? Integer.MAX_VALUE
+                       : scrollPanel_.getAbsoluteTop() - output_.getAbsoluteTop();
 
-      int linesToTrim = lines_ - maxLines_;
-      if (linesToTrim > 0)
+      int moved = output_.render(visibleTop,
+                                 scrollPanel_.getOffsetHeight(),
+                                 selectionExists);
+
+      if (atBottom && !selectionExists)
       {
-         lines_ -= DomUtils.trimLines(output_.getElement(),
-                                      lines_ - maxLines_);
-         return true;
+         scrollPanel_.scrollToBottom();
+      }
+      else if (moved != 0)
+      {
+         // Lines above the viewport turned out taller or shorter than
+         // estimated; follow the output so that it doesn't jump
+         scrollPanel_.setVerticalScrollPosition(
+               scrollPanel_.getVerticalScrollPosition() + moved);
       }
-
-      return false;
    }
 
    public void playbackActions(final RpcObjectList<ConsoleAction> actions)
    {
-      Scheduler.get().scheduleIncremental(new RepeatingCommand()
+      // Replay the history into a buffer of its own (cheap, since nothing is
+      // rendered) and put any output that has already arrived after it
+      ConsoleOutputBuffer history = new ConsoleOutputBuffer(
+                                          getMaxOutputLines());
+      for (int i = 0; i < actions.length(); i++)
       {
-         private int i = actions.length() - 1;
-         private int chunksize = 1000;
-
-         public boolean execute()
+         ConsoleAction action = actions.get(i);
+         switch (action.getType())
          {
-            int end = i - chunksize;
-            chunksize = 10;
-            for (; i > end && i >= 0; i--)
-            {
-               // User hit Ctrl+L at some point--we're done.
-               if (cleared_)
-                  return false;
-
-               boolean canContinue = false;
+            case ConsoleAction.INPUT:
+               history.append(action.getData() + "\n",
+                              styles_.command() + " " + KEYWORD_CLASS_NAME,
+                              false);
+               break;
+            case ConsoleAction.OUTPUT:
+               history.append(action.getData(), styles_.output(), true);
+               break;
+            case ConsoleAction.ERROR:
+               history.append(action.getData(), styles_.error(), false);
+               break;
+            case ConsoleAction.PROMPT:
+               history.append(action.getData(),
+                              styles_.prompt() + " " + KEYWORD_CLASS_NAME,
+                              false);
+               break;
+         }
+      }
 
-               ConsoleAction action = actions.get(i);
-               switch (action.getType())
-               {
-                  case ConsoleAction.INPUT:
-                     canContinue = output(action.getData() + "\n",
-                                          styles_.command() + " " + KEYWORD_CLASS_NAME,
-                                          true);
-                     break;
-                  case ConsoleAction.OUTPUT:
-                     canContinue = output(action.getData(),
-                                          styles_.output(),
-                                          true);
-                     break;
-                  case ConsoleAction.ERROR:
-                     canContinue = output(action.getData(),
-                                          styles_.error(),
-                                          true);
-                     break;
-                  case ConsoleAction.PROMPT:
-                     canContinue = output(action.getData(),
-                                          styles_.prompt() + " " + KEYWORD_CLASS_NAME,
-                                          true);
-                     break;
-               }
-               if (!canContinue)
-                  return false;
-            }
-            if (!DomUtils.selectionExists())
-               scrollPanel_.scrollToBottom();
+      history.appendAll(output_.getBuffer());
+      output_.setBuffer(history);
 
-            return i >= 0;
-         }
-      });
+      if (!DomUtils.selectionExists())
+         scrollPanel_.scrollToBottom();
+      renderOutput();
    }
 
    public void focus()
@@ -524,11 +465,8 @@ public class ShellWidget extends Composite implements ShellDisplay,
 
    public void clearOutput()
    {
-      output_.setText("") ;
-      lines_ = 0;
-      cleared_ = true;
-      trailingOutput_ = null;
-      trailingOutputConsole_ = null;
+      output_.getBuffer().clear();
+      renderOutputAsync();
    }
 
    public InputEditorDisplay getInputEditorDisplay()
@@ -592,6 +530,11 @@ public class ShellWidget extends Composite implements ShellDisplay,
       
       // compute the points per character 
       int pointsPerCharacter = labelWidth / text.length();
+
+      // this is called when the font size changes, in which case the
+      // output's lines need measuring again
+      output_.invalidateMetrics();
+      renderOutputAsync();
       
       // compute client width
       int clientWidth = getElement().getClientWidth();
@@ -632,13 +575,13 @@ public class ShellWidget extends Composite implements ShellDisplay,
 
    public int getMaxOutputLines()
    {
-      return maxLines_;
+      return output_.getBuffer().getMaxLines();
    }
    
    public void setMaxOutputLines(int maxLines)
    {
-      maxLines_ = maxLines;
-      trimExcess();
+      output_.getBuffer().setMaxLines(maxLines);
+      renderOutputAsync();
    }
    
    @Override
@@ -651,17 +594,12 @@ public class ShellWidget extends Composite implements ShellDisplay,
    {
       if (getWidget() instanceof RequiresResize)
          ((RequiresResize)getWidget()).onResize();
+      renderOutput();
    }
 
-   private int lines_ = 0;
-   private int maxLines_ = -1;
-   private boolean cleared_ = false;
-   private final PreWidget output_ ;
+   private boolean renderPending_ = false;
+   private final ConsoleOutputWidget output_ ;
    private PreWidget pendingInput_ ;
-   // Save a reference to the most recent output text node in case the
-   // next bit of output contains \b or \r control characters
-   private Text trailingOutput_ ;
-   private VirtualConsole trailingOutputConsole_ ;
    private final HTML prompt_ ;
    private final AceEditor input_ ;
    private final DockPanel inputLine_ ;
@@ -80,4 +80,11 @@ class ClientEvent extends JavaScriptObject
    public final native <T> T getData() /*-{
       return this.data;
    }-*/;
+
+   /**
+    * Returns a copy of this event (same id and type) with different data.
+    */
+   public final native ClientEvent withData(Object data) /*-{
+      return { id: this.id, type: this.type, data: data };
+   }-*/;
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/*
+ * ClientEventCoalescer.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Removes redundant events from a batch of client events before they are
+ * dispatched:
+ *
+ *  - adjacent console output (or console error) chunks are merged into one;
+ *  - of several state snapshot events of the same type (e.g. busy, plots
+ *    state, workspace refresh) with no other kind of event between them,
+ *    only the last one is kept;
+ *  - of several workspace assign/remove events for the same object only the
+ *    last one is kept.
+ *
+ * Events are only ever dropped in favor of a later event that supersedes
+ * them, and the events that remain keep their relative order, so events
+ * that depend on each other are still seen in the order they were sent.
+ * Snapshots aren't folded across other events, since handlers of those
+ * events may depend on the state at the time (e.g. console output arriving
+ * while busy).
+ *
+ * The coalescer works through an Adapter rather than on ClientEvent
+ * directly so that it can be exercised outside the browser.
+ */
+class ClientEventCoalescer<T>
+{
+   interface Adapter<T>
+   {
+      String getType(T event);
+
+      /**
+       * The text of a console output/error event.
+       */
+      String getText(T event);
+
+      /**
+       * The name of the object a workspace assign/remove event refers to.
+       */
+      String getObjectName(T event);
+
+      /**
+       * Returns a copy of a console output/error event (with the same id and
+       * type) carrying the given text.
+       */
+      T withText(T event, String text);
+   }
+
+   ClientEventCoalescer(Adapter<T> adapter)
+   {
+      adapter_ = adapter;
+   }
+
+   public ArrayList<T> coalesce(List<T> events)
+   {
+      int count = events.size();
+
+      // Walk backwards to find the events superseded by a later one
+      boolean[] superseded = new boolean[count];
+      HashSet<String> seenSnapshots = new HashSet<String>();
+      HashSet<String> seenObjects = new HashSet<String>();
+      for (int i = count - 1; i >= 0; i--)
+      {
+         T event = events.get(i);
+         String type = adapter_.getType(event);
+         if (isSnapshot(type))
+         {
+            superseded[i] = !seenSnapshots.add(type);
+            continue;
+         }
+
+         // Only snapshots in the same run of snapshots supersede each other
+         seenSnapshots.clear();
+
+         if (ClientEvent.WorkspaceAssign.equals(type) ||
+             ClientEvent.WorkspaceRemove.equals(type))
+         {
+            superseded[i] = !seenObjects.add(adapter_.getObjectName(event));
+         }
+      }
+
+      // Walk forwards, merging runs of console output
+      ArrayList<T> result = new ArrayList<T>(count);
+      int i = 0;
+      while (i < count)
+      {
+         T event = events.get(i);
+         if (superseded[i])
+         {
+            i++;
+            continue;
+         }
+
+         String type = adapter_.getType(event);
+         if (!isMergeable(type))
+         {
+            result.add(event);
+            i++;
+            continue;
+         }
+
+         // Find the end of the run of this type (skipping superseded events,
+         // which would have been removed anyway)
+         T last = event;
+         StringBuilder text = null;
+         int j = i + 1;
+         for (; j < count; j++)
+         {
+            if (superseded[j])
+               continue;
+            T next = events.get(j);
+            if (!type.equals(adapter_.getType(next)))
+               break;
+            if (text == null)
+               text = new StringBuilder(adapter_.getText(event));
+            text.append(adapter_.getText(next));
+            last = next;
+         }
+
+         result.add(text == null ? event
+                                 : adapter_.withText(last, text.toString()));
+         i = j;
+      }
+
+      return result;
+   }
+
+   private boolean isSnapshot(String type)
+   {
+      return ClientEvent.Busy.equals(type) ||
+             ClientEvent.WorkspaceRefresh.equals(type) ||
+             ClientEvent.PlotsStateChanged.equals(type) ||
+             ClientEvent.WorkingDirChanged.equals(type) ||
+             ClientEvent.InstalledPackagesChanged.equals(type) ||
+             ClientEvent.QuotaStatus.equals(type) ||
+             ClientEvent.SaveActionChanged.equals(type);
+   }
+
+   private boolean isMergeable(String type)
+   {
+      return ClientEvent.ConsoleOutput.equals(type) ||
+             ClientEvent.ConsoleError.equals(type);
+   }
+
+   private final Adapter<T> adapter_;
+}
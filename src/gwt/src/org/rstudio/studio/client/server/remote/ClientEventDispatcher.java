@@ -13,10 +13,13 @@
 package org.rstudio.studio.client.server.remote;
 
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import org.rstudio.core.client.Debug;
+import org.rstudio.core.client.RingQueue;
 import org.rstudio.core.client.files.FileSystemItem;
 import org.rstudio.core.client.js.JsObject;
 import org.rstudio.core.client.jsonrpc.RpcObjectList;
@@ -67,12 +70,68 @@ import org.rstudio.studio.client.workbench.views.workspace.events.WorkspaceRefre
 import org.rstudio.studio.client.workbench.views.workspace.model.WorkspaceObjectInfo;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 
 public class ClientEventDispatcher 
 {
+   /**
+    * Decodes the data of one type of client event and fires the
+    * corresponding event on the event bus.
+    */
+   private interface EventHandler
+   {
+      void dispatch(ClientEvent event);
+   }
+
+   /**
+    * Dispatch counters for one type of client event.
+    */
+   public static class TypeStats
+   {
+      TypeStats(String type)
+      {
+         type_ = type;
+      }
+
+      public String getType()
+      {
+         return type_;
+      }
+
+      public int getCount()
+      {
+         return count_;
+      }
+
+      public double getTotalMillis()
+      {
+         return totalMillis_;
+      }
+
+      public double getMaxMillis()
+      {
+         return maxMillis_;
+      }
+
+      private void record(double millis)
+      {
+         count_++;
+         totalMillis_ += millis;
+         maxMillis_ = Math.max(maxMillis_, millis);
+      }
+
+      private final String type_;
+      private int count_;
+      private double totalMillis_;
+      private double maxMillis_;
+   }
+
    public ClientEventDispatcher(EventBus eventBus)
    {
       eventBus_ = eventBus;
+      registerHandlers();
    }
    
    public void enqueEventAsJso(JavaScriptObject event)
@@ -83,247 +142,504 @@ public class ClientEventDispatcher
 
    public void enqueEvent(ClientEvent event)
    {
-      pendingEvents_.add(event);
-      if (pendingEvents_.size() == 1)
+      pendingEvents_.addLast(event);
+      noteQueueDepth();
+
+      if (!drainScheduled_)
       {
+         drainScheduled_ = true;
          Scheduler.get().scheduleIncremental(new RepeatingCommand()
          {
             public boolean execute()
             {
-               final int MAX_EVENTS_AT_ONCE = 200;
-               for (int i = 0;
-                    i < MAX_EVENTS_AT_ONCE && pendingEvents_.size() > 0;
-                    i++)
+               // Dispatch for at most one time slice, then yield to the
+               // browser so that it can render and handle input. At least
+               // one event is dispatched per slice so we always progress.
+               Duration slice = new Duration();
+               do
                {
-                  ClientEvent currentEvent = pendingEvents_.remove(0);
-                  dispatchEvent(currentEvent);
+                  dispatchEvent(pendingEvents_.pollFirst());
                }
-               return pendingEvents_.size() > 0;
+               while (!pendingEvents_.isEmpty() &&
+                      slice.elapsedMillis() < TIME_SLICE_MILLIS);
+
+               drainScheduled_ = !pendingEvents_.isEmpty();
+               return drainScheduled_;
             }
          });
       }
    }
-   
+
+   /**
+    * The number of events waiting to be dispatched.
+    */
+   public int getQueueDepth()
+   {
+      return pendingEvents_.size();
+   }
+
+   /**
+    * The largest number of events that have been waiting at once.
+    */
+   public int getMaxQueueDepth()
+   {
+      return maxQueueDepth_;
+   }
+
+   /**
+    * Dispatch counters for each event type seen so far, sorted by the total
+    * time spent dispatching (most expensive first).
+    */
+   public ArrayList<TypeStats> getTypeStats()
+   {
+      ArrayList<TypeStats> stats = new ArrayList<TypeStats>(typeStats_.values());
+      Collections.sort(stats, new Comparator<TypeStats>()
+      {
+         public int compare(TypeStats a, TypeStats b)
+         {
+            return Double.compare(b.getTotalMillis(), a.getTotalMillis());
+         }
+      });
+      return stats;
+   }
+
+   private void noteQueueDepth()
+   {
+      int depth = pendingEvents_.size();
+      if (depth <= maxQueueDepth_)
+         return;
+
+      maxQueueDepth_ = depth;
+
+      // Report each time the backlog doubles past the warning threshold;
+      // this means events arrive faster than the UI thread dispatches them
+      if (depth >= nextQueueDepthWarning_)
+      {
+         Debug.log("Client event queue depth reached " + depth);
+         nextQueueDepthWarning_ = depth * 2;
+      }
+   }
+
    private void dispatchEvent(ClientEvent event) 
    { 
       String type = event.getType();
+      EventHandler handler = handlers_.get(type);
+      if (handler == null)
+      {
+         GWT.log("WARNING: Server event not dispatched: " + type, null);
+         return;
+      }
+
+      Duration duration = new Duration();
       try
       {
-         if (type.equals(ClientEvent.Busy))
+         handler.dispatch(event);
+      }
+      catch(Throwable e)
+      {
+         GWT.log("WARNING: Exception occured dispatching event: " + type, e);
+      }
+
+      TypeStats stats = typeStats_.get(type);
+      if (stats == null)
+      {
+         stats = new TypeStats(type);
+         typeStats_.put(type, stats);
+      }
+      stats.record(duration.elapsedMillis());
+   }
+
+   private void registerHandlers()
+   {
+      handlers_.put(ClientEvent.Busy, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             boolean busy = event.<Bool>getData().getValue();
             eventBus_.fireEvent(new BusyEvent(busy));
          }
-         else if (type.equals(ClientEvent.ConsoleOutput))
+      });
+
+      handlers_.put(ClientEvent.ConsoleOutput, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String output = event.getData();
             eventBus_.fireEvent(new ConsoleWriteOutputEvent(output));
          }
-         else if (type.equals(ClientEvent.ConsoleError))
+      });
+
+      handlers_.put(ClientEvent.ConsoleError, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String error = event.getData();
             eventBus_.fireEvent(new ConsoleWriteErrorEvent(error));
          }
-         else if (type.equals(ClientEvent.ConsoleWritePrompt))
+      });
+
+      handlers_.put(ClientEvent.ConsoleWritePrompt, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String prompt = event.getData();
             eventBus_.fireEvent(new ConsoleWritePromptEvent(prompt));
          }
-         else if (type.equals(ClientEvent.ConsoleWriteInput))
+      });
+
+      handlers_.put(ClientEvent.ConsoleWriteInput, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String input = event.getData();
             eventBus_.fireEvent(new ConsoleWriteInputEvent(input));
          }
-         else if (type.equals(ClientEvent.ConsolePrompt))
+      });
+
+      handlers_.put(ClientEvent.ConsolePrompt, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ConsolePrompt prompt = event.getData();
             eventBus_.fireEvent(new ConsolePromptEvent(prompt));
          }
-         else if (type.equals(ClientEvent.ShowEditor))
+      });
+
+      handlers_.put(ClientEvent.ShowEditor, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ShowEditorData data = event.getData();
             eventBus_.fireEvent(new ShowEditorEvent(data));
          }
-         else if (type.equals(ClientEvent.FileChanged))
+      });
+
+      handlers_.put(ClientEvent.FileChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             FileChange fileChange = event.getData();
             eventBus_.fireEvent(new FileChangeEvent(fileChange));
          }
-         else if (type.equals(ClientEvent.WorkingDirChanged))
+      });
+
+      handlers_.put(ClientEvent.WorkingDirChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String path = event.getData();
             eventBus_.fireEvent(new WorkingDirChangedEvent(path));
          }
-         else if (type.equals(ClientEvent.WorkspaceRefresh))
+      });
+
+      handlers_.put(ClientEvent.WorkspaceRefresh, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             eventBus_.fireEvent(new WorkspaceRefreshEvent());
          }
-         else if (type.equals(ClientEvent.WorkspaceAssign))
+      });
+
+      handlers_.put(ClientEvent.WorkspaceAssign, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             WorkspaceObjectInfo objectInfo = event.getData();
             eventBus_.fireEvent(new WorkspaceObjectAssignedEvent(objectInfo));
          }
-         else if (type.equals(ClientEvent.WorkspaceRemove))
+      });
+
+      handlers_.put(ClientEvent.WorkspaceRemove, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String objectName = event.getData();
             eventBus_.fireEvent(new WorkspaceObjectRemovedEvent(objectName));
          }
-         else if (type.equals(ClientEvent.ShowHelp))
+      });
+
+      handlers_.put(ClientEvent.ShowHelp, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String helpUrl = event.getData();
             eventBus_.fireEvent(new ShowHelpEvent(helpUrl));
          }
-         else if (type.equals(ClientEvent.ShowErrorMessage))
+      });
+
+      handlers_.put(ClientEvent.ShowErrorMessage, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ErrorMessage errorMessage = event.getData();
             eventBus_.fireEvent(new ShowErrorMessageEvent(errorMessage));
          }
-         else if (type.equals(ClientEvent.ChooseFile))
+      });
+
+      handlers_.put(ClientEvent.ChooseFile, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             boolean newFile = event.<Bool>getData().getValue();
             eventBus_.fireEvent(new ChooseFileEvent(newFile));
          }
-         else if (type.equals(ClientEvent.BrowseUrl))
+      });
+
+      handlers_.put(ClientEvent.BrowseUrl, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             BrowseUrlInfo urlInfo = event.getData();
             eventBus_.fireEvent(new BrowseUrlEvent(urlInfo));
          }
-         else if (type.equals(ClientEvent.PlotsStateChanged))
+      });
+
+      handlers_.put(ClientEvent.PlotsStateChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             PlotsState plotsState = event.getData();
             eventBus_.fireEvent(new PlotsChangedEvent(plotsState));
          }
-         else if (type.equals(ClientEvent.ViewData))
+      });
+
+      handlers_.put(ClientEvent.ViewData, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             DataView dataView = event.getData();
             eventBus_.fireEvent(new ViewDataEvent(dataView));
          }
-         else if (type.equals(ClientEvent.InstalledPackagesChanged))
+      });
+
+      handlers_.put(ClientEvent.InstalledPackagesChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             eventBus_.fireEvent(new InstalledPackagesChangedEvent());
          }
-         else if (type.equals(ClientEvent.PackageStatusChanged))
+      });
+
+      handlers_.put(ClientEvent.PackageStatusChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             PackageStatus status = event.getData();
             eventBus_.fireEvent(new PackageStatusChangedEvent(status));
          }
-         else if (type.equals(ClientEvent.Locator))
+      });
+
+      handlers_.put(ClientEvent.Locator, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             eventBus_.fireEvent(new LocatorEvent());
          }
-         else if (type.equals(ClientEvent.ConsoleResetHistory))
+      });
+
+      handlers_.put(ClientEvent.ConsoleResetHistory, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ConsoleResetHistory reset = event.getData();
             eventBus_.fireEvent(new ConsoleResetHistoryEvent(reset));
          }
-         else if (type.equals(ClientEvent.SessionSerialization))
+      });
+
+      handlers_.put(ClientEvent.SessionSerialization, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             SessionSerializationAction action = event.getData();
             eventBus_.fireEvent(new SessionSerializationEvent(action));
          }
-         else if (type.equals(ClientEvent.HistoryEntriesAdded))
+      });
+
+      handlers_.put(ClientEvent.HistoryEntriesAdded, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             RpcObjectList<HistoryEntry> entries = event.getData();
             eventBus_.fireEvent(new HistoryEntriesAddedEvent(entries));
          }
-         else if (type.equals(ClientEvent.QuotaStatus))
+      });
+
+      handlers_.put(ClientEvent.QuotaStatus, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             QuotaStatus quotaStatus = event.getData();
             eventBus_.fireEvent(new QuotaStatusEvent(quotaStatus));
          }
-         else if (type.equals(ClientEvent.OAuthApproval))
+      });
+
+      handlers_.put(ClientEvent.OAuthApproval, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             OAuthApproval oauthApproval = event.getData();
             eventBus_.fireEvent(new OAuthApprovalEvent(oauthApproval));
          }
-         else if (type.equals(ClientEvent.PublishPdf))
+      });
+
+      handlers_.put(ClientEvent.PublishPdf, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             String path = event.getData();
             eventBus_.fireEvent(new PublishPdfEvent(path));
          }
-         else if (type.equals(ClientEvent.FileEdit))
+      });
+
+      handlers_.put(ClientEvent.FileEdit, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             FileSystemItem file = event.getData();
             eventBus_.fireEvent(new FileEditEvent(file));
          }
-         else if (type.equals(ClientEvent.ShowContent))
+      });
+
+      handlers_.put(ClientEvent.ShowContent, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ContentItem content = event.getData();
             eventBus_.fireEvent(new ShowContentEvent(content));
          }
-         else if (type.equals(ClientEvent.ShowData))
+      });
+
+      handlers_.put(ClientEvent.ShowData, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             DataItem data = event.getData();
             eventBus_.fireEvent(new ShowDataEvent(data));
          }
-         else if (type.equals(ClientEvent.AbendWarning))
-         {            
+      });
+
+      handlers_.put(ClientEvent.AbendWarning, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
+         {
             eventBus_.fireEvent(new SessionAbendWarningEvent());
          }
-         else if (type.equals(ClientEvent.ShowWarningBar))
+      });
+
+      handlers_.put(ClientEvent.ShowWarningBar, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             WarningBarMessage message = event.getData();
             eventBus_.fireEvent(new ShowWarningBarEvent(message));
          }
-         else if (type.equals(ClientEvent.OpenProjectError))
+      });
+
+      handlers_.put(ClientEvent.OpenProjectError, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             OpenProjectError error = event.getData();
             eventBus_.fireEvent(new OpenProjectErrorEvent(error));
          }
-         else if (type.equals(ClientEvent.VcsRefresh))
+      });
+
+      handlers_.put(ClientEvent.VcsRefresh, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             JsObject data = event.getData();
             eventBus_.fireEvent(new VcsRefreshEvent(Reason.NA,
                                                     data.getInteger("delay")));
          }
-         else if (type.equals(ClientEvent.AskPass))
+      });
+
+      handlers_.put(ClientEvent.AskPass, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             AskPassEvent.Data data = event.getData();
             eventBus_.fireEvent(new AskPassEvent(data));
          }
-         else if (type.equals(ClientEvent.ConsoleProcessOutput))
+      });
+
+      handlers_.put(ClientEvent.ConsoleProcessOutput, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ServerConsoleOutputEvent.Data data = event.getData();
             eventBus_.fireEvent(new ServerConsoleOutputEvent(data.getHandle(),
                                                             data.getOutput(),
                                                             data.isError()));
          }
-         else if (type.equals(ClientEvent.ConsoleProcessPrompt))
+      });
+
+      handlers_.put(ClientEvent.ConsoleProcessPrompt, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ServerConsolePromptEvent.Data data = event.getData();
             eventBus_.fireEvent(new ServerConsolePromptEvent(data.getHandle(),
                                                              data.getPrompt()));
          }
-         else if (type.equals(ClientEvent.ConsoleProcessCreated))
+      });
+
+      handlers_.put(ClientEvent.ConsoleProcessCreated, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ConsoleProcessCreatedEvent.Data data = event.getData();
             eventBus_.fireEvent(new ConsoleProcessCreatedEvent(data));
          }
-         else if (type.equals(ClientEvent.ConsoleProcessExit))
+      });
+
+      handlers_.put(ClientEvent.ConsoleProcessExit, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             ServerProcessExitEvent.Data data = event.getData();
             eventBus_.fireEvent(new ServerProcessExitEvent(data.getHandle(),
                                                           data.getExitCode()));
          }
-         else if (type.equals(ClientEvent.ListChanged))
+      });
+
+      handlers_.put(ClientEvent.ListChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             eventBus_.fireEvent(new ListChangedEvent(event.<JsObject>getData()));
          }
-         else if (type.equals(ClientEvent.UiPrefsChanged))
+      });
+
+      handlers_.put(ClientEvent.UiPrefsChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             UiPrefsChangedEvent.Data data = event.getData();
             eventBus_.fireEvent(new UiPrefsChangedEvent(data));
          }
-         else if (type.equals(ClientEvent.HandleUnsavedChanges))
+      });
+
+      handlers_.put(ClientEvent.HandleUnsavedChanges, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             eventBus_.fireEvent(new HandleUnsavedChangesEvent());
          }
-         else if (type.equals(ClientEvent.Quit))
+      });
+
+      handlers_.put(ClientEvent.Quit, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             boolean switchProjects = event.<Bool>getData().getValue();
             eventBus_.fireEvent(new QuitEvent(switchProjects));
          }
-         else if (type.equals(ClientEvent.Suicide))
+      });
+
+      handlers_.put(ClientEvent.Suicide, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             // NOTE: we don't explicitly stop listening for events here
             // for the reasons cited above in ClientEvent.Quit
@@ -332,26 +648,31 @@ public class ClientEventDispatcher
             String message = event.getData();
             eventBus_.fireEvent(new SuicideEvent(message));
          }
-         else if (type.equals(ClientEvent.SaveActionChanged))
+      });
+
+      handlers_.put(ClientEvent.SaveActionChanged, new EventHandler()
+      {
+         public void dispatch(ClientEvent event)
          {
             SaveAction action = event.getData();
             eventBus_.fireEvent(new SaveActionChangedEvent(action));
          }
-         else
-         {
-            GWT.log("WARNING: Server event not dispatched: " + type, null);
-         }
-      }
-      catch(Throwable e)
-      {
-         GWT.log("WARNING: Exception occured dispatching event: " + type, e);
-      }
+      });
    }
-   
 
    private final EventBus eventBus_;
 
-   private final ArrayList<ClientEvent> pendingEvents_ = new ArrayList<ClientEvent>();
-   
+   private final HashMap<String, EventHandler> handlers_ =
+                                       new HashMap<String, EventHandler>();
+   private final RingQueue<ClientEvent> pendingEvents_ =
+                                       new RingQueue<ClientEvent>();
+   private boolean drainScheduled_ = false;
+
+   private int maxQueueDepth_ = 0;
+   private int nextQueueDepthWarning_ = QUEUE_DEPTH_WARNING;
+   private final HashMap<String, TypeStats> typeStats_ =
+                                       new HashMap<String, TypeStats>();
 
-}
\ No newline at end of file
+   private static final int TIME_SLICE_MILLIS = 50;
+   private static final int QUEUE_DEPTH_WARNING = 1000;
+}
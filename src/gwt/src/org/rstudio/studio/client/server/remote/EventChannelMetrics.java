@@ -0,0 +1,172 @@
+/*
+ * EventChannelMetrics.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+/**
+ * Round trip time estimate and counters for the event channel.
+ *
+ * The round trip time is estimated from ordinary (non long-poll) rpc calls
+ * using the smoothed mean/deviation scheme TCP uses for its retransmission
+ * timer (RFC 6298). The event listener uses it to decide how long to wait
+ * for events before concluding that its request was lost.
+ */
+public class EventChannelMetrics
+{
+   /**
+    * Adds a round trip time sample.
+    */
+   public void addRoundTrip(int millis)
+   {
+      if (millis < 0)
+         return;
+
+      if (srtt_ < 0)
+      {
+         srtt_ = millis;
+         rttvar_ = millis / 2.0;
+      }
+      else
+      {
+         rttvar_ = 0.75 * rttvar_ + 0.25 * Math.abs(srtt_ - millis);
+         srtt_ = 0.875 * srtt_ + 0.125 * millis;
+      }
+   }
+
+   /**
+    * The smoothed round trip time, or -1 if there have been no samples.
+    */
+   public int getSmoothedRoundTrip()
+   {
+      return (int) Math.round(srtt_);
+   }
+
+   /**
+    * How long a request can reasonably be expected to take (smoothed round
+    * trip time plus four deviations), or defaultMillis if there have been no
+    * samples yet.
+    */
+   public int getRoundTripTimeout(int defaultMillis)
+   {
+      if (srtt_ < 0)
+         return defaultMillis;
+      return (int) Math.ceil(srtt_ + Math.max(4 * rttvar_, MIN_VARIANCE_MS));
+   }
+
+   /**
+    * Records a completed poll.
+    *
+    * @param latencyMillis Time from sending the request until the response
+    * @param eventCount Number of events in the response
+    */
+   public void addPoll(int latencyMillis, int eventCount)
+   {
+      polls_++;
+      if (eventCount == 0)
+         emptyPolls_++;
+      events_ += eventCount;
+      maxEventsPerPoll_ = Math.max(maxEventsPerPoll_, eventCount);
+      totalLatencyMillis_ += latencyMillis;
+      maxLatencyMillis_ = Math.max(maxLatencyMillis_, latencyMillis);
+   }
+
+   public void addRestart()
+   {
+      restarts_++;
+   }
+
+   public void addError()
+   {
+      errors_++;
+   }
+
+   public int getPolls()
+   {
+      return polls_;
+   }
+
+   public int getEmptyPolls()
+   {
+      return emptyPolls_;
+   }
+
+   public int getEvents()
+   {
+      return events_;
+   }
+
+   public double getEventsPerPoll()
+   {
+      return polls_ == 0 ? 0 : (double) events_ / polls_;
+   }
+
+   public int getMaxEventsPerPoll()
+   {
+      return maxEventsPerPoll_;
+   }
+
+   public double getMeanLatencyMillis()
+   {
+      return polls_ == 0 ? 0 : totalLatencyMillis_ / polls_;
+   }
+
+   public int getMaxLatencyMillis()
+   {
+      return maxLatencyMillis_;
+   }
+
+   public int getRestarts()
+   {
+      return restarts_;
+   }
+
+   public int getErrors()
+   {
+      return errors_;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "polls=" + polls_ +
+             " (empty=" + emptyPolls_ + ")" +
+             " events=" + events_ +
+             " eventsPerPoll=" + round(getEventsPerPoll()) +
+             " maxEventsPerPoll=" + maxEventsPerPoll_ +
+             " meanLatencyMs=" + Math.round(getMeanLatencyMillis()) +
+             " maxLatencyMs=" + maxLatencyMillis_ +
+             " restarts=" + restarts_ +
+             " errors=" + errors_ +
+             " srttMs=" + getSmoothedRoundTrip();
+   }
+
+   private static String round(double value)
+   {
+      return String.valueOf(Math.round(value * 10) / 10.0);
+   }
+
+   private double srtt_ = -1;
+   private double rttvar_ = 0;
+
+   private int polls_ = 0;
+   private int emptyPolls_ = 0;
+   private int events_ = 0;
+   private int maxEventsPerPoll_ = 0;
+   private double totalLatencyMillis_ = 0;
+   private int maxLatencyMillis_ = 0;
+   private int restarts_ = 0;
+   private int errors_ = 0;
+
+   // keeps the timeout from collapsing onto the mean when the samples
+   // happen to be very consistent
+   private static final int MIN_VARIANCE_MS = 50;
+}
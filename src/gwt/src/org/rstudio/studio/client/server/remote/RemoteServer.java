@@ -29,6 +29,7 @@ import org.rstudio.core.client.jsonrpc.*;
 import org.rstudio.studio.client.application.Desktop;
 import org.rstudio.studio.client.application.events.*;
 import org.rstudio.studio.client.application.model.HttpLogEntry;
+import org.rstudio.studio.client.common.codetools.CompletionIndexUpdate;
 import org.rstudio.studio.client.common.codetools.Completions;
 import org.rstudio.studio.client.common.console.ConsoleProcess;
 import org.rstudio.studio.client.common.console.ConsoleProcess.ConsoleProcessFactory;
@@ -56,6 +57,10 @@ import org.rstudio.studio.client.workbench.prefs.model.RPrefs;
 import org.rstudio.studio.client.workbench.views.files.model.FileUploadToken;
 import org.rstudio.studio.client.workbench.views.help.model.HelpInfo;
 import org.rstudio.studio.client.workbench.views.history.model.HistoryEntry;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeEvent;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeHandler;
+import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackagesChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackagesChangedHandler;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInfo;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallContext;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageUpdate;
@@ -63,14 +68,18 @@ import org.rstudio.studio.client.workbench.views.plots.model.Point;
 import org.rstudio.studio.client.workbench.views.plots.model.SavePlotAsImageContext;
 import org.rstudio.studio.client.workbench.views.source.editors.text.IconvListResult;
 import org.rstudio.studio.client.workbench.views.source.model.CheckForExternalEditResult;
+import org.rstudio.studio.client.workbench.views.source.model.DataWindow;
 import org.rstudio.studio.client.workbench.views.source.model.PublishPdfResult;
 import org.rstudio.studio.client.workbench.views.source.model.SourceDocument;
+import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshEvent;
+import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshHandler;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.CommitCount;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.CommitInfo;
 import org.rstudio.studio.client.workbench.views.workspace.model.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 
 @Singleton
@@ -109,6 +118,63 @@ public class RemoteServer implements Server
       // create server event listener
       serverEventListener_ = new RemoteServerEventListener(this, 
                                                            externalListener);
+      
+      initRequestCache();
+      
+      rpcBatcher_ = new RpcBatcher(new RpcBatcher.BatchRequestFactory() {
+         public RpcRequest createBatchRequest(JSONArray calls)
+         {
+            JSONArray params = new JSONArray();
+            params.set(0, calls);
+            return new RpcRequest(getApplicationURL(RPC_SCOPE) + "/" + RPC_BATCH,
+                                  RPC_BATCH,
+                                  params,
+                                  null,
+                                  false,
+                                  null,
+                                  clientId_,
+                                  clientVersion_);
+         }
+      });
+   }
+   
+   private void initRequestCache()
+   {
+      requestCache_.setTimeToLive(STAT, 5000);
+      requestCache_.setTimeToLive(LIST_FILES, 10000);
+      requestCache_.setTimeToLive(SEARCH_CODE, 10000);
+      requestCache_.setTimeToLive(LIST_PACKAGES, 30000);
+      requestCache_.setTimeToLive(AVAILABLE_PACKAGES, 300000);
+      requestCache_.setTimeToLive(GIT_ALL_STATUS, 5000);
+      requestCache_.setTimeToLive(SVN_STATUS, 5000);
+      
+      eventBus_.addHandler(FileChangeEvent.TYPE, new FileChangeHandler() {
+         public void onFileChange(FileChangeEvent event)
+         {
+            requestCache_.invalidate(FILE_METHODS);
+            requestCache_.invalidate(VCS_STATUS_METHODS);
+         }
+      });
+      eventBus_.addHandler(VcsRefreshEvent.TYPE, new VcsRefreshHandler() {
+         public void onVcsRefresh(VcsRefreshEvent event)
+         {
+            requestCache_.invalidate(VCS_STATUS_METHODS);
+         }
+      });
+      eventBus_.addHandler(InstalledPackagesChangedEvent.TYPE,
+                           new InstalledPackagesChangedHandler() {
+         public void onInstalledPackagesChanged(
+                                       InstalledPackagesChangedEvent event)
+         {
+            requestCache_.invalidate(LIST_PACKAGES);
+         }
+      });
+   }
+   
+   // hit/miss counters of the cache of side-effect free calls
+   public String getRequestCacheStats()
+   {
+      return requestCache_.toString();
    }
    
    // complete initialization now that the workbench is ready
@@ -131,6 +197,10 @@ public class RemoteServer implements Server
       // start event listener
       serverEventListener_.start();
       
+      // from here on the flurry of calls made as panes refresh can share
+      // requests (see BATCHABLE_METHODS)
+      requestBatchingEnabled_ = true;
+      
       // register satallite callback
       registerSatelliteCallback();
    }
@@ -242,6 +312,9 @@ public class RemoteServer implements Server
       JSONArray params = new JSONArray();
       params.set(0, new JSONObject(rPrefs));
       params.set(1, new JSONObject(uiPrefs));
+      
+      // the prefs include the CRAN mirror
+      requestCache_.invalidate(AVAILABLE_PACKAGES);
       sendRequest(RPC_SCOPE, SET_PREFS, params, requestCallback);
 }
    
@@ -431,6 +504,18 @@ public class RemoteServer implements Server
                   requestCallback) ;
    }
 
+   public void getCompletionIndex(
+         ArrayList<String> cachedScopes,
+         ServerRequestCallback<CompletionIndexUpdate> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, toJSONStringArray(cachedScopes));
+      sendRequest(RPC_SCOPE,
+                  GET_COMPLETION_INDEX,
+                  params,
+                  requestCallback) ;
+   }
+
    public void getHelpAtCursor(String line, int cursorPos,
                                ServerRequestCallback<Void> requestCallback)
    {
@@ -525,26 +610,6 @@ public class RemoteServer implements Server
                   requestCallback);
    }
 
-   public void getOutputPreview(String dataFilePath,
-                                boolean heading,
-                                String separator,
-                                String decimal,
-                                String quote,
-                                ServerRequestCallback<DataPreviewResult> requestCallback)
-   {
-      JSONArray params = new JSONArray();
-      params.set(0, new JSONString(dataFilePath));
-      params.set(1, JSONBoolean.getInstance(heading));
-      params.set(2, new JSONString(separator));
-      params.set(3, new JSONString(decimal));
-      params.set(4, new JSONString(quote));
-
-      sendRequest(RPC_SCOPE,
-                  GET_OUTPUT_PREVIEW,
-                  params,
-                  requestCallback);
-   }
-
    public void editCompleted(String text,
                              ServerRequestCallback<Void> requestCallback)
    {
@@ -598,6 +663,7 @@ public class RemoteServer implements Server
    public void setCRANMirror(CRANMirror mirror,
                              ServerRequestCallback<Void> requestCallback)
    {
+      requestCache_.invalidate(AVAILABLE_PACKAGES);
       sendRequest(RPC_SCOPE, SET_CRAN_MIRROR, mirror, requestCallback);
    }
    
@@ -674,6 +740,25 @@ public class RemoteServer implements Server
                   requestCallback);    
    }
 
+   public void statUncached(
+                  String path,
+                  ServerRequestCallback<FileSystemItem> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(path));
+      sendUncachedRequest(RPC_SCOPE, STAT, params, requestCallback);
+   }
+
+   public void listFilesUncached(
+                  FileSystemItem directory,
+                  ServerRequestCallback<JsArray<FileSystemItem>> requestCallback)
+   {
+      JSONArray paramArray = new JSONArray();
+      paramArray.set(0, new JSONString(directory.getPath()));
+      paramArray.set(1, JSONBoolean.getInstance(false));
+      sendUncachedRequest(RPC_SCOPE, LIST_FILES, paramArray, requestCallback);
+   }
+
    public void listAllFiles(String path,
                             String pattern,
                             ServerRequestCallback<JsArrayString> requestCallback)
@@ -844,6 +929,22 @@ public class RemoteServer implements Server
       return previewURL;
    }
    
+   public String getPlotPreviewUrl(int width, int height, double scale)
+   {
+      String previewURL = getGraphicsUrl("plot_preview.png");
+      previewURL += "?";
+      previewURL += "width=" + width;
+      previewURL += "&";
+      previewURL += "height=" + height;
+      previewURL += "&";
+      previewURL += "scale=" + scale;
+      // append random number to default over-aggressive image caching
+      // by browsers
+      previewURL += "&randomizer=" + Random.nextInt();
+      
+      return previewURL;
+   }
+   
    public void nextPlot(ServerRequestCallback<Void> requestCallback)
    {
       sendRequest(RPC_SCOPE, NEXT_PLOT, requestCallback);
@@ -854,6 +955,14 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, PREVIOUS_PLOT, requestCallback);
    }
    
+   public void getPlotImage(int index,
+                            ServerRequestCallback<String> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONNumber(index));
+      sendRequest(RPC_SCOPE, GET_PLOT_IMAGE, params, requestCallback);
+   }
+   
    public void removePlot(ServerRequestCallback<Void> requestCallback)
    {
       sendRequest(RPC_SCOPE, REMOVE_PLOT, requestCallback);
@@ -1164,6 +1273,34 @@ public class RemoteServer implements Server
       sendRequest(RPC_SCOPE, REMOVE_CONTENT_URL, contentUrl, requestCallback);
    }
 
+   public void getDataWindow(String cacheKey,
+                             int rowStart,
+                             int rowCount,
+                             int colStart,
+                             int colCount,
+                             int sortColumn,
+                             boolean sortAscending,
+                             String filter,
+                             ServerRequestCallback<DataWindow> requestCallback)
+   {
+      JSONArray params = new JSONArray();
+      params.set(0, new JSONString(cacheKey));
+      params.set(1, new JSONNumber(rowStart));
+      params.set(2, new JSONNumber(rowCount));
+      params.set(3, new JSONNumber(colStart));
+      params.set(4, new JSONNumber(colCount));
+      params.set(5, new JSONNumber(sortColumn));
+      params.set(6, JSONBoolean.getInstance(sortAscending));
+      params.set(7, new JSONString(filter));
+      sendRequest(RPC_SCOPE, GET_DATA_WINDOW, params, requestCallback);
+   }
+
+   public void removeDataViewerData(String cacheKey,
+                                    ServerRequestCallback<Void> requestCallback)
+   {
+      sendRequest(RPC_SCOPE, REMOVE_DATA_VIEWER_DATA, cacheKey, requestCallback);
+   }
+
    public void detectFreeVars(String code,
                               ServerRequestCallback<JsArrayString> requestCallback)
    {
@@ -1628,6 +1765,8 @@ public class RemoteServer implements Server
 
    RpcRequest getEvents(
                   int lastEventId,
+                  int maxWaitMs,
+                  int maxBatchSize,
                   ServerRequestCallback<JsArray<ClientEvent>> requestCallback,
                   RetryHandler retryHandler)
    {
@@ -1640,6 +1779,8 @@ public class RemoteServer implements Server
       
       JSONArray params = new JSONArray();
       params.set(0, new JSONNumber(lastEventId));
+      params.set(1, new JSONNumber(maxWaitMs));
+      params.set(2, new JSONNumber(maxBatchSize));
       return sendRequest(EVENTS_SCOPE,
                          "get_events",
                          params,
@@ -1755,14 +1896,65 @@ public class RemoteServer implements Server
          sendRequestViaMainWorkbench(scope, method, params, redactLog, cb);
 
       }
+      // side-effect free calls may be answered from the cache or share
+      // an identical request that is already in flight
+      else if (RPC_SCOPE.equals(scope) &&
+               requestCache_.isCacheable(method) &&
+               !isMonitoredListing(method, params))
+      {
+         requestCache_.execute(
+               method,
+               params != null ? params.toString() : "",
+               new RequestCache.Request<T>() {
+                  public void send(ServerRequestCallback<T> callback)
+                  {
+                     sendRequestWithRetry(scope, 
+                                          method, 
+                                          params, 
+                                          redactLog, 
+                                          callback);
+                  }
+               },
+               cb);
+      }
       // otherwise just a standard request with single retry
       else
       {
+         // calls which modify files or vcs state make the cached results
+         // for them stale (don't wait for the resulting events)
+         if (FILE_MODIFYING_METHODS.contains(method))
+            requestCache_.invalidate(FILE_METHODS);
+         if (VCS_MODIFYING_METHODS.contains(method))
+            requestCache_.invalidate(VCS_STATUS_METHODS);
+         
          sendRequestWithRetry(scope, method, params, redactLog, cb); 
       }
       
    }
    
+   // sends a call of a cacheable method straight to the server
+   private <T> void sendUncachedRequest(String scope,
+                                        String method,
+                                        JSONArray params,
+                                        ServerRequestCallback<T> cb)
+   {
+      if (satellite_.isCurrentWindowSatellite())
+         sendRequestViaMainWorkbench(scope, method, params, false, cb);
+      else
+         sendRequestWithRetry(scope, method, params, false, cb);
+   }
+   
+   // listing a directory with monitor=true moves the server's directory
+   // monitor there, so those calls must always reach the server
+   private boolean isMonitoredListing(String method, JSONArray params)
+   {
+      if (!LIST_FILES.equals(method) || params == null || params.size() < 2)
+         return false;
+      
+      JSONBoolean monitor = params.get(1).isBoolean();
+      return monitor != null && monitor.booleanValue();
+   }
+   
    private <T> void sendRequestWithRetry(
                                  final String scope,
                                  final String method,
@@ -1849,7 +2041,7 @@ public class RemoteServer implements Server
    // in two scenarios: direct internal call and servicing a proxied
    // request from a satellite window
    private RpcRequest sendRequest(String sourceWindow,
-                                  String scope, 
+                                  final String scope, 
                                   String method, 
                                   JSONArray params,
                                   boolean redactLog,
@@ -1877,7 +2069,8 @@ public class RemoteServer implements Server
          return rpcRequest;
 
       // send the request
-      rpcRequest.send(new RpcRequestCallback() {
+      final double sendTime = Duration.currentTimeMillis();
+      RpcRequestCallback rpcRequestCallback = new RpcRequestCallback() {
          public void onError(RpcRequest request, RpcError error)
          {
             // ignore errors if we are disconnected
@@ -1930,6 +2123,17 @@ public class RemoteServer implements Server
             // no error, process the result
             else
             {
+               // ordinary calls return promptly so their timing gives the
+               // event listener an estimate of the round trip time (events
+               // requests are long polls and so tell us nothing)
+               if (!EVENTS_SCOPE.equals(scope))
+               {
+                  int elapsedMs = 
+                        (int) (Duration.currentTimeMillis() - sendTime);
+                  if (elapsedMs < MAX_ROUND_TRIP_SAMPLE_MS)
+                     serverEventListener_.addRoundTripSample(elapsedMs);
+               }
+               
                // no error, forward to caller
                responseHandler.onResponseReceived(response);
                
@@ -1941,7 +2145,21 @@ public class RemoteServer implements Server
                   serverEventListener_.ensureEvents();
             }
          }
-      });
+      };
+      
+      // idempotent calls from the main window may be batched with other
+      // calls made during the same event loop turn
+      if (requestBatchingEnabled_ && 
+          sourceWindow == null &&
+          RPC_SCOPE.equals(scope) &&
+          BATCHABLE_METHODS.contains(method))
+      {
+         rpcBatcher_.add(rpcRequest, rpcRequestCallback);
+      }
+      else
+      {
+         rpcRequest.send(rpcRequestCallback);
+      }
 
       // return the request
       return rpcRequest;
@@ -2404,6 +2622,9 @@ public class RemoteServer implements Server
 
    private final RemoteServerAuth serverAuth_;
    private final RemoteServerEventListener serverEventListener_ ;
+   private final RpcBatcher rpcBatcher_;
+   private final RequestCache requestCache_ = new RequestCache();
+   private boolean requestBatchingEnabled_ = false;
 
    private final Provider<ConsoleProcessFactory> pConsoleProcessFactory_;
 
@@ -2415,6 +2636,9 @@ public class RemoteServer implements Server
    private static final String RPC_SCOPE = "rpc";
    private static final String FILES_SCOPE = "files";
    private static final String EVENTS_SCOPE = "events";
+   // calls taking longer than this are doing real work on the server, so
+   // their timing says little about the network round trip
+   private static final int MAX_ROUND_TRIP_SAMPLE_MS = 10000;
    private static final String UPLOAD_SCOPE = "upload";
    private static final String EXPORT_SCOPE = "export";
    private static final String GRAPHICS_SCOPE = "graphics";
@@ -2449,6 +2673,7 @@ public class RemoteServer implements Server
    private static final String ABORT = "abort";
    private static final String HTTP_LOG = "http_log";
    private static final String GET_COMPLETIONS = "get_completions";
+   private static final String GET_COMPLETION_INDEX = "get_completion_index";
    private static final String GET_HELP_AT_CURSOR = "get_help_at_cursor";
 
    private static final String PROCESS_START = "process_start";
@@ -2464,11 +2689,12 @@ public class RemoteServer implements Server
    private static final String IMPORT_GOOGLE_SPREADSHEET = "import_google_spreadsheet";
    private static final String DOWNLOAD_DATA_FILE = "download_data_file";
    private static final String GET_DATA_PREVIEW = "get_data_preview";
-   private static final String GET_OUTPUT_PREVIEW = "get_output_preview";
 
    private static final String EDIT_COMPLETED = "edit_completed";
    private static final String CHOOSE_FILE_COMPLETED = "choose_file_completed";
 
+   private static final String RPC_BATCH = "rpc_batch";
+
    private static final String LIST_PACKAGES = "list_packages";
    private static final String AVAILABLE_PACKAGES = "available_packages";
    private static final String CHECK_FOR_PACKAGE_UPDATES = "check_for_package_updates";
@@ -2494,6 +2720,7 @@ public class RemoteServer implements Server
 
    private static final String NEXT_PLOT = "next_plot";
    private static final String PREVIOUS_PLOT = "previous_plot";
+   private static final String GET_PLOT_IMAGE = "get_plot_image";
    private static final String REMOVE_PLOT = "remove_plot";
    private static final String CLEAR_PLOTS = "clear_plots";
    private static final String REFRESH_PLOT = "refresh_plot";
@@ -2525,6 +2752,8 @@ public class RemoteServer implements Server
    private static final String REVERT_DOCUMENT = "revert_document";
    private static final String REOPEN_WITH_ENCODING = "reopen_with_encoding";
    private static final String REMOVE_CONTENT_URL = "remove_content_url";
+   private static final String GET_DATA_WINDOW = "get_data_window";
+   private static final String REMOVE_DATA_VIEWER_DATA = "remove_data_viewer_data";
    private static final String DETECT_FREE_VARS = "detect_free_vars";
    private static final String ICONVLIST = "iconvlist";
    private static final String PUBLISH_PDF = "publish_pdf";
@@ -2595,5 +2824,76 @@ public class RemoteServer implements Server
    
    private static final String LOG = "log";
 
+   private static final String[] FILE_METHODS = 
+                                 new String[] {STAT, LIST_FILES, SEARCH_CODE};
+   private static final String[] VCS_STATUS_METHODS = 
+                                 new String[] {GIT_ALL_STATUS, SVN_STATUS};
+   private static final HashSet<String> FILE_MODIFYING_METHODS = 
+                                                   new HashSet<String>();
+   private static final HashSet<String> VCS_MODIFYING_METHODS = 
+                                                   new HashSet<String>();
+   static
+   {
+      FILE_MODIFYING_METHODS.add(CREATE_FOLDER);
+      FILE_MODIFYING_METHODS.add(DELETE_FILES);
+      FILE_MODIFYING_METHODS.add(COPY_FILE);
+      FILE_MODIFYING_METHODS.add(MOVE_FILES);
+      FILE_MODIFYING_METHODS.add(RENAME_FILE);
+      FILE_MODIFYING_METHODS.add(COMPLETE_UPLOAD);
+      FILE_MODIFYING_METHODS.add(SAVE_DOCUMENT);
+      FILE_MODIFYING_METHODS.add(SAVE_DOCUMENT_DIFF);
+
+      VCS_MODIFYING_METHODS.add(VCS_CLONE);
+      VCS_MODIFYING_METHODS.add(GIT_ADD);
+      VCS_MODIFYING_METHODS.add(GIT_REMOVE);
+      VCS_MODIFYING_METHODS.add(GIT_DISCARD);
+      VCS_MODIFYING_METHODS.add(GIT_REVERT);
+      VCS_MODIFYING_METHODS.add(GIT_STAGE);
+      VCS_MODIFYING_METHODS.add(GIT_UNSTAGE);
+      VCS_MODIFYING_METHODS.add(GIT_CHECKOUT);
+      VCS_MODIFYING_METHODS.add(GIT_COMMIT);
+      VCS_MODIFYING_METHODS.add(GIT_PUSH);
+      VCS_MODIFYING_METHODS.add(GIT_PULL);
+      VCS_MODIFYING_METHODS.add(GIT_INIT_REPO);
+      VCS_MODIFYING_METHODS.add(GIT_SET_IGNORES);
+      VCS_MODIFYING_METHODS.add(GIT_APPLY_PATCH);
+      VCS_MODIFYING_METHODS.add(SVN_ADD);
+      VCS_MODIFYING_METHODS.add(SVN_DELETE);
+      VCS_MODIFYING_METHODS.add(SVN_REVERT);
+      VCS_MODIFYING_METHODS.add(SVN_RESOLVE);
+      VCS_MODIFYING_METHODS.add(SVN_UPDATE);
+      VCS_MODIFYING_METHODS.add(SVN_CLEANUP);
+      VCS_MODIFYING_METHODS.add(SVN_COMMIT);
+      VCS_MODIFYING_METHODS.add(SVN_APPLY_PATCH);
+      VCS_MODIFYING_METHODS.add(SVN_SET_IGNORES);
+   }
+   
+   // side-effect free calls which may be sent as part of an rpc_batch 
+   // (these must all return their result directly rather than through an
+   // async handle)
+   private static final HashSet<String> BATCHABLE_METHODS = 
+                                                   new HashSet<String>();
+   static
+   {
+      BATCHABLE_METHODS.add(STAT);
+      BATCHABLE_METHODS.add(LIST_FILES);
+      BATCHABLE_METHODS.add(LIST_OBJECTS);
+      BATCHABLE_METHODS.add(LIST_PACKAGES);
+      BATCHABLE_METHODS.add(IS_PACKAGE_LOADED);
+      BATCHABLE_METHODS.add(GET_PACKAGE_INSTALL_CONTEXT);
+      BATCHABLE_METHODS.add(GET_CRAN_MIRRORS);
+      BATCHABLE_METHODS.add(GET_TERMINAL_OPTIONS);
+      BATCHABLE_METHODS.add(GET_RECENT_HISTORY);
+      BATCHABLE_METHODS.add(ICONVLIST);
+      BATCHABLE_METHODS.add(READ_PROJECT_OPTIONS);
+      BATCHABLE_METHODS.add(LIST_GET);
+      BATCHABLE_METHODS.add(GIT_ALL_STATUS);
+      BATCHABLE_METHODS.add(GIT_LIST_BRANCHES);
+      BATCHABLE_METHODS.add(GIT_HAS_REPO);
+      BATCHABLE_METHODS.add(GIT_GET_IGNORES);
+      BATCHABLE_METHODS.add(SVN_STATUS);
+      BATCHABLE_METHODS.add(SVN_GET_IGNORES);
+   }
+
 
 }
@@ -12,20 +12,25 @@
  */
 package org.rstudio.studio.client.server.remote;
 
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.Window.ClosingEvent;
 import com.google.gwt.user.client.Window.ClosingHandler;
+import org.rstudio.core.client.Debug;
 import org.rstudio.core.client.jsonrpc.RpcError;
 import org.rstudio.core.client.jsonrpc.RpcRequest;
 import org.rstudio.core.client.jsonrpc.RpcRequestCallback;
 import org.rstudio.core.client.jsonrpc.RpcResponse;
+import org.rstudio.studio.client.application.Desktop;
 import org.rstudio.studio.client.application.events.*;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.workspace.model.WorkspaceObjectInfo;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 
@@ -197,16 +202,54 @@ class RemoteServerEventListener
         // can only imagine that it could happen in other scenarios!
    
         if (!watchdog_.isRunning())
-          watchdog_.run(kWatchdogIntervalMs);
+          watchdog_.run(getWatchdogIntervalMs());
      }
    }
    
+   // round trip time of an ordinary rpc call (used to size the watchdog)
+   public void addRoundTripSample(int millis)
+   {
+      metrics_.addRoundTrip(millis);
+   }
+   
+   public EventChannelMetrics getMetrics()
+   {
+      return metrics_;
+   }
+   
    private void restart()
    {
+      metrics_.addRestart();
+      Debug.log("Restarting event listener: " + metrics_.toString());
+      
       stop();
       start();
    }
    
+   // how long to wait for events which an rpc response told us are pending:
+   // the time it takes the events to reach us (as estimated from recent rpc
+   // round trips) plus the time the server may hold them back to batch them
+   // with events that follow in quick succession
+   private int getWatchdogIntervalMs()
+   {
+      int batchAllowanceMs = Desktop.isDesktop() ? 
+                                    kDesktopBatchAllowanceMs :
+                                    kServerBatchAllowanceMs;
+      int timeoutMs = metrics_.getRoundTripTimeout(kWatchdogIntervalMs);
+      return Math.max(kWatchdogIntervalMs, timeoutMs + batchAllowanceMs);
+   }
+   
+   // exponential backoff with jitter (so that many clients cut off at the
+   // same time, e.g. by a server restart, don't all come back in lockstep)
+   private int getListenErrorDelayMs(int errorCount)
+   {
+      int delayMs = kListenErrorBaseDelayMs;
+      for (int i = 1; i < errorCount && delayMs < kListenErrorMaxDelayMs; i++)
+         delayMs *= 2;
+      delayMs = Math.min(delayMs, kListenErrorMaxDelayMs);
+      return (int) (delayMs * (0.5 + 0.5 * Math.random()));
+   }
+   
    private void listen()
    {
       // bounce listen to ensure it is never added to the browser's internal 
@@ -246,6 +289,7 @@ class RemoteServerEventListener
          return;
           
       // setup request callback (save reference for cancellation)
+      final double pollStartTime = Duration.currentTimeMillis();
       activeRequestCallback_ = new ServerRequestCallback<JsArray<ClientEvent>>() 
       {
          @Override
@@ -254,12 +298,28 @@ class RemoteServerEventListener
             // keep watchdog appraised of successful receipt of events
             watchdog_.notifyResponseReceived();
             
+            // the channel is healthy again
+            lastResponseTime_ = Duration.currentTimeMillis();
+            listenErrorCount_ = 0;
+            metrics_.addPoll((int) (lastResponseTime_ - pollStartTime),
+                             events != null ? events.length() : 0);
+            
             try
             {
                // only processs events if we are still listening
                if (isListening_ && (events != null))
                {
+                  // drop or merge events that are superseded by later
+                  // events in the same batch. the last event of the batch
+                  // is never dropped, so lastEventId_ still ends up 
+                  // acknowledging the whole batch
+                  ArrayList<ClientEvent> batch = 
+                                       new ArrayList<ClientEvent>();
                   for (int i=0; i<events.length(); i++)
+                     batch.add(events.get(i));
+                  batch = eventCoalescer_.coalesce(batch);
+                  
+                  for (int i=0; i<batch.size(); i++)
                   {
                      // we can stop listening in the middle of dispatching
                      // events (e.g. if we dispatch a Suicide event) so we 
@@ -269,7 +329,7 @@ class RemoteServerEventListener
                         return;
                      
                      // disppatch event
-                     ClientEvent event = events.get(i);
+                     ClientEvent event = batch.get(i);
                      dispatchEvent(event);
                      lastEventId_ = event.getId();
                   }   
@@ -289,6 +349,8 @@ class RemoteServerEventListener
          @Override
          public void onError(ServerError error)
          {           
+            metrics_.addError();
+            
             // stop listening for events
             stop();
             
@@ -301,10 +363,10 @@ class RemoteServerEventListener
             }
             
             // attempt to restart listening, but throttle restart attempts
-            // in both timing (500ms delay) and quantity (no more than 5
-            // attempts). We do this because unthrottled restart attempts could
-            // result in our server getting hammered with requests)
-            if (listenErrorCount_++ <= 5)
+            // in both timing (exponential backoff) and quantity. We do this 
+            // because unthrottled restart attempts could result in our 
+            // server getting hammered with requests)
+            if (++listenErrorCount_ <= kMaxListenErrorRetries)
             {
                Timer startTimer = new Timer() {
                   @Override
@@ -316,7 +378,7 @@ class RemoteServerEventListener
                         start();
                   }
                };
-               startTimer.schedule(500);
+               startTimer.schedule(getListenErrorDelayMs(listenErrorCount_));
             }
             // otherwise reset the listen error count and remain stopped
             else
@@ -349,6 +411,8 @@ class RemoteServerEventListener
       
       // send request
       activeRequest_ = server_.getEvents(lastEventId_, 
+                                         kMaxWaitMs,
+                                         kMaxBatchSize,
                                          activeRequestCallback_,
                                          retryHandler);                             
    }
@@ -396,13 +460,13 @@ class RemoteServerEventListener
       
    }
  
-   // NOTE: the design of the Watchdog likely results in more restarts of
-   // the event service than is optimal. when an rpc call reports that 
-   // events are pending and the Watchdog is invoked it is very likely
-   // that the events have already been delievered in response to the 
-   // previous poll. In this case the Watchdog "misses" those events which
-   // were already delivered and subsequently assumes that the service
-   // needs to be restarted
+   // NOTE: when an rpc call reports that events are pending and the 
+   // Watchdog is invoked it is quite likely that the events have already
+   // been delivered in response to the previous poll, in which case no 
+   // further response arrives and the Watchdog would wrongly conclude that
+   // the service needs to be restarted. To avoid this we don't restart if
+   // a poll response arrived within about one round trip before the 
+   // Watchdog was started (i.e. while the rpc response was in flight)
    
    private class Watchdog
    {  
@@ -411,12 +475,17 @@ class RemoteServerEventListener
          isRunning_ = true;
          responseReceived_ = false ;
          
+         int roundTripMs = Math.max(metrics_.getSmoothedRoundTrip(), 
+                                    kMinRecentResponseMs);
+         final boolean recentResponse = 
+            Duration.currentTimeMillis() - lastResponseTime_ <= roundTripMs;
+         
          Timer timer = new Timer() {
             public void run()
             {
                try
                {
-                  if (!responseReceived_)
+                  if (!responseReceived_ && !recentResponse)
                   {
                      // ensure that the workbench wasn't closed while we
                      // were waiting for the timer to run
@@ -475,21 +544,69 @@ class RemoteServerEventListener
    
    // note: kSecondListenDelayMs must be less than kWatchdogIntervalMs
    // (by a reasonable margin) to void the watchdog getting involved 
-   // unnecessarily during a listen delay
+   // unnecessarily during a listen delay. kWatchdogIntervalMs is the 
+   // minimum interval, it is lengthened when round trips are slow
    private final int kWatchdogIntervalMs = 1000;
    private final int kSecondListenBounceMs = 250;
+   private final int kMinRecentResponseMs = 100;
+   
+   // how long the server may hold back events to batch them (see 
+   // ClientEventService::run)
+   private final int kServerBatchAllowanceMs = 500;
+   private final int kDesktopBatchAllowanceMs = 50;
+   
+   // advertised to the server with each poll: the longest we want a poll
+   // to be held open (shorter than typical proxy idle timeouts) and the 
+   // most events we want in a single response (keeps individual responses
+   // and the dispatch of their events reasonably small)
+   private final int kMaxWaitMs = 45000;
+   private final int kMaxBatchSize = 500;
+   
+   private final int kListenErrorBaseDelayMs = 500;
+   private final int kListenErrorMaxDelayMs = 30000;
+   private final int kMaxListenErrorRetries = 8;
        
    private boolean isListening_;
    private int lastEventId_ ;
    private int listenCount_ ;
    private int listenErrorCount_ ;
    private boolean sessionWasQuit_ ;
+   private double lastResponseTime_ = 0;
+   
+   private final EventChannelMetrics metrics_ = new EventChannelMetrics();
    
    private RpcRequest activeRequest_ ;
    private ServerRequestCallback<JsArray<ClientEvent>> activeRequestCallback_;
 
    private final ClientEventDispatcher eventDispatcher_;
    
+   private final ClientEventCoalescer<ClientEvent> eventCoalescer_ =
+      new ClientEventCoalescer<ClientEvent>(
+            new ClientEventCoalescer.Adapter<ClientEvent>() {
+               public String getType(ClientEvent event)
+               {
+                  return event.getType();
+               }
+
+               public String getText(ClientEvent event)
+               {
+                  return event.<String>getData();
+               }
+
+               public String getObjectName(ClientEvent event)
+               {
+                  if (event.getType().equals(ClientEvent.WorkspaceAssign))
+                     return event.<WorkspaceObjectInfo>getData().getName();
+                  else
+                     return event.<String>getData();
+               }
+
+               public ClientEvent withText(ClientEvent event, String text)
+               {
+                  return event.withData(text);
+               }
+            });
+   
    private final ClientEventHandler externalEventHandler_;
      
    private Watchdog watchdog_ = new Watchdog();
@@ -0,0 +1,252 @@
+/*
+ * RequestCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the results of side-effect free server calls and collapses
+ * identical calls that are issued while one is already in flight into a
+ * single request.
+ *
+ * Calls are identified by method name and (serialized) params. Results are
+ * kept for a per-method time to live, at most MAX_ENTRIES of them (least
+ * recently used are evicted first), and can be invalidated by method when
+ * an event signals that they are out of date.
+ *
+ * Note that callers of the same call receive the same result object, so
+ * they must treat results as read-only.
+ */
+class RequestCache
+{
+   interface Request<T>
+   {
+      /**
+       * Sends the request to the server.
+       */
+      void send(ServerRequestCallback<T> callback);
+   }
+
+   /**
+    * Allows calls of the given method to be cached for up to ttlMs.
+    */
+   public void setTimeToLive(String method, int ttlMs)
+   {
+      timeToLive_.put(method, ttlMs);
+   }
+
+   public boolean isCacheable(String method)
+   {
+      return timeToLive_.containsKey(method);
+   }
+
+   /**
+    * Completes the call from the cache if possible, joins an identical call
+    * that is already in flight, or else sends it.
+    */
+   @SuppressWarnings("unchecked")
+   public <T> void execute(final String method,
+                           String params,
+                           Request<T> request,
+                           final ServerRequestCallback<T> callback)
+   {
+      final String key = method + "\n" + params;
+
+      Entry entry = entries_.get(key);
+      if (entry != null)
+      {
+         if (System.currentTimeMillis() < entry.expires)
+         {
+            hits_++;
+            
+            // still complete asynchronously, as callers may not expect the
+            // callback to run before the call returns
+            final T result = (T) entry.result;
+            Scheduler.get().scheduleDeferred(new ScheduledCommand()
+            {
+               public void execute()
+               {
+                  if (!callback.cancelled())
+                     callback.onResponseReceived(result);
+               }
+            });
+            return;
+         }
+         entries_.remove(key);
+      }
+
+      ArrayList<ServerRequestCallback<?>> waiting = inFlight_.get(key);
+      if (waiting != null)
+      {
+         joins_++;
+         waiting.add(callback);
+         return;
+      }
+
+      misses_++;
+      waiting = new ArrayList<ServerRequestCallback<?>>();
+      waiting.add(callback);
+      inFlight_.put(key, waiting);
+
+      final int generation = getGeneration(method);
+      final Integer ttlMs = timeToLive_.get(method);
+      request.send(new ServerRequestCallback<T>()
+      {
+         @Override
+         public void onResponseReceived(T result)
+         {
+            // don't cache results of calls that were in flight when their
+            // method was invalidated (they may be out of date already)
+            if (generation == getGeneration(method) && ttlMs != null)
+            {
+               entries_.put(key, new Entry(
+                     result, System.currentTimeMillis() + ttlMs.intValue()));
+            }
+
+            for (ServerRequestCallback<?> callback : complete(key))
+            {
+               if (!callback.cancelled())
+                  ((ServerRequestCallback<T>) callback).onResponseReceived(result);
+            }
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            for (ServerRequestCallback<?> callback : complete(key))
+            {
+               if (!callback.cancelled())
+                  callback.onError(error);
+            }
+         }
+      });
+   }
+
+   /**
+    * Discards the cached results of the given methods.
+    */
+   public void invalidate(String... methods)
+   {
+      for (String method : methods)
+         generations_.put(method, getGeneration(method) + 1);
+
+      Iterator<String> keys = entries_.keySet().iterator();
+      while (keys.hasNext())
+      {
+         String key = keys.next();
+         for (String method : methods)
+         {
+            if (key.startsWith(method + "\n"))
+            {
+               keys.remove();
+               invalidations_++;
+               break;
+            }
+         }
+      }
+   }
+
+   public int getHits()
+   {
+      return hits_;
+   }
+
+   public int getMisses()
+   {
+      return misses_;
+   }
+
+   /**
+    * The number of calls that were satisfied by an identical call that was
+    * already in flight.
+    */
+   public int getJoins()
+   {
+      return joins_;
+   }
+
+   public int getInvalidations()
+   {
+      return invalidations_;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "hits=" + hits_ +
+             " joins=" + joins_ +
+             " misses=" + misses_ +
+             " invalidations=" + invalidations_ +
+             " entries=" + entries_.size();
+   }
+
+   // The number of times the method has been invalidated
+   private int getGeneration(String method)
+   {
+      Integer generation = generations_.get(method);
+      return generation != null ? generation.intValue() : 0;
+   }
+
+   private ArrayList<ServerRequestCallback<?>> complete(String key)
+   {
+      ArrayList<ServerRequestCallback<?>> waiting = inFlight_.remove(key);
+      return waiting != null ? waiting
+                             : new ArrayList<ServerRequestCallback<?>>();
+   }
+
+   private static class Entry
+   {
+      Entry(Object result, long expires)
+      {
+         this.result = result;
+         this.expires = expires;
+      }
+
+      public final Object result;
+      public final long expires;
+   }
+
+   private final HashMap<String, Integer> timeToLive_ =
+                                             new HashMap<String, Integer>();
+
+   private final LinkedHashMap<String, Entry> entries_ =
+         new LinkedHashMap<String, Entry>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+      {
+         return size() > MAX_ENTRIES;
+      }
+   };
+
+   private final HashMap<String, ArrayList<ServerRequestCallback<?>>> inFlight_ =
+         new HashMap<String, ArrayList<ServerRequestCallback<?>>>();
+
+   private final HashMap<String, Integer> generations_ =
+                                             new HashMap<String, Integer>();
+   private int hits_ = 0;
+   private int misses_ = 0;
+   private int joins_ = 0;
+   private int invalidations_ = 0;
+
+   private static final int MAX_ENTRIES = 100;
+}
@@ -0,0 +1,187 @@
+/*
+ * RpcBatcher.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+import org.rstudio.core.client.jsonrpc.RpcError;
+import org.rstudio.core.client.jsonrpc.RpcRequest;
+import org.rstudio.core.client.jsonrpc.RpcRequestCallback;
+import org.rstudio.core.client.jsonrpc.RpcResponse;
+
+import java.util.ArrayList;
+
+/**
+ * Collects rpc calls issued during the same event loop turn and sends them
+ * to the server as a single rpc_batch request, then hands each call's
+ * response to that call's own callback.
+ *
+ * Since every call still completes through its own RpcRequestCallback,
+ * per-call error handling and retries behave exactly as if the call had
+ * been sent by itself. If the batch request as a whole fails, each call is
+ * simply re-sent on its own. Each call is also logged separately, and
+ * calls whose RpcRequest is cancelled before the batch returns are left
+ * out of it (or their response dropped).
+ */
+class RpcBatcher
+{
+   interface BatchRequestFactory
+   {
+      /**
+       * Creates the rpc_batch request for the given array of calls.
+       */
+      RpcRequest createBatchRequest(JSONArray calls);
+   }
+
+   RpcBatcher(BatchRequestFactory factory)
+   {
+      factory_ = factory;
+   }
+
+   public void add(RpcRequest request, RpcRequestCallback callback)
+   {
+      pending_.add(new Call(request, callback));
+      if (!flushScheduled_)
+      {
+         flushScheduled_ = true;
+         Scheduler.get().scheduleFinally(new ScheduledCommand()
+         {
+            public void execute()
+            {
+               flushScheduled_ = false;
+               flush();
+            }
+         });
+      }
+   }
+
+   public int getBatchCount()
+   {
+      return batchCount_;
+   }
+
+   public int getBatchedCallCount()
+   {
+      return batchedCallCount_;
+   }
+
+   private void flush()
+   {
+      final ArrayList<Call> calls = new ArrayList<Call>();
+      for (Call call : pending_)
+      {
+         if (!call.request.isCancelled())
+            calls.add(call);
+      }
+      pending_ = new ArrayList<Call>();
+
+      if (calls.size() == 0)
+         return;
+
+      // nothing to gain from wrapping a single call
+      if (calls.size() == 1)
+      {
+         calls.get(0).sendIndividually();
+         return;
+      }
+
+      JSONArray callsJson = new JSONArray();
+      for (int i = 0; i < calls.size(); i++)
+      {
+         RpcRequest request = calls.get(i).request;
+         request.logBatchRequest();
+         JSONObject callJson = new JSONObject();
+         callJson.put("method", new JSONString(request.getMethod()));
+         if (request.getParams() != null)
+            callJson.put("params", request.getParams());
+         callsJson.set(i, callJson);
+      }
+
+      batchCount_++;
+      batchedCallCount_ += calls.size();
+
+      factory_.createBatchRequest(callsJson).send(new RpcRequestCallback()
+      {
+         public void onError(RpcRequest request, RpcError error)
+         {
+            sendIndividually(calls);
+         }
+
+         public void onResponseReceived(RpcRequest request,
+                                        RpcResponse response)
+         {
+            JsArray<RpcResponse> results = response.getError() == null ?
+                                           response.<JsArray<RpcResponse>>getResult() :
+                                           null;
+            if (results == null || results.length() != calls.size())
+            {
+               sendIndividually(calls);
+               return;
+            }
+
+            for (int i = 0; i < calls.size(); i++)
+            {
+               Call call = calls.get(i);
+               if (call.request.isCancelled())
+                  continue;
+               
+               RpcResponse result = results.get(i);
+               call.request.logBatchResponse(
+                     result.getError() != null ? ResponseType.Error
+                                               : ResponseType.Normal,
+                     new JSONObject(result).toString());
+               call.callback.onResponseReceived(call.request, result);
+            }
+         }
+      });
+   }
+
+   private static void sendIndividually(ArrayList<Call> calls)
+   {
+      for (int i = 0; i < calls.size(); i++)
+         calls.get(i).sendIndividually();
+   }
+
+   private static class Call
+   {
+      Call(RpcRequest request, RpcRequestCallback callback)
+      {
+         this.request = request;
+         this.callback = callback;
+      }
+
+      void sendIndividually()
+      {
+         if (request.isCancelled())
+            return;
+         
+         request.logBatchResponse(ResponseType.Unknown,
+                                  "Batch failed, sent individually");
+         request.send(callback);
+      }
+
+      public final RpcRequest request;
+      public final RpcRequestCallback callback;
+   }
+
+   private final BatchRequestFactory factory_;
+   private ArrayList<Call> pending_ = new ArrayList<Call>();
+   private boolean flushScheduled_ = false;
+   private int batchCount_ = 0;
+   private int batchedCallCount_ = 0;
+}
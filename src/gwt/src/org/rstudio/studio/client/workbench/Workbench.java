@@ -13,11 +13,11 @@
 package org.rstudio.studio.client.workbench;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.user.client.Timer;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
 import org.rstudio.core.client.StringUtil;
-import org.rstudio.core.client.TimeBufferedCommand;
 import org.rstudio.core.client.command.CommandBinder;
 import org.rstudio.core.client.command.Handler;
 import org.rstudio.core.client.files.FileSystemItem;
@@ -97,14 +97,15 @@ public class Workbench implements BusyHandler,
       eventBus.addHandler(WorkbenchLoadedEvent.TYPE, this);
       eventBus.addHandler(WorkbenchMetricsChangedEvent.TYPE, this);
 
-      // We don't want to send setWorkbenchMetrics more than once per 1/2-second
-      metricsChangedCommand_ = new TimeBufferedCommand(-1, -1, 500)
+      // We don't want to send setWorkbenchMetrics until the metrics have
+      // stopped changing for 1/2-second (e.g. a splitter is no longer being
+      // dragged), since each one re-renders the plot at full resolution.
+      // The plots pane shows quick previews in the meantime.
+      metricsChangedTimer_ = new Timer()
       {
          @Override
-         protected void performAction(boolean shouldSchedulePassive)
+         public void run()
          {
-            assert !shouldSchedulePassive;
-            
             server_.setWorkbenchMetrics(lastWorkbenchMetrics_,
                                         new VoidServerRequestCallback());
          }
@@ -152,7 +153,7 @@ public class Workbench implements BusyHandler,
    public void onWorkbenchMetricsChanged(WorkbenchMetricsChangedEvent event)
    {
       lastWorkbenchMetrics_ = event.getWorkbenchMetrics();
-      metricsChangedCommand_.nudge();
+      metricsChangedTimer_.schedule(500);
    }
    
    public void onQuotaStatus(QuotaStatusEvent event)
@@ -353,7 +354,7 @@ public class Workbench implements BusyHandler,
    private final FileDialogs fileDialogs_;
    private final WorkbenchContext workbenchContext_;
    private final ConsoleDispatcher consoleDispatcher_;
-   private final TimeBufferedCommand metricsChangedCommand_;
+   private final Timer metricsChangedTimer_;
    private WorkbenchMetrics lastWorkbenchMetrics_;
    private boolean nearQuotaWarningShown_ = false; 
 }
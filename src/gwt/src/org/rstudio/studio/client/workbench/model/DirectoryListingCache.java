@@ -0,0 +1,399 @@
+/*
+ * DirectoryListingCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.model;
+
+import com.google.gwt.core.client.JsArray;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.rstudio.core.client.files.FileSystemItem;
+import org.rstudio.core.client.jsonrpc.RequestLog;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeEvent;
+import org.rstudio.studio.client.workbench.views.files.events.FileChangeHandler;
+import org.rstudio.studio.client.workbench.views.files.model.FilesServerOperations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Directory listings for the file dialogs, so that navigating back and
+ * forth (and into directories that were prefetched) doesn't wait on the
+ * server.
+ *
+ * A cached listing is returned straight away and then validated in the
+ * background by comparing the directory's modification time with the one
+ * read just before it was listed; if the directory has changed (or the
+ * listing is older than MAX_AGE_MS) it is listed again and the callback
+ * is called a second time with the new contents. Listings are also
+ * dropped when a file change event touches the directory.
+ *
+ * Note that a directory's modification time doesn't change when a file in
+ * it is modified, so sizes and dates can be up to MAX_AGE_MS old; refresh
+ * drops the listing so that it is read again.
+ *
+ * The server is always asked directly (bypassing RemoteServer's cache of
+ * recent calls), as these calls are how listings are validated.
+ *
+ * Lookups are recorded in the request log, along with the running hit,
+ * miss and prefetch counts.
+ */
+@Singleton
+public class DirectoryListingCache
+{
+   public interface Callback
+   {
+      void onListing(FileSystemItem[] contents);
+      void onError(String message);
+   }
+
+   @Inject
+   public DirectoryListingCache(FilesServerOperations server, EventBus events)
+   {
+      server_ = server;
+
+      events.addHandler(FileChangeEvent.TYPE, new FileChangeHandler()
+      {
+         public void onFileChange(FileChangeEvent event)
+         {
+            FileSystemItem file = event.getFileChange().getFile();
+            FileSystemItem parent = file.getParentPath();
+            if (parent != null)
+               invalidate(parent.getPath(), false);
+            if (file.isDirectory())
+               invalidate(file.getPath(), true);
+         }
+      });
+   }
+
+   /**
+    * Lists the given directory. The callback may be called twice: with a
+    * cached listing, and again if that listing turns out to be stale.
+    */
+   public void list(String path, Callback callback)
+   {
+      CacheEntry entry = entries_.get(path);
+      if (entry == null)
+      {
+         misses_++;
+         log("miss", path);
+         fetch(path, callback);
+         return;
+      }
+
+      hits_++;
+      log("hit", path);
+      callback.onListing(entry.contents);
+      validate(path, entry, callback);
+   }
+
+   /**
+    * Lists the given directory in the background if it isn't already
+    * cached, e.g. because the user is hovering over it.
+    */
+   public void prefetch(String path)
+   {
+      if (entries_.containsKey(path) || waiting_.containsKey(path))
+         return;
+
+      prefetches_++;
+      log("prefetch", path);
+      fetch(path, null);
+   }
+
+   /**
+    * Lists the given directory from the server, replacing any cached
+    * listing of it.
+    */
+   public void refresh(String path, Callback callback)
+   {
+      invalidate(path, false);
+      misses_++;
+      log("refresh", path);
+      fetch(path, callback);
+   }
+
+   public void clear()
+   {
+      generation_++;
+      entries_.clear();
+      totalItems_ = 0;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "hits=" + hits_ + " misses=" + misses_ +
+             " stale=" + stale_ + " prefetches=" + prefetches_ +
+             " entries=" + entries_.size() + " items=" + totalItems_;
+   }
+
+   private void fetch(final String path, Callback callback)
+   {
+      // join a request that's already in flight (e.g. a prefetch)
+      ArrayList<Callback> waiting = waiting_.get(path);
+      if (waiting != null)
+      {
+         if (callback != null)
+            waiting.add(callback);
+         return;
+      }
+
+      waiting = new ArrayList<Callback>();
+      if (callback != null)
+         waiting.add(callback);
+      waiting_.put(path, waiting);
+
+      // the directory's modification time is read before it is listed, so
+      // that a change made in between makes the listing look stale (rather
+      // than making a stale listing look current)
+      final int generation = generation_;
+      server_.statUncached(path, new ServerRequestCallback<FileSystemItem>()
+      {
+         @Override
+         public void onResponseReceived(FileSystemItem directory)
+         {
+            listDirectory(path,
+                          directory.getLastModified().getTime(),
+                          generation);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            // list it anyway; the listing will be validated next time
+            listDirectory(path, -1, generation);
+         }
+      });
+   }
+
+   private void listDirectory(final String path,
+                              final long modified,
+                              final int generation)
+   {
+      // (unmonitored, since this is used for the file dialog and shouldn't
+      // reset the server monitoring state)
+      server_.listFilesUncached(
+            FileSystemItem.createDir(path),
+            new ServerRequestCallback<JsArray<FileSystemItem>>()
+            {
+               @Override
+               public void onResponseReceived(JsArray<FileSystemItem> response)
+               {
+                  FileSystemItem[] contents =
+                                    new FileSystemItem[response.length()];
+                  for (int i = 0; i < contents.length; i++)
+                     contents[i] = response.get(i);
+
+                  // if the directory changed while this was in flight then
+                  // the listing may be out of date, so don't keep it
+                  if (generation == generation_)
+                     put(path, contents, modified);
+
+                  for (Callback callback : waiting_.remove(path))
+                     callback.onListing(contents);
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  for (Callback callback : waiting_.remove(path))
+                     callback.onError(error.getUserMessage());
+               }
+            });
+   }
+
+   private void put(String path, FileSystemItem[] contents, long modified)
+   {
+      CacheEntry entry = new CacheEntry(contents, modified);
+      CacheEntry old = entries_.put(path, entry);
+      if (old != null)
+         totalItems_ -= old.contents.length;
+      totalItems_ += contents.length;
+
+      Iterator<CacheEntry> it = entries_.values().iterator();
+      while (totalItems_ > MAX_ITEMS && it.hasNext())
+      {
+         totalItems_ -= it.next().contents.length;
+         it.remove();
+      }
+   }
+
+   private void validate(final String path,
+                         final CacheEntry entry,
+                         final Callback callback)
+   {
+      long now = System.currentTimeMillis();
+      if (entry.validating || now - entry.validated < VALIDATE_INTERVAL_MS)
+         return;
+
+      entry.validating = true;
+      server_.statUncached(path, new ServerRequestCallback<FileSystemItem>()
+      {
+         @Override
+         public void onResponseReceived(FileSystemItem directory)
+         {
+            entry.validating = false;
+            if (entries_.get(path) != entry)
+               return;
+
+            long now = System.currentTimeMillis();
+            if (entry.modified == directory.getLastModified().getTime() &&
+                now - entry.fetched < MAX_AGE_MS)
+            {
+               entry.validated = now;
+               return;
+            }
+
+            stale_++;
+            log("stale", path);
+            remove(path);
+            fetch(path, new Callback()
+            {
+               public void onListing(FileSystemItem[] contents)
+               {
+                  if (!isSameListing(contents, entry.contents))
+                     callback.onListing(contents);
+               }
+
+               public void onError(String message)
+               {
+                  // the cached listing was shown, so leave it at that
+               }
+            });
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            entry.validating = false;
+         }
+      });
+   }
+
+   /**
+    * Drops the listing of the given directory (and, if recursive, of the
+    * directories below it).
+    */
+   public void invalidate(String path, boolean recursive)
+   {
+      generation_++;
+      remove(path);
+
+      if (recursive)
+      {
+         String prefix = path + "/";
+         Iterator<Map.Entry<String, CacheEntry>> it =
+                                             entries_.entrySet().iterator();
+         while (it.hasNext())
+         {
+            Map.Entry<String, CacheEntry> entry = it.next();
+            if (entry.getKey().startsWith(prefix))
+            {
+               totalItems_ -= entry.getValue().contents.length;
+               it.remove();
+            }
+         }
+      }
+   }
+
+   private void remove(String path)
+   {
+      CacheEntry entry = entries_.remove(path);
+      if (entry != null)
+         totalItems_ -= entry.contents.length;
+   }
+
+   private static boolean isSameListing(FileSystemItem[] a, FileSystemItem[] b)
+   {
+      if (a.length != b.length)
+         return false;
+
+      for (int i = 0; i < a.length; i++)
+      {
+         if (!a[i].getPath().equals(b[i].getPath()) ||
+             a[i].isDirectory() != b[i].isDirectory() ||
+             a[i].getLength() != b[i].getLength() ||
+             !a[i].getLastModified().equals(b[i].getLastModified()))
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private void log(String event, String path)
+   {
+      RequestLogEntry entry = RequestLog.log(
+            "listingcache" + (++logCounter_),
+            "{\"method\":\"list_files_cache\", \"event\":\"" + event +
+            "\", \"path\":\"" + path.replace("\\", "\\\\").replace("\"", "\\\"") +
+            "\"}");
+      entry.logResponse(ResponseType.Normal, toString());
+   }
+
+   private static class CacheEntry
+   {
+      CacheEntry(FileSystemItem[] contents, long modified)
+      {
+         this.contents = contents;
+         this.modified = modified;
+         this.fetched = System.currentTimeMillis();
+         this.validated = this.fetched;
+      }
+
+      final FileSystemItem[] contents;
+      final long fetched;
+      final long modified;
+      long validated;
+      boolean validating;
+   }
+
+   private final FilesServerOperations server_;
+
+   private final LinkedHashMap<String, CacheEntry> entries_ =
+         new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> e)
+      {
+         if (size() <= MAX_ENTRIES)
+            return false;
+         totalItems_ -= e.getValue().contents.length;
+         return true;
+      }
+   };
+
+   // path => callbacks waiting on the listing in flight
+   private final HashMap<String, ArrayList<Callback>> waiting_ =
+                                    new HashMap<String, ArrayList<Callback>>();
+
+   private int totalItems_;
+   private int generation_;
+   private int hits_;
+   private int misses_;
+   private int stale_;
+   private int prefetches_;
+   private int logCounter_;
+
+   private static final int MAX_ENTRIES = 200;
+   private static final int MAX_ITEMS = 100000;
+   private static final long VALIDATE_INTERVAL_MS = 2000;
+   private static final long MAX_AGE_MS = 60000;
+}
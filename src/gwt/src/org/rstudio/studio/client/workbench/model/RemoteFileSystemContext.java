@@ -12,7 +12,8 @@
  */
 package org.rstudio.studio.client.workbench.model;
 
-import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.resources.client.ImageResource;
 import com.google.inject.Inject;
 import org.rstudio.core.client.MessageDisplay;
@@ -26,17 +27,17 @@ import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
 import org.rstudio.studio.client.workbench.views.files.model.FilesServerOperations;
 
-import java.util.ArrayList;
-
 public class RemoteFileSystemContext extends PosixFileSystemContext
 {
    @Inject
    public RemoteFileSystemContext(FilesServerOperations server,
+                                  DirectoryListingCache listingCache,
                                   FileTypeRegistry fileTypeRegistry,
                                   GlobalDisplay globalDisplay)
    {
       super();
       server_ = server;
+      listingCache_ = listingCache;
       fileTypeRegistry_ = fileTypeRegistry;
       globalDisplay_ = globalDisplay;
    }
@@ -49,39 +50,52 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
    public void cd(String relativeOrAbsolutePath)
    {
       final String newPath = combine(workingDir_, relativeOrAbsolutePath);
+      listingCache_.list(newPath, createNavigationCallback(newPath));
+   }
 
-      final FileSystemItem newPathEntry = FileSystemItem.createDir(newPath);
-      
-      final ArrayList<FileSystemItem> fsi = new ArrayList<FileSystemItem>();
+   public void refresh()
+   {
+      listingCache_.refresh(workingDir_,
+                            createNavigationCallback(workingDir_));
+   }
 
-      server_.listFiles(
-            newPathEntry,
-            false, // since this is used for the file dialog don't 
-                   // cause the call to reset the server monitoring state
-            new ServerRequestCallback<JsArray<FileSystemItem>>()
+   private DirectoryListingCache.Callback createNavigationCallback(
+                                                      final String newPath)
+   {
+      final int navigation = ++navigation_;
+      return new DirectoryListingCache.Callback()
+      {
+         public void onListing(final FileSystemItem[] contents)
+         {
+            // cached listings arrive synchronously, but callers expect
+            // navigation to complete later
+            Scheduler.get().scheduleDeferred(new ScheduledCommand()
             {
-               @Override
-               public void onError(ServerError error)
+               public void execute()
                {
-                  callbacks_.onError(error.getUserMessage());
-               }
+                  // ignore listings for a directory we've since left
+                  if (navigation != navigation_)
+                     return;
 
-               @Override
-               public void onResponseReceived(final JsArray<FileSystemItem> response)
-               { 
-                  for (int i = 0; i < response.length(); i++)
-                     fsi.add(response.get(i));
-                  
                   workingDir_ = newPath;
-                  contents_ = fsi.toArray(new FileSystemItem[0]);
+                  contents_ = contents;
                   callbacks_.onNavigated();
                }
             });
+         }
+
+         public void onError(String message)
+         {
+            if (navigation == navigation_)
+               callbacks_.onError(message);
+         }
+      };
    }
 
-   public void refresh()
+   @Override
+   public void prefetch(FileSystemItem directory)
    {
-      cd(workingDir_);
+      listingCache_.prefetch(directory.getPath());
    }
 
    public void mkdir(final String directoryName, final ProgressIndicator progress)
@@ -109,6 +123,7 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
                @Override
                public void onResponseReceived(Void response)
                {
+                  listingCache_.invalidate(baseDir, false);
                   if (baseDir.equals(workingDir_))
                   {
                      progress.onCompleted();
@@ -124,6 +139,11 @@ public class RemoteFileSystemContext extends PosixFileSystemContext
    }
 
    private final FilesServerOperations server_;
+   private final DirectoryListingCache listingCache_;
    private final FileTypeRegistry fileTypeRegistry_;
    private final GlobalDisplay globalDisplay_;
+
+   // bumped on each cd, so that listings of directories we've since left
+   // are ignored
+   private int navigation_;
 }
@@ -36,6 +36,7 @@ import org.rstudio.studio.client.workbench.prefs.model.HistoryPrefs;
 import org.rstudio.studio.client.workbench.prefs.model.PackagesPrefs;
 import org.rstudio.studio.client.workbench.prefs.model.ProjectsPrefs;
 import org.rstudio.studio.client.workbench.prefs.model.RPrefs;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageCatalog;
 
 /**
  * TODO: Apply new settings
@@ -46,10 +47,12 @@ public class GeneralPreferencesPane extends PreferencesPane
    @Inject
    public GeneralPreferencesPane(RemoteFileSystemContext fsContext,
                                  FileDialogs fileDialogs,
-                                 final DefaultCRANMirror defaultCRANMirror)
+                                 final DefaultCRANMirror defaultCRANMirror,
+                                 PackageCatalog packageCatalog)
    {
       fsContext_ = fsContext;
       fileDialogs_ = fileDialogs;
+      packageCatalog_ = packageCatalog;
 
       if (Desktop.isDesktop())
       {
@@ -118,6 +121,7 @@ public class GeneralPreferencesPane extends PreferencesPane
                      public void execute(CRANMirror cranMirror)
                      {
                         cranMirror_ = cranMirror;
+                        cranMirrorChanged_ = true;
                         cranMirrorTextBox_.setText(cranMirror_.getDisplay());
                      }     
                   });
@@ -241,6 +245,13 @@ public class GeneralPreferencesPane extends PreferencesPane
          PackagesPrefs packagesPrefs = PackagesPrefs.create(cranMirror_, null);
          rPrefs.setPackagesPrefs(packagesPrefs);
          
+         // different packages are available from the new mirror
+         if (cranMirrorChanged_)
+         {
+            packageCatalog_.invalidateAvailablePackages();
+            cranMirrorChanged_ = false;
+         }
+         
          // set projects prefs
          ProjectsPrefs projectsPrefs = ProjectsPrefs.create(
                                              restoreLastProject_.getValue());
@@ -258,6 +269,7 @@ public class GeneralPreferencesPane extends PreferencesPane
 
    private final FileSystemContext fsContext_;
    private final FileDialogs fileDialogs_;
+   private final PackageCatalog packageCatalog_;
    private SelectWidget saveWorkspace_;
    private TextBoxWithButton rVersion_;
    private TextBoxWithButton dirChooser_;
@@ -265,6 +277,7 @@ public class GeneralPreferencesPane extends PreferencesPane
    private final CheckBox alwaysSaveHistory_;
    private final CheckBox removeHistoryDuplicates_;
    private CRANMirror cranMirror_ = CRANMirror.empty();
+   private boolean cranMirrorChanged_ = false;
    private TextBoxWithButton cranMirrorTextBox_;
    private CheckBox restoreLastProject_;
 }
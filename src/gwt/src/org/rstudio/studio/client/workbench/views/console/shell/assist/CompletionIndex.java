@@ -0,0 +1,377 @@
+/*
+ * CompletionIndex.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.console.shell.assist;
+
+import com.google.gwt.core.client.JsArrayString;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.rstudio.studio.client.application.events.EventBus;
+import org.rstudio.studio.client.common.codetools.CodeToolsServerOperations;
+import org.rstudio.studio.client.common.codetools.CompletionIndexUpdate;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.views.console.events.ConsolePromptEvent;
+import org.rstudio.studio.client.workbench.views.console.events.ConsolePromptHandler;
+import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionRequester.QualifiedName;
+import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackagesChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackagesChangedHandler;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * A client side index of the objects on the R search path, used to
+ * complete plain identifiers without a server round trip.
+ *
+ * Each scope's names are kept as a sorted array, so prefix queries are a
+ * binary search per scope. The names of attached packages are cached until
+ * installed packages change; the rest of the search path (in particular
+ * the global environment) is re-fetched lazily, on the first query after
+ * a console prompt or a package being attached or detached.
+ */
+@Singleton
+public class CompletionIndex
+{
+   @Inject
+   public CompletionIndex(CodeToolsServerOperations server, EventBus events)
+   {
+      server_ = server;
+
+      events.addHandler(ConsolePromptEvent.TYPE, new ConsolePromptHandler()
+      {
+         public void onConsolePrompt(ConsolePromptEvent event)
+         {
+            generation_++;
+         }
+      });
+
+      events.addHandler(PackageStatusChangedEvent.TYPE,
+                        new PackageStatusChangedHandler()
+      {
+         public void onPackageStatusChanged(PackageStatusChangedEvent event)
+         {
+            generation_++;
+         }
+      });
+
+      events.addHandler(InstalledPackagesChangedEvent.TYPE,
+                        new InstalledPackagesChangedHandler()
+      {
+         public void onInstalledPackagesChanged(
+                                       InstalledPackagesChangedEvent event)
+         {
+            packageScopes_.clear();
+            packagesEpoch_++;
+            generation_++;
+         }
+      });
+   }
+
+   /**
+    * Makes sure the index reflects the current search path, fetching it
+    * from the server if it may have changed since it was last loaded.
+    */
+   public void load(ServerRequestCallback<Void> callback)
+   {
+      if (isCurrent())
+      {
+         callback.onResponseReceived(null);
+         return;
+      }
+
+      waiting_.add(callback);
+      if (waiting_.size() == 1)
+         refresh();
+   }
+
+   public boolean isCurrent()
+   {
+      return searchPath_ != null && loadedGeneration_ == generation_;
+   }
+
+   /**
+    * Returns the names on the search path starting with the given prefix,
+    * each qualified by the first scope it's found in. Names in the global
+    * environment come first, as with server side completion.
+    */
+   public ArrayList<QualifiedName> findPrefix(String prefix)
+   {
+      ArrayList<QualifiedName> globals = new ArrayList<QualifiedName>();
+      ArrayList<QualifiedName> others = new ArrayList<QualifiedName>();
+      HashSet<String> seen = new HashSet<String>();
+
+      for (Scope scope : searchPath_)
+      {
+         String[] names = scope.names;
+         for (int i = lowerBound(names, prefix);
+              i < names.length && names[i].startsWith(prefix);
+              i++)
+         {
+            if (seen.add(names[i]))
+            {
+               QualifiedName qname = new QualifiedName(names[i],
+                                                       scope.pkgName);
+               (scope.global ? globals : others).add(qname);
+            }
+         }
+      }
+
+      Collections.sort(globals);
+      Collections.sort(others);
+      globals.addAll(others);
+      return globals;
+   }
+
+   /**
+    * Returns up to maxResults names containing the characters of pattern
+    * in order (ignoring case), best matches first. Matches at the start
+    * of the name or of a word within it (after '.', '_' or a change to
+    * upper case) and runs of consecutive characters rank higher.
+    */
+   public ArrayList<QualifiedName> findFuzzy(String pattern, int maxResults)
+   {
+      boolean hidden = pattern.startsWith(".");
+      ArrayList<FuzzyMatch> matches = new ArrayList<FuzzyMatch>();
+      HashSet<String> seen = new HashSet<String>();
+
+      for (Scope scope : searchPath_)
+      {
+         for (String name : scope.names)
+         {
+            if (!hidden && name.startsWith("."))
+               continue;
+
+            int score = fuzzyScore(name, pattern);
+            if (score >= 0 && seen.add(name))
+               matches.add(new FuzzyMatch(name, scope.pkgName, score));
+         }
+      }
+
+      Collections.sort(matches);
+
+      ArrayList<QualifiedName> results = new ArrayList<QualifiedName>();
+      for (int i = 0; i < matches.size() && i < maxResults; i++)
+         results.add(matches.get(i).qname);
+      return results;
+   }
+
+   private void refresh()
+   {
+      final int generation = generation_;
+      final int packagesEpoch = packagesEpoch_;
+
+      server_.getCompletionIndex(
+            new ArrayList<String>(packageScopes_.keySet()),
+            new ServerRequestCallback<CompletionIndexUpdate>()
+      {
+         @Override
+         public void onResponseReceived(CompletionIndexUpdate update)
+         {
+            // If installed packages changed while this was in flight then
+            // the package contents may be out of date, so use them for
+            // now but don't keep them
+            applyUpdate(update, packagesEpoch == packagesEpoch_);
+            loadedGeneration_ = generation;
+
+            ArrayList<ServerRequestCallback<Void>> waiting = waiting_;
+            waiting_ = new ArrayList<ServerRequestCallback<Void>>();
+            for (ServerRequestCallback<Void> callback : waiting)
+               callback.onResponseReceived(null);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            ArrayList<ServerRequestCallback<Void>> waiting = waiting_;
+            waiting_ = new ArrayList<ServerRequestCallback<Void>>();
+            for (ServerRequestCallback<Void> callback : waiting)
+               callback.onError(error);
+         }
+      });
+   }
+
+   private void applyUpdate(CompletionIndexUpdate update,
+                            boolean keepPackages)
+   {
+      ArrayList<Scope> searchPath = new ArrayList<Scope>();
+
+      JsArrayString scopes = update.getScopes();
+      for (int i = 0; i < scopes.length(); i++)
+      {
+         String scope = scopes.get(i);
+         boolean isPackage = scope.startsWith(PACKAGE_PREFIX);
+
+         String[] names;
+         JsArrayString objects = update.getObjects(scope);
+         if (objects != null)
+         {
+            names = toSortedArray(objects);
+            if (isPackage && keepPackages)
+               packageScopes_.put(scope, names);
+         }
+         else
+         {
+            names = packageScopes_.get(scope);
+            if (names == null)
+               names = new String[0];
+         }
+
+         boolean global = scope.equals(GLOBAL_ENV);
+         String pkgName = global ? "" :
+                          isPackage ? scope.substring(PACKAGE_PREFIX.length()) :
+                          scope;
+         searchPath.add(new Scope(pkgName, global, names));
+      }
+
+      // Keywords and namespaces (as "pkg::") are offered too
+      JsArrayString namespaces = update.getNamespaces();
+      String[] extras = new String[KEYWORDS.length + namespaces.length()];
+      System.arraycopy(KEYWORDS, 0, extras, 0, KEYWORDS.length);
+      for (int i = 0; i < namespaces.length(); i++)
+         extras[KEYWORDS.length + i] = namespaces.get(i) + "::";
+      Arrays.sort(extras);
+      searchPath.add(new Scope("", false, extras));
+
+      searchPath_ = searchPath;
+   }
+
+   private static String[] toSortedArray(JsArrayString values)
+   {
+      String[] result = new String[values.length()];
+      for (int i = 0; i < result.length; i++)
+         result[i] = values.get(i);
+      Arrays.sort(result);
+      return result;
+   }
+
+   // The index of the first name >= prefix
+   private static int lowerBound(String[] names, String prefix)
+   {
+      int low = 0;
+      int high = names.length;
+      while (low < high)
+      {
+         int mid = (low + high) >>> 1;
+         if (names[mid].compareTo(prefix) < 0)
+            low = mid + 1;
+         else
+            high = mid;
+      }
+      return low;
+   }
+
+   // Returns -1 if the pattern isn't a subsequence of name (ignoring case)
+   static int fuzzyScore(String name, String pattern)
+   {
+      int score = 0;
+      int last = -1;
+      for (int i = 0; i < pattern.length(); i++)
+      {
+         char p = pattern.charAt(i);
+         char lower = Character.toLowerCase(p);
+
+         int j = last + 1;
+         while (j < name.length() &&
+                Character.toLowerCase(name.charAt(j)) != lower)
+         {
+            j++;
+         }
+         if (j == name.length())
+            return -1;
+
+         if (j == last + 1)
+            score += 3;
+         if (isWordStart(name, j))
+            score += 5;
+         if (name.charAt(j) == p)
+            score += 1;
+         last = j;
+      }
+      return score;
+   }
+
+   private static boolean isWordStart(String name, int index)
+   {
+      if (index == 0)
+         return true;
+      char prev = name.charAt(index - 1);
+      char c = name.charAt(index);
+      return prev == '.' || prev == '_' ||
+             (Character.isLowerCase(prev) && Character.isUpperCase(c));
+   }
+
+   private static class Scope
+   {
+      Scope(String pkgName, boolean global, String[] names)
+      {
+         this.pkgName = pkgName;
+         this.global = global;
+         this.names = names;
+      }
+
+      final String pkgName;
+      final boolean global;
+      final String[] names;
+   }
+
+   private static class FuzzyMatch implements Comparable<FuzzyMatch>
+   {
+      FuzzyMatch(String name, String pkgName, int score)
+      {
+         this.qname = new QualifiedName(name, pkgName);
+         this.score = score;
+      }
+
+      // Higher scores first, then shorter names
+      public int compareTo(FuzzyMatch o)
+      {
+         if (score != o.score)
+            return score > o.score ? -1 : 1;
+         if (qname.name.length() != o.qname.name.length())
+            return qname.name.length() - o.qname.name.length();
+         return qname.compareTo(o.qname);
+      }
+
+      final QualifiedName qname;
+      final int score;
+   }
+
+   private final CodeToolsServerOperations server_;
+
+   // attached package scope (e.g. "package:stats") => sorted object names
+   private final HashMap<String, String[]> packageScopes_ =
+                                          new HashMap<String, String[]>();
+   private ArrayList<Scope> searchPath_;
+   private ArrayList<ServerRequestCallback<Void>> waiting_ =
+                                 new ArrayList<ServerRequestCallback<Void>>();
+
+   // bumped whenever the search path may have changed
+   private int generation_ = 0;
+   private int loadedGeneration_ = -1;
+   private int packagesEpoch_ = 0;
+
+   private static final String GLOBAL_ENV = ".GlobalEnv";
+   private static final String PACKAGE_PREFIX = "package:";
+
+   // completed by R but not objects on the search path
+   private static final String[] KEYWORDS = {
+      "NULL", "NA", "TRUE", "FALSE", "Inf", "NaN", "NA_integer_", "NA_real_",
+      "NA_character_", "NA_complex_", "in", "else"
+   };
+}
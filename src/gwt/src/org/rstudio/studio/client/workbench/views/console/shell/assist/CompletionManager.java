@@ -24,6 +24,16 @@ public interface CompletionManager extends KeyDownPreviewHandler,
       boolean shouldComplete(NativeEvent keyDownEvent) ;
    }
    
+   // the document being edited, so that names assigned in it can be
+   // completed before they have been run
+   interface CompletionDocument
+   {
+      // identifies the document, e.g. to keep its tokens between requests
+      String getDocumentId() ;
+      
+      String getCode() ;
+   }
+   
    void goToFunctionDefinition();
    
    void close();
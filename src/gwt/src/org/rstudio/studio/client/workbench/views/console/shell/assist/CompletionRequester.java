@@ -17,23 +17,42 @@ import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.studio.client.common.codetools.CodeToolsServerOperations;
 import org.rstudio.studio.client.common.codetools.Completions;
 import org.rstudio.studio.client.common.r.RToken;
+import org.rstudio.studio.client.common.r.RTokenStream;
+import org.rstudio.studio.client.common.r.RTokenStreamCache;
 import org.rstudio.studio.client.common.r.RTokenizer;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionManager.CompletionDocument;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.TreeSet;
 
 
 public class CompletionRequester
 {
    private final CodeToolsServerOperations server_ ;
+   private final CompletionIndex index_ ;
+   private final RTokenStreamCache tokenCache_ ;
+   private final CompletionDocument document_ ;
    
    private String cachedLinePrefix_ ;
    private CompletionResult cachedResult_ ;
    
-   public CompletionRequester(CodeToolsServerOperations server)
+   /**
+    * @param document The document being edited, whose assigned names are
+    *    completed along with those in the index; or null
+    */
+   public CompletionRequester(CodeToolsServerOperations server,
+                              CompletionIndex index,
+                              RTokenStreamCache tokenCache,
+                              CompletionDocument document)
    {
       server_ = server ;
+      index_ = index ;
+      tokenCache_ = tokenCache ;
+      document_ = document ;
    }
    
    public void getCompletions(
@@ -46,30 +65,72 @@ public class CompletionRequester
          if (line.substring(0, pos).startsWith(cachedLinePrefix_))
          {
             String diff = line.substring(cachedLinePrefix_.length(), pos) ;
-            if (diff.length() > 0)
+            // when we cross a :: the list may actually grow, not shrink
+            if (diff.length() > 0 
+                && !diff.endsWith("::")
+                && isIdentifierPrefix("a" + diff))
             {
-               ArrayList<RToken> tokens = RTokenizer.asTokens("a" + diff) ;
-               
-               // when we cross a :: the list may actually grow, not shrink
-               if (!diff.endsWith("::"))
-               {
-                  while (tokens.size() > 0 
-                        && tokens.get(tokens.size()-1).getContent().equals(":"))
-                  {
-                     tokens.remove(tokens.size()-1) ;
-                  }
-               
-                  if (tokens.size() == 1
-                        && tokens.get(0).getTokenType() == RToken.ID)
-                  {
-                     callback.onResponseReceived(narrow(diff)) ;
-                     return ;
-                  }
-               }
+               callback.onResponseReceived(narrow(diff)) ;
+               return ;
             }
          }
       }
       
+      // plain identifiers are completed from the local index; anything that
+      // depends on context ($ members, arguments, files, ...) needs R
+      final String token = getPlainIdentifier(line.substring(0, pos)) ;
+      if (token == null)
+      {
+         getServerCompletions(line, pos, callback) ;
+         return ;
+      }
+      
+      index_.load(new ServerRequestCallback<Void>() {
+         @Override
+         public void onError(ServerError error)
+         {
+            getServerCompletions(line, pos, callback) ;
+         }
+         
+         @Override
+         public void onResponseReceived(Void response)
+         {
+            ArrayList<QualifiedName> comps = findDocumentNames(token) ;
+            HashSet<String> documentNames = new HashSet<String>() ;
+            for (QualifiedName qname : comps)
+               documentNames.add(qname.name) ;
+            for (QualifiedName qname : index_.findPrefix(token))
+            {
+               if (!(documentNames.contains(qname.name) &&
+                     "".equals(qname.pkgName)))
+               {
+                  comps.add(qname) ;
+               }
+            }
+            
+            if (comps.size() > 0)
+            {
+               cachedLinePrefix_ = line.substring(0, pos) ;
+               cachedResult_ = new CompletionResult(token, comps, null) ;
+               callback.onResponseReceived(cachedResult_) ;
+            }
+            else
+            {
+               // fuzzy matches can't be narrowed by prefix, so don't cache
+               flushCache() ;
+               comps = index_.findFuzzy(token, MAX_FUZZY_COMPLETIONS) ;
+               callback.onResponseReceived(
+                                 new CompletionResult(token, comps, null)) ;
+            }
+         }
+      }) ;
+   }
+   
+   private void getServerCompletions(
+                     final String line, 
+                     final int pos,
+                     final ServerRequestCallback<CompletionResult> callback)
+   {
       server_.getCompletions(line, pos, new ServerRequestCallback<Completions>() {
          @Override
          public void onError(ServerError error)
@@ -105,6 +166,175 @@ public class CompletionRequester
       cachedResult_ = null ;
    }
    
+   // is the code a single identifier, optionally followed by colons?
+   // (tokenizes without creating tokens since this runs on every keystroke)
+   private static boolean isIdentifierPrefix(String code)
+   {
+      RTokenizer rt = new RTokenizer(code) ;
+      if (rt.nextTokenType() != RToken.ID)
+         return false ;
+      
+      int type ;
+      while (RTokenizer.EOF != (type = rt.nextTokenType()))
+      {
+         if (type != RToken.OPER 
+             || rt.getTokenEnd() - rt.getTokenStart() != 1
+             || code.charAt(rt.getTokenStart()) != ':')
+         {
+            return false ;
+         }
+      }
+      return true ;
+   }
+
+   // Returns the identifier that code ends with if it is a complete token
+   // outside of any call or subscript, and isn't preceded by $, @, :: or
+   // ?; otherwise null
+   private static String getPlainIdentifier(String code)
+   {
+      RTokenizer rt = new RTokenizer(code) ;
+      int depth = 0 ;
+      int prevType = RTokenizer.EOF ;
+      int prevStart = 0 ;
+      int lastSignificant = RTokenizer.EOF ;
+      int type = RTokenizer.EOF ;
+      int start = 0 ;
+      
+      int t ;
+      while (RTokenizer.EOF != (t = rt.nextTokenType()))
+      {
+         if (type != RToken.WHITESPACE && type != RToken.COMMENT)
+            lastSignificant = type ;
+         prevType = type ;
+         prevStart = start ;
+         type = t ;
+         start = rt.getTokenStart() ;
+         
+         switch (type)
+         {
+         case RToken.LPAREN: case RToken.LBRACKET: case RToken.LDBRACKET:
+            depth++ ;
+            break ;
+         case RToken.RPAREN: case RToken.RBRACKET: case RToken.RDBRACKET:
+            depth = Math.max(0, depth - 1) ;
+            break ;
+         }
+      }
+      
+      if (type != RToken.ID || depth > 0 || code.charAt(start) == '`')
+         return null ;
+      
+      // ? (help) isn't an R operator to the tokenizer, so it's an error
+      if (lastSignificant == RToken.ERROR)
+         return null ;
+      
+      if (prevType == RToken.OPER)
+      {
+         char op = code.charAt(prevStart) ;
+         if (op == '$' || op == ':')
+            return null ;
+      }
+      else if (prevType == RToken.ID
+               || prevType == RToken.NUMBER
+               || prevType == RToken.STRING)
+      {
+         return null ;
+      }
+      
+      return code.substring(start) ;
+   }
+
+   // Names assigned (with <-, <<-, = at the top level of an expression,
+   // -> or ->>) in the document that start with the prefix, which needn't
+   // have been run yet. The document's tokens are kept between requests
+   // and only re-lexed where it has been edited since.
+   private ArrayList<QualifiedName> findDocumentNames(String prefix)
+   {
+      ArrayList<QualifiedName> result = new ArrayList<QualifiedName>() ;
+      if (document_ == null)
+         return result ;
+      
+      RTokenStream tokens = tokenCache_.getTokens(document_.getDocumentId(),
+                                                  document_.getCode()) ;
+      TreeSet<String> names = new TreeSet<String>() ;
+      int depth = 0 ;
+      int prev = -1 ;   // the previous significant token
+      int count = tokens.getTokenCount() ;
+      for (int i = 0; i < count; i++)
+      {
+         int type = tokens.getTokenType(i) ;
+         switch (type)
+         {
+         case RToken.WHITESPACE: case RToken.COMMENT:
+            continue ;
+         case RToken.LPAREN: case RToken.LBRACKET: case RToken.LDBRACKET:
+            depth++ ;
+            break ;
+         case RToken.RPAREN: case RToken.RBRACKET: case RToken.RDBRACKET:
+            depth = Math.max(0, depth - 1) ;
+            break ;
+         case RToken.ID:
+            if (isRightAssignment(tokens, prev) ||
+                isLeftAssignment(tokens, nextSignificant(tokens, i), depth))
+            {
+               String name = tokens.getTokenText(i) ;
+               if (name.startsWith(prefix))
+                  names.add(name) ;
+            }
+            break ;
+         }
+         prev = i ;
+      }
+      
+      for (String name : names)
+         result.add(new QualifiedName(name, "")) ;
+      return result ;
+   }
+   
+   private static int nextSignificant(RTokenStream tokens, int index)
+   {
+      for (int i = index + 1; i < tokens.getTokenCount(); i++)
+      {
+         int type = tokens.getTokenType(i) ;
+         if (type != RToken.WHITESPACE && type != RToken.COMMENT)
+            return i ;
+      }
+      return -1 ;
+   }
+   
+   // is the token an assignment to the name before it? (<<- is lexed as
+   // < followed by <-)
+   private static boolean isLeftAssignment(RTokenStream tokens,
+                                           int index,
+                                           int depth)
+   {
+      if (index < 0 || tokens.getTokenType(index) != RToken.OPER)
+         return false ;
+      
+      String op = tokens.getTokenText(index) ;
+      if (op.equals("<-") || (op.equals("=") && depth == 0))
+         return true ;
+      if (!op.equals("<") || index + 1 >= tokens.getTokenCount())
+         return false ;
+      return tokens.getTokenType(index + 1) == RToken.OPER &&
+             tokens.getTokenText(index + 1).equals("<-") ;
+   }
+   
+   // is the token an assignment to the name after it? (->> is lexed as ->
+   // followed by >)
+   private static boolean isRightAssignment(RTokenStream tokens, int index)
+   {
+      if (index < 0 || tokens.getTokenType(index) != RToken.OPER)
+         return false ;
+      
+      String op = tokens.getTokenText(index) ;
+      if (op.equals("->"))
+         return true ;
+      return op.equals(">") && index > 0 &&
+             tokens.getTokenType(index - 1) == RToken.OPER &&
+             tokens.getTokenText(index - 1).equals("->") ;
+   }
+
    private CompletionResult narrow(String diff)
    {
       assert cachedResult_.guessedFunctionName == null ;
@@ -190,4 +420,6 @@ public class CompletionRequester
       public final String name ;
       public final String pkgName ;
    }
+   
+   private static final int MAX_FUZZY_COMPLETIONS = 100 ;
 }
@@ -37,6 +37,7 @@ import org.rstudio.studio.client.common.GlobalProgressDelayer;
 import org.rstudio.studio.client.common.SimpleRequestCallback;
 import org.rstudio.studio.client.common.codetools.CodeToolsServerOperations;
 import org.rstudio.studio.client.common.filetypes.FileTypeRegistry;
+import org.rstudio.studio.client.common.r.RTokenStreamCache;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.server.Void;
@@ -82,7 +83,8 @@ public class RCompletionManager implements CompletionManager
                              NavigableSourceEditor navigableSourceEditor,
                              CompletionPopupDisplay popup,
                              CodeToolsServerOperations server,
-                             InitCompletionFilter initFilter)
+                             InitCompletionFilter initFilter,
+                             CompletionDocument document)
    {
       RStudioGinjector.INSTANCE.injectMembers(this);
       
@@ -90,7 +92,10 @@ public class RCompletionManager implements CompletionManager
       navigableSourceEditor_ = navigableSourceEditor;
       popup_ = popup ;
       server_ = server ;
-      requester_ = new CompletionRequester(server_) ;
+      requester_ = new CompletionRequester(server_,
+                                           completionIndex_,
+                                           tokenCache_,
+                                           document) ;
       initFilter_ = initFilter ;
       
       input_.addBlurHandler(new BlurHandler() {
@@ -138,11 +143,15 @@ public class RCompletionManager implements CompletionManager
    @Inject
    public void initialize(GlobalDisplay globalDisplay,
                           FileTypeRegistry fileTypeRegistry,
-                          EventBus eventBus)
+                          EventBus eventBus,
+                          CompletionIndex completionIndex,
+                          RTokenStreamCache tokenCache)
    {
       globalDisplay_ = globalDisplay;
       fileTypeRegistry_ = fileTypeRegistry;
       eventBus_ = eventBus;
+      completionIndex_ = completionIndex;
+      tokenCache_ = tokenCache;
    }
 
    public void close()
@@ -588,6 +597,8 @@ public class RCompletionManager implements CompletionManager
    private GlobalDisplay globalDisplay_;
    private FileTypeRegistry fileTypeRegistry_;
    private EventBus eventBus_;
+   private CompletionIndex completionIndex_;
+   private RTokenStreamCache tokenCache_;
       
    private final CodeToolsServerOperations server_;
    private final InputEditorDisplay input_ ;
@@ -30,6 +30,16 @@ public interface FilesServerOperations
                   boolean monitor,
                   ServerRequestCallback<JsArray<FileSystemItem>> requestCallback);
 
+   // stat and list (without monitoring) a directory, always asking the
+   // server rather than the cache of recent calls (for callers that keep
+   // and validate listings of their own)
+   void statUncached(String path,
+                     ServerRequestCallback<FileSystemItem> requestCallback);
+
+   void listFilesUncached(
+                  FileSystemItem directory,
+                  ServerRequestCallback<JsArray<FileSystemItem>> requestCallback);
+
    void listAllFiles(String path,
                      String pattern,
                      ServerRequestCallback<JsArrayString> requestCallback);
@@ -13,7 +13,9 @@
 package org.rstudio.studio.client.workbench.views.files.ui;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -28,10 +30,14 @@ import org.rstudio.studio.client.common.filetypes.FileTypeRegistry;
 import org.rstudio.studio.client.workbench.views.files.Files;
 import org.rstudio.studio.client.workbench.views.files.model.FileChange;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
 import com.google.gwt.cell.client.CheckboxCell;
 import com.google.gwt.cell.client.ImageResourceCell;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.resources.client.ImageResource;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
 import com.google.gwt.safehtml.shared.SafeHtmlUtils;
@@ -56,10 +62,20 @@ public class FilesList extends Composite
    {
       observer_ = observer;
       
-      // create data provider and sort handler
+      // create data provider and sort handler (which also records the
+      // comparators, so that changes can be inserted in sorted order)
       dataProvider_ = new ListDataProvider<FileSystemItem>();
       sortHandler_ = new ColumnSortEvent.ListHandler<FileSystemItem>(
-                                                      dataProvider_.getList());
+                                                      dataProvider_.getList())
+      {
+         @Override
+         public void setComparator(Column<FileSystemItem, ?> column,
+                                   Comparator<FileSystemItem> comparator)
+         {
+            super.setComparator(column, comparator);
+            comparators_.put(column, comparator);
+         }
+      };
       
       // create cell table
       filesCellTable_ = new CellTable<FileSystemItem>(
@@ -89,6 +105,23 @@ public class FilesList extends Composite
       scrollPanel_ = new ScrollPanel();
       initWidget(scrollPanel_);
       scrollPanel_.setWidget(filesCellTable_);   
+      
+      // only the first rows of large directories are rendered, more are
+      // added as the user scrolls towards the bottom
+      scrollPanel_.addScrollHandler(new ScrollHandler() {
+         @Override
+         public void onScroll(ScrollEvent event)
+         {
+            int remaining = scrollPanel_.getMaximumVerticalScrollPosition() -
+                            scrollPanel_.getVerticalScrollPosition();
+            if (remaining < RENDER_MORE_MARGIN &&
+                renderLimit_ < getFiles().size())
+            {
+               renderLimit_ += RENDER_INCREMENT;
+               filesCellTable_.setPageSize(renderLimit_);
+            }
+         }
+      });
    }
    
    private Column<FileSystemItem, Boolean> addSelectionColumn()
@@ -343,12 +376,17 @@ public class FilesList extends Composite
       containingPath_ = containingPath;
       parentPath_ = containingPath_.getParentPath();
       
-      // set page size (+1 for parent path)
-      filesCellTable_.setPageSize(files.length() + 1);
+      // any queued changes were to the previous listing
+      pendingChanges_.clear();
+      
+      // render the first rows (more are rendered on scroll)
+      renderLimit_ = INITIAL_RENDER_ROWS;
+      filesCellTable_.setPageSize(renderLimit_);
       
       // get underlying list
       List<FileSystemItem> fileList = dataProvider_.getList();
       fileList.clear();
+      filesByKey_.clear();
             
       // add entry for parent path if we have one
       if (parentPath_ != null)
@@ -356,7 +394,11 @@ public class FilesList extends Composite
       
       // add files to table
       for (int i=0; i<files.length(); i++)
-         fileList.add(files.get(i));
+      {
+         FileSystemItem file = files.get(i);
+         fileList.add(file);
+         filesByKey_.put(keyForFile(file), file);
+      }
            
       // apply sort list
       applyColumnSortList();
@@ -391,58 +433,87 @@ public class FilesList extends Composite
    
    public void updateWithAction(FileChange viewAction)
    {        
-      final FileSystemItem file = viewAction.getFile();
-      final List<FileSystemItem> files = getFiles();
-      switch(viewAction.getType())
+      // changes arrive in bursts (e.g. when a job writes many files), so
+      // they are queued and applied together once per frame
+      pendingChanges_.add(viewAction);
+      if (!flushScheduled_)
       {
-      case FileChange.ADD:
-         if (file.getParentPath().equalTo(containingPath_))
+         flushScheduled_ = true;
+         AnimationScheduler.get().requestAnimationFrame(new AnimationCallback()
          {
-            int row = rowForFile(file);
-            if (row == -1)
-            {
-               files.add(file);
-               filesCellTable_.setPageSize(files.size() + 1);
-            }
-            else
+            @Override
+            public void execute(double timestamp)
             {
-               // since we eagerly perform renames at the client UI
-               // layer then sometimes an "added" file is really just
-               // a rename. in this case the file already exists due
-               // to the eager rename in the client but still needs its
-               // metadata updated
-               files.set(row, file);
+               flushScheduled_ = false;
+               flushPendingChanges();
             }
+         });
+      }
+   }
+   
+   private void flushPendingChanges()
+   {
+      if (pendingChanges_.isEmpty())
+         return;
+      
+      ArrayList<FileChange> changes = pendingChanges_;
+      pendingChanges_ = new ArrayList<FileChange>();
+      
+      // a large batch of additions is appended and then sorted once,
+      // rather than inserted one at a time
+      int adds = 0;
+      for (FileChange change : changes)
+      {
+         if (change.getType() == FileChange.ADD)
+            adds++;
+      }
+      Comparator<FileSystemItem> order = getSortOrder();
+      boolean bulk = adds > BULK_ADD_THRESHOLD;
+      
+      for (FileChange change : changes)
+         applyChange(change, bulk ? null : order);
+      
+      if (bulk && order != null)
+         Collections.sort(getFiles(), order);
+      
+      // if a file is deleted and then re-added within the same event loop
+      // (as occurs when gedit saves a text file) the table doesn't always
+      // update correctly (it has a duplicate of the item deleted /
+      // re-added). the call to flush overcomes this issue
+      dataProvider_.flush();
+   }
+   
+   // Applies a change to the file list; if order is null the list will
+   // be re-sorted afterwards, so additions are simply appended
+   private void applyChange(FileChange change, Comparator<FileSystemItem> order)
+   {
+      final FileSystemItem file = change.getFile();
+      switch(change.getType())
+      {
+      case FileChange.ADD:
+         if (file.getParentPath().equalTo(containingPath_))
+         {
+            // since we eagerly perform renames at the client UI
+            // layer then sometimes an "added" file is really just
+            // a rename. in this case the file already exists due
+            // to the eager rename in the client but still needs its
+            // metadata updated
+            removeFile(file);
+            insertFile(file, order);
          }
          break;
          
       case FileChange.MODIFIED:
-         {
-            int row = rowForFile(file);
-            if (row != -1)
-               files.set(row, file);
-         }
+         if (removeFile(file))
+            insertFile(file, order);
          break;
  
       case FileChange.DELETE:
-         {
-            int row = rowForFile(file);
-            if (row != -1)
-            {
-               files.remove(row);
-               
-               // if a file is deleted and then re-added within the same
-               // event loop (as occurs when gedit saves a text file) the
-               // table doesn't always update correctly (it has a duplicate
-               // of the item deleted / re-added). the call to flush overcomes
-               // this issue
-               dataProvider_.flush();
-            }
-         }
+         removeFile(file);
          break;
       
       default:
-         Debug.log("Unexpected file change type: " + viewAction.getType());
+         Debug.log("Unexpected file change type: " + change.getType());
          
          break;
       }
@@ -450,11 +521,10 @@ public class FilesList extends Composite
    
    public void renameFile(FileSystemItem from, FileSystemItem to)
    {
-      int index = getFiles().indexOf(from);
-      if (index != -1)
+      if (removeFile(from))
       {
          selectNone();
-         getFiles().set(index, to);
+         insertFile(to, getSortOrder());
       }
    }
    
@@ -463,14 +533,108 @@ public class FilesList extends Composite
       return dataProvider_.getList();
    }
    
+   // Files are indexed by path (ignoring case, as FileSystemItem.equalTo
+   // does) and whether they are directories
+   private static String keyForFile(FileSystemItem file)
+   {
+      return (file.isDirectory() ? "d:" : "f:") + file.getPath().toLowerCase();
+   }
+   
+   // Removes the file with the same path as the given one, returning false
+   // if there is no such file
+   private boolean removeFile(FileSystemItem file)
+   {
+      FileSystemItem existing = filesByKey_.remove(keyForFile(file));
+      if (existing == null)
+         return false;
+      
+      int row = rowForFile(existing);
+      if (row != -1)
+         getFiles().remove(row);
+      return true;
+   }
+   
+   private void insertFile(FileSystemItem file, Comparator<FileSystemItem> order)
+   {
+      List<FileSystemItem> files = getFiles();
+      filesByKey_.put(keyForFile(file), file);
+      
+      if (order == null)
+      {
+         files.add(file);
+         return;
+      }
+      
+      // after any equal items, as a stable sort would place it
+      int low = 0;
+      int high = files.size();
+      while (low < high)
+      {
+         int mid = (low + high) >>> 1;
+         if (order.compare(files.get(mid), file) <= 0)
+            low = mid + 1;
+         else
+            high = mid;
+      }
+      files.add(low, file);
+   }
+   
+   // Finds the row of an item in the list (the list is kept sorted, so
+   // this is a binary search under the current sort order)
    private int rowForFile(FileSystemItem file)
    {
       List<FileSystemItem> files = getFiles();
-      for (int i=0; i<files.size(); i++)
-         if (files.get(i).equalTo(file))
-            return i ;
+      Comparator<FileSystemItem> order = getSortOrder();
+      if (order == null)
+         return files.indexOf(file);
+      
+      int low = 0;
+      int high = files.size();
+      while (low < high)
+      {
+         int mid = (low + high) >>> 1;
+         if (order.compare(files.get(mid), file) < 0)
+            low = mid + 1;
+         else
+            high = mid;
+      }
       
-      return -1;
+      // scan the items that sort equally for this one
+      for (int i = low; 
+           i < files.size() && order.compare(files.get(i), file) == 0;
+           i++)
+      {
+         if (files.get(i) == file)
+            return i;
+      }
+      
+      // shouldn't happen, but fall back on a linear search
+      return files.indexOf(file);
+   }
+   
+   // Returns the comparator the rows are currently sorted by, or null if
+   // they aren't sorted
+   private Comparator<FileSystemItem> getSortOrder()
+   {
+      ColumnSortList sortList = filesCellTable_.getColumnSortList();
+      if (sortList.size() == 0)
+         return null;
+      
+      com.google.gwt.user.cellview.client.ColumnSortList.ColumnSortInfo info = 
+                                                            sortList.get(0);
+      final Comparator<FileSystemItem> comparator = 
+                                          comparators_.get(info.getColumn());
+      if (comparator == null || info.isAscending())
+         return comparator;
+      
+      // (as ColumnSortEvent.ListHandler sorts descending columns)
+      return new Comparator<FileSystemItem>() {
+         @Override
+         public int compare(FileSystemItem a, FileSystemItem b)
+         {
+            return -comparator.compare(a, b);
+         }
+      };
    }
    
    private void applyColumnSortList()
@@ -568,10 +732,25 @@ public class FilesList extends Composite
    private final MultiSelectionModel<FileSystemItem> selectionModel_;
    private final ListDataProvider<FileSystemItem> dataProvider_;
    private final ColumnSortEvent.ListHandler<FileSystemItem> sortHandler_;
+   private final HashMap<Column<FileSystemItem, ?>, Comparator<FileSystemItem>>
+      comparators_ = 
+         new HashMap<Column<FileSystemItem, ?>, Comparator<FileSystemItem>>();
+   
+   // key (see keyForFile) => the file's item in the list
+   private final HashMap<String, FileSystemItem> filesByKey_ = 
+                                       new HashMap<String, FileSystemItem>();
+   private ArrayList<FileChange> pendingChanges_ = new ArrayList<FileChange>();
+   private boolean flushScheduled_ = false;
+   private int renderLimit_ = INITIAL_RENDER_ROWS;
 
    private final Files.Display.Observer observer_ ;
    private final ScrollPanel scrollPanel_ ;  
    
+   private static final int INITIAL_RENDER_ROWS = 500;
+   private static final int RENDER_INCREMENT = 500;
+   private static final int RENDER_MORE_MARGIN = 400;
+   private static final int BULK_ADD_THRESHOLD = 200;
+   
  
    
 }
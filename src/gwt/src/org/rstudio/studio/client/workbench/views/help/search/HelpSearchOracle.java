@@ -13,27 +13,107 @@
 package org.rstudio.studio.client.workbench.views.help.search;
 
 import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.SuggestOracle;
 import com.google.inject.Inject;
+import org.rstudio.core.client.Invalidation;
+import org.rstudio.studio.client.application.events.EventBus;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.workbench.views.help.model.HelpServerOperations;
+import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackagesChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackagesChangedHandler;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedEvent;
+import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedHandler;
 
 import java.util.ArrayList;
 
 public class HelpSearchOracle extends SuggestOracle
 {
    @Inject
-   public HelpSearchOracle(HelpServerOperations server)
+   public HelpSearchOracle(HelpServerOperations server, EventBus events)
    {
       server_ = server ;
+
+      // the topics available depend on the packages which are loaded
+      events.addHandler(PackageStatusChangedEvent.TYPE,
+                        new PackageStatusChangedHandler()
+      {
+         public void onPackageStatusChanged(PackageStatusChangedEvent event)
+         {
+            clear();
+         }
+      });
+      events.addHandler(InstalledPackagesChangedEvent.TYPE,
+                        new InstalledPackagesChangedHandler()
+      {
+         public void onInstalledPackagesChanged(
+                                       InstalledPackagesChangedEvent event)
+         {
+            clear();
+         }
+      });
    }
 
    @Override
-   public void requestSuggestions(final Request request, 
+   public void requestSuggestions(final Request request,
                                   final Callback callback)
    {
-      String query = request.getQuery() ;
+      // invalidate any outstanding search
+      searchInvalidation_.invalidate();
+      suggestTimer_.cancel();
+
+      // first see if we can serve the request from the cache. the server
+      // returns all of the topics matching a prefix, so a query which
+      // refines a previous one can be answered by filtering its results
+      String query = request.getQuery();
+      if (query.length() == 0)
+      {
+         respond(request, callback, new ArrayList<String>());
+         return;
+      }
+
+      for (int i=resultCache_.size() - 1; i >= 0; i--)
+      {
+         SearchResult res = resultCache_.get(i);
+         if (query.equals(res.getQuery()))
+         {
+            respond(request, callback, res.getTopics());
+            return;
+         }
+
+         if (query.startsWith(res.getQuery()))
+         {
+            ArrayList<String> topics = new ArrayList<String>();
+            for (String topic : res.getTopics())
+            {
+               if (topic.startsWith(query))
+                  topics.add(topic);
+            }
+            cacheResult(query, topics);
+            respond(request, callback, topics);
+            return;
+         }
+      }
+
+      // failed to short-circuit via the cache, hit the server once the
+      // user pauses typing
+      pendingRequest_ = request;
+      pendingCallback_ = callback;
+      suggestTimer_.schedule(DEBOUNCE_MS);
+   }
+
+   public void clear()
+   {
+      searchInvalidation_.invalidate();
+      resultCache_.clear();
+   }
+
+   private void suggestTopics(final Request request, final Callback callback)
+   {
+      final Invalidation.Token invalidationToken =
+                                 searchInvalidation_.getInvalidationToken();
+      final String query = request.getQuery();
       server_.suggestTopics(query,
                              new ServerRequestCallback<JsArrayString>() {
          @Override
@@ -44,18 +124,42 @@ public class HelpSearchOracle extends SuggestOracle
          @Override
          public void onResponseReceived(JsArrayString suggestions)
          {
-            int maxCount = Math.min(suggestions.length(), request.getLimit());
-
-            ArrayList<SearchSuggestion> results =
-               new ArrayList<SearchSuggestion>() ;
-            for (int i = 0; i< maxCount; i++)
-               results.add(new SearchSuggestion(suggestions.get(i))) ;
-            
-            callback.onSuggestionsReady(request, new Response(results)) ;
+            // a newer query has been made (or the topics have changed)
+            if (invalidationToken.isInvalid())
+               return;
+
+            ArrayList<String> topics = new ArrayList<String>();
+            for (int i = 0; i < suggestions.length(); i++)
+               topics.add(suggestions.get(i));
+
+            cacheResult(query, topics);
+            respond(request, callback, topics);
          }
-      }); ;
+      });
    }
-   
+
+   private void cacheResult(String query, ArrayList<String> topics)
+   {
+      // cache the topics (up to 15 result sets)
+      if (resultCache_.size() > 15)
+         resultCache_.remove(0);
+      resultCache_.add(new SearchResult(query, topics));
+   }
+
+   private void respond(Request request,
+                        Callback callback,
+                        ArrayList<String> topics)
+   {
+      int maxCount = Math.min(topics.size(), request.getLimit());
+
+      ArrayList<SearchSuggestion> results =
+         new ArrayList<SearchSuggestion>() ;
+      for (int i = 0; i< maxCount; i++)
+         results.add(new SearchSuggestion(topics.get(i))) ;
+
+      callback.onSuggestionsReady(request, new Response(results)) ;
+   }
+
    private class SearchSuggestion implements Suggestion
    {
       public SearchSuggestion(String value)
@@ -72,9 +176,47 @@ public class HelpSearchOracle extends SuggestOracle
       {
          return value_ ;
       }
-      
+
       private final String value_ ;
    }
 
+   private class SearchResult
+   {
+      public SearchResult(String query, ArrayList<String> topics)
+      {
+         query_ = query;
+         topics_ = topics;
+      }
+
+      public String getQuery()
+      {
+         return query_;
+      }
+
+      public ArrayList<String> getTopics()
+      {
+         return topics_;
+      }
+
+      private final String query_;
+      private final ArrayList<String> topics_;
+   }
+
    private final HelpServerOperations server_ ;
+
+   private final Invalidation searchInvalidation_ = new Invalidation();
+   private final ArrayList<SearchResult> resultCache_ =
+                                             new ArrayList<SearchResult>();
+
+   private Request pendingRequest_;
+   private Callback pendingCallback_;
+   private final Timer suggestTimer_ = new Timer() {
+      @Override
+      public void run()
+      {
+         suggestTopics(pendingRequest_, pendingCallback_);
+      }
+   };
+
+   private static final int DEBOUNCE_MS = 200;
 }
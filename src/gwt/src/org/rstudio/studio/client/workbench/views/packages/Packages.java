@@ -47,6 +47,7 @@ import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackag
 import org.rstudio.studio.client.workbench.views.packages.events.InstalledPackagesChangedHandler;
 import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedEvent;
 import org.rstudio.studio.client.workbench.views.packages.events.PackageStatusChangedHandler;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageCatalog;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInfo;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallContext;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallOptions;
@@ -92,7 +93,8 @@ public class Packages
                    PackagesServerOperations server,
                    GlobalDisplay globalDisplay,
                    Session session,
-                   DefaultCRANMirror defaultCRANMirror)
+                   DefaultCRANMirror defaultCRANMirror,
+                   PackageCatalog catalog)
    {
       super(view);
       view_ = view;
@@ -101,6 +103,7 @@ public class Packages
       view_.setObserver(this) ;
       events_ = events ;
       defaultCRANMirror_ = defaultCRANMirror;
+      catalog_ = catalog;
 
       events.addHandler(InstalledPackagesChangedEvent.TYPE, this);
       events.addHandler(PackageStatusChangedEvent.TYPE, this);
@@ -212,6 +215,8 @@ public class Packages
          defaultCRANMirror_.configure(new Command() {
             public void execute()
             {
+               // packages available from the new mirror
+               catalog_.invalidateAvailablePackages();
                doInstallPackage(installContext); 
             } 
          });
@@ -484,15 +489,16 @@ public class Packages
          public void onResponseReceived(JsArray<PackageInfo> response)
          {
             // sort the packages
-            allPackages_ = new ArrayList<PackageInfo>();
+            ArrayList<PackageInfo> packages = new ArrayList<PackageInfo>();
             for (int i=0; i<response.length(); i++)
-               allPackages_.add(response.get(i));
-            Collections.sort(allPackages_, new Comparator<PackageInfo>() {
+               packages.add(response.get(i));
+            Collections.sort(packages, new Comparator<PackageInfo>() {
                public int compare(PackageInfo o1, PackageInfo o2)
                {
                   return o1.getName().compareToIgnoreCase(o2.getName());
                }
             });
+            catalog_.setInstalledPackages(packages);
             
             view_.setProgress(false);
             setViewPackageList();
@@ -552,37 +558,9 @@ public class Packages
    
    private void setViewPackageList()
    {
-      ArrayList<PackageInfo> packages = null; ;
-      
-      // apply filter (if any)
-      if (packageFilter_.length() > 0)
-      {
-         packages = new ArrayList<PackageInfo>();
-         
-         // first do prefix search
-         for (PackageInfo pkgInfo : allPackages_)
-         {
-            if (pkgInfo.getName().toLowerCase().startsWith(packageFilter_))
-               packages.add(pkgInfo);
-         }
-         
-         // then do contains search on name & desc
-         for (PackageInfo pkgInfo : allPackages_)
-         { 
-            if (pkgInfo.getName().toLowerCase().contains(packageFilter_) ||
-                pkgInfo.getDesc().toLowerCase().contains(packageFilter_))
-            {
-               if (!packages.contains(pkgInfo))
-                  packages.add(pkgInfo);
-            }
-         }
-      }
-      else
-      {
-         packages = allPackages_;
-      }
-      
-      view_.listPackages(packages);
+      // apply filter (if any): prefix matches on the name first, then
+      // matches anywhere in the name or description
+      view_.listPackages(catalog_.filterInstalledPackages(packageFilter_));
    }
    
    private void checkPackageStatusOnNextConsolePrompt(final String packageName)
@@ -653,7 +631,7 @@ public class Packages
 
    private final Display view_;
    private final PackagesServerOperations server_;
-   private ArrayList<PackageInfo> allPackages_ = new ArrayList<PackageInfo>();
+   private final PackageCatalog catalog_;
    private String packageFilter_ = new String();
    private HandlerRegistration consolePromptHandlerReg_ = null;
    private final EventBus events_ ;
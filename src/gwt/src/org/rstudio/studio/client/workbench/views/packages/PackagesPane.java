@@ -43,6 +43,7 @@ import org.rstudio.studio.client.workbench.views.packages.ui.InstallPackageDialo
 import org.rstudio.studio.client.workbench.views.packages.ui.PackagesCellTableResources;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 public class PackagesPane extends WorkbenchPane implements Packages.Display
@@ -65,6 +66,12 @@ public class PackagesPane extends WorkbenchPane implements Packages.Display
    {
       packagesTable_.setPageSize(packages.size());
       packagesDataProvider_.setList(packages);
+      
+      // index the rows by package name (the first row wins if a package
+      // is installed in more than one library)
+      packageRows_.clear();
+      for (int i=packages.size()-1; i>=0; i--)
+         packageRows_.put(packages.get(i).getName(), i);
    }
    
    public void installPackage(PackageInstallContext installContext,
@@ -95,24 +102,9 @@ public class PackagesPane extends WorkbenchPane implements Packages.Display
    
    private int packageRow(String packageName)
    {
-      // if we haven't retreived packages yet then return not found
-      if (packagesDataProvider_ == null)
-         return -1;
-      
-      List<PackageInfo> packages = packagesDataProvider_.getList();
-      
-      // figure out which row of the table includes this package
-      int row = -1;
-      for (int i=0; i<packages.size(); i++)
-      {
-         PackageInfo packageInfo = packages.get(i);
-         if (packageInfo.getName().equals(packageName))
-         {
-            row = i ;
-            break;
-         }
-      }
-      return row ;
+      // if we haven't retreived packages yet then this returns not found
+      Integer row = packageRows_.get(packageName);
+      return row != null ? row : -1;
    }
    
    @Override
@@ -246,6 +238,8 @@ public class PackagesPane extends WorkbenchPane implements Packages.Display
          
    private CellTable<PackageInfo> packagesTable_;
    private ListDataProvider<PackageInfo> packagesDataProvider_;
+   private final HashMap<String, Integer> packageRows_ = 
+                                       new HashMap<String, Integer>();
    private SearchWidget searchWidget_;
    private PackagesDisplayObserver observer_ ;
    private final Commands commands_;
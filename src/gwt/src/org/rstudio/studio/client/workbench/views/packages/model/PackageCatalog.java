@@ -0,0 +1,159 @@
+/*
+ * PackageCatalog.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.packages.model;
+
+import com.google.gwt.core.client.JsArrayString;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Indexes of the packages available from the repository (for the install
+ * dialog's suggestions) and of the installed packages (for the Packages
+ * pane filter).
+ *
+ * The available packages are fetched again when the CRAN mirror is
+ * changed from RStudio, and otherwise at most every AVAILABLE_TTL_MS (as
+ * the repositories can also be changed from R, e.g. with options(repos)).
+ */
+@Singleton
+public class PackageCatalog
+{
+   @Inject
+   public PackageCatalog(PackagesServerOperations server)
+   {
+      server_ = server;
+   }
+
+   /**
+    * Calls back with the index of available package names, fetching it
+    * from the server if it hasn't been already.
+    */
+   public void withAvailablePackages(
+                              ServerRequestCallback<PackageIndex> callback)
+   {
+      if (availablePackages_ != null &&
+          System.currentTimeMillis() - availableFetched_ < AVAILABLE_TTL_MS)
+      {
+         callback.onResponseReceived(availablePackages_);
+         return;
+      }
+
+      // join the request that's already in flight, if any
+      waiting_.add(callback);
+      if (waiting_.size() > 1)
+         return;
+
+      final int generation = generation_;
+      server_.availablePackages(null,
+                                new ServerRequestCallback<JsArrayString>() {
+         @Override
+         public void onResponseReceived(JsArrayString packages)
+         {
+            ArrayList<String> names = new ArrayList<String>();
+            for (int i=0; i<packages.length(); i++)
+               names.add(packages.get(i));
+            PackageIndex index = new PackageIndex(names, null);
+
+            // an empty list means the repository couldn't be reached (or
+            // isn't configured yet) so don't hold on to it
+            if (generation == generation_ && index.size() > 0)
+            {
+               availablePackages_ = index;
+               availableFetched_ = System.currentTimeMillis();
+            }
+
+            for (ServerRequestCallback<PackageIndex> callback : takeWaiting())
+               callback.onResponseReceived(index);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            for (ServerRequestCallback<PackageIndex> callback : takeWaiting())
+               callback.onError(error);
+         }
+      });
+   }
+
+   /**
+    * Drops the available packages index, e.g. because the CRAN mirror
+    * has changed.
+    */
+   public void invalidateAvailablePackages()
+   {
+      generation_++;
+      availablePackages_ = null;
+   }
+
+   public void setInstalledPackages(List<PackageInfo> packages)
+   {
+      installedPackages_ = packages;
+
+      ArrayList<String> names = new ArrayList<String>(packages.size());
+      ArrayList<String> descs = new ArrayList<String>(packages.size());
+      for (PackageInfo packageInfo : packages)
+      {
+         names.add(packageInfo.getName());
+         descs.add(packageInfo.getDesc());
+      }
+      installedIndex_ = new PackageIndex(names, descs);
+   }
+
+   public List<PackageInfo> getInstalledPackages()
+   {
+      return installedPackages_;
+   }
+
+   /**
+    * Returns the installed packages whose names start with the filter,
+    * followed by those whose names or descriptions contain it.
+    */
+   public List<PackageInfo> filterInstalledPackages(String filter)
+   {
+      if (filter.length() == 0)
+         return installedPackages_;
+
+      ArrayList<PackageInfo> packages = new ArrayList<PackageInfo>();
+      for (int index : installedIndex_.filter(filter))
+         packages.add(installedPackages_.get(index));
+      return packages;
+   }
+
+   private ArrayList<ServerRequestCallback<PackageIndex>> takeWaiting()
+   {
+      ArrayList<ServerRequestCallback<PackageIndex>> waiting = waiting_;
+      waiting_ = new ArrayList<ServerRequestCallback<PackageIndex>>();
+      return waiting;
+   }
+
+   private final PackagesServerOperations server_;
+
+   private PackageIndex availablePackages_;
+   private long availableFetched_;
+   private ArrayList<ServerRequestCallback<PackageIndex>> waiting_ =
+                     new ArrayList<ServerRequestCallback<PackageIndex>>();
+   private int generation_;
+
+   private List<PackageInfo> installedPackages_ = new ArrayList<PackageInfo>();
+   private PackageIndex installedIndex_ =
+               new PackageIndex(new ArrayList<String>(), null);
+
+   // (the same as RemoteServer caches available_packages calls for)
+   private static final long AVAILABLE_TTL_MS = 300000;
+}
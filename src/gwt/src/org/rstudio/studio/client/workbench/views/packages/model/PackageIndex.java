@@ -0,0 +1,251 @@
+/*
+ * PackageIndex.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.packages.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Case-insensitive lookups over a list of package names (and optionally
+ * descriptions). Packages are identified by their position in the list
+ * the index was built from.
+ *
+ * Prefix queries are answered by binary search over the names in sorted
+ * order. Substring queries use a trigram index to find the candidates,
+ * which are then checked directly; when a query extends the previous one
+ * (as it does while the user types) only the previous matches are checked.
+ */
+public class PackageIndex
+{
+   public PackageIndex(List<String> names, List<String> descriptions)
+   {
+      int count = names.size();
+      names_ = new String[count];
+      lowerNames_ = new String[count];
+      lowerDescs_ = new String[count];
+      for (int i = 0; i < count; i++)
+      {
+         names_[i] = names.get(i);
+         lowerNames_[i] = names_[i].toLowerCase();
+         String desc = descriptions != null ? descriptions.get(i) : null;
+         lowerDescs_[i] = desc != null ? desc.toLowerCase() : "";
+
+         // first occurrence wins (a package can be installed in more
+         // than one library)
+         if (!rows_.containsKey(names_[i]))
+            rows_.put(names_[i], i);
+      }
+
+      Integer[] sorted = new Integer[count];
+      for (int i = 0; i < count; i++)
+         sorted[i] = i;
+      Arrays.sort(sorted, new Comparator<Integer>() {
+         public int compare(Integer a, Integer b)
+         {
+            int result = lowerNames_[a].compareTo(lowerNames_[b]);
+            return result != 0 ? result : a - b;
+         }
+      });
+      sorted_ = new int[count];
+      for (int i = 0; i < count; i++)
+         sorted_[i] = sorted[i];
+
+      for (int i = 0; i < count; i++)
+      {
+         addTrigrams(lowerNames_[i], i);
+         addTrigrams(lowerDescs_[i], i);
+      }
+   }
+
+   public int size()
+   {
+      return names_.length;
+   }
+
+   public String getName(int index)
+   {
+      return names_[index];
+   }
+
+   /**
+    * Returns the position of the (first) package with the given name, or
+    * -1 if there isn't one.
+    */
+   public int indexOf(String name)
+   {
+      Integer row = rows_.get(name);
+      return row != null ? row : -1;
+   }
+
+   /**
+    * Returns up to limit packages whose names start with the query,
+    * ordered by name.
+    */
+   public ArrayList<Integer> prefixMatches(String query, int limit)
+   {
+      query = query.toLowerCase();
+      ArrayList<Integer> results = new ArrayList<Integer>();
+      for (int i = lowerBound(query);
+           i < sorted_.length && results.size() < limit &&
+                              lowerNames_[sorted_[i]].startsWith(query);
+           i++)
+      {
+         results.add(sorted_[i]);
+      }
+      return results;
+   }
+
+   /**
+    * Returns the packages whose names start with the query, followed by
+    * the remaining packages whose names or descriptions contain it, each
+    * group in list order.
+    */
+   public ArrayList<Integer> filter(String query)
+   {
+      query = query.toLowerCase();
+
+      ArrayList<Integer> prefixed = prefixMatches(query, Integer.MAX_VALUE);
+      Collections.sort(prefixed);
+
+      int[] contained = containsMatches(query);
+
+      ArrayList<Integer> results = new ArrayList<Integer>(contained.length);
+      results.addAll(prefixed);
+      for (int index : contained)
+      {
+         if (!lowerNames_[index].startsWith(query))
+            results.add(index);
+      }
+      return results;
+   }
+
+   private int[] containsMatches(String query)
+   {
+      // candidates: the previous matches if this query refines the last
+      // one, otherwise the smallest posting list among the query's
+      // trigrams (or everything, for queries too short to have one)
+      int[] candidates = null;
+      if (lastQuery_ != null && query.startsWith(lastQuery_))
+         candidates = lastMatches_;
+
+      for (int i = 0; i + TRIGRAM <= query.length(); i++)
+      {
+         Postings postings = trigrams_.get(query.substring(i, i + TRIGRAM));
+         if (postings == null)
+         {
+            candidates = new int[0];
+            break;
+         }
+         if (candidates == null || postings.size < candidates.length)
+            candidates = postings.toArray();
+      }
+
+      int[] matches = new int[candidates != null ? candidates.length
+                                                 : names_.length];
+      int count = 0;
+      for (int i = 0; i < matches.length; i++)
+      {
+         int index = candidates != null ? candidates[i] : i;
+         if (lowerNames_[index].contains(query) ||
+             lowerDescs_[index].contains(query))
+         {
+            matches[count++] = index;
+         }
+      }
+
+      int[] results = new int[count];
+      System.arraycopy(matches, 0, results, 0, count);
+
+      lastQuery_ = query;
+      lastMatches_ = results;
+      return results;
+   }
+
+   // Returns the first position in sorted_ whose name is >= value
+   private int lowerBound(String value)
+   {
+      int low = 0;
+      int high = sorted_.length;
+      while (low < high)
+      {
+         int mid = (low + high) >>> 1;
+         if (lowerNames_[sorted_[mid]].compareTo(value) < 0)
+            low = mid + 1;
+         else
+            high = mid;
+      }
+      return low;
+   }
+
+   private void addTrigrams(String text, int index)
+   {
+      for (int i = 0; i + TRIGRAM <= text.length(); i++)
+      {
+         String trigram = text.substring(i, i + TRIGRAM);
+         Postings postings = trigrams_.get(trigram);
+         if (postings == null)
+         {
+            postings = new Postings();
+            trigrams_.put(trigram, postings);
+         }
+         postings.add(index);
+      }
+   }
+
+   // Ascending list of package positions (without duplicates, since
+   // packages are indexed in order)
+   private static class Postings
+   {
+      void add(int index)
+      {
+         if (size > 0 && values[size-1] == index)
+            return;
+
+         if (size == values.length)
+         {
+            int[] grown = new int[values.length * 2];
+            System.arraycopy(values, 0, grown, 0, size);
+            values = grown;
+         }
+         values[size++] = index;
+      }
+
+      int[] toArray()
+      {
+         int[] result = new int[size];
+         System.arraycopy(values, 0, result, 0, size);
+         return result;
+      }
+
+      int[] values = new int[4];
+      int size;
+   }
+
+   private final String[] names_;
+   private final String[] lowerNames_;
+   private final String[] lowerDescs_;
+   private final int[] sorted_;
+   private final HashMap<String, Integer> rows_ =
+                                          new HashMap<String, Integer>();
+   private final HashMap<String, Postings> trigrams_ =
+                                          new HashMap<String, Postings>();
+
+   private String lastQuery_;
+   private int[] lastMatches_;
+
+   private static final int TRIGRAM = 3;
+}
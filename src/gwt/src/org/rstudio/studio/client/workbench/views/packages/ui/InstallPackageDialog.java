@@ -29,13 +29,18 @@ import org.rstudio.studio.client.common.FileDialogs;
 import org.rstudio.studio.client.common.GlobalDisplay;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageCatalog;
+import org.rstudio.studio.client.workbench.views.packages.model.PackageIndex;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallContext;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallOptions;
 import org.rstudio.studio.client.workbench.views.packages.model.PackageInstallRequest;
 import org.rstudio.studio.client.workbench.views.packages.model.PackagesServerOperations;
 
+import java.util.ArrayList;
+
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.safehtml.shared.SafeHtmlUtils;
 import com.google.gwt.event.dom.client.ChangeEvent;
 import com.google.gwt.event.dom.client.ChangeHandler;
 import com.google.gwt.event.dom.client.ClickEvent;
@@ -49,9 +54,10 @@ import com.google.gwt.user.client.ui.HTML;
 import com.google.gwt.user.client.ui.HorizontalPanel;
 import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.ListBox;
-import com.google.gwt.user.client.ui.MultiWordSuggestOracle;
+import com.google.gwt.user.client.ui.MultiWordSuggestOracle.MultiWordSuggestion;
 import com.google.gwt.user.client.ui.SimplePanel;
 import com.google.gwt.user.client.ui.SuggestBox;
+import com.google.gwt.user.client.ui.SuggestOracle;
 import com.google.gwt.user.client.ui.TextBox;
 import com.google.gwt.user.client.ui.VerticalPanel;
 import com.google.gwt.user.client.ui.Widget;
@@ -327,20 +333,18 @@ public class InstallPackageDialog extends ModalDialog<PackageInstallRequest>
       
    };
    
-   private class PackageOracle extends MultiWordSuggestOracle
+   // strict (case-insensitive) prefix match against the package names
+   // available from the repository, which are fetched once per session
+   private class PackageOracle extends SuggestOracle
    {
       PackageOracle()
       {
-         // no separators (strict prefix match)
-         super("");
-         
-         server_.availablePackages(null,
-                                   new ServerRequestCallback<JsArrayString>() {
+         // start fetching the names (if necessary) as the dialog opens
+         packageCatalog_.withAvailablePackages(
+                                 new ServerRequestCallback<PackageIndex>() {
             @Override
-            public void onResponseReceived(JsArrayString packages)
+            public void onResponseReceived(PackageIndex index)
             {
-               for (int i=0; i<packages.length(); i++)
-                  add(packages.get(i));
             }
 
             @Override
@@ -351,6 +355,51 @@ public class InstallPackageDialog extends ModalDialog<PackageInstallRequest>
             }  
          });
       }
+      
+      @Override
+      public boolean isDisplayStringHTML()
+      {
+         return true;
+      }
+
+      @Override
+      public void requestSuggestions(final Request request,
+                                     final Callback callback)
+      {
+         packageCatalog_.withAvailablePackages(
+                                 new ServerRequestCallback<PackageIndex>() {
+            @Override
+            public void onResponseReceived(PackageIndex index)
+            {
+               String query = request.getQuery().trim();
+               ArrayList<Suggestion> suggestions = new ArrayList<Suggestion>();
+               if (query.length() > 0)
+               {
+                  for (int i : index.prefixMatches(query, request.getLimit()))
+                  {
+                     String name = index.getName(i);
+                     String display = 
+                        "<strong>" + 
+                        SafeHtmlUtils.htmlEscape(
+                                    name.substring(0, query.length())) +
+                        "</strong>" +
+                        SafeHtmlUtils.htmlEscape(
+                                    name.substring(query.length()));
+                     suggestions.add(new MultiWordSuggestion(name, display));
+                  }
+               }
+               callback.onSuggestionsReady(request, new Response(suggestions));
+            }
+
+            @Override
+            public void onError(ServerError error)
+            {
+               callback.onSuggestionsReady(
+                           request, 
+                           new Response(new ArrayList<Suggestion>()));
+            }  
+         });
+      }
    }
    
    static interface Styles extends CssResource
@@ -406,4 +455,7 @@ public class InstallPackageDialog extends ModalDialog<PackageInstallRequest>
    
    private final FileDialogs fileDialogs_ = 
       RStudioGinjector.INSTANCE.getFileDialogs();
+   
+   private final PackageCatalog packageCatalog_ = 
+      RStudioGinjector.INSTANCE.getPackageCatalog();
 }
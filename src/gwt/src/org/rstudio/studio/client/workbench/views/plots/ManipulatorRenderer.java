@@ -0,0 +1,318 @@
+/*
+ * ManipulatorRenderer.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.plots;
+
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.ImageElement;
+import com.google.gwt.json.client.JSONBoolean;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
+import com.google.gwt.user.client.Timer;
+
+import org.rstudio.studio.client.common.GlobalDisplay;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.views.plots.model.Manipulator;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsServerOperations;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsState;
+import org.rstudio.studio.client.workbench.views.plots.ui.manipulator.ManipulatorManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends manipulator values to the server for rendering, including the
+ * intermediate values reported while a slider is being dragged.
+ *
+ * At most one render is in flight at a time (a render completes when the
+ * resulting plots changed event arrives); values that change meanwhile are
+ * merged and sent once it completes, so only the latest values are ever
+ * rendered. Intermediate values are sent at most every
+ * LIVE_UPDATE_INTERVAL_MS.
+ *
+ * Rendered plots are cached by manipulator, plot size and control values
+ * so that returning to values which have already been rendered (e.g.
+ * scrubbing a slider back and forth) shows the plot immediately. The plot
+ * images are strongly named and kept alive by holding on to a loaded image
+ * element for each. A render that arrives after a cached plot has been
+ * shown for newer values is not displayed.
+ */
+public class ManipulatorRenderer
+{
+   public ManipulatorRenderer(PlotsServerOperations server,
+                              Plots.Display view,
+                              ManipulatorManager manipulatorManager,
+                              GlobalDisplay globalDisplay)
+   {
+      server_ = server;
+      view_ = view;
+      manipulatorManager_ = manipulatorManager;
+      globalDisplay_ = globalDisplay;
+   }
+
+   /**
+    * Records the newly rendered plot. Returns false if the plot has been
+    * superseded by a cached plot shown since it was requested (in which
+    * case it shouldn't be displayed).
+    */
+   public boolean onPlotsChanged(PlotsState plotsState)
+   {
+      Manipulator manipulator = plotsState.getManipulator();
+      if (manipulator == null || manipulator_ == null ||
+          !manipulator.getID().equals(manipulator_.getID()))
+      {
+         frames_.clear();
+      }
+      manipulator_ = manipulator;
+      width_ = plotsState.getWidth();
+      height_ = plotsState.getHeight();
+
+      boolean superseded = inFlight_ && lastCacheHitSeq_ > inFlightSeq_;
+      renderCompleted();
+
+      if (manipulator_ == null)
+         return true;
+
+      JSONObject values = getValues(manipulator_);
+      if (!plotsState.getFilename().startsWith("empty."))
+      {
+         ImageElement image = Document.get().createImageElement();
+         image.setSrc(server_.getGraphicsUrl(plotsState.getFilename()));
+         frames_.put(getKey(values), image);
+      }
+
+      // unless there are values still to be rendered the server's values
+      // are the current ones
+      if (pending_ == null && !inFlight_)
+         currentValues_ = values;
+
+      return !superseded;
+   }
+
+   /**
+    * Requests a render with the given values. Intermediate values (which
+    * will be followed by a final value) may be skipped.
+    */
+   public void setValues(JSONObject values, boolean isFinal)
+   {
+      if (currentValues_ == null)
+         currentValues_ = new JSONObject();
+
+      boolean isAction = false;
+      for (String variable : values.keySet())
+      {
+         if (isButton(variable))
+            isAction = true;
+         else
+            currentValues_.put(variable, values.get(variable));
+
+         if (pending_ == null)
+            pending_ = new JSONObject();
+         pending_.put(variable, values.get(variable));
+      }
+      pendingFinal_ |= isFinal;
+
+      if (isAction)
+      {
+         // a button's effect can't be predicted from the values
+         invalidate();
+      }
+      else if (manipulator_ != null)
+      {
+         ImageElement image = frames_.get(getKey(currentValues_));
+         if (image != null)
+         {
+            lastCacheHitSeq_ = ++seq_;
+            view_.showPlot(image.getSrc());
+
+            // intermediate values don't need rendering after all (the
+            // server is brought up to date with the final value)
+            if (!pendingFinal_)
+               pending_ = null;
+         }
+      }
+
+      sendPending();
+   }
+
+   /**
+    * Drops the cached plots (e.g. because the plot has been clicked and
+    * may no longer correspond to the values).
+    */
+   public void invalidate()
+   {
+      frames_.clear();
+   }
+
+   private void sendPending()
+   {
+      if (pending_ == null || inFlight_)
+         return;
+
+      // throttle intermediate values
+      if (!pendingFinal_)
+      {
+         long wait = lastSend_ + LIVE_UPDATE_INTERVAL_MS -
+                                             System.currentTimeMillis();
+         if (wait > 0)
+         {
+            throttleTimer_.schedule((int) wait);
+            return;
+         }
+      }
+
+      JSONObject values = pending_;
+      final boolean isFinal = pendingFinal_;
+      pending_ = null;
+      pendingFinal_ = false;
+
+      inFlight_ = true;
+      inFlightSeq_ = ++seq_;
+      lastSend_ = System.currentTimeMillis();
+      timeoutTimer_.schedule(RENDER_TIMEOUT_MS);
+
+      if (isFinal)
+         manipulatorManager_.setProgress(true);
+
+      server_.setManipulatorValues(values, new ServerRequestCallback<Void>()
+      {
+         @Override
+         public void onResponseReceived(Void response)
+         {
+            // the render completes when the plots changed event arrives
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            renderCompleted();
+            if (isFinal)
+            {
+               manipulatorManager_.setProgress(false);
+               globalDisplay_.showErrorMessage("Server Error",
+                                               error.getUserMessage());
+            }
+         }
+      });
+   }
+
+   private void renderCompleted()
+   {
+      timeoutTimer_.cancel();
+      if (inFlight_)
+      {
+         inFlight_ = false;
+         sendPending();
+      }
+   }
+
+   private boolean isButton(String variable)
+   {
+      if (manipulator_ == null)
+         return false;
+
+      Manipulator.Control control = manipulator_.getControl(variable);
+      return control != null &&
+             control.getType() == Manipulator.Control.BUTTON;
+   }
+
+   private String getKey(JSONObject values)
+   {
+      return manipulator_.getID() + ":" + width_ + "x" + height_ + ":" +
+             values.toString();
+   }
+
+   private static JSONObject getValues(Manipulator manipulator)
+   {
+      JSONObject values = new JSONObject();
+      JsArrayString variables = manipulator.getVariables();
+      if (variables == null)
+         return values;
+
+      for (int i=0; i<variables.length(); i++)
+      {
+         String variable = variables.get(i);
+         switch (manipulator.getControl(variable).getType())
+         {
+         case Manipulator.Control.SLIDER:
+            values.put(variable,
+                       new JSONNumber(manipulator.getDoubleValue(variable)));
+            break;
+         case Manipulator.Control.PICKER:
+            values.put(variable,
+                       new JSONString(manipulator.getStringValue(variable)));
+            break;
+         case Manipulator.Control.CHECKBOX:
+            values.put(variable, JSONBoolean.getInstance(
+                                    manipulator.getBooleanValue(variable)));
+            break;
+         }
+      }
+      return values;
+   }
+
+   private final PlotsServerOperations server_;
+   private final Plots.Display view_;
+   private final ManipulatorManager manipulatorManager_;
+   private final GlobalDisplay globalDisplay_;
+
+   private Manipulator manipulator_;
+   private int width_;
+   private int height_;
+   private JSONObject currentValues_;
+
+   // values changed since the last render was sent
+   private JSONObject pending_;
+   private boolean pendingFinal_;
+
+   private boolean inFlight_;
+   private int inFlightSeq_;
+   private int lastCacheHitSeq_;
+   private int seq_;
+   private long lastSend_;
+
+   private final Timer throttleTimer_ = new Timer() {
+      @Override
+      public void run()
+      {
+         sendPending();
+      }
+   };
+
+   // if a render never completes (e.g. it failed on the server) don't
+   // hold up subsequent values forever
+   private final Timer timeoutTimer_ = new Timer() {
+      @Override
+      public void run()
+      {
+         renderCompleted();
+      }
+   };
+
+   private final LinkedHashMap<String, ImageElement> frames_ =
+         new LinkedHashMap<String, ImageElement>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ImageElement> e)
+      {
+         return size() > MAX_FRAMES;
+      }
+   };
+
+   private static final int MAX_FRAMES = 50;
+   private static final int LIVE_UPDATE_INTERVAL_MS = 100;
+   private static final int RENDER_TIMEOUT_MS = 10000;
+}
@@ -0,0 +1,328 @@
+/*
+ * PlotHistory.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.plots;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.ImageElement;
+import com.google.gwt.user.client.Timer;
+
+import org.rstudio.core.client.jsonrpc.RequestLog;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.server.Void;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsServerOperations;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsState;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Client side cache of the plot history, so that flipping back and forth
+ * through the plots doesn't wait on the server to render each one.
+ *
+ * The image of each plot seen at the current size is remembered by plot
+ * index (plot images are strongly named, so a filename identifies one
+ * rendering of one plot, and a loaded image element is held for each to
+ * keep it in the browser's cache). When the session is idle the plots
+ * adjacent to the current one are rendered by the server at the current
+ * size and loaded in the background. The cache is dropped when the plot
+ * size or the number of plots changes.
+ *
+ * Navigating to a cached plot shows it straight away; the server is still
+ * asked to make it the active plot. The index each navigation request
+ * expects the server to show is remembered until the plots changed event
+ * for it arrives, and the events for plots that have been navigated past
+ * in the meantime are not displayed.
+ *
+ * Navigation and prefetches are recorded in the request log, along with
+ * the running hit, miss and prefetch counts.
+ */
+public class PlotHistory
+{
+   public PlotHistory(PlotsServerOperations server, Plots.Display view)
+   {
+      server_ = server;
+      view_ = view;
+   }
+
+   /**
+    * Records the newly rendered plot. Returns false if the plot has been
+    * superseded by navigation to another plot since it was requested (in
+    * which case it shouldn't be displayed).
+    */
+   public boolean onPlotsChanged(PlotsState plotsState)
+   {
+      if (plotsState.getWidth() != width_ ||
+          plotsState.getHeight() != height_ ||
+          plotsState.getPlotCount() != plotCount_)
+      {
+         // a plot was added or removed (e.g. by R code) so any navigation
+         // in progress is moot
+         if (plotsState.getPlotCount() != plotCount_)
+            expectedIndexes_.clear();
+         clear();
+      }
+      width_ = plotsState.getWidth();
+      height_ = plotsState.getHeight();
+      plotCount_ = plotsState.getPlotCount();
+
+      int plotIndex = plotsState.getPlotIndex();
+      String filename = plotsState.getFilename();
+      if (plotIndex >= 0 && !filename.startsWith("empty."))
+         put(plotIndex, filename);
+
+      // while navigation requests are outstanding only the plot navigated
+      // to last is displayed. The server processes the requests in order,
+      // so this event also accounts for any requests made before the one
+      // that expected it.
+      if (!expectedIndexes_.isEmpty())
+      {
+         int expected = expectedIndexes_.indexOf(plotIndex);
+         if (expected < 0)
+            return false;
+         for (int i = 0; i <= expected; i++)
+            expectedIndexes_.removeFirst();
+         if (!expectedIndexes_.isEmpty())
+            return false;
+      }
+
+      plotIndex_ = plotIndex;
+      prefetchTimer_.schedule(PREFETCH_DELAY_MS);
+      return true;
+   }
+
+   /**
+    * Navigates by offset plots (i.e. 1 for the next plot and -1 for the
+    * previous one), showing the plot straight away if it's cached. Returns
+    * false if it wasn't (in which case it will be shown when the server
+    * has rendered it).
+    */
+   public boolean navigate(int offset,
+                           final ServerRequestCallback<Void> callback)
+   {
+      // the plots haven't been seen yet (e.g. the pane is still loading)
+      // so leave it to the server
+      if (plotCount_ == 0)
+      {
+         navigateServer(offset, callback);
+         return false;
+      }
+
+      int plotIndex = plotIndex_ + offset;
+      if (plotIndex < 0 || plotIndex >= plotCount_)
+         return true;
+
+      plotIndex_ = plotIndex;
+      prefetchTimer_.cancel();
+
+      boolean hit = false;
+      HistoryEntry entry = entries_.get(getKey(plotIndex));
+      if (entry != null)
+      {
+         hit = true;
+         hits_++;
+         view_.showPlot(entry.image.getSrc());
+      }
+      else
+      {
+         misses_++;
+      }
+      log(hit ? "hit" : "miss", plotIndex);
+
+      // keep the server's active plot in step (this is what brings up the
+      // plot's manipulator and the like). The request is complete when the
+      // plots changed event for the plot arrives rather than when the call
+      // returns, as the event is sent separately.
+      final Integer expectedIndex = plotIndex;
+      expectedIndexes_.addLast(expectedIndex);
+      ServerRequestCallback<Void> navigationCallback =
+                                       new ServerRequestCallback<Void>()
+      {
+         @Override
+         public void onResponseReceived(Void response)
+         {
+            callback.onResponseReceived(response);
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            // the server didn't navigate so there won't be an event
+            expectedIndexes_.remove(expectedIndex);
+            callback.onError(error);
+         }
+      };
+      navigateServer(offset, navigationCallback);
+
+      if (hit)
+         prefetchTimer_.schedule(PREFETCH_DELAY_MS);
+      return hit;
+   }
+
+   private void navigateServer(int offset,
+                               ServerRequestCallback<Void> callback)
+   {
+      if (offset > 0)
+         server_.nextPlot(callback);
+      else
+         server_.previousPlot(callback);
+   }
+
+   public void clear()
+   {
+      generation_++;
+      entries_.clear();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "hits=" + hits_ + " misses=" + misses_ +
+             " prefetches=" + prefetches_ + " entries=" + entries_.size();
+   }
+
+   private void prefetch()
+   {
+      if (prefetchInFlight_ || !expectedIndexes_.isEmpty())
+         return;
+
+      // nearest plots first, in either direction
+      for (int distance = 1; distance <= PREFETCH_DISTANCE; distance++)
+      {
+         if (prefetch(plotIndex_ + distance) || prefetch(plotIndex_ - distance))
+            return;
+      }
+   }
+
+   private boolean prefetch(final int plotIndex)
+   {
+      if (plotIndex < 0 || plotIndex >= plotCount_ ||
+          entries_.containsKey(getKey(plotIndex)))
+      {
+         return false;
+      }
+
+      prefetches_++;
+      log("prefetch", plotIndex);
+
+      prefetchInFlight_ = true;
+      final int generation = generation_;
+      server_.getPlotImage(plotIndex, new ServerRequestCallback<String>()
+      {
+         @Override
+         public void onResponseReceived(String filename)
+         {
+            prefetchInFlight_ = false;
+
+            // if the plots changed while this was in flight then the image
+            // may be for another plot or size
+            if (generation != generation_)
+               return;
+
+            put(plotIndex, filename);
+            prefetch();
+         }
+
+         @Override
+         public void onError(ServerError error)
+         {
+            // a plot that can't be rendered will be reported when it is
+            // navigated to, so just stop prefetching for now
+            prefetchInFlight_ = false;
+         }
+      });
+      return true;
+   }
+
+   private void put(int plotIndex, String filename)
+   {
+      String key = getKey(plotIndex);
+      HistoryEntry entry = entries_.get(key);
+      if (entry != null && entry.filename.equals(filename))
+         return;
+
+      ImageElement image = Document.get().createImageElement();
+      image.setSrc(server_.getGraphicsUrl(filename));
+      entries_.put(key, new HistoryEntry(filename, image));
+   }
+
+   private String getKey(int plotIndex)
+   {
+      return plotIndex + ":" + width_ + "x" + height_;
+   }
+
+   private void log(String event, int plotIndex)
+   {
+      RequestLogEntry entry = RequestLog.log(
+            "plothistory" + (++logCounter_),
+            "{\"method\":\"plot_history\", \"event\":\"" + event +
+            "\", \"index\":" + plotIndex + "}");
+      entry.logResponse(ResponseType.Normal, toString());
+   }
+
+   private static class HistoryEntry
+   {
+      HistoryEntry(String filename, ImageElement image)
+      {
+         this.filename = filename;
+         this.image = image;
+      }
+
+      final String filename;
+      final ImageElement image;
+   }
+
+   private final PlotsServerOperations server_;
+   private final Plots.Display view_;
+
+   private int width_;
+   private int height_;
+   private int plotCount_;
+   private int plotIndex_;
+
+   // the plot index each outstanding navigation request expects, in the
+   // order the requests were made
+   private final LinkedList<Integer> expectedIndexes_ =
+                                             new LinkedList<Integer>();
+   private boolean prefetchInFlight_;
+   private int generation_;
+   private int hits_;
+   private int misses_;
+   private int prefetches_;
+   private int logCounter_;
+
+   private final Timer prefetchTimer_ = new Timer() {
+      @Override
+      public void run()
+      {
+         prefetch();
+      }
+   };
+
+   private final LinkedHashMap<String, HistoryEntry> entries_ =
+         new LinkedHashMap<String, HistoryEntry>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, HistoryEntry> e)
+      {
+         return size() > MAX_ENTRIES;
+      }
+   };
+
+   private static final int MAX_ENTRIES = 100;
+   private static final int PREFETCH_DISTANCE = 2;
+   private static final int PREFETCH_DELAY_MS = 500;
+}
@@ -0,0 +1,160 @@
+/*
+ * PlotResizer.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.plots;
+
+import com.google.gwt.user.client.Command;
+
+import org.rstudio.core.client.Size;
+import org.rstudio.core.client.jsonrpc.RequestLog;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+import org.rstudio.studio.client.workbench.views.plots.model.PlotsServerOperations;
+
+/**
+ * Keeps the plot looking right while the plots pane is being resized.
+ *
+ * The current plot image is stretched to the pane straight away (the plot
+ * frame does this by itself), and a quick low resolution rendering at the
+ * new size is shown over it as soon as it's available. Only one preview is
+ * requested at a time; sizes that go by while it renders are skipped in
+ * favor of the latest one. The full resolution plot is rendered by the
+ * server once the workbench metrics stop changing, and replaces the
+ * preview when it arrives (previews still in flight are then ignored).
+ *
+ * The time taken for each preview, and from the end of the resize to the
+ * full resolution plot, are recorded in the request log.
+ */
+public class PlotResizer
+{
+   public PlotResizer(PlotsServerOperations server, Plots.Display view)
+   {
+      server_ = server;
+      view_ = view;
+   }
+
+   public void onResize()
+   {
+      if (!hasPlot_)
+         return;
+
+      // nothing to do if the pane is hidden
+      Size size = view_.getPlotFrameSize();
+      if (size.width <= 0 || size.height <= 0)
+         return;
+
+      // back to the size the plot was rendered at (which the server won't
+      // render again) so put the plot back
+      if (size.equals(plotFrameSize_))
+      {
+         if (resizeStarted_ != 0)
+         {
+            cancelPreviews();
+            resizeStarted_ = 0;
+            view_.showPlot(view_.getPlotUrl());
+         }
+         return;
+      }
+
+      long now = System.currentTimeMillis();
+      if (resizeStarted_ == 0)
+         resizeStarted_ = now;
+      lastResize_ = now;
+
+      pendingSize_ = size;
+      requestPreview();
+   }
+
+   /**
+    * Called when the plots changed event arrives.
+    */
+   public void onPlotsChanged(boolean hasPlot)
+   {
+      hasPlot_ = hasPlot;
+
+      // a plot that arrives while the pane is still being resized was
+      // rendered for an earlier size, so keep previewing
+      long now = System.currentTimeMillis();
+      if (resizeStarted_ != 0 && now - lastResize_ < SETTLE_MS)
+         return;
+
+      plotFrameSize_ = view_.getPlotFrameSize();
+      if (resizeStarted_ != 0)
+      {
+         // the full resolution plot supersedes any previews
+         cancelPreviews();
+         log("final", now - lastResize_, now - resizeStarted_);
+         resizeStarted_ = 0;
+      }
+   }
+   
+   private void cancelPreviews()
+   {
+      generation_++;
+      inFlight_ = false;
+      pendingSize_ = null;
+   }
+
+   private void requestPreview()
+   {
+      if (inFlight_ || pendingSize_ == null)
+         return;
+
+      Size size = pendingSize_;
+      pendingSize_ = null;
+      inFlight_ = true;
+
+      final int generation = generation_;
+      final long requested = System.currentTimeMillis();
+      view_.showPlotPreview(
+            server_.getPlotPreviewUrl(size.width, size.height, PREVIEW_SCALE),
+            new Command() {
+               public void execute()
+               {
+                  if (generation != generation_)
+                     return;
+
+                  inFlight_ = false;
+                  long now = System.currentTimeMillis();
+                  log("preview", now - requested, now - resizeStarted_);
+                  requestPreview();
+               }
+            });
+   }
+
+   private void log(String event, long latency, long sinceResizeStarted)
+   {
+      RequestLogEntry entry = RequestLog.log(
+            "plotresize" + (++logCounter_),
+            "{\"method\":\"plot_resize\", \"event\":\"" + event + "\"}");
+      entry.logResponse(ResponseType.Normal,
+                        "latency=" + latency + "ms" +
+                        " since_resize_started=" + sinceResizeStarted + "ms");
+   }
+
+   private final PlotsServerOperations server_;
+   private final Plots.Display view_;
+
+   private boolean hasPlot_;
+   private Size plotFrameSize_;
+   private long resizeStarted_;
+   private long lastResize_;
+   private Size pendingSize_;
+   private boolean inFlight_;
+   private int generation_;
+   private int logCounter_;
+
+   // how long after the last resize the full resolution render is expected
+   // (Workbench sends the metrics 500ms after they stop changing)
+   private static final long SETTLE_MS = 500;
+   private static final double PREVIEW_SCALE = 0.5;
+}
@@ -16,9 +16,12 @@ import com.google.gwt.core.client.GWT;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.logical.shared.HasResizeHandlers;
+import com.google.gwt.event.logical.shared.ResizeEvent;
+import com.google.gwt.event.logical.shared.ResizeHandler;
 import com.google.gwt.event.logical.shared.SelectionEvent;
 import com.google.gwt.event.logical.shared.SelectionHandler;
 import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.HasWidgets;
 import com.google.gwt.user.client.ui.Panel;
@@ -76,6 +79,10 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
       void showPlot(String plotUrl);
       String getPlotUrl();
       
+      // show a (stretched) preview over the plot until the next plot is
+      // shown; onLoaded is executed once it has loaded or failed to load
+      void showPlotPreview(String previewUrl, Command onLoaded);
+      
       void refresh();
    
       Panel getPlotsSurface();
@@ -127,9 +134,14 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
             @Override
             public void onManipulatorChanged(JSONObject values)
             { 
-               server_.setManipulatorValues(values, 
-                                            new ManipulatorRequestCallback()); 
-            }           
+               manipulatorRenderer_.setValues(values, true);
+            }
+            
+            @Override
+            public void onManipulatorChanging(JSONObject values)
+            {
+               manipulatorRenderer_.setValues(values, false);
+            }
          },
          
          new ClickHandler() 
@@ -137,6 +149,8 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
             @Override
             public void onClick(ClickEvent event)
             {
+              // the clicked plot may not correspond to the values any more
+              manipulatorRenderer_.invalidate();
               server_.manipulatorPlotClicked(event.getX(), 
                                              event.getY(), 
                                              new ManipulatorRequestCallback());
@@ -144,6 +158,21 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
             }   
          }
       );
+      plotResizer_ = new PlotResizer(server_, view_);
+      view_.addResizeHandler(new ResizeHandler()
+      {
+         public void onResize(ResizeEvent event)
+         {
+            plotResizer_.onResize();
+         }
+      });
+      
+      manipulatorRenderer_ = new ManipulatorRenderer(server_,
+                                                     view_,
+                                                     manipulatorManager_,
+                                                     globalDisplay_);
+      
+      plotHistory_ = new PlotHistory(server_, view_);
 }
    
    public void onPlotsChanged(PlotsChangedEvent event)
@@ -155,12 +184,29 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
       view_.setProgress(false);
       manipulatorManager_.setProgress(false);
       
+      // history (always recorded, even if not displayed below)
+      boolean navigatedPast = !plotHistory_.onPlotsChanged(plotsState);
+      
+      // resizing
+      plotResizer_.onPlotsChanged(
+                        !plotsState.getFilename().startsWith("empty."));
+      
       // if this is the empty plot then clear the display
       // NOTE: we currently return a zero byte PNG as our "empty.png" from
       // the server. this is shown as a blank pane by Webkit, however
       // firefox shows the full URI of the empty.png rather than a blank
       // pane. therefore, we put in this workaround. 
-      if (plotsState.getFilename().startsWith("empty."))
+      if (!manipulatorRenderer_.onPlotsChanged(plotsState))
+      {
+         // a manipulator render superseded by a cached plot for newer
+         // values (which is already showing)
+      }
+      else if (navigatedPast)
+      {
+         // a plot which has since been navigated past (the plot navigated
+         // to is showing, or will be when it arrives)
+      }
+      else if (plotsState.getFilename().startsWith("empty."))
       {
          view_.showEmptyPlot(); 
       }
@@ -189,15 +235,22 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
    void onNextPlot()
    {
       view_.bringToFront();
-      setChangePlotProgress();
-      server_.nextPlot(new PlotRequestCallback());
+      changePlot(1);
    }
 
    void onPreviousPlot()
    {
       view_.bringToFront();
-      setChangePlotProgress();
-      server_.previousPlot(new PlotRequestCallback());
+      changePlot(-1);
+   }
+   
+   private void changePlot(int offset)
+   {
+      // show progress only if the plot isn't in the history cache
+      if (plotHistory_.navigate(offset, new PlotRequestCallback()))
+         view_.setProgress(false);
+      else
+         setChangePlotProgress();
    }
    
    void onRemovePlot()
@@ -538,6 +591,9 @@ public class Plots extends BasePresenter implements PlotsChangedHandler,
    private final Provider<UIPrefs> uiPrefs_;
    private final Locator locator_;
    private final ManipulatorManager manipulatorManager_;
+   private final ManipulatorRenderer manipulatorRenderer_;
+   private final PlotResizer plotResizer_;
+   private final PlotHistory plotHistory_;
    
    // export plot impl
    private final ExportPlot exportPlot_ ;
@@ -14,11 +14,17 @@
 package org.rstudio.studio.client.workbench.views.plots;
 
 import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ErrorEvent;
+import com.google.gwt.event.dom.client.ErrorHandler;
+import com.google.gwt.event.dom.client.LoadEvent;
+import com.google.gwt.event.dom.client.LoadHandler;
 import com.google.gwt.event.logical.shared.HasResizeHandlers;
 import com.google.gwt.event.logical.shared.ResizeEvent;
 import com.google.gwt.event.logical.shared.ResizeHandler;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.Image;
 import com.google.gwt.user.client.ui.LayoutPanel;
 import com.google.gwt.user.client.ui.Panel;
 import com.google.gwt.user.client.ui.Widget;
@@ -66,6 +72,28 @@ public class PlotsPane extends WorkbenchPane implements Plots.Display,
       panel_.add(frame_);
       panel_.setWidgetTopBottom(frame_, 0, Unit.PX, 0, Unit.PX);
       panel_.setWidgetLeftRight(frame_, 0, Unit.PX, 0, Unit.PX);
+      
+      // low resolution previews shown over the plot while resizing
+      previewImage_ = new Image();
+      previewImage_.setSize("100%", "100%");
+      previewImage_.setVisible(false);
+      previewImage_.addLoadHandler(new LoadHandler() {
+         public void onLoad(LoadEvent event)
+         {
+            if (previewOnLoaded_ != null)
+               previewImage_.setVisible(true);
+            previewLoaded();
+         }
+      });
+      previewImage_.addErrorHandler(new ErrorHandler() {
+         public void onError(ErrorEvent event)
+         {
+            previewLoaded();
+         }
+      });
+      panel_.add(previewImage_);
+      panel_.setWidgetTopBottom(previewImage_, 0, Unit.PX, 0, Unit.PX);
+      panel_.setWidgetLeftRight(previewImage_, 0, Unit.PX, 0, Unit.PX);
 
       // Stops mouse events from being routed to the iframe, which would
       // interfere with dragging the workbench pane sizer. also provide
@@ -86,7 +114,10 @@ public class PlotsPane extends WorkbenchPane implements Plots.Display,
    {
       // also set frame to about:blank during progress
       if (enabled)
+      {
          frame_.setImageUrl(null);
+         hidePlotPreview();
+      }
 
       super.setProgress(enabled);
    }
@@ -94,6 +125,7 @@ public class PlotsPane extends WorkbenchPane implements Plots.Display,
    public void showEmptyPlot()
    {
       frame_.setImageUrl(null);
+      hidePlotPreview();
    }
 
    public void showPlot(String plotUrl)
@@ -102,8 +134,40 @@ public class PlotsPane extends WorkbenchPane implements Plots.Display,
       plotUrl_ = plotUrl;
 
       // use frame.contentWindow.location.replace to avoid having the plot
-      // enter the browser's history
-      frame_.setImageUrl(plotUrl);
+      // enter the browser's history. keep showing the preview (if any)
+      // until the plot has loaded, unless a newer preview has been
+      // requested in the meantime
+      final int previewGeneration = previewGeneration_;
+      frame_.setImageUrl(plotUrl, new Command() {
+         public void execute()
+         {
+            if (previewGeneration == previewGeneration_)
+               hidePlotPreview();
+         }
+      });
+   }
+   
+   public void showPlotPreview(String previewUrl, Command onLoaded)
+   {
+      previewGeneration_++;
+      previewLoaded();
+      previewOnLoaded_ = onLoaded;
+      previewImage_.setUrl(previewUrl);
+   }
+   
+   private void hidePlotPreview()
+   {
+      previewGeneration_++;
+      previewLoaded();
+      previewImage_.setVisible(false);
+   }
+   
+   private void previewLoaded()
+   {
+      Command onLoaded = previewOnLoaded_;
+      previewOnLoaded_ = null;
+      if (onLoaded != null)
+         onLoaded.execute();
    }
        
    public String getPlotUrl()
@@ -147,6 +211,9 @@ public class PlotsPane extends WorkbenchPane implements Plots.Display,
 
    private LayoutPanel panel_;
    private ImageFrame frame_;
+   private Image previewImage_;
+   private Command previewOnLoaded_;
+   private int previewGeneration_;
    private String plotUrl_;
    private final Commands commands_;
    private PlotsToolbar plotsToolbar_ = null;
@@ -30,9 +30,17 @@ public interface PlotsServerOperations
                            int height, 
                            boolean attachment);
    
+   // low resolution rendering of the plot (scale times as many pixels) with
+   // the layout it would have at width x height
+   String getPlotPreviewUrl(int width, int height, double scale);
+   
    void nextPlot(ServerRequestCallback<Void> requestCallback);
    void previousPlot(ServerRequestCallback<Void> requestCallback);
    
+   // filename of the image of the plot at the given index rendered at the
+   // current size (the active plot isn't changed)
+   void getPlotImage(int index, ServerRequestCallback<String> requestCallback);
+   
    void removePlot(ServerRequestCallback<Void> requestCallback);
    
    void clearPlots(ServerRequestCallback<Void> requestCallback);
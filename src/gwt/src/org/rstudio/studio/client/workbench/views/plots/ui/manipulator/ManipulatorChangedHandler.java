@@ -17,4 +17,8 @@ import com.google.gwt.json.client.JSONObject;
 public interface ManipulatorChangedHandler
 {
    void onManipulatorChanged(JSONObject values);
+   
+   // called repeatedly while a value is being changed (e.g. as a slider
+   // is dragged), before onManipulatorChanged is called with the final value
+   void onManipulatorChanging(JSONObject values);
 }
\ No newline at end of file
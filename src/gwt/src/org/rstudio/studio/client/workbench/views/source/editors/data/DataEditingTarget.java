@@ -71,6 +71,7 @@ public class DataEditingTarget extends UrlContentEditingTarget
    {
       DataEditingTargetWidget view = new DataEditingTargetWidget(
             commands_,
+            server_,
             getDataItem());
       view.setSize("100%", "100%");
       progressPanel_.setWidget(view);
@@ -137,6 +138,7 @@ public class DataEditingTarget extends UrlContentEditingTarget
                            }
                         });
 
+                  removeCachedData();
                   data.fillProperties(doc_.getProperties());
                   reloadDisplay();
                }
@@ -150,5 +152,30 @@ public class DataEditingTarget extends UrlContentEditingTarget
             });
    }
 
+   @Override
+   public void onDismiss()
+   {
+      removeCachedData();
+      super.onDismiss();
+   }
+
+   // Lets the session drop the data it was keeping for paging
+   private void removeCachedData()
+   {
+      String cacheKey = getDataItem().getCacheKey();
+      if (cacheKey == null)
+         return;
+
+      server_.removeDataViewerData(cacheKey,
+                                   new ServerRequestCallback<Void>()
+                                   {
+                                      @Override
+                                      public void onError(ServerError error)
+                                      {
+                                         Debug.logError(error);
+                                      }
+                                   });
+   }
+
    private SimplePanelWithProgress progressPanel_;
 }
@@ -14,18 +14,25 @@ package org.rstudio.studio.client.workbench.views.source.editors.data;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.KeyCodes;
+import com.google.gwt.event.dom.client.KeyDownEvent;
+import com.google.gwt.event.dom.client.KeyDownHandler;
+import com.google.gwt.event.dom.client.LoadEvent;
+import com.google.gwt.event.dom.client.LoadHandler;
 import com.google.gwt.resources.client.ClientBundle;
 import com.google.gwt.resources.client.CssResource;
 import com.google.gwt.user.client.ui.*;
 
 import org.rstudio.core.client.StringUtil;
 import org.rstudio.core.client.dom.IFrameElementEx;
+import org.rstudio.core.client.widget.TextBoxWithCue;
 import org.rstudio.core.client.widget.Toolbar;
 import org.rstudio.studio.client.workbench.commands.Commands;
 import org.rstudio.studio.client.workbench.views.source.PanelWithToolbars;
 import org.rstudio.studio.client.workbench.views.source.editors.EditingTargetToolbar;
 import org.rstudio.studio.client.workbench.views.source.editors.urlcontent.UrlContentEditingTarget;
 import org.rstudio.studio.client.workbench.views.source.model.DataItem;
+import org.rstudio.studio.client.workbench.views.source.model.SourceServerOperations;
 
 public class DataEditingTargetWidget extends Composite
    implements UrlContentEditingTarget.Display
@@ -44,6 +51,9 @@ public class DataEditingTargetWidget extends Composite
       String statusBar();
       String statusBarDisplayed();
       String statusBarOmitted();
+      String statusBarError();
+      String filter();
+      String printFrame();
    }
 
    static
@@ -51,11 +61,86 @@ public class DataEditingTargetWidget extends Composite
       resources.styles().ensureInjected();
    }
 
-   public DataEditingTargetWidget(Commands commands, DataItem dataItem)
+   public DataEditingTargetWidget(Commands commands,
+                                  SourceServerOperations server,
+                                  DataItem dataItem)
    {
-      Styles styles = resources.styles();
-
       commands_ = commands;
+      dataItem_ = dataItem;
+
+      Widget mainWidget;
+      if (dataItem.getCacheKey() != null)
+         mainWidget = createPagedView(server);
+      else
+         mainWidget = createStaticView();
+
+      PanelWithToolbars panel = new PanelWithToolbars(
+                                 createToolbar(dataItem, resources.styles()),
+                                 mainWidget);
+
+      initWidget(panel);
+   }
+
+   // Pages through the data kept by the session, sorting and filtering it
+   // there
+   private Widget createPagedView(SourceServerOperations server)
+   {
+      final Styles styles = resources.styles();
+
+      statusBar_ = new FlowPanel();
+      statusBar_.setStylePrimaryName(styles.statusBar());
+      statusBar_.setSize("100%", "100%");
+      final Label status = new Label();
+      status.addStyleName(styles.statusBarDisplayed());
+      final Label error = new Label();
+      error.addStyleName(styles.statusBarError());
+      statusBar_.add(status);
+      statusBar_.add(error);
+
+      table_ = new PagedDataTable(
+            server,
+            dataItem_.getCacheKey(),
+            dataItem_.getTotalObservations(),
+            dataItem_.getVariables(),
+            new PagedDataTable.Observer()
+            {
+               public void onStatusChanged(String text)
+               {
+                  status.setText(text);
+                  error.setText("");
+               }
+
+               public void onError(String message)
+               {
+                  error.setText(message);
+               }
+
+               public void onUnavailable()
+               {
+                  // e.g. the session was restarted; show what was captured
+                  // when View() was called
+                  pagedPanel_.setWidget(createStaticView());
+                  filter_.setVisible(false);
+               }
+            });
+      table_.setSize("100%", "100%");
+
+      DockLayoutPanel dockPanel = new DockLayoutPanel(Unit.PX);
+      dockPanel.addSouth(statusBar_, 20);
+      dockPanel.add(table_);
+      dockPanel.setSize("100%", "100%");
+
+      pagedPanel_ = new SimpleLayoutPanel();
+      pagedPanel_.setWidget(dockPanel);
+      pagedPanel_.setSize("100%", "100%");
+      return pagedPanel_;
+   }
+
+   // The first rows and columns of the data, as a static page
+   private Widget createStaticView()
+   {
+      Styles styles = resources.styles();
+      DataItem dataItem = dataItem_;
 
       frame_ = new Frame(dataItem.getContentUrl());
       frame_.setSize("100%", "100%");
@@ -91,12 +176,7 @@ public class DataEditingTargetWidget extends Composite
          mainWidget = dockPanel;
       }
 
-      PanelWithToolbars panel = new PanelWithToolbars(createToolbar(dataItem,
-                                                                  styles),
-                                                    mainWidget);
-
-      initWidget(panel);
-
+      return mainWidget;
    }
 
    private Toolbar createToolbar(DataItem dataItem, Styles styles)
@@ -111,6 +191,24 @@ public class DataEditingTargetWidget extends Composite
 
       Toolbar toolbar = new EditingTargetToolbar(commands_);
       toolbar.addLeftWidget(commands_.popoutDoc().createToolbarButton());
+      if (table_ != null)
+      {
+         filter_ = new TextBoxWithCue("Filter (e.g. age > 30)");
+         filter_.addStyleName(styles.filter());
+         filter_.addKeyDownHandler(new KeyDownHandler()
+         {
+            public void onKeyDown(KeyDownEvent event)
+            {
+               if (event.getNativeKeyCode() == KeyCodes.KEY_ENTER)
+               {
+                  event.preventDefault();
+                  table_.setFilter(filter_.getText());
+               }
+            }
+         });
+         toolbar.addLeftSeparator();
+         toolbar.addLeftWidget(filter_);
+      }
       toolbar.addRightWidget(description);
       
       return toolbar;
@@ -118,7 +216,37 @@ public class DataEditingTargetWidget extends Composite
 
    public void print()
    {
-      IFrameElementEx frameEl = (IFrameElementEx) frame_.getElement().cast();
+      if (frame_ != null)
+      {
+         printFrame(frame_);
+         return;
+      }
+
+      // the paged view prints the static page, which is only loaded when
+      // it's needed
+      if (printFrame_ == null)
+      {
+         printFrame_ = new Frame();
+         printFrame_.setStylePrimaryName(resources.styles().printFrame());
+         printFrame_.addDomHandler(new LoadHandler()
+         {
+            public void onLoad(LoadEvent event)
+            {
+               printFrame(printFrame_);
+            }
+         }, LoadEvent.getType());
+         statusBar_.add(printFrame_);
+         printFrame_.setUrl(dataItem_.getContentUrl());
+      }
+      else
+      {
+         printFrame(printFrame_);
+      }
+   }
+
+   private void printFrame(Frame frame)
+   {
+      IFrameElementEx frameEl = (IFrameElementEx) frame.getElement().cast();
       frameEl.getContentWindow().print();
    }
 
@@ -128,5 +256,13 @@ public class DataEditingTargetWidget extends Composite
    }
 
    private final Commands commands_;
+   private final DataItem dataItem_;
    private Frame frame_;
+
+   // paged view
+   private PagedDataTable table_;
+   private TextBoxWithCue filter_;
+   private SimpleLayoutPanel pagedPanel_;
+   private FlowPanel statusBar_;
+   private Frame printFrame_;
 }
@@ -0,0 +1,678 @@
+/*
+ * PagedDataTable.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.editors.data;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JsArrayNumber;
+import com.google.gwt.core.client.JsArrayString;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+import com.google.gwt.event.logical.shared.ResizeEvent;
+import com.google.gwt.event.logical.shared.ResizeHandler;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.resources.client.ClientBundle;
+import com.google.gwt.resources.client.CssResource;
+import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.google.gwt.user.client.Window;
+import com.google.gwt.user.client.ui.*;
+
+import org.rstudio.core.client.StringUtil;
+import org.rstudio.studio.client.server.ServerError;
+import org.rstudio.studio.client.server.ServerRequestCallback;
+import org.rstudio.studio.client.workbench.views.source.model.DataWindow;
+import org.rstudio.studio.client.workbench.views.source.model.SourceServerOperations;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shows data passed to View() a block at a time. The scroll area is sized
+ * for all of the rows and columns, but only the cells in view are rendered,
+ * and they are fetched from the session (sorted and filtered there) in
+ * blocks of BLOCK_ROWS by BLOCK_COLUMNS. The most recently viewed blocks
+ * are kept, and the block below the view is prefetched.
+ *
+ * The header and row numbers are separate panes that follow the scroll
+ * position of the cells. Browsers limit how tall an element can be, so
+ * very long data is laid out in pages of PAGE_HEIGHT pixels that are each
+ * shifted up a little further, so that together they fit in
+ * MAX_SCROLL_HEIGHT. Scrolling moves through the rows a pixel at a time
+ * (moving on to the next page as it is reached), while jumps of more than
+ * a screen, e.g. dragging the scrollbar, land on the page at that
+ * proportion of the data.
+ */
+public class PagedDataTable extends Composite
+{
+   interface Resources extends ClientBundle
+   {
+      @Source("PagedDataTable.css")
+      Styles styles();
+   }
+   private static Resources resources = GWT.create(Resources.class);
+
+   public interface Styles extends CssResource
+   {
+      String corner();
+      String header();
+      String rowNumbers();
+      String body();
+      String spacer();
+      String grid();
+      String loading();
+      String sortIndicator();
+   }
+
+   static
+   {
+      resources.styles().ensureInjected();
+   }
+
+   public interface Observer
+   {
+      void onStatusChanged(String status);
+      void onError(String message);
+
+      // the session no longer has the data
+      void onUnavailable();
+   }
+
+   public PagedDataTable(SourceServerOperations server,
+                         String cacheKey,
+                         int totalRows,
+                         int totalColumns,
+                         Observer observer)
+   {
+      server_ = server;
+      cacheKey_ = cacheKey;
+      totalRows_ = totalRows;
+      unfilteredRows_ = totalRows;
+      totalColumns_ = totalColumns;
+      observer_ = observer;
+
+      Styles styles = resources.styles();
+
+      HTML corner = new HTML();
+      corner.setStylePrimaryName(styles.corner());
+
+      header_ = new HTML();
+      header_.setStylePrimaryName(styles.header());
+      headerSpacer_ = createSpacer(header_);
+      header_.addClickHandler(new ClickHandler()
+      {
+         public void onClick(ClickEvent event)
+         {
+            Element el = Element.as(event.getNativeEvent().getEventTarget());
+            for (; el != null && el != header_.getElement();
+                 el = el.getParentElement())
+            {
+               String column = el.getAttribute(COLUMN_ATTRIBUTE);
+               if (!StringUtil.isNullOrEmpty(column))
+               {
+                  toggleSort(Integer.parseInt(column));
+                  return;
+               }
+            }
+         }
+      });
+
+      rowNumbers_ = new HTML();
+      rowNumbers_.setStylePrimaryName(styles.rowNumbers());
+      rowNumberSpacer_ = createSpacer(rowNumbers_);
+
+      HTML cells = new HTML();
+      cellSpacer_ = createSpacer(cells);
+      body_ = new ScrollPanel(cells);
+      body_.setStylePrimaryName(styles.body());
+      body_.addScrollHandler(new ScrollHandler()
+      {
+         public void onScroll(ScrollEvent event)
+         {
+            header_.getElement().setScrollLeft(
+                                 body_.getElement().getScrollLeft());
+            rowNumbers_.getElement().setScrollTop(
+                                 body_.getElement().getScrollTop());
+
+            // try blocks that failed to load again
+            fetchFailed_ = false;
+            scheduleRender();
+         }
+      });
+
+      LayoutPanel panel = new LayoutPanel();
+      panel.add(corner);
+      panel.setWidgetLeftWidth(corner, 0, Unit.PX, ROW_NUMBER_WIDTH, Unit.PX);
+      panel.setWidgetTopHeight(corner, 0, Unit.PX, HEADER_HEIGHT, Unit.PX);
+      panel.add(header_);
+      panel.setWidgetLeftRight(header_, ROW_NUMBER_WIDTH, Unit.PX, 0, Unit.PX);
+      panel.setWidgetTopHeight(header_, 0, Unit.PX, HEADER_HEIGHT, Unit.PX);
+      panel.add(rowNumbers_);
+      panel.setWidgetLeftWidth(rowNumbers_, 0, Unit.PX,
+                               ROW_NUMBER_WIDTH, Unit.PX);
+      panel.setWidgetTopBottom(rowNumbers_, HEADER_HEIGHT, Unit.PX,
+                               0, Unit.PX);
+      panel.add(body_);
+      panel.setWidgetLeftRight(body_, ROW_NUMBER_WIDTH, Unit.PX, 0, Unit.PX);
+      panel.setWidgetTopBottom(body_, HEADER_HEIGHT, Unit.PX, 0, Unit.PX);
+
+      initWidget(panel);
+   }
+
+   // The element that gives a pane its scroll extent, and holds the
+   // rendered table
+   private static Element createSpacer(HTML pane)
+   {
+      pane.setHTML("<div class=\"" + resources.styles().spacer() +
+                   "\"></div>");
+      return pane.getElement().getFirstChildElement();
+   }
+
+   @Override
+   protected void onLoad()
+   {
+      super.onLoad();
+      resizeReg_ = Window.addResizeHandler(new ResizeHandler()
+      {
+         public void onResize(ResizeEvent event)
+         {
+            scheduleRender();
+         }
+      });
+      updateExtent();
+      scheduleRender();
+   }
+
+   @Override
+   protected void onUnload()
+   {
+      resizeReg_.removeHandler();
+      resizeReg_ = null;
+      super.onUnload();
+   }
+
+   /**
+    * Shows only the rows for which the given R expression (evaluated with
+    * the columns as variables) is TRUE; an empty filter shows all rows.
+    */
+   public void setFilter(String filter)
+   {
+      filter = StringUtil.notNull(filter).trim();
+      if (filter.equals(filter_))
+         return;
+      filter_ = filter;
+      reset();
+   }
+
+   private void toggleSort(int column)
+   {
+      if (column == sortColumn_)
+      {
+         sortAscending_ = !sortAscending_;
+      }
+      else
+      {
+         sortColumn_ = column;
+         sortAscending_ = true;
+      }
+      reset();
+   }
+
+   // Forgets the blocks of the previous sort/filter and goes back to the
+   // first row (the column position is kept)
+   private void reset()
+   {
+      generation_++;
+      blocks_.clear();
+      rowNumberBlocks_.clear();
+      pending_.clear();
+      fetchFailed_ = false;
+      pageOffset_ = 0;
+      lastScrollTop_ = 0;
+      body_.getElement().setScrollTop(0);
+      rowNumbers_.getElement().setScrollTop(0);
+      scheduleRender();
+   }
+
+   private void scheduleRender()
+   {
+      if (renderPending_)
+         return;
+      renderPending_ = true;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         public void execute()
+         {
+            renderPending_ = false;
+            if (isAttached())
+               render();
+         }
+      });
+   }
+
+   // Sizes the scroll areas for all of the rows and columns
+   private void updateExtent()
+   {
+      scrollHeight_ = Math.min((double)totalRows_ * ROW_HEIGHT,
+                               MAX_SCROLL_HEIGHT);
+      int width = totalColumns_ * COLUMN_WIDTH;
+
+      cellSpacer_.getStyle().setWidth(width, Unit.PX);
+      cellSpacer_.getStyle().setHeight(scrollHeight_, Unit.PX);
+
+      // the header and row numbers have no scrollbars, so they need some
+      // extra room to scroll as far as the cells can
+      headerSpacer_.getStyle().setWidth(width + SCROLLBAR_ALLOWANCE, Unit.PX);
+      headerSpacer_.getStyle().setHeight(HEADER_HEIGHT, Unit.PX);
+      rowNumberSpacer_.getStyle().setWidth(ROW_NUMBER_WIDTH, Unit.PX);
+      rowNumberSpacer_.getStyle().setHeight(
+                           scrollHeight_ + SCROLLBAR_ALLOWANCE, Unit.PX);
+   }
+
+   private void render()
+   {
+      Element body = body_.getElement();
+      int viewHeight = body.getClientHeight();
+      int viewWidth = body.getClientWidth();
+      int scrollTop = body.getScrollTop();
+      int scrollLeft = body.getScrollLeft();
+
+      double dataHeight = (double)totalRows_ * ROW_HEIGHT;
+      if (dataHeight > scrollHeight_)
+         scrollTop = updatePageOffset(scrollTop, viewHeight, dataHeight);
+      else
+         pageOffset_ = 0;
+      lastScrollTop_ = scrollTop;
+
+      int visibleRows = viewHeight / ROW_HEIGHT + 2;
+      int firstRow = (int)((scrollTop + pageOffset_) / ROW_HEIGHT);
+      firstRow = Math.max(0, Math.min(firstRow, totalRows_ - 1));
+      int lastRow = Math.min(totalRows_, firstRow + visibleRows);
+      int top = (int)((double)firstRow * ROW_HEIGHT - pageOffset_);
+
+      int firstColumn = Math.min(scrollLeft / COLUMN_WIDTH,
+                                 Math.max(0, totalColumns_ - 1));
+      int lastColumn = Math.min(totalColumns_,
+                                firstColumn + viewWidth / COLUMN_WIDTH + 2);
+
+      fetchBlocks(firstRow, lastRow, firstColumn, lastColumn);
+
+      renderHeader(firstColumn, lastColumn);
+      renderRowNumbers(firstRow, lastRow, top);
+      renderCells(firstRow, lastRow, firstColumn, lastColumn, top);
+
+      updateStatus(firstRow, lastRow);
+   }
+
+   // Picks the page of the data shown at the given scroll position (see
+   // the class comment), and returns the scroll position, which moves back
+   // when a scroll crosses into the next page
+   private int updatePageOffset(int scrollTop,
+                                int viewHeight,
+                                double dataHeight)
+   {
+      int pages = (int)Math.ceil(dataHeight / PAGE_HEIGHT);
+      double pageShift = (dataHeight - scrollHeight_) / Math.max(1, pages - 1);
+
+      int page;
+      if (Math.abs(scrollTop - lastScrollTop_) < viewHeight)
+      {
+         // scrolled within or onto the next page, so keep the position in
+         // the data and adjust the scroll position to the page's shift
+         double dataTop = Math.max(0, Math.min(scrollTop + pageOffset_,
+                                               dataHeight - viewHeight));
+         page = Math.min(pages - 1, (int)(dataTop / PAGE_HEIGHT));
+         pageOffset_ = Math.round(page * pageShift);
+
+         int newScrollTop = (int)Math.round(dataTop - pageOffset_);
+         if (newScrollTop != scrollTop)
+         {
+            body_.getElement().setScrollTop(newScrollTop);
+            rowNumbers_.getElement().setScrollTop(newScrollTop);
+            scrollTop = newScrollTop;
+         }
+      }
+      else
+      {
+         double maxScroll = Math.max(1, scrollHeight_ - viewHeight);
+         double dataTop = scrollTop * ((dataHeight - viewHeight) / maxScroll);
+         page = Math.min(pages - 1, (int)(dataTop / PAGE_HEIGHT));
+         pageOffset_ = Math.round(page * pageShift);
+      }
+
+      return scrollTop;
+   }
+
+   private void renderHeader(int firstColumn, int lastColumn)
+   {
+      Styles styles = resources.styles();
+      SafeHtmlBuilder sb = new SafeHtmlBuilder();
+      sb.appendHtmlConstant("<table class=\"" + styles.grid() + "\" " +
+                            "style=\"left: " + firstColumn * COLUMN_WIDTH +
+                            "px; width: " +
+                            (lastColumn - firstColumn) * COLUMN_WIDTH +
+                            "px\"><tr>");
+      for (int col = firstColumn; col < lastColumn; col++)
+      {
+         String name = columnNames_.get(col);
+         sb.appendHtmlConstant("<th " + COLUMN_ATTRIBUTE + "=\"" + col +
+                               "\">");
+         sb.appendEscaped(name != null ? name : "");
+         if (col == sortColumn_)
+         {
+            sb.appendHtmlConstant("<span class=\"" + styles.sortIndicator() +
+                                  "\">" +
+                                  (sortAscending_ ? "&#9650;" : "&#9660;") +
+                                  "</span>");
+         }
+         sb.appendHtmlConstant("</th>");
+      }
+      sb.appendHtmlConstant("</tr></table>");
+
+      headerSpacer_.setInnerHTML(sb.toSafeHtml().asString());
+   }
+
+   private void renderRowNumbers(int firstRow, int lastRow, int top)
+   {
+      Styles styles = resources.styles();
+      SafeHtmlBuilder sb = new SafeHtmlBuilder();
+      sb.appendHtmlConstant("<table class=\"" + styles.grid() + "\" " +
+                            "style=\"top: " + top + "px; width: " +
+                            ROW_NUMBER_WIDTH + "px\">");
+      for (int row = firstRow; row < lastRow; row++)
+      {
+         JsArrayNumber rowNumbers = rowNumberBlocks_.get(row / BLOCK_ROWS);
+         int index = row % BLOCK_ROWS;
+         sb.appendHtmlConstant("<tr><td>");
+         if (rowNumbers != null && index < rowNumbers.length())
+            sb.append((int)rowNumbers.get(index));
+         sb.appendHtmlConstant("</td></tr>");
+      }
+      sb.appendHtmlConstant("</table>");
+
+      rowNumberSpacer_.setInnerHTML(sb.toSafeHtml().asString());
+   }
+
+   private void renderCells(int firstRow,
+                            int lastRow,
+                            int firstColumn,
+                            int lastColumn,
+                            int top)
+   {
+      Styles styles = resources.styles();
+      SafeHtmlBuilder sb = new SafeHtmlBuilder();
+      sb.appendHtmlConstant("<table class=\"" + styles.grid() + "\" " +
+                            "style=\"top: " + top + "px; left: " +
+                            firstColumn * COLUMN_WIDTH + "px; width: " +
+                            (lastColumn - firstColumn) * COLUMN_WIDTH +
+                            "px\">");
+      for (int row = firstRow; row < lastRow; row++)
+      {
+         sb.appendHtmlConstant("<tr>");
+         Block block = null;
+         for (int col = firstColumn; col < lastColumn; col++)
+         {
+            if (block == null || col >= block.columnStart + block.columns.length)
+               block = blocks_.get(blockKey(row / BLOCK_ROWS,
+                                            col / BLOCK_COLUMNS));
+            if (block == null || row - block.rowStart >= block.rowCount())
+            {
+               sb.appendHtmlConstant("<td class=\"" + styles.loading() +
+                                     "\"></td>");
+            }
+            else
+            {
+               sb.appendHtmlConstant("<td>");
+               JsArrayString column = block.columns[col - block.columnStart];
+               sb.appendEscaped(column.get(row - block.rowStart));
+               sb.appendHtmlConstant("</td>");
+            }
+         }
+         sb.appendHtmlConstant("</tr>");
+      }
+      sb.appendHtmlConstant("</table>");
+
+      cellSpacer_.setInnerHTML(sb.toSafeHtml().asString());
+   }
+
+   private void fetchBlocks(int firstRow,
+                            int lastRow,
+                            int firstColumn,
+                            int lastColumn)
+   {
+      if (lastRow <= firstRow || lastColumn <= firstColumn)
+         return;
+
+      int firstBlockRow = firstRow / BLOCK_ROWS;
+      int lastBlockRow = (lastRow - 1) / BLOCK_ROWS;
+      int firstBlockColumn = firstColumn / BLOCK_COLUMNS;
+      int lastBlockColumn = (lastColumn - 1) / BLOCK_COLUMNS;
+
+      for (int r = firstBlockRow; r <= lastBlockRow; r++)
+      {
+         for (int c = firstBlockColumn; c <= lastBlockColumn; c++)
+            fetchBlock(r, c);
+      }
+
+      // prefetch the block below the view, for scrolling down
+      if (pending_.isEmpty() && (lastBlockRow + 1) * BLOCK_ROWS < totalRows_)
+      {
+         for (int c = firstBlockColumn; c <= lastBlockColumn; c++)
+            fetchBlock(lastBlockRow + 1, c);
+      }
+   }
+
+   private void fetchBlock(final int blockRow, final int blockColumn)
+   {
+      final String key = blockKey(blockRow, blockColumn);
+      if (blocks_.containsKey(key) || pending_.contains(key) || fetchFailed_)
+      {
+         return;
+      }
+      pending_.add(key);
+
+      final int generation = generation_;
+      server_.getDataWindow(
+            cacheKey_,
+            blockRow * BLOCK_ROWS,
+            BLOCK_ROWS,
+            blockColumn * BLOCK_COLUMNS,
+            BLOCK_COLUMNS,
+            sortColumn_,
+            sortAscending_,
+            filter_,
+            new ServerRequestCallback<DataWindow>()
+            {
+               @Override
+               public void onResponseReceived(DataWindow window)
+               {
+                  if (generation != generation_)
+                     return;
+                  pending_.remove(key);
+
+                  if (!window.isAvailable())
+                  {
+                     observer_.onUnavailable();
+                     return;
+                  }
+
+                  addBlock(key, window);
+                  scheduleRender();
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  if (generation != generation_)
+                     return;
+                  pending_.remove(key);
+
+                  // (e.g. an invalid filter) don't retry until the user
+                  // scrolls or changes the sort or filter
+                  fetchFailed_ = true;
+                  observer_.onError(error.getUserMessage());
+               }
+            });
+   }
+
+   private void addBlock(String key, DataWindow window)
+   {
+      JsArrayString names = window.getColumnNames();
+      for (int i = 0; i < names.length(); i++)
+         columnNames_.put(window.getColumnStart() + i, names.get(i));
+
+      JsArrayString[] columns = new JsArrayString[window.getColumns().length()];
+      for (int i = 0; i < columns.length; i++)
+         columns[i] = window.getColumns().get(i);
+
+      // every block carries the row numbers of its rows; they're kept
+      // apart from the cells so that they outlive the blocks they came with
+      rowNumberBlocks_.put(window.getRowStart() / BLOCK_ROWS,
+                           window.getRowNumbers());
+
+      blocks_.put(key, new Block(window.getRowStart(),
+                                 window.getColumnStart(),
+                                 window.getRowNumbers(),
+                                 columns));
+
+      if (window.getTotalRows() != totalRows_)
+      {
+         totalRows_ = window.getTotalRows();
+         updateExtent();
+      }
+   }
+
+   private void updateStatus(int firstRow, int lastRow)
+   {
+      String status;
+      if (totalRows_ == 0)
+         status = "No rows";
+      else
+         status = "Showing rows " +
+                  StringUtil.formatGeneralNumber(firstRow + 1) + " - " +
+                  StringUtil.formatGeneralNumber(lastRow) + " of " +
+                  StringUtil.formatGeneralNumber(totalRows_);
+      if (filter_.length() > 0)
+         status += " (filtered from " +
+                   StringUtil.formatGeneralNumber(unfilteredRows_) + ")";
+
+      if (!status.equals(status_))
+      {
+         status_ = status;
+         observer_.onStatusChanged(status);
+      }
+   }
+
+   private static String blockKey(int blockRow, int blockColumn)
+   {
+      return blockRow + "," + blockColumn;
+   }
+
+   private static class Block
+   {
+      Block(int rowStart,
+            int columnStart,
+            JsArrayNumber rowNumbers,
+            JsArrayString[] columns)
+      {
+         this.rowStart = rowStart;
+         this.columnStart = columnStart;
+         this.rowNumbers = rowNumbers;
+         this.columns = columns;
+      }
+
+      final int rowStart;
+      final int columnStart;
+      final JsArrayNumber rowNumbers;
+      final JsArrayString[] columns;
+
+      int rowCount()
+      {
+         return rowNumbers.length();
+      }
+   }
+
+   private final SourceServerOperations server_;
+   private final String cacheKey_;
+   private final int totalColumns_;
+   private final int unfilteredRows_;
+   private final Observer observer_;
+
+   private final HTML header_;
+   private final HTML rowNumbers_;
+   private final Element headerSpacer_;
+   private final Element rowNumberSpacer_;
+   private final Element cellSpacer_;
+   private final ScrollPanel body_;
+   private HandlerRegistration resizeReg_;
+
+   private int totalRows_;
+   private double scrollHeight_;
+   private int sortColumn_ = -1;
+   private boolean sortAscending_ = true;
+   private String filter_ = "";
+   private String status_;
+   private boolean renderPending_;
+
+   // bumped when the sort or filter changes, so that blocks fetched for
+   // the previous ordering are ignored
+   private int generation_;
+   private boolean fetchFailed_;
+
+   // how far the current page is shifted up, and the scroll position it
+   // was picked for
+   private double pageOffset_;
+   private int lastScrollTop_;
+
+   private final HashMap<Integer, String> columnNames_ =
+                                             new HashMap<Integer, String>();
+   private final HashSet<String> pending_ = new HashSet<String>();
+   private final LinkedHashMap<String, Block> blocks_ =
+         new LinkedHashMap<String, Block>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Block> eldest)
+      {
+         return size() > MAX_BLOCKS;
+      }
+   };
+   // the row numbers of each block of rows, by block row
+   private final LinkedHashMap<Integer, JsArrayNumber> rowNumberBlocks_ =
+         new LinkedHashMap<Integer, JsArrayNumber>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(
+                                 Map.Entry<Integer, JsArrayNumber> eldest)
+      {
+         return size() > MAX_BLOCKS;
+      }
+   };
+
+   private static final int ROW_HEIGHT = 20;
+   private static final int HEADER_HEIGHT = 22;
+   private static final int COLUMN_WIDTH = 120;
+   private static final int ROW_NUMBER_WIDTH = 70;
+   private static final int BLOCK_ROWS = 100;
+   private static final int BLOCK_COLUMNS = 20;
+   private static final int MAX_BLOCKS = 60;
+   private static final int SCROLLBAR_ALLOWANCE = 50;
+   private static final double MAX_SCROLL_HEIGHT = 1000000;
+   private static final double PAGE_HEIGHT = MAX_SCROLL_HEIGHT / 100;
+   private static final String COLUMN_ATTRIBUTE = "data-column";
+}
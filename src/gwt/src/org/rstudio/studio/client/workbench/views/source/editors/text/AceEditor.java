@@ -50,6 +50,7 @@ import org.rstudio.studio.client.server.Void;
 import org.rstudio.studio.client.workbench.model.ChangeTracker;
 import org.rstudio.studio.client.workbench.model.EventBasedChangeTracker;
 import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionManager;
+import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionManager.CompletionDocument;
 import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionManager.InitCompletionFilter;
 import org.rstudio.studio.client.workbench.views.console.shell.assist.CompletionPopupPanel;
 import org.rstudio.studio.client.workbench.views.console.shell.assist.NullCompletionManager;
@@ -71,7 +72,8 @@ import org.rstudio.studio.client.workbench.views.source.model.SourcePosition;
 
 public class AceEditor implements DocDisplay, 
                                   InputEditorDisplay,
-                                  NavigableSourceEditor
+                                  NavigableSourceEditor,
+                                  CompletionDocument
 {
    public enum NewLineMode
    {
@@ -323,7 +325,8 @@ public class AceEditor implements DocDisplay,
                                                     this,
                                                     new CompletionPopupPanel(),
                                                     server_,
-                                                    new Filter());
+                                                    new Filter(),
+                                                    this);
       }
       else
          completionManager = new NullCompletionManager();
@@ -425,6 +428,11 @@ public class AceEditor implements DocDisplay,
             getSession().getSelection().getRange(), code);
    }
 
+   public String getDocumentId()
+   {
+      return documentId_;
+   }
+
    public String getCode(Position start, Position end)
    {
       return getSession().getTextRange(Range.fromPoints(start, end));
@@ -1184,6 +1192,9 @@ public class AceEditor implements DocDisplay,
    private CodeToolsServerOperations server_;
    private TextFileType fileType_;
    private boolean passwordMode_;
+   private final String documentId_ = "ace" + (nextDocumentId_++);
+
+   private static int nextDocumentId_ = 0;
 
    private static final ExternalJavaScriptLoader aceLoader_ =
          new ExternalJavaScriptLoader(AceResources.INSTANCE.acejs().getSafeUri().asString());
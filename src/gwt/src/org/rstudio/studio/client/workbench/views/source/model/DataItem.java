@@ -67,6 +67,14 @@ public class DataItem extends JavaScriptObject
       return this.contentUrl;
    }-*/;
 
+   /**
+    * The key under which the session keeps the data for paging, or null if
+    * only the static content url is available.
+    */
+   public native final String getCacheKey() /*-{
+      return this.cacheKey || null;
+   }-*/;
+
    public final void fillProperties(HashMap<String, String> properties)
    {
       // This has the unfortunate side-effect of converting the numeric values
@@ -78,6 +86,8 @@ public class DataItem extends JavaScriptObject
       properties.put("displayedObservations", getDisplayedObservations() + "");
       properties.put("variables", getVariables() + "");
       properties.put("contentUrl", getContentUrl());
+      // (a null value removes any key left over from a previous View)
+      properties.put("cacheKey", getCacheKey());
    }
 
    public final void fillProperties(JsObject properties)
@@ -87,5 +97,7 @@ public class DataItem extends JavaScriptObject
       properties.setInteger("displayedObservations", getDisplayedObservations());
       properties.setInteger("variables", getVariables());
       properties.setString("contentUrl", getContentUrl());
+      if (getCacheKey() != null)
+         properties.setString("cacheKey", getCacheKey());
    }
 }
@@ -0,0 +1,73 @@
+/*
+ * DataWindow.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.source.model;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import com.google.gwt.core.client.JsArrayNumber;
+import com.google.gwt.core.client.JsArrayString;
+
+/**
+ * A block of formatted cells from data passed to View(), as returned by
+ * SourceServerOperations#getDataWindow.
+ */
+public class DataWindow extends JavaScriptObject
+{
+   protected DataWindow()
+   {
+   }
+
+   /**
+    * False if the session no longer has the data (e.g. after a restart).
+    */
+   public native final boolean isAvailable() /*-{
+      return this.available;
+   }-*/;
+
+   /**
+    * The number of rows after filtering.
+    */
+   public native final int getTotalRows() /*-{
+      return this.totalRows;
+   }-*/;
+
+   public native final int getTotalColumns() /*-{
+      return this.totalColumns;
+   }-*/;
+
+   public native final int getRowStart() /*-{
+      return this.rowStart;
+   }-*/;
+
+   public native final int getColumnStart() /*-{
+      return this.colStart;
+   }-*/;
+
+   /**
+    * The (1-based) row numbers of the window's rows in the original data.
+    */
+   public native final JsArrayNumber getRowNumbers() /*-{
+      return this.rowNumbers;
+   }-*/;
+
+   public native final JsArrayString getColumnNames() /*-{
+      return this.columnNames;
+   }-*/;
+
+   /**
+    * The formatted values of each of the window's columns.
+    */
+   public native final JsArray<JsArrayString> getColumns() /*-{
+      return this.columns;
+   }-*/;
+}
@@ -156,6 +156,25 @@ public interface SourceServerOperations extends FilesServerOperations,
    void removeContentUrl(String contentUrl,
                          ServerRequestCallback<Void> requestCallback);
 
+   /**
+    * Fetches a window of the rows and columns of data passed to View(),
+    * after the rows are filtered (by an R expression evaluated against the
+    * columns, or none if empty) and sorted (by the 0-based sortColumn, or
+    * unsorted if -1).
+    */
+   void getDataWindow(String cacheKey,
+                      int rowStart,
+                      int rowCount,
+                      int colStart,
+                      int colCount,
+                      int sortColumn,
+                      boolean sortAscending,
+                      String filter,
+                      ServerRequestCallback<DataWindow> requestCallback);
+
+   void removeDataViewerData(String cacheKey,
+                             ServerRequestCallback<Void> requestCallback);
+
    void detectFreeVars(String code,
                        ServerRequestCallback<JsArrayString> requestCallback);
 
@@ -26,6 +26,8 @@ import com.google.gwt.text.shared.SafeHtmlRenderer;
 import com.google.gwt.user.cellview.client.CellTable;
 import com.google.gwt.user.cellview.client.Column;
 import com.google.gwt.user.cellview.client.ColumnSortEvent;
+import com.google.gwt.user.cellview.client.ColumnSortList;
+import com.google.gwt.user.cellview.client.ColumnSortList.ColumnSortInfo;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.LayoutPanel;
 import com.google.gwt.user.client.ui.ScrollPanel;
@@ -35,10 +37,13 @@ import org.rstudio.core.client.widget.InfoBar;
 import org.rstudio.core.client.widget.MultiSelectCellTable;
 import org.rstudio.core.client.widget.ProgressPanel;
 import org.rstudio.studio.client.common.vcs.StatusAndPath;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public abstract class ChangelistTable extends Composite
@@ -131,7 +136,16 @@ public abstract class ChangelistTable extends Composite
 
       dataProvider_ = new ListDataProvider<StatusAndPath>();
       sortHandler_ = new ColumnSortEvent.ListHandler<StatusAndPath>(
-            dataProvider_.getList());
+            dataProvider_.getList())
+      {
+         @Override
+         public void setComparator(Column<StatusAndPath, ?> column,
+                                   Comparator<StatusAndPath> comparator)
+         {
+            super.setComparator(column, comparator);
+            comparators_.put(column, comparator);
+         }
+      };
       table_.addColumnSortHandler(sortHandler_);
 
       selectionModel_ = createSelectionModel();
@@ -311,6 +325,101 @@ public abstract class ChangelistTable extends Composite
       }
    }
 
+   /**
+    * Applies a change to some of the rows in place. Rows are removed and
+    * inserted at their sorted positions, so only the changed rows are
+    * redrawn and the list isn't re-sorted.
+    */
+   public void applyDelta(StatusDelta delta)
+   {
+      List<StatusAndPath> list = dataProvider_.getList();
+      Comparator<StatusAndPath> order = getSortOrder();
+
+      for (StatusAndPath item : delta.getRemoved())
+      {
+         int index = indexOf(list, item, order);
+         if (index >= 0)
+            list.remove(index);
+      }
+
+      for (StatusAndPath item : delta.getAdded())
+      {
+         if (order == null)
+         {
+            list.add(item);
+            continue;
+         }
+
+         // after any equal items, as a stable sort would place it
+         int low = 0;
+         int high = list.size();
+         while (low < high)
+         {
+            int mid = (low + high) >>> 1;
+            if (order.compare(list.get(mid), item) <= 0)
+               low = mid + 1;
+            else
+               high = mid;
+         }
+         list.add(low, item);
+      }
+
+      table_.setPageSize(list.size());
+   }
+
+   // Returns the comparator the rows are currently sorted by, or null if
+   // they aren't sorted
+   private Comparator<StatusAndPath> getSortOrder()
+   {
+      ColumnSortList sortList = table_.getColumnSortList();
+      if (sortList.size() == 0)
+         return null;
+
+      ColumnSortInfo info = sortList.get(0);
+      final Comparator<StatusAndPath> comparator =
+                                       comparators_.get(info.getColumn());
+      if (comparator == null || info.isAscending())
+         return comparator;
+
+      return new Comparator<StatusAndPath>()
+      {
+         @Override
+         public int compare(StatusAndPath a, StatusAndPath b)
+         {
+            return comparator.compare(b, a);
+         }
+      };
+   }
+
+   private static int indexOf(List<StatusAndPath> list,
+                              StatusAndPath item,
+                              Comparator<StatusAndPath> order)
+   {
+      if (order == null)
+         return list.indexOf(item);
+
+      int low = 0;
+      int high = list.size();
+      while (low < high)
+      {
+         int mid = (low + high) >>> 1;
+         if (order.compare(list.get(mid), item) < 0)
+            low = mid + 1;
+         else
+            high = mid;
+      }
+
+      // scan the items that sort equally for the one with this path
+      for (int i = low;
+           i < list.size() && order.compare(list.get(i), item) == 0;
+           i++)
+      {
+         if (list.get(i).equals(item))
+            return i;
+      }
+      return -1;
+   }
+
    public ArrayList<StatusAndPath> getSelectedItems()
    {
       SelectionModel<? super StatusAndPath> selectionModel = table_.getSelectionModel();
@@ -337,6 +446,22 @@ public abstract class ChangelistTable extends Composite
       return results;
    }
 
+   /**
+    * Returns up to count of the items displayed after the given one.
+    */
+   public ArrayList<StatusAndPath> getItemsAfter(StatusAndPath item, int count)
+   {
+      List<StatusAndPath> items = table_.getVisibleItems();
+      int index = items.indexOf(item);
+
+      ArrayList<StatusAndPath> results = new ArrayList<StatusAndPath>();
+      if (index < 0)
+         return results;
+      for (int i = index + 1; i < items.size() && results.size() < count; i++)
+         results.add(items.get(i));
+      return results;
+   }
+
    public void setSelectedStatusAndPaths(ArrayList<StatusAndPath> selectedPaths)
    {
       selectionModel_.clear();
@@ -423,6 +548,9 @@ public abstract class ChangelistTable extends Composite
    protected final MultiSelectionModel<StatusAndPath> selectionModel_;
    protected final ColumnSortEvent.ListHandler<StatusAndPath> sortHandler_;
    protected final ListDataProvider<StatusAndPath> dataProvider_;
+   private final HashMap<Column<StatusAndPath, ?>, Comparator<StatusAndPath>>
+         comparators_ =
+            new HashMap<Column<StatusAndPath, ?>, Comparator<StatusAndPath>>();
    private final ProgressPanel progressPanel_;
    private LayoutPanel layout_;
    private ScrollPanel scrollPanel_;
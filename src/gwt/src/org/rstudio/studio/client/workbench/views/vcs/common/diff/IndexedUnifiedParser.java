@@ -0,0 +1,319 @@
+/*
+ * IndexedUnifiedParser.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.diff;
+
+import org.rstudio.studio.client.workbench.views.vcs.common.diff.Line.Type;
+
+import java.util.ArrayList;
+
+/**
+ * Produces the same chunks and lines as UnifiedParser, with less work per
+ * line: the line start/end offsets of the whole diff are indexed once up
+ * front, lines are examined in place rather than as substrings, and the
+ * line numbers and masks of each chunk's lines are stored in shared
+ * primitive arrays (see PackedLines). A line's text is only extracted
+ * when it's asked for, which for a large diff in a virtualized view is a
+ * small fraction of the lines.
+ */
+public class IndexedUnifiedParser implements DiffParser
+{
+   public IndexedUnifiedParser(String data)
+   {
+      this(data, 0);
+   }
+
+   public IndexedUnifiedParser(String data, int startDiffIndex)
+   {
+      data_ = data;
+      diffIndex_ = startDiffIndex;
+      indexLines();
+   }
+
+   public int getDiffIndex()
+   {
+      return diffIndex_;
+   }
+
+   @Override
+   public DiffFileHeader nextFilePair()
+   {
+      ArrayList<String> headerLines = new ArrayList<String>();
+
+      boolean inDiff = false;
+
+      int line;
+      while (-1 != (line = nextLine()) && !lineStartsWith(line, "--- "))
+      {
+         if (isNewFileLine(line))
+            inDiff = true;
+
+         if (inDiff)
+            headerLines.add(getLineText(line, 0));
+      }
+
+      if (line == -1)
+         return null;
+
+      String fileA = getLineText(line, 4);
+      line = nextLine();
+      if (line == -1 || !lineStartsWith(line, "+++ "))
+         throw new DiffFormatException("Incomplete file header");
+      String fileB = getLineText(line, 4);
+      return new DiffFileHeader(headerLines, fileA, fileB);
+   }
+
+   @Override
+   public DiffChunk nextChunk()
+   {
+      if (line_ < lineCount_ && isNewFileLine(line_))
+         return null;
+
+      int line;
+      while (-1 != (line = nextLine())
+             && !(lineStartsWith(line, "@@") || lineStartsWith(line, "--- ")))
+      {
+      }
+
+      if (line == -1)
+         return null;
+
+      if (lineStartsWith(line, "--- "))
+         return null;
+
+      ChunkHeaderInfo chunkHeaderInfo =
+                        new ChunkHeaderParser(getLineText(line, 0)).parse();
+      if (chunkHeaderInfo == null)
+         throw new DiffFormatException("Malformed chunk header");
+
+      int chunkDiffIndex = diffIndex_++;
+
+      Range[] ranges = chunkHeaderInfo.ranges;
+      int[] counts = new int[ranges.length];
+      int[] positions = new int[ranges.length];
+      boolean[] MASK_NONE = new boolean[ranges.length];
+      boolean[] MASK_ALL = new boolean[ranges.length];
+      int capacity = 0;
+      for (int i = 0; i < ranges.length; i++)
+      {
+         counts[i] = ranges[i].rowCount;
+         positions[i] = ranges[i].startRow-1;
+         MASK_ALL[i] = true;
+         capacity += ranges[i].rowCount;
+      }
+      int columns = ranges.length - 1;
+
+      boolean[] mask = new boolean[ranges.length];
+
+      // Every line decrements at least one count, so the counts bound the
+      // number of lines (apart from comments)
+      PackedLines packed = new PackedLines(data_, ranges.length, capacity);
+      ArrayList<Line> lines = new ArrayList<Line>(capacity);
+      for (;
+           !isEmpty(counts) || nextLineIsComment();
+           diffIndex_++)
+      {
+         int diffLine = nextLine();
+         if (diffLine == -1)
+            throw new DiffFormatException("Diff ended prematurely");
+
+         int start = lineStarts_[diffLine];
+         int end = lineEnds_[diffLine];
+         if (end - start < columns)
+            throw new DiffFormatException("Unexpected line format");
+
+         int directive = ' ';
+         for (int i = 0; i < columns; i++)
+         {
+            char c = data_.charAt(start + i);
+            mask[i] = c != ' ';
+            if (mask[i])
+            {
+               if (directive == ' ')
+                  directive = c;
+               else if (directive != c)
+                  throw new DiffFormatException("Conflicting directives");
+            }
+         }
+
+         int textStart = start + columns;
+         Type type;
+         switch (directive)
+         {
+            case ' ':
+               // All positions increase by one (including new)
+
+               addToSelected(positions, MASK_ALL, +1);
+               addToSelected(counts, MASK_ALL, -1);
+               type = Type.Same;
+               packed.add(textStart, end, positions, MASK_ALL, false);
+               break;
+            case '-':
+               // Masked positions increase by one
+
+               addToSelected(positions, mask, +1);
+               addToSelected(counts, mask, -1);
+               type = Type.Deletion;
+               packed.add(textStart, end, positions, mask, false);
+               break;
+            case '+':
+               // Unmasked positions increase by one (including new)
+
+               addToUnselected(positions, mask, +1);
+               addToUnselected(counts, mask, -1);
+               type = Type.Insertion;
+               packed.add(textStart, end, positions, mask, true);
+               break;
+            case '\\':
+               // No positions move??
+
+               // e.g. "\\ No newline at end of file"
+               type = Type.Comment;
+               packed.add(textStart, end, positions, MASK_NONE, false);
+               break;
+            default:
+               throw new DiffFormatException("Unexpected leading character");
+         }
+
+         lines.add(new Line(type, packed, lines.size(), diffIndex_));
+      }
+
+      if (!isZero(counts))
+         throw new DiffFormatException("Diff didn't match header ranges");
+
+      return new DiffChunk(ranges, chunkHeaderInfo.extraInfo, lines, chunkDiffIndex);
+   }
+
+   // Records where each line starts and ends (excluding the line
+   // terminator, which is \n or \r\n)
+   private void indexLines()
+   {
+      int capacity = 16;
+      int[] starts = new int[capacity];
+      int[] ends = new int[capacity];
+      int count = 0;
+
+      int length = data_.length();
+      int head = 0;
+      while (head < length)
+      {
+         int i = data_.indexOf('\n', head);
+         int next;
+         if (i == -1)
+         {
+            i = length;
+            next = length;
+         }
+         else
+         {
+            next = i + 1;
+            if (i > 0 && data_.charAt(i-1) == '\r')
+               i--;
+         }
+
+         if (count == capacity)
+         {
+            capacity *= 2;
+            starts = copyOf(starts, capacity);
+            ends = copyOf(ends, capacity);
+         }
+         starts[count] = head;
+         ends[count] = i;
+         count++;
+
+         head = next;
+      }
+
+      lineStarts_ = starts;
+      lineEnds_ = ends;
+      lineCount_ = count;
+   }
+
+   private static int[] copyOf(int[] array, int length)
+   {
+      int[] result = new int[length];
+      System.arraycopy(array, 0, result, 0, array.length);
+      return result;
+   }
+
+   // Returns the index of the next line, or -1 at the end of the data
+   private int nextLine()
+   {
+      return line_ < lineCount_ ? line_++ : -1;
+   }
+
+   private boolean lineStartsWith(int line, String prefix)
+   {
+      return lineEnds_[line] - lineStarts_[line] >= prefix.length()
+             && data_.startsWith(prefix, lineStarts_[line]);
+   }
+
+   private String getLineText(int line, int offset)
+   {
+      return data_.substring(lineStarts_[line] + offset, lineEnds_[line]);
+   }
+
+   private boolean isNewFileLine(int line)
+   {
+      return lineStartsWith(line, "diff ") || lineStartsWith(line, "Index: ");
+   }
+
+   private boolean nextLineIsComment()
+   {
+      return line_ < lineCount_ && data_.charAt(lineStarts_[line_]) == '\\';
+   }
+
+   private void addToSelected(int[] array, boolean[] mask, int value)
+   {
+      for (int i = 0; i < mask.length; i++)
+      {
+         if (mask[i])
+            array[i] += value;
+      }
+   }
+
+   private void addToUnselected(int[] array, boolean[] mask, int value)
+   {
+      for (int i = 0; i < mask.length; i++)
+      {
+         if (!mask[i])
+            array[i] += value;
+      }
+   }
+
+   private boolean isEmpty(int[] array)
+   {
+      for (int i : array)
+      {
+         if (i > 0)
+            return false;
+      }
+      return true;
+   }
+
+   private boolean isZero(int[] array)
+   {
+      for (int i : array)
+      {
+         if (i != 0)
+            return false;
+      }
+      return true;
+   }
+
+   private final String data_;
+   private int[] lineStarts_;
+   private int[] lineEnds_;
+   private int lineCount_;
+   private int line_;
+   private int diffIndex_;
+}
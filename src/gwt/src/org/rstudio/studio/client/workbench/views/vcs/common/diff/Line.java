@@ -84,6 +84,18 @@ public class Line implements Comparable<Line>
       diffIndex_ = diffIndex;
    }
 
+   /**
+    * Creates a line whose line numbers, mask and text are stored in packed,
+    * at the given index. They're copied out the first time they're needed.
+    */
+   Line(Type type, PackedLines packed, int index, int diffIndex)
+   {
+      type_ = type;
+      packed_ = packed;
+      packedIndex_ = index;
+      diffIndex_ = diffIndex;
+   }
+
    public Type getType()
    {
       return type_;
@@ -91,16 +103,18 @@ public class Line implements Comparable<Line>
 
    public int getOldLine()
    {
-      return lines_[0];
+      return getLines()[0];
    }
 
    public int getNewLine()
    {
-      return lines_[1];
+      return getLines()[1];
    }
 
    public String getText()
    {
+      if (text_ == null && packed_ != null)
+         text_ = packed_.getText(packedIndex_);
       return text_;
    }
 
@@ -111,13 +125,13 @@ public class Line implements Comparable<Line>
 
    public Line reverse()
    {
-      if (appliesTo_.length > 2)
+      if (getAppliesTo().length > 2)
          throw new UnsupportedOperationException("Can't reverse combined diff");
 
       return new Line(type_.getInverse(),
-                      lines_[1],
-                      lines_[0],
-                      text_,
+                      getNewLine(),
+                      getOldLine(),
+                      getText(),
                       diffIndex_);
    }
 
@@ -149,17 +163,23 @@ public class Line implements Comparable<Line>
 
    public int[] getLines()
    {
+      if (lines_ == null && packed_ != null)
+         lines_ = packed_.getLines(packedIndex_);
       return lines_;
    }
 
    public boolean[] getAppliesTo()
    {
+      if (appliesTo_ == null && packed_ != null)
+         appliesTo_ = packed_.getAppliesTo(packedIndex_);
       return appliesTo_;
    }
 
    private final Type type_;
-   private final int[] lines_;
-   private final boolean[] appliesTo_;
-   private final String text_;
+   private int[] lines_;
+   private boolean[] appliesTo_;
+   private String text_;
    private final int diffIndex_;
+   private PackedLines packed_;
+   private int packedIndex_;
 }
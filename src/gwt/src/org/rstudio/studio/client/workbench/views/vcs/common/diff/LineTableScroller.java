@@ -0,0 +1,158 @@
+/*
+ * LineTableScroller.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.diff;
+
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+import com.google.gwt.event.logical.shared.ResizeEvent;
+import com.google.gwt.event.logical.shared.ResizeHandler;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Window;
+import com.google.gwt.user.client.ui.ScrollPanel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Keeps the rendered windows of the LineTableViews in a scroll panel up to
+ * date. There is one of these per scroll panel however many tables it
+ * holds (e.g. one per file of a commit), so a scroll or resize costs one
+ * handler and one deferred update for the whole panel.
+ *
+ * An update first works out the window each table needs and only then
+ * renders the tables whose window changed, so that the layout is read
+ * once rather than after each table is rendered.
+ */
+class LineTableScroller
+{
+   static LineTableScroller get(ScrollPanel container)
+   {
+      LineTableScroller scroller = scrollers_.get(container);
+      if (scroller == null)
+      {
+         scroller = new LineTableScroller(container);
+         scrollers_.put(container, scroller);
+      }
+      return scroller;
+   }
+
+   private LineTableScroller(ScrollPanel container)
+   {
+      container_ = container;
+   }
+
+   public ScrollPanel getContainer()
+   {
+      return container_;
+   }
+
+   public void add(LineTableView view)
+   {
+      if (views_.isEmpty())
+      {
+         scrollRegistration_ = container_.addScrollHandler(new ScrollHandler()
+         {
+            @Override
+            public void onScroll(ScrollEvent event)
+            {
+               scheduleUpdate();
+            }
+         });
+         resizeRegistration_ = Window.addResizeHandler(new ResizeHandler()
+         {
+            @Override
+            public void onResize(ResizeEvent event)
+            {
+               scheduleUpdate();
+            }
+         });
+      }
+
+      views_.add(view);
+      scheduleUpdate();
+   }
+
+   public void remove(LineTableView view)
+   {
+      if (!views_.remove(view) || !views_.isEmpty())
+         return;
+
+      scrollRegistration_.removeHandler();
+      resizeRegistration_.removeHandler();
+      scrollers_.remove(container_);
+   }
+
+   /**
+    * The height of a row, as last measured by any of the tables (they all
+    * share a style).
+    */
+   public double getRowHeight()
+   {
+      return rowHeight_;
+   }
+
+   public void setRowHeight(double rowHeight)
+   {
+      rowHeight_ = rowHeight;
+   }
+
+   public void scheduleUpdate()
+   {
+      if (updatePending_)
+         return;
+
+      updatePending_ = true;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         @Override
+         public void execute()
+         {
+            updatePending_ = false;
+            update();
+         }
+      });
+   }
+
+   private void update()
+   {
+      ArrayList<LineTableView> views = new ArrayList<LineTableView>();
+      ArrayList<int[]> windows = new ArrayList<int[]>();
+      for (LineTableView view : views_)
+      {
+         int[] window = view.getWindow(false);
+         if (window != null)
+         {
+            views.add(view);
+            windows.add(window);
+         }
+      }
+
+      for (int i = 0; i < views.size(); i++)
+         views.get(i).setWindow(windows.get(i)[0], windows.get(i)[1]);
+   }
+
+   private final ScrollPanel container_;
+   private final ArrayList<LineTableView> views_ =
+                                          new ArrayList<LineTableView>();
+   private HandlerRegistration scrollRegistration_;
+   private HandlerRegistration resizeRegistration_;
+   private boolean updatePending_ = false;
+   private double rowHeight_ = DEFAULT_ROW_HEIGHT;
+
+   private static final HashMap<ScrollPanel, LineTableScroller> scrollers_ =
+                              new HashMap<ScrollPanel, LineTableScroller>();
+
+   private static final int DEFAULT_ROW_HEIGHT = 16;
+}
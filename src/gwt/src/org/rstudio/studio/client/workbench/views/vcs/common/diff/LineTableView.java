@@ -19,14 +19,17 @@ import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.NativeEvent;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
 import com.google.gwt.user.cellview.client.CellTable;
 import com.google.gwt.user.cellview.client.Column;
 import com.google.gwt.user.cellview.client.RowStyles;
 import com.google.gwt.user.cellview.client.TextColumn;
+import com.google.gwt.user.client.ui.ScrollPanel;
 import com.google.gwt.view.client.MultiSelectionModel;
 import com.google.gwt.view.client.ProvidesKey;
+import com.google.gwt.view.client.Range;
 import com.google.gwt.view.client.SelectionChangeEvent;
 import com.google.gwt.view.client.SelectionChangeEvent.Handler;
 import com.google.inject.Inject;
@@ -46,7 +49,10 @@ import org.rstudio.studio.client.workbench.views.vcs.common.events.DiffLinesActi
 import org.rstudio.studio.client.workbench.views.vcs.common.events.DiffLinesActionHandler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements Display
 {
@@ -303,8 +309,12 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
                String prefix = "";
                if (startRows_.contains(rowIndex))
                   prefix += res.cellTableStyle().start() + " ";
-               if (endRows_.contains(rowIndex))
+               // Edge case: last line is a diff line
+               if (endRows_.contains(rowIndex) ||
+                   (useEndBorder_ && rowIndex == lines_.size() - 1))
+               {
                   prefix += res.cellTableStyle().end() + " ";
+               }
 
                switch (line.getType())
                {
@@ -331,10 +341,7 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
          @Override
          public Object getKey(ChunkOrLine item)
          {
-            if (item.getChunk() != null)
-               return item.getChunk().getDiffIndex();
-            else
-               return item.getLine().getDiffIndex();
+            return getDiffIndex(item);
          }
       }) {
          @Override
@@ -381,14 +388,31 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
 
    private void refreshValue(ChunkOrLine value)
    {
-      int index = lines_.indexOf(value);
-      if (index >= 0)
+      Integer index = rowsByDiffIndex_.get(getDiffIndex(value));
+      if (index != null)
+         refreshRow(index);
+   }
+
+   // Re-renders the row if it's currently rendered
+   private void refreshRow(int index)
+   {
+      Range range = getVisibleRange();
+      if (index >= range.getStart()
+          && index < range.getStart() + range.getLength()
+          && index < lines_.size())
       {
          ArrayList<ChunkOrLine> list = new ArrayList<ChunkOrLine>();
-         list.add(value);
+         list.add(lines_.get(index));
          setRowData(index, list);
       }
+   }
 
+   private static int getDiffIndex(ChunkOrLine item)
+   {
+      if (item.getChunk() != null)
+         return item.getChunk().getDiffIndex();
+      else
+         return item.getLine().getDiffIndex();
    }
 
    private String intToString(Integer value)
@@ -424,6 +448,22 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
       useEndBorder_ = useEndBorder;
    }
 
+   /**
+    * Sets the panel this table scrolls within. Only the rows visible in the
+    * panel (plus OVERSCAN_ROWS worth of space on either side) are then
+    * rendered, and the space taken by the rest is reserved using the
+    * table's margins. A table that is nowhere near the visible part of the
+    * panel renders no rows at all, so a panel can hold the diffs of many
+    * files (e.g. all the files of a commit) cheaply.
+    */
+   public void setScrollContainer(ScrollPanel scrollContainer)
+   {
+      unregisterWindowHandlers();
+      scrollContainer_ = scrollContainer;
+      if (isAttached())
+         registerWindowHandlers();
+   }
+
    @Override
    public void setData(ArrayList<ChunkOrLine> diffData, PatchMode patchMode)
    {
@@ -439,20 +479,47 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
             break;
       }
 
-      lines_ = diffData;
-      setPageSize(diffData.size());
+      lines_ = new ArrayList<ChunkOrLine>(diffData.size());
+      rowsByDiffIndex_.clear();
       selectionModel_.clear();
       firstSelectedLine_ = null;
-      setRowData(diffData);
 
       startRows_.clear();
       endRows_.clear();
+      borderState_ = Line.Type.Same;
+      suppressNextStart_ = true; // Suppress at start to avoid 2px border
+
+      addLines(diffData);
+   }
 
-      Line.Type state = Line.Type.Same;
-      boolean suppressNextStart = true; // Suppress at start to avoid 2px border
-      for (int i = 0; i < lines_.size(); i++)
+   /**
+    * Adds lines to the end of the table (e.g. as a large diff is parsed).
+    * Only the new rows are rendered, or none at all if they are outside of
+    * the visible window.
+    */
+   public void appendData(ArrayList<ChunkOrLine> diffData)
+   {
+      if (diffData.size() == 0)
+         return;
+
+      int start = lines_.size();
+      addLines(diffData);
+
+      // The previous last row may have gained or lost its end border
+      if (start > 0)
+         refreshRow(start - 1);
+   }
+
+   private void addLines(ArrayList<ChunkOrLine> diffData)
+   {
+      int start = lines_.size();
+      lines_.addAll(diffData);
+
+      for (int i = start; i < lines_.size(); i++)
       {
          ChunkOrLine chunkOrLine = lines_.get(i);
+         rowsByDiffIndex_.put(getDiffIndex(chunkOrLine), i);
+
          Line line = chunkOrLine.getLine();
          boolean isChunk = line == null;
          Line.Type newState = isChunk ? Line.Type.Same : line.getType();
@@ -460,34 +527,211 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
          if (useStartBorder_ && i == 0)
             startRows_.add(i);
 
-         // Edge case: last line is a diff line
-         if (useEndBorder_ && i == lines_.size() - 1)
-            endRows_.add(i);
-
-         if (newState != state)
+         if (newState != borderState_)
          {
             // Note: endRows_ doesn't include the borders between insertions and
             // deletions, or vice versa. This is to avoid 2px borders between
             // these regions when just about everything else is 1px.
-            if (state != Line.Type.Same && newState == Line.Type.Same && !isChunk)
+            if (borderState_ != Line.Type.Same && newState == Line.Type.Same && !isChunk)
+            {
                endRows_.add(i-1);
-            if (!suppressNextStart && newState != Line.Type.Same)
+               if (i-1 < start)
+                  refreshRow(i-1);
+            }
+            if (!suppressNextStart_ && newState != Line.Type.Same)
                startRows_.add(i);
 
-            state = newState;
+            borderState_ = newState;
          }
 
-         suppressNextStart = isChunk;
+         suppressNextStart_ = isChunk;
       }
+
+      int count = lines_.size();
+      setRowCount(count, true);
+      if (isVirtualized())
+      {
+         updateWindow(start == 0);
+      }
+      else
+      {
+         setMargins(0, 0);
+         setVisibleRange(0, count);
+         setRowData(start, lines_.subList(start, count));
+      }
+   }
+
+   private boolean isVirtualized()
+   {
+      return scrollContainer_ != null;
+   }
+
+   private void updateWindow(boolean force)
+   {
+      int[] window = getWindow(force);
+      if (window != null)
+         setWindow(window[0], window[1]);
+   }
+
+   /**
+    * Works out which rows need to be rendered for the rows visible in the
+    * scroll container to be shown. Returns the window as {first, last}, or
+    * null if the rows already rendered will do. If force is true the window
+    * is always returned (e.g. because the data changed).
+    */
+   int[] getWindow(boolean force)
+   {
+      int count = lines_.size();
+      Range range = getVisibleRange();
+      int start = range.getStart();
+      int end = start + range.getLength();
+
+      // Rendered once it's been added to the container
+      if (!isAttached() || !scrollContainer_.isAttached())
+         return force ? new int[] {0, 0} : null;
+
+      Element container = scrollContainer_.getElement();
+      int height = container.getClientHeight();
+      if (height <= 0)
+      {
+         // Not laid out yet, so start at the top
+         int last = Math.min(count, 2 * OVERSCAN_ROWS);
+         return force || start != 0 || end != last ? new int[] {0, last}
+                                                   : null;
+      }
+
+      double rowHeight = measureRowHeight();
+      double origin = DomUtils.getRelativePosition(container,
+                                                   getElement()).getY()
+                      - marginTop_;
+      double viewTop = scrollContainer_.getVerticalScrollPosition() - origin;
+      double viewBottom = viewTop + height;
+      double overscan = OVERSCAN_ROWS * rowHeight;
+
+      int visibleFirst = clamp((int) Math.floor(viewTop / rowHeight), count);
+      int visibleLast = clamp((int) Math.ceil(viewBottom / rowHeight), count);
+      int first = clamp((int) Math.floor((viewTop - overscan) / rowHeight),
+                        count);
+      int last = clamp((int) Math.ceil((viewBottom + overscan) / rowHeight),
+                       count);
+
+      if (!force)
+      {
+         // Out of range: drop the rendered rows
+         if (first == last)
+            return end > start ? new int[] {0, 0} : null;
+
+         if (end > start && visibleFirst >= start && visibleLast <= end)
+         {
+            // Nothing new to render, but keep the reserved space in line
+            // with the row count and latest row height
+            setWindowMargins(start, end);
+            return null;
+         }
+      }
+
+      return new int[] {first, last};
+   }
+
+   void setWindow(int first, int last)
+   {
+      setWindowMargins(first, last);
+      setVisibleRange(first, last - first);
+      setRowData(first, lines_.subList(first, last));
+
+      // Render again once the new rows have been laid out and measured
+      if (last > first && scroller_ != null)
+         scroller_.scheduleUpdate();
+   }
+
+   private void setWindowMargins(int first, int last)
+   {
+      double rowHeight = measureRowHeight();
+      setMargins(first * rowHeight, (lines_.size() - last) * rowHeight);
+   }
+
+   private void setMargins(double top, double bottom)
+   {
+      if (top == marginTop_ && bottom == marginBottom_)
+         return;
+
+      marginTop_ = top;
+      marginBottom_ = bottom;
+      getElement().getStyle().setMarginTop(top, Unit.PX);
+      getElement().getStyle().setMarginBottom(bottom, Unit.PX);
+   }
+
+   // The average height of the rendered rows (or if none are rendered, of
+   // the rows last rendered by any table in the container)
+   private double measureRowHeight()
+   {
+      double rowHeight = scroller_ != null ? scroller_.getRowHeight()
+                                           : DEFAULT_ROW_HEIGHT;
+      int rows = getVisibleItemCount();
+      if (rows > 0)
+      {
+         TableRowElement first = getRowElement(0);
+         TableRowElement last = getRowElement(rows - 1);
+         if (first != null && last != null)
+         {
+            int height = last.getOffsetTop() + last.getOffsetHeight()
+                         - first.getOffsetTop();
+            if (height > 0)
+            {
+               rowHeight = (double) height / rows;
+               if (scroller_ != null)
+                  scroller_.setRowHeight(rowHeight);
+            }
+         }
+      }
+      return rowHeight;
+   }
+
+   private static int clamp(int value, int max)
+   {
+      return Math.max(0, Math.min(max, value));
+   }
+
+   private void registerWindowHandlers()
+   {
+      if (scrollContainer_ == null)
+         return;
+
+      scroller_ = LineTableScroller.get(scrollContainer_);
+      scroller_.add(this);
+   }
+
+   private void unregisterWindowHandlers()
+   {
+      if (scroller_ != null)
+      {
+         scroller_.remove(this);
+         scroller_ = null;
+      }
+   }
+
+   @Override
+   protected void onLoad()
+   {
+      super.onLoad();
+      registerWindowHandlers();
+   }
+
+   @Override
+   protected void onUnload()
+   {
+      unregisterWindowHandlers();
+      super.onUnload();
    }
 
    @Override
    protected boolean canSelectVisibleRow(int visibleRow)
    {
-      if (visibleRow < 0 || visibleRow >= lines_.size())
+      int row = getPageStart() + visibleRow;
+      if (visibleRow < 0 || row >= lines_.size())
          return false;
 
-      Line line = lines_.get(visibleRow).getLine();
+      Line line = lines_.get(row).getLine();
       return line != null && (line.getType() == Type.Insertion
                               || line.getType() == Type.Deletion);
    }
@@ -498,13 +742,29 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
       setData(new ArrayList<ChunkOrLine>(), PatchMode.Working);
    }
 
+   @Override
+   protected List<ChunkOrLine> getSelectableItems()
+   {
+      return lines_;
+   }
+
    @Override
    public ArrayList<Line> getSelectedLines()
    {
+      // Look up the rows of the selected lines rather than scanning all
+      // lines, so that small selections in large diffs are cheap
+      ArrayList<Integer> rows = new ArrayList<Integer>();
+      for (ChunkOrLine value : selectionModel_.getSelectedSet())
+      {
+         Integer row = rowsByDiffIndex_.get(getDiffIndex(value));
+         if (row != null && lines_.get(row).getLine() != null)
+            rows.add(row);
+      }
+      Collections.sort(rows);
+
       ArrayList<Line> selected = new ArrayList<Line>();
-      for (ChunkOrLine line : lines_)
-         if (line.getLine() != null && selectionModel_.isSelected(line))
-            selected.add(line.getLine());
+      for (Integer row : rows)
+         selected.add(lines_.get(row).getLine());
       return selected;
    }
 
@@ -543,14 +803,28 @@ public class LineTableView extends MultiSelectCellTable<ChunkOrLine> implements
 
    private boolean showActions_ = true;
    private ArrayList<ChunkOrLine> lines_;
+   // diff index => row, for O(1) lookups of lines and chunks
+   private final HashMap<Integer, Integer> rowsByDiffIndex_ =
+                                          new HashMap<Integer, Integer>();
    private SwitchableSelectionModel<ChunkOrLine> selectionModel_;
    private HashSet<Integer> startRows_ = new HashSet<Integer>();
    private HashSet<Integer> endRows_ = new HashSet<Integer>();
    private boolean useStartBorder_ = false;
    private boolean useEndBorder_ = true;
+   // border state carried between appendData calls
+   private Line.Type borderState_ = Line.Type.Same;
+   private boolean suppressNextStart_ = true;
+
+   private ScrollPanel scrollContainer_;
+   private LineTableScroller scroller_;
+   private double marginTop_ = 0;
+   private double marginBottom_ = 0;
    // Keep explicit track of the first selected line so we can render it differently
    private ChunkOrLine firstSelectedLine_;
    private static final LineTableViewCellTableResources RES = GWT.create(LineTableViewCellTableResources.class);
    private static final LineActionButtonRenderer blueButtonRenderer_ = LineActionButtonRenderer.createBlue();
    private static final LineActionButtonRenderer grayButtonRenderer_ = LineActionButtonRenderer.createGray();
+
+   private static final int OVERSCAN_ROWS = 100;
+   private static final int DEFAULT_ROW_HEIGHT = 16;
 }
@@ -0,0 +1,108 @@
+/*
+ * PackedLines.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.diff;
+
+/**
+ * The line numbers, masks and text offsets of the lines of a chunk, kept in
+ * primitive arrays shared by all of the chunk's lines. Lines created by
+ * IndexedUnifiedParser refer to an index in here, and only create their own
+ * arrays and text when they are asked for them.
+ */
+class PackedLines
+{
+   PackedLines(String data, int columns, int capacity)
+   {
+      data_ = data;
+      columns_ = columns;
+      capacity_ = Math.max(capacity, 1);
+      textStarts_ = new int[capacity_];
+      textEnds_ = new int[capacity_];
+      positions_ = new int[capacity_ * columns];
+      masks_ = new boolean[capacity_ * columns];
+   }
+
+   /**
+    * Adds a line whose text spans textStart to textEnd in the data, and
+    * returns its index. If invert is true the complement of the mask is
+    * stored.
+    */
+   int add(int textStart,
+           int textEnd,
+           int[] positions,
+           boolean[] mask,
+           boolean invert)
+   {
+      if (count_ == capacity_)
+         grow();
+
+      int index = count_++;
+      textStarts_[index] = textStart;
+      textEnds_[index] = textEnd;
+
+      int offset = index * columns_;
+      System.arraycopy(positions, 0, positions_, offset, columns_);
+      for (int i = 0; i < columns_; i++)
+         masks_[offset + i] = mask[i] != invert;
+
+      return index;
+   }
+
+   String getText(int index)
+   {
+      return data_.substring(textStarts_[index], textEnds_[index]);
+   }
+
+   int[] getLines(int index)
+   {
+      int[] lines = new int[columns_];
+      System.arraycopy(positions_, index * columns_, lines, 0, columns_);
+      return lines;
+   }
+
+   boolean[] getAppliesTo(int index)
+   {
+      boolean[] appliesTo = new boolean[columns_];
+      System.arraycopy(masks_, index * columns_, appliesTo, 0, columns_);
+      return appliesTo;
+   }
+
+   private void grow()
+   {
+      int capacity = capacity_ * 2;
+      textStarts_ = copyOf(textStarts_, capacity);
+      textEnds_ = copyOf(textEnds_, capacity);
+      positions_ = copyOf(positions_, capacity * columns_);
+
+      boolean[] masks = new boolean[capacity * columns_];
+      System.arraycopy(masks_, 0, masks, 0, masks_.length);
+      masks_ = masks;
+
+      capacity_ = capacity;
+   }
+
+   private static int[] copyOf(int[] array, int length)
+   {
+      int[] result = new int[length];
+      System.arraycopy(array, 0, result, 0, array.length);
+      return result;
+   }
+
+   private final String data_;
+   private final int columns_;
+   private int capacity_;
+   private int count_;
+   private int[] textStarts_;
+   private int[] textEnds_;
+   private int[] positions_;
+   private boolean[] masks_;
+}
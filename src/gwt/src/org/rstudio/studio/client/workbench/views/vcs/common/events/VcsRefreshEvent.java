@@ -13,6 +13,7 @@
 package org.rstudio.studio.client.workbench.views.vcs.common.events;
 
 import com.google.gwt.event.shared.GwtEvent;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 
 public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
 {
@@ -20,6 +21,7 @@ public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
 
    private final Reason reason_;
    private final int delayMs_;
+   private final StatusDelta delta_;
 
    public static final Type<VcsRefreshHandler> TYPE = new Type<VcsRefreshHandler>();
 
@@ -32,6 +34,18 @@ public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
    {
       reason_ = reason;
       delayMs_ = delayMs;
+      delta_ = null;
+   }
+
+   /**
+    * An event for file changes that only affected the given rows, which
+    * handlers can apply instead of reloading the whole status.
+    */
+   public VcsRefreshEvent(Reason reason, StatusDelta delta)
+   {
+      reason_ = reason;
+      delayMs_ = 0;
+      delta_ = delta;
    }
 
    public Reason getReason()
@@ -44,6 +58,15 @@ public class VcsRefreshEvent extends GwtEvent<VcsRefreshHandler>
       return delayMs_;
    }
 
+   /**
+    * Returns the rows that changed, or null if the whole status may have
+    * changed.
+    */
+   public StatusDelta getDelta()
+   {
+      return delta_;
+   }
+
    @Override
    public Type<VcsRefreshHandler> getAssociatedType()
    {
@@ -0,0 +1,50 @@
+/*
+ * StatusDelta.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.model;
+
+import org.rstudio.studio.client.common.vcs.StatusAndPath;
+
+import java.util.ArrayList;
+
+/**
+ * The rows that changed in the VCS status as the result of a batch of file
+ * changes. A file whose status changed appears in both lists: its old
+ * entry in removed and its new entry in added.
+ */
+public class StatusDelta
+{
+   public StatusDelta(ArrayList<StatusAndPath> removed,
+                      ArrayList<StatusAndPath> added)
+   {
+      removed_ = removed;
+      added_ = added;
+   }
+
+   public ArrayList<StatusAndPath> getRemoved()
+   {
+      return removed_;
+   }
+
+   public ArrayList<StatusAndPath> getAdded()
+   {
+      return added_;
+   }
+
+   public boolean isEmpty()
+   {
+      return removed_.isEmpty() && added_.isEmpty();
+   }
+
+   private final ArrayList<StatusAndPath> removed_;
+   private final ArrayList<StatusAndPath> added_;
+}
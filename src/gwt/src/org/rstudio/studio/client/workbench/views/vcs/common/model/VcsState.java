@@ -12,6 +12,8 @@
  */
 package org.rstudio.studio.client.workbench.views.vcs.common.model;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
@@ -35,6 +37,10 @@ import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshEve
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshHandler;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 public abstract class VcsState
 {
@@ -91,36 +97,33 @@ public abstract class VcsState
             FileChange fileChange = event.getFileChange();
             FileSystemItem file = fileChange.getFile();
 
-            StatusAndPath status = StatusAndPath.fromInfo(
-                  getStatusFromFile(file));
-
+            // File changes arrive in bursts (e.g. during a build), so they
+            // are queued and applied together once per frame
             if (needsFullRefresh(file))
             {
-               refresh(false);
-               return;
+               fullRefreshPending_ = true;
+            }
+            else
+            {
+               StatusAndPath status = StatusAndPath.fromInfo(
+                     getStatusFromFile(file));
+               if (status == null)
+                  return;
+               pendingChanges_.put(status.getRawPath(), status);
             }
 
-            if (status_ != null && status != null)
+            if (!flushScheduled_)
             {
-               for (int i = 0; i < status_.size(); i++)
+               flushScheduled_ = true;
+               AnimationScheduler.get().requestAnimationFrame(
+                     new AnimationCallback()
                {
-                  if (status.getRawPath().equals(status_.get(i).getRawPath()))
+                  @Override
+                  public void execute(double timestamp)
                   {
-                     if (StringUtil.notNull(status.getStatus()).trim().length() == 0)
-                        status_.remove(i);
-                     else
-                        status_.set(i, status);
-                     handlers_.fireEvent(new VcsRefreshEvent(Reason.FileChange));
-                     return;
+                     flushPendingChanges();
                   }
-               }
-
-               if (status.getStatus().trim().length() != 0)
-               {
-                  status_.add(status);
-                  handlers_.fireEvent(new VcsRefreshEvent(Reason.FileChange));
-                  return;
-               }
+               });
             }
          }
       }));
@@ -165,11 +168,102 @@ public abstract class VcsState
       return hreg;
    }
 
+   /**
+    * Returns the status of the changed files, sorted by raw path. Callers
+    * must not modify the list.
+    */
    public ArrayList<StatusAndPath> getStatus()
    {
       return status_;
    }
 
+   /**
+    * Replaces the whole status (e.g. with the result of a status request).
+    */
+   protected void setStatus(ArrayList<StatusAndPath> status)
+   {
+      statusByPath_.clear();
+      if (status != null)
+      {
+         Collections.sort(status, RAW_PATH_ORDER);
+         for (StatusAndPath item : status)
+            statusByPath_.put(item.getRawPath(), item);
+      }
+      status_ = status;
+   }
+
+   private void flushPendingChanges()
+   {
+      flushScheduled_ = false;
+
+      if (fullRefreshPending_)
+      {
+         // The refresh supersedes any individual changes
+         fullRefreshPending_ = false;
+         pendingChanges_.clear();
+         refresh(false);
+         return;
+      }
+
+      if (status_ == null)
+      {
+         pendingChanges_.clear();
+         return;
+      }
+
+      ArrayList<StatusAndPath> removed = new ArrayList<StatusAndPath>();
+      ArrayList<StatusAndPath> added = new ArrayList<StatusAndPath>();
+      for (StatusAndPath status : pendingChanges_.values())
+      {
+         StatusAndPath existing = statusByPath_.get(status.getRawPath());
+         boolean unchanged =
+               StringUtil.notNull(status.getStatus()).trim().length() == 0;
+
+         if (existing != null)
+         {
+            if (!unchanged && isSameStatus(existing, status))
+               continue;
+
+            removeSorted(existing);
+            statusByPath_.remove(existing.getRawPath());
+            removed.add(existing);
+         }
+
+         if (!unchanged)
+         {
+            insertSorted(status);
+            statusByPath_.put(status.getRawPath(), status);
+            added.add(status);
+         }
+      }
+      pendingChanges_.clear();
+
+      StatusDelta delta = new StatusDelta(removed, added);
+      if (!delta.isEmpty())
+         handlers_.fireEvent(new VcsRefreshEvent(Reason.FileChange, delta));
+   }
+
+   private static boolean isSameStatus(StatusAndPath a, StatusAndPath b)
+   {
+      return a.getStatus().equals(b.getStatus()) &&
+             a.isDiscardable() == b.isDiscardable() &&
+             StringUtil.notNull(a.getChangelist()).equals(
+                                       StringUtil.notNull(b.getChangelist()));
+   }
+
+   private void insertSorted(StatusAndPath item)
+   {
+      int index = Collections.binarySearch(status_, item, RAW_PATH_ORDER);
+      status_.add(index < 0 ? -(index + 1) : index, item);
+   }
+
+   private void removeSorted(StatusAndPath item)
+   {
+      int index = Collections.binarySearch(status_, item, RAW_PATH_ORDER);
+      if (index >= 0)
+         status_.remove(index);
+   }
+
    public void refresh()
    {
       if (session_.getSessionInfo().isVcsEnabled())
@@ -185,8 +279,26 @@ public abstract class VcsState
    protected abstract boolean isInitialized();
 
    protected final HandlerManager handlers_ = new HandlerManager(this);
-   protected ArrayList<StatusAndPath> status_;
+   private ArrayList<StatusAndPath> status_;
+   private final HashMap<String, StatusAndPath> statusByPath_ =
+                                       new HashMap<String, StatusAndPath>();
+
+   // raw path => latest status, for file changes not yet applied
+   private final LinkedHashMap<String, StatusAndPath> pendingChanges_ =
+                                 new LinkedHashMap<String, StatusAndPath>();
+   private boolean fullRefreshPending_;
+   private boolean flushScheduled_;
    protected final EventBus eventBus_;
    protected final GlobalDisplay globalDisplay_;
    protected final Session session_;
+
+   private static final Comparator<StatusAndPath> RAW_PATH_ORDER =
+         new Comparator<StatusAndPath>()
+   {
+      @Override
+      public int compare(StatusAndPath a, StatusAndPath b)
+      {
+         return a.getRawPath().compareTo(b.getRawPath());
+      }
+   };
 }
@@ -101,71 +101,130 @@ public class CommitDetail extends Composite implements CommitDetailDisplay
       invalidation_.invalidate();
       final Token token = invalidation_.getInvalidationToken();
 
-      Scheduler.get().scheduleIncremental(new RepeatingCommand() {
-         @Override
-         public boolean execute()
-         {
-            if (token.isInvalid())
-               return false;
+      Scheduler.get().scheduleIncremental(
+                        new DetailRenderer(unifiedParser, suppressViewLink, token));
+   }
 
-            final DiffFileHeader fileHeader = unifiedParser.nextFilePair();
-            if (fileHeader == null)
-               return false;
+   /**
+    * Parses and adds the files of a commit a slice at a time, so that large
+    * commits don't block the UI. Each file's lines are appended to its
+    * LineTableView as they are parsed; the table only renders the rows that
+    * are scrolled into view.
+    */
+   private class DetailRenderer implements RepeatingCommand
+   {
+      public DetailRenderer(DiffParser parser,
+                            boolean suppressViewLink,
+                            Token token)
+      {
+         parser_ = parser;
+         suppressViewLink_ = suppressViewLink;
+         token_ = token;
+      }
+
+      @Override
+      public boolean execute()
+      {
+         if (token_.isInvalid())
+            return false;
+
+         if (view_ == null)
+            return startFile();
+
+         ArrayList<ChunkOrLine> lines = new ArrayList<ChunkOrLine>();
+         boolean more = readLines(lines);
+         view_.appendData(lines);
+         if (!more)
+            view_ = null;
+         return true;
+      }
+
+      private boolean startFile()
+      {
+         final DiffFileHeader fileHeader = parser_.nextFilePair();
+         if (fileHeader == null)
+            return false;
 
-            int filesCompared = 2;
-            ArrayList<ChunkOrLine> lines = new ArrayList<ChunkOrLine>();
-            DiffChunk chunk;
-            while (null != (chunk = unifiedParser.nextChunk()))
+         // The number of line number columns comes from the first real chunk
+         int filesCompared = 2;
+         ArrayList<ChunkOrLine> lines = new ArrayList<ChunkOrLine>();
+         DiffChunk chunk;
+         while (null != (chunk = parser_.nextChunk()))
+         {
+            lines.addAll(ChunkOrLine.fromChunk(chunk));
+            if (!chunk.shouldIgnore())
             {
-               if (!chunk.shouldIgnore())
-                  filesCompared = chunk.getRanges().length;
-               lines.addAll(ChunkOrLine.fromChunk(chunk));
+               filesCompared = chunk.getRanges().length;
+               break;
             }
+         }
+         boolean more = chunk != null && readLines(lines);
 
-            LineTableView view = new LineTableView(filesCompared);
-            view.setUseStartBorder(true);
-            view.setUseEndBorder(false);
-            view.setShowActions(false);
-            view.setData(lines, PatchMode.Stage);
-            view.setWidth("100%");
-            
-            final DiffFrame diffFrame = new DiffFrame(
-                           null, 
-                           fileHeader.getDescription(), 
-                           null, 
-                           commit_.getId(), 
-                           view,
-                           new ClickHandler() {
-                              @Override
-                              public void onClick(ClickEvent event)
-                              { 
-                                 fireEvent(new ViewFileRevisionEvent(
-                                          commit_.getId(), 
-                                          fileHeader.getDescription().trim()));
-                                 
-                              }
-                           },
-                           suppressViewLink);
-            diffFrame.setWidth("100%");
-            detailPanel_.add(diffFrame);
-
-            CommitTocRow tocAnchor = new CommitTocRow(fileHeader.getDescription());
-            tocAnchor.addClickHandler(new ClickHandler()
+         LineTableView view = new LineTableView(filesCompared);
+         view.setUseStartBorder(true);
+         view.setUseEndBorder(false);
+         view.setShowActions(false);
+         view.setScrollContainer(container_);
+         view.setData(lines, PatchMode.Stage);
+         view.setWidth("100%");
+         
+         final DiffFrame diffFrame = new DiffFrame(
+                        null, 
+                        fileHeader.getDescription(), 
+                        null, 
+                        commit_.getId(), 
+                        view,
+                        new ClickHandler() {
+                           @Override
+                           public void onClick(ClickEvent event)
+                           { 
+                              fireEvent(new ViewFileRevisionEvent(
+                                       commit_.getId(), 
+                                       fileHeader.getDescription().trim()));
+                              
+                           }
+                        },
+                        suppressViewLink_);
+         diffFrame.setWidth("100%");
+         detailPanel_.add(diffFrame);
+
+         CommitTocRow tocAnchor = new CommitTocRow(fileHeader.getDescription());
+         tocAnchor.addClickHandler(new ClickHandler()
+         {
+            @Override
+            public void onClick(ClickEvent event)
             {
-               @Override
-               public void onClick(ClickEvent event)
-               {
-                  Point relativePosition = DomUtils.getRelativePosition(
-                        container_.getElement(),
-                        diffFrame.getElement());
-                  container_.setVerticalScrollPosition(relativePosition.getY());
-               }
-            });
-            tocPanel_.add(tocAnchor);
-
-            return true;
+               Point relativePosition = DomUtils.getRelativePosition(
+                     container_.getElement(),
+                     diffFrame.getElement());
+               container_.setVerticalScrollPosition(relativePosition.getY());
+            }
+         });
+         tocPanel_.add(tocAnchor);
+
+         view_ = more ? view : null;
+         return true;
+      }
+
+      // Reads chunks until at least LINES_PER_STEP lines have been read.
+      // Returns false if the file has no more chunks.
+      private boolean readLines(ArrayList<ChunkOrLine> lines)
+      {
+         DiffChunk chunk;
+         while (lines.size() < LINES_PER_STEP)
+         {
+            if (null == (chunk = parser_.nextChunk()))
+               return false;
+            lines.addAll(ChunkOrLine.fromChunk(chunk));
          }
-      });
+         return true;
+      }
+
+      private final DiffParser parser_;
+      private final boolean suppressViewLink_;
+      private final Token token_;
+      // the view of the file being read, if it has more chunks
+      private LineTableView view_;
    }
 
    @Override
@@ -264,5 +323,7 @@ public class CommitDetail extends Composite implements CommitDetailDisplay
    HTMLPanel commitViewPanel_;
 
    private ScrollPanel container_;
+
+   private static final int LINES_PER_STEP = 2000;
    
 }
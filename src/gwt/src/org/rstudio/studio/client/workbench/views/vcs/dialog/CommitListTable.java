@@ -12,9 +12,11 @@
  */
 package org.rstudio.studio.client.workbench.views.vcs.dialog;
 
+import com.google.gwt.canvas.client.Canvas;
 import com.google.gwt.cell.client.AbstractSafeHtmlCell;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.i18n.client.DateTimeFormat;
@@ -35,8 +37,10 @@ import org.rstudio.core.client.widget.MultiSelectCellTable;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.HistoryPanel.Styles;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.HistoryPresenter.CommitListDisplay;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.graph.GraphLine;
+import org.rstudio.studio.client.workbench.views.vcs.dialog.graph.GraphRenderCache;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.graph.GraphTheme;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class CommitListTable extends MultiSelectCellTable<CommitInfo>
@@ -113,19 +117,13 @@ public class CommitListTable extends MultiSelectCellTable<CommitInfo>
    {
       public GraphRenderer(GraphTheme theme)
       {
-         theme_ = theme;
+         cache_ = new GraphRenderCache(theme);
       }
 
       @Override
       public SafeHtml render(CommitInfo object)
       {
-         if (lastGraphImg_ != null && object.getGraph().equals(lastGraph_))
-            return lastGraphImg_;
-
-         lastGraph_ = object.getGraph();
-         if (object.getGraph().length() == 0)
-            return lastGraphImg_ = SafeHtmlUtil.createEmpty();
-         return lastGraphImg_ = new GraphLine(object.getGraph()).render(theme_);
+         return cache_.render(object.getGraph());
       }
 
       @Override
@@ -134,9 +132,7 @@ public class CommitListTable extends MultiSelectCellTable<CommitInfo>
          builder.append(render(object));
       }
 
-      private final GraphTheme theme_;
-      private String lastGraph_ = "";
-      private SafeHtml lastGraphImg_;
+      private final GraphRenderCache cache_;
    }
 
    private class SubjectRenderer implements SafeHtmlRenderer<CommitInfo>
@@ -192,6 +188,9 @@ public class CommitListTable extends MultiSelectCellTable<CommitInfo>
       styles_ = styles;
 
       graphTheme_ = new GraphTheme(styles.graphLineImg());
+      // Without canvas support the graph can't be drawn as images
+      graphTheme_.setVectorRendering(!Canvas.isSupported());
+      graphCache_ = new GraphRenderCache(graphTheme_);
       graphCol_ = new CommitColumn(new GraphRenderer(graphTheme_));
       addColumn(graphCol_);
 
@@ -272,6 +271,39 @@ public class CommitListTable extends MultiSelectCellTable<CommitInfo>
       maybePreselectFirstRow();
    }
 
+   /**
+    * Renders the graphs of commits that are likely to be shown soon (e.g.
+    * the next page of history) during idle time, so they're already cached
+    * when that page is displayed.
+    */
+   public void prefetchGraphs(List<CommitInfo> commits)
+   {
+      final ArrayList<String> graphs = new ArrayList<String>();
+      for (CommitInfo commit : commits)
+      {
+         String graph = commit.getGraph();
+         if (graph != null && !graphCache_.isCached(graph))
+            graphs.add(graph);
+      }
+
+      if (graphs.isEmpty())
+         return;
+
+      Scheduler.get().scheduleIncremental(new RepeatingCommand()
+      {
+         @Override
+         public boolean execute()
+         {
+            int end = Math.min(next_ + GRAPHS_PER_STEP, graphs.size());
+            for (; next_ < end; next_++)
+               graphCache_.render(graphs.get(next_));
+            return next_ < graphs.size();
+         }
+
+         private int next_ = 0;
+      });
+   }
+
    private void maybePreselectFirstRow()
    {
       if (!autoSelectFirstRow_)
@@ -321,5 +353,8 @@ public class CommitListTable extends MultiSelectCellTable<CommitInfo>
    private final Styles styles_;
    private CommitColumn graphCol_;
    private GraphTheme graphTheme_;
+   private final GraphRenderCache graphCache_;
    private boolean autoSelectFirstRow_ = true;
+
+   private static final int GRAPHS_PER_STEP = 20;
 }
@@ -26,6 +26,8 @@ import org.rstudio.studio.client.common.Value;
 import org.rstudio.studio.client.server.ServerError;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 
+import java.util.ArrayList;
+
 public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitInfo>
 {
    @Inject
@@ -60,12 +62,14 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
    public void setRev(String rev)
    {
       rev_ = rev;
+      prefetched_ = null;
    }
    
    
 
    public void refreshCount()
    {
+      prefetched_ = null;
       getHistoryCount(
             rev_, 
             fileFilter_.getValue(), 
@@ -96,6 +100,15 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
       if (length == 0)
          return;
 
+      final String query = getQueryKey(start, length);
+      if (prefetched_ != null && prefetched_.query.equals(query))
+      {
+         ArrayList<CommitInfo> commits = prefetched_.commits;
+         prefetched_ = null;
+         onPageReceived(display, start, length, commits);
+         return;
+      }
+
       getHistory(
             rev_, fileFilter_.getValue(),
             start, length, searchText_.getValue(),
@@ -105,9 +118,7 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
                public void onResponseReceived(RpcObjectList<CommitInfo> response)
                {
                   super.onResponseReceived(response);
-                  if (response.length() < length)
-                     updateRowCount(start + response.length(), true);
-                  updateRowData(start, response.toArrayList());
+                  onPageReceived(display, start, length, response.toArrayList());
                }
 
                @Override
@@ -125,6 +136,85 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
             });
    }
 
+   private void onPageReceived(HasData<CommitInfo> display,
+                               int start,
+                               int length,
+                               ArrayList<CommitInfo> commits)
+   {
+      if (commits.size() < length)
+         updateRowCount(start + commits.size(), true);
+      updateRowData(start, commits);
+
+      // A full page means there may be another after it
+      if (commits.size() == length)
+         prefetchPage(display, start + length, length);
+   }
+
+   // Fetches the given page in the background so that paging forward is
+   // immediate, and renders its graphs while the user reads this page
+   private void prefetchPage(final HasData<CommitInfo> display,
+                             int start,
+                             int length)
+   {
+      final String query = getQueryKey(start, length);
+      if (prefetched_ != null && prefetched_.query.equals(query))
+         return;
+
+      getHistory(
+            rev_, fileFilter_.getValue(),
+            start, length, searchText_.getValue(),
+            new ServerRequestCallback<RpcObjectList<CommitInfo>>()
+            {
+               @Override
+               public void onResponseReceived(RpcObjectList<CommitInfo> response)
+               {
+                  // The query may have changed (e.g. a new search) while
+                  // this was in flight
+                  Range range = display.getVisibleRange();
+                  String current = getQueryKey(
+                        range.getStart() + range.getLength(),
+                        range.getLength());
+                  if (!current.equals(query))
+                     return;
+
+                  prefetched_ = new Page(query, response.toArrayList());
+                  if (display instanceof CommitListTable)
+                  {
+                     ((CommitListTable) display).prefetchGraphs(
+                                                      prefetched_.commits);
+                  }
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  // The page will be requested again if it's shown
+               }
+            });
+   }
+
+   private String getQueryKey(int start, int length)
+   {
+      FileSystemItem fileFilter = fileFilter_.getValue();
+      return rev_ + "\n" +
+             (fileFilter == null ? "" : fileFilter.getPath()) + "\n" +
+             searchText_.getValue() + "\n" +
+             start + "\n" +
+             length;
+   }
+
+   private static class Page
+   {
+      Page(String query, ArrayList<CommitInfo> commits)
+      {
+         this.query = query;
+         this.commits = commits;
+      }
+
+      final String query;
+      final ArrayList<CommitInfo> commits;
+   }
+
    protected abstract void getHistoryCount(
          String revision,
          FileSystemItem fileFilter,
@@ -143,4 +233,5 @@ public abstract class HistoryAsyncDataProvider extends AsyncDataProvider<CommitI
    private HasValue<String> searchText_;
    private HasValue<FileSystemItem> fileFilter_;
    private HistoryStrategy strategy_;
+   private Page prefetched_;
 }
@@ -16,6 +16,7 @@ import com.google.gwt.canvas.client.Canvas;
 import com.google.gwt.canvas.dom.client.Context2d;
 import com.google.gwt.canvas.dom.client.Context2d.LineJoin;
 import com.google.gwt.safehtml.shared.SafeHtml;
+import com.google.gwt.safehtml.shared.SafeHtmlUtils;
 import org.rstudio.core.client.SafeHtmlUtil;
 
 public class GraphLine
@@ -55,6 +56,111 @@ public class GraphLine
                                         "src", s_canvas.toDataUrl());
    }
 
+   /**
+    * Renders the line as inline SVG, which takes no canvas drawing or PNG
+    * encoding and scales cleanly. The shapes are the same as render().
+    */
+   public SafeHtml renderVector(GraphTheme theme)
+   {
+      int height = theme.getRowHeight();
+      int colWidth = theme.getColumnWidth();
+      double pad = theme.getVerticalLinePadding();
+      double mid = height / 2.0;
+      double offset = colWidth / 2.0;
+
+      StringBuilder sb = new StringBuilder();
+      sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" class=\"")
+        .append(SafeHtmlUtils.htmlEscape(theme.getImgClassName()))
+        .append("\" width=\"").append(getTotalWidth(theme))
+        .append("\" height=\"").append(height).append("\">")
+        .append("<g fill=\"none\" stroke-linejoin=\"round\" stroke-width=\"")
+        .append(theme.getStrokeWidth()).append("\">");
+
+      int startPos = -1;
+      int endPos = -1;
+      int nexusColumn = -1;
+      String nexusColor = null;
+      for (int i = 0; i < columns_.length; i++)
+      {
+         GraphColumn c = columns_[i];
+
+         if (!c.start)
+            startPos++;
+         if (!c.end)
+            endPos++;
+
+         String color = theme.getColorForId(c.id).value();
+
+         if (!c.nexus && !c.start && !c.end)
+         {
+            double[] points = {
+                  startPos * colWidth, 0,
+                  startPos * colWidth, pad,
+                  Math.min(startPos, endPos) * colWidth, mid,
+                  endPos * colWidth, height - pad,
+                  endPos * colWidth, height };
+            appendPolyline(sb, color, offset, points);
+         }
+         else
+         {
+            if (c.nexus)
+            {
+               nexusColumn = i;
+               nexusColor = color;
+            }
+
+            if (!c.start)
+            {
+               double[] points = {
+                     startPos * colWidth, 0,
+                     startPos * colWidth, pad,
+                     nexusColumn * colWidth, mid };
+               appendPolyline(sb, color, offset, points);
+            }
+
+            if (!c.end)
+            {
+               double[] points = {
+                     nexusColumn * colWidth, mid,
+                     endPos * colWidth, height - pad,
+                     endPos * colWidth, height };
+               appendPolyline(sb, color, offset, points);
+            }
+         }
+      }
+      sb.append("</g>");
+
+      if (nexusColor != null)
+      {
+         double cx = nexusColumn * colWidth + offset;
+         double radius = theme.getCircleRadius();
+         sb.append("<circle cx=\"").append(cx).append("\" cy=\"").append(mid)
+           .append("\" r=\"").append(radius + theme.getStrokeWidth())
+           .append("\" fill=\"").append(nexusColor).append("\"/>")
+           .append("<circle cx=\"").append(cx).append("\" cy=\"").append(mid)
+           .append("\" r=\"").append(radius)
+           .append("\" fill=\"white\"/>");
+      }
+
+      sb.append("</svg>");
+      return SafeHtmlUtils.fromTrustedString(sb.toString());
+   }
+
+   private static void appendPolyline(StringBuilder sb,
+                                      String color,
+                                      double xOffset,
+                                      double[] points)
+   {
+      sb.append("<polyline stroke=\"").append(color).append("\" points=\"");
+      for (int i = 0; i < points.length; i += 2)
+      {
+         if (i > 0)
+            sb.append(' ');
+         sb.append(points[i] + xOffset).append(',').append(points[i + 1]);
+      }
+      sb.append("\"/>");
+   }
+
    private void draw(Canvas canvas, GraphTheme theme)
    {
       int height = theme.getRowHeight();
@@ -0,0 +1,77 @@
+/*
+ * GraphRenderCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.dialog.graph;
+
+import com.google.gwt.safehtml.shared.SafeHtml;
+import org.rstudio.core.client.SafeHtmlUtil;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the rendered HTML of graph lines. Rendering a line to an image
+ * means drawing it on a canvas and encoding it as a PNG data URL, and the
+ * same few graph strings recur over and over in a history, so the most
+ * recently used MAX_ENTRIES renderings are kept (shared by all tables,
+ * keyed by the graph string and the theme).
+ */
+public class GraphRenderCache
+{
+   public GraphRenderCache(GraphTheme theme)
+   {
+      theme_ = theme;
+   }
+
+   public SafeHtml render(String graph)
+   {
+      if (graph.length() == 0)
+         return SafeHtmlUtil.createEmpty();
+
+      String key = getKey(graph);
+      SafeHtml html = s_cache.get(key);
+      if (html == null)
+      {
+         GraphLine line = new GraphLine(graph);
+         html = theme_.isVectorRendering() ? line.renderVector(theme_)
+                                           : line.render(theme_);
+         s_cache.put(key, html);
+      }
+      return html;
+   }
+
+   public boolean isCached(String graph)
+   {
+      return graph.length() == 0 || s_cache.containsKey(getKey(graph));
+   }
+
+   private String getKey(String graph)
+   {
+      return theme_.getImgClassName() +
+             (theme_.isVectorRendering() ? "|svg|" : "|img|") +
+             graph;
+   }
+
+   private final GraphTheme theme_;
+
+   private static final int MAX_ENTRIES = 5000;
+
+   private static final LinkedHashMap<String, SafeHtml> s_cache =
+         new LinkedHashMap<String, SafeHtml>(256, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, SafeHtml> eldest)
+      {
+         return size() > MAX_ENTRIES;
+      }
+   };
+}
@@ -71,7 +71,22 @@ public class GraphTheme
       return className_;
    }
 
+   /**
+    * If true, graph lines are rendered as inline SVG rather than as images
+    * drawn on a canvas.
+    */
+   public boolean isVectorRendering()
+   {
+      return vectorRendering_;
+   }
+
+   public void setVectorRendering(boolean vectorRendering)
+   {
+      vectorRendering_ = vectorRendering;
+   }
+
    private final String className_;
+   private boolean vectorRendering_;
 
    private static HashMap<Integer, CssColor> colors_ = new HashMap<Integer, CssColor>();
 }
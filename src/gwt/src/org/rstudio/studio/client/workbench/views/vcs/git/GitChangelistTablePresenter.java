@@ -64,7 +64,10 @@ public class GitChangelistTablePresenter
          @Override
          public void onVcsRefresh(VcsRefreshEvent event)
          {
-            view_.setItems(gitState_.getStatus());
+            if (event.getDelta() != null)
+               view_.applyDelta(event.getDelta());
+            else
+               view_.setItems(gitState_.getStatus());
             
             RemoteBranchInfo remote = gitState_.getRemoteBranchInfo();
             if (remote != null && remote.getCommitsBehind() > 0)
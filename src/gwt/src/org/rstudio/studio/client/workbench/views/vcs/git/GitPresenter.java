@@ -96,7 +96,10 @@ public class GitPresenter extends BaseVcsPresenter implements IsWidget
          @Override
          public void onVcsRefresh(VcsRefreshEvent event)
          {
-            view_.setItems(gitState_.getStatus());
+            // Changes to a few rows are applied by the changelist table's
+            // own presenter
+            if (event.getDelta() == null)
+               view_.setItems(gitState_.getStatus());
          }
       });
 
@@ -0,0 +1,189 @@
+/*
+ * GitDiffCache.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.git.dialog;
+
+import org.rstudio.core.client.jsonrpc.RequestLog;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry;
+import org.rstudio.core.client.jsonrpc.RequestLogEntry.ResponseType;
+import org.rstudio.studio.client.common.vcs.DiffResult;
+import org.rstudio.studio.client.common.vcs.GitServerOperations.PatchMode;
+import org.rstudio.studio.client.common.vcs.StatusAndPath;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The diffs of files in the review dialog, so that moving back and forth
+ * through the changelist (and to rows that were prefetched) doesn't wait
+ * on the server. Entries are keyed by path, patch mode, context lines and
+ * the file's status; the least recently used are evicted once there are
+ * more than MAX_ENTRIES or their total size exceeds MAX_CHARS.
+ *
+ * Lookups are recorded in the request log, along with the running hit
+ * and miss counts.
+ */
+public class GitDiffCache
+{
+   public static String getKey(StatusAndPath item,
+                               PatchMode patchMode,
+                               int contextLines)
+   {
+      return item.getPath() + "\n" + patchMode + "\n" + contextLines + "\n" +
+             item.getStatus();
+   }
+
+   /**
+    * Returns the cached diff, or null. Prefetch lookups aren't counted as
+    * hits or misses, since no one is waiting for them.
+    */
+   public DiffResult get(String key, boolean prefetch)
+   {
+      CacheEntry entry = entries_.get(key);
+      if (!prefetch)
+      {
+         if (entry != null)
+            hits_++;
+         else
+            misses_++;
+         log(entry != null ? "hit" : "miss", key);
+      }
+      return entry == null ? null : entry.diff;
+   }
+
+   public boolean contains(String key)
+   {
+      return entries_.containsKey(key);
+   }
+
+   /**
+    * Adds a diff that was requested when the cache was at the given
+    * generation. If the cache has been invalidated since then the diff may
+    * be out of date, so it's ignored.
+    */
+   public void put(String key,
+                   DiffResult diff,
+                   boolean prefetch,
+                   int generation)
+   {
+      if (generation != generation_)
+         return;
+
+      int size = diff.getDecodedValue().length();
+      if (size > MAX_CHARS / 4)
+         return;
+
+      CacheEntry old = entries_.put(key, new CacheEntry(diff, size));
+      if (old != null)
+         totalChars_ -= old.size;
+      totalChars_ += size;
+
+      if (prefetch)
+      {
+         prefetches_++;
+         log("prefetch", key);
+      }
+
+      Iterator<CacheEntry> it = entries_.values().iterator();
+      while (totalChars_ > MAX_CHARS && it.hasNext())
+      {
+         totalChars_ -= it.next().size;
+         it.remove();
+      }
+   }
+
+   public int getGeneration()
+   {
+      return generation_;
+   }
+
+   /**
+    * Drops the diffs of the given path.
+    */
+   public void invalidate(String path)
+   {
+      generation_++;
+      String prefix = path + "\n";
+      Iterator<Map.Entry<String, CacheEntry>> it =
+                                             entries_.entrySet().iterator();
+      while (it.hasNext())
+      {
+         Map.Entry<String, CacheEntry> entry = it.next();
+         if (entry.getKey().startsWith(prefix))
+         {
+            totalChars_ -= entry.getValue().size;
+            it.remove();
+         }
+      }
+   }
+
+   public void clear()
+   {
+      generation_++;
+      entries_.clear();
+      totalChars_ = 0;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "hits=" + hits_ + " misses=" + misses_ +
+             " prefetches=" + prefetches_ + " entries=" + entries_.size();
+   }
+
+   private void log(String event, String key)
+   {
+      String path = key.substring(0, key.indexOf('\n'));
+      RequestLogEntry entry = RequestLog.log(
+            "diffcache" + (++logCounter_),
+            "{\"method\":\"git_diff_file_cache\", \"event\":\"" + event +
+            "\", \"path\":\"" + path.replace("\\", "\\\\").replace("\"", "\\\"") +
+            "\"}");
+      entry.logResponse(ResponseType.Normal, toString());
+   }
+
+   private static class CacheEntry
+   {
+      CacheEntry(DiffResult diff, int size)
+      {
+         this.diff = diff;
+         this.size = size;
+      }
+
+      final DiffResult diff;
+      final int size;
+   }
+
+   private final LinkedHashMap<String, CacheEntry> entries_ =
+         new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> e)
+      {
+         if (size() <= MAX_ENTRIES)
+            return false;
+         totalChars_ -= e.getValue().size;
+         return true;
+      }
+   };
+
+   private int totalChars_;
+   private int generation_;
+   private int hits_;
+   private int misses_;
+   private int prefetches_;
+   private int logCounter_;
+
+   private static final int MAX_ENTRIES = 50;
+   private static final int MAX_CHARS = 20 * 1024 * 1024;
+}
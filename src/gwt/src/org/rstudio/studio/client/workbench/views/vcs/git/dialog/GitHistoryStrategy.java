@@ -23,7 +23,7 @@ import org.rstudio.studio.client.common.vcs.GitServerOperations;
 import org.rstudio.studio.client.server.ServerRequestCallback;
 import org.rstudio.studio.client.workbench.views.vcs.common.Pager;
 import org.rstudio.studio.client.workbench.views.vcs.common.diff.DiffParser;
-import org.rstudio.studio.client.workbench.views.vcs.common.diff.UnifiedParser;
+import org.rstudio.studio.client.workbench.views.vcs.common.diff.IndexedUnifiedParser;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshHandler;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.CommitInfo;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.HistoryStrategy;
@@ -146,7 +146,7 @@ public class GitHistoryStrategy implements HistoryStrategy
    @Override
    public DiffParser createParserForCommit(String commitDiff)
    {
-      return new UnifiedParser(commitDiff);
+      return new IndexedUnifiedParser(commitDiff);
    }
    
    @Override
@@ -223,6 +223,8 @@ public class GitReviewPanel extends ResizeComposite implements Display
       Widget widget = GWT.<Binder>create(Binder.class).createAndBindUi(this);
       initWidget(widget);
 
+      lines_.setScrollContainer(diffScroll_);
+
       topToolbar_.addStyleName(RES.styles().toolbar());
 
       switchViewButton_ = new LeftRightToggleButton("Changes", "History", true);
@@ -64,6 +64,7 @@ import org.rstudio.studio.client.workbench.views.vcs.common.diff.*;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.*;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.DiffChunkActionEvent.Action;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshEvent.Reason;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.CommitInfo;
 import org.rstudio.studio.client.workbench.views.vcs.dialog.ReviewPresenter;
 import org.rstudio.studio.client.workbench.views.vcs.git.GitChangelistTable;
@@ -233,6 +234,17 @@ public class GitReviewPresenter implements ReviewPresenter
                @Override
                public void onVcsRefresh(VcsRefreshEvent event)
                {
+                  StatusDelta delta = event.getDelta();
+                  if (delta != null)
+                  {
+                     for (StatusAndPath item : delta.getRemoved())
+                        diffCache_.invalidate(item.getPath());
+                  }
+                  else
+                  {
+                     diffCache_.clear();
+                  }
+
                   if (event.getReason() == Reason.VcsOperation)
                   {
                      Scheduler.get().scheduleDeferred(new ScheduledCommand()
@@ -261,6 +273,14 @@ public class GitReviewPresenter implements ReviewPresenter
                @Override
                public void onFileChange(FileChangeEvent event)
                {
+                  StatusAndPath vcsStatus = StatusAndPath.fromInfo(
+                        event.getFileChange().getFile().getGitStatus());
+
+                  // The file's diff may have changed even if its status
+                  // didn't, whether or not it's selected
+                  if (vcsStatus != null)
+                     diffCache_.invalidate(vcsStatus.getPath());
+
                   ArrayList<StatusAndPath> paths = view_.getChangelistTable()
                         .getSelectedItems();
                   if (paths.size() != 1)
@@ -269,9 +289,8 @@ public class GitReviewPresenter implements ReviewPresenter
                      return;
                   }
 
-                  StatusAndPath vcsStatus = StatusAndPath.fromInfo(
-                        event.getFileChange().getFile().getGitStatus());
-                  if (paths.get(0).getRawPath().equals(vcsStatus.getRawPath()))
+                  if (vcsStatus != null &&
+                      paths.get(0).getRawPath().equals(vcsStatus.getRawPath()))
                   {
                      gitState.refresh(false);
                   }
@@ -663,45 +682,35 @@ public class GitReviewPresenter implements ReviewPresenter
       final PatchMode patchMode = view_.getStagedCheckBox().getValue()
                                   ? PatchMode.Stage
                                   : PatchMode.Working;
+      final int contextLines = view_.getContextLines().getValue();
+      final String cacheKey = GitDiffCache.getKey(item, patchMode, contextLines);
+
+      DiffResult cached = diffCache_.get(cacheKey, false);
+      if (cached != null)
+      {
+         showDiff(item, patchMode, cached);
+         prefetchDiffs(item, contextLines);
+         return;
+      }
+
+      final int generation = diffCache_.getGeneration();
       server_.gitDiffFile(
             item.getPath(),
             patchMode,
-            view_.getContextLines().getValue(),
+            contextLines,
             overrideSizeWarning_,
             new SimpleRequestCallback<DiffResult>("Diff Error")
             {
                @Override
                public void onResponseReceived(DiffResult diffResult)
                {
-                  if (token.isInvalid())
-                     return;
+                  diffCache_.put(cacheKey, diffResult, false, generation);
 
-                  // Use lastResponse_ to prevent unnecessary flicker
-                  String response = diffResult.getDecodedValue();
-                  if (response.equals(currentResponse_))
+                  if (token.isInvalid())
                      return;
-                  currentResponse_ = response;
-                  currentSourceEncoding_ = diffResult.getSourceEncoding();
-
-                  UnifiedParser parser = new UnifiedParser(response);
-                  parser.nextFilePair();
-
-                  ArrayList<ChunkOrLine> allLines = new ArrayList<ChunkOrLine>();
 
-                  activeChunks_.clear();
-                  for (DiffChunk chunk;
-                       null != (chunk = parser.nextChunk());)
-                  {
-                     activeChunks_.add(chunk);
-                     allLines.add(new ChunkOrLine(chunk));
-                     for (Line line : chunk.getLines())
-                        allLines.add(new ChunkOrLine(line));
-                  }
-
-                  view_.setShowActions(
-                        !"??".equals(item.getStatus()) &&
-                        !"UU".equals(item.getStatus()));
-                  view_.setData(allLines, patchMode);
+                  showDiff(item, patchMode, diffResult);
+                  prefetchDiffs(item, contextLines);
                }
 
                @Override
@@ -716,6 +725,106 @@ public class GitReviewPresenter implements ReviewPresenter
             });
    }
 
+   private void showDiff(StatusAndPath item,
+                         PatchMode patchMode,
+                         DiffResult diffResult)
+   {
+      // Use lastResponse_ to prevent unnecessary flicker
+      String response = diffResult.getDecodedValue();
+      if (response.equals(currentResponse_))
+         return;
+      currentResponse_ = response;
+      currentSourceEncoding_ = diffResult.getSourceEncoding();
+
+      IndexedUnifiedParser parser = new IndexedUnifiedParser(response);
+      parser.nextFilePair();
+
+      ArrayList<ChunkOrLine> allLines = new ArrayList<ChunkOrLine>();
+
+      activeChunks_.clear();
+      for (DiffChunk chunk;
+           null != (chunk = parser.nextChunk());)
+      {
+         activeChunks_.add(chunk);
+         allLines.add(new ChunkOrLine(chunk));
+         for (Line line : chunk.getLines())
+            allLines.add(new ChunkOrLine(line));
+      }
+
+      view_.setShowActions(
+            !"??".equals(item.getStatus()) &&
+            !"UU".equals(item.getStatus()));
+      view_.setData(allLines, patchMode);
+   }
+
+   /**
+    * Fetches the diffs of the rows after item in the background, one at a
+    * time, so that stepping down through the changelist is immediate.
+    * Any prefetching for a previous selection is abandoned.
+    */
+   private void prefetchDiffs(StatusAndPath item, final int contextLines)
+   {
+      prefetchInvalidation_.invalidate();
+      final Token token = prefetchInvalidation_.getInvalidationToken();
+      final ArrayList<StatusAndPath> items =
+            view_.getChangelistTable().getItemsAfter(item, PREFETCH_COUNT);
+
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         @Override
+         public void execute()
+         {
+            prefetchDiff(items, 0, contextLines, token);
+         }
+      });
+   }
+
+   private void prefetchDiff(final ArrayList<StatusAndPath> items,
+                             final int index,
+                             final int contextLines,
+                             final Token token)
+   {
+      if (token.isInvalid() || index >= items.size())
+         return;
+
+      // The mode the diff will be shown in when the row is selected
+      StatusAndPath item = items.get(index);
+      boolean staged = item.getStatus().charAt(0) != ' ' &&
+                       item.getStatus().charAt(1) == ' ';
+      PatchMode patchMode = staged ? PatchMode.Stage : PatchMode.Working;
+
+      final String cacheKey = GitDiffCache.getKey(item, patchMode, contextLines);
+      if (diffCache_.contains(cacheKey))
+      {
+         prefetchDiff(items, index + 1, contextLines, token);
+         return;
+      }
+
+      final int generation = diffCache_.getGeneration();
+      server_.gitDiffFile(
+            item.getPath(),
+            patchMode,
+            contextLines,
+            false,
+            new ServerRequestCallback<DiffResult>()
+            {
+               @Override
+               public void onResponseReceived(DiffResult diffResult)
+               {
+                  diffCache_.put(cacheKey, diffResult, true, generation);
+                  prefetchDiff(items, index + 1, contextLines, token);
+               }
+
+               @Override
+               public void onError(ServerError error)
+               {
+                  // e.g. the diff is too large to show without confirmation;
+                  // it will be requested again if the row is selected
+                  prefetchDiff(items, index + 1, contextLines, token);
+               }
+            });
+   }
+
    private void clearDiff()
    {
       softModeSwitch_ = false;
@@ -783,6 +892,8 @@ public class GitReviewPresenter implements ReviewPresenter
    }
 
    private final Invalidation diffInvalidation_ = new Invalidation();
+   private final Invalidation prefetchInvalidation_ = new Invalidation();
+   private final GitDiffCache diffCache_ = new GitDiffCache();
    private final GitServerOperations server_;
    private final GitPresenterCore gitPresenterCore_;
    private final Display view_;
@@ -797,6 +908,8 @@ public class GitReviewPresenter implements ReviewPresenter
    private GitState gitState_;
    private final VCSFileOpener vcsFileOpener_;
    private boolean initialized_;
+   // number of rows after the selection whose diffs are prefetched
+   private static final int PREFETCH_COUNT = 3;
    private static final String MODULE_GIT = "vcs_git";
    private static final String KEY_CONTEXT_LINES = "context_lines";
 
@@ -79,7 +79,7 @@ public class GitState extends VcsState
          @Override
          public void onResponseReceived(AllStatus response)
          {
-            status_ = StatusAndPath.fromInfos(response.getStatus());
+            setStatus(StatusAndPath.fromInfos(response.getStatus()));
             branches_ = response.getBranches();
             remoteBranchInfo_ = response.getRemoteBranchInfo();
             handlers_.fireEvent(new VcsRefreshEvent(Reason.VcsOperation));
@@ -17,6 +17,7 @@ import org.rstudio.core.client.StringUtil;
 import org.rstudio.studio.client.common.vcs.StatusAndPath;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshEvent;
 import org.rstudio.studio.client.workbench.views.vcs.common.events.VcsRefreshHandler;
+import org.rstudio.studio.client.workbench.views.vcs.common.model.StatusDelta;
 import org.rstudio.studio.client.workbench.views.vcs.svn.model.SVNState;
 
 import java.util.ArrayList;
@@ -34,6 +35,22 @@ public class SVNChangelistTablePresenter
          @Override
          public void onVcsRefresh(VcsRefreshEvent event)
          {
+            StatusDelta delta = event.getDelta();
+            if (delta != null)
+            {
+               ArrayList<StatusAndPath> added = new ArrayList<StatusAndPath>();
+               for (StatusAndPath item : delta.getAdded())
+               {
+                  if (rejectItem(item))
+                     continue;
+                  added.add(item);
+                  if (!StringUtil.isNullOrEmpty(item.getChangelist()))
+                     view.setChangelistColumnVisible(true);
+               }
+               view.applyDelta(new StatusDelta(delta.getRemoved(), added));
+               return;
+            }
+
             ArrayList<StatusAndPath> items =
                   new ArrayList<StatusAndPath>(svnState.getStatus());
 
@@ -129,7 +129,7 @@ public class SVNDiffParser implements DiffParser
          }
          else
          {
-            UnifiedParser parser = new UnifiedParser(section.data, diffIndex_);
+            IndexedUnifiedParser parser = new IndexedUnifiedParser(section.data, diffIndex_);
             DiffFileHeader filePair = parser.nextFilePair();
 
             if (filePair == null)
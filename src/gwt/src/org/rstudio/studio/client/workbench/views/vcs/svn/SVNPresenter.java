@@ -84,7 +84,10 @@ public class SVNPresenter extends BaseVcsPresenter
          @Override
          public void onVcsRefresh(VcsRefreshEvent event)
          {
-            view_.setItems(svnState_.getStatus());
+            // Changes to a few rows are applied by the changelist table's
+            // own presenter
+            if (event.getDelta() == null)
+               view_.setItems(svnState_.getStatus());
          }
       });      
       
@@ -214,6 +214,8 @@ public class SVNReviewPanel extends ResizeComposite implements Display
       Widget widget = GWT.<Binder>create(Binder.class).createAndBindUi(this);
       initWidget(widget);
 
+      lines_.setScrollContainer(diffScroll_);
+
       topToolbar_.addStyleName(RES.styles().toolbar());
 
       switchViewButton_ = new LeftRightToggleButton("Changes", "History", true);
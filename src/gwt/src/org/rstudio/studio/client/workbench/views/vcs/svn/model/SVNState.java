@@ -62,7 +62,7 @@ public class SVNState extends VcsState
          @Override
          public void onResponseReceived(JsArray<StatusAndPathInfo> response)
          {
-            status_ = StatusAndPath.fromInfos(response);
+            setStatus(StatusAndPath.fromInfos(response));
             handlers_.fireEvent(new VcsRefreshEvent(Reason.VcsOperation));
          }
 
@@ -80,7 +80,7 @@ public class SVNState extends VcsState
    @Override
    protected boolean isInitialized()
    {
-      return status_ != null;
+      return getStatus() != null;
    }
 
    private final SVNServerOperations server_;
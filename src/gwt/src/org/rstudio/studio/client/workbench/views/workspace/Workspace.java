@@ -48,6 +48,7 @@ import org.rstudio.studio.client.workbench.views.workspace.table.WorkspaceObject
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 public class Workspace
       extends BasePresenter
@@ -454,11 +455,15 @@ public class Workspace
             // user's scroll position
             if (!reset)
             {
+               HashSet<String> responseNames = new HashSet<String>();
+               for (int i = 0; i < response.length(); i++)
+                  responseNames.add(response.get(i).getName());
+
                ArrayList<String> objectNames = objects_.getObjectNames();
                for (int i=0; i<objectNames.size(); i++)
                {
                   String objectName = objectNames.get(i);
-                  if (!containsObject(response, objectName))
+                  if (!responseNames.contains(objectName))
                      objects_.removeObject(objectName);
                }
             }
@@ -476,20 +481,6 @@ public class Workspace
          }
       });
    }
-   
-   
-   public boolean containsObject(RpcObjectList<WorkspaceObjectInfo> objects,
-                                 String name)
-   {
-      for (int i=0; i<objects.length(); i++)
-      {
-         if (objects.get(i).getName().equals(name))
-            return true;
-      }
-      
-      // didn't find it
-      return false;
-   }
 
    private final Workspace.Display view_ ;
    private final WorkspaceServerOperations server_;
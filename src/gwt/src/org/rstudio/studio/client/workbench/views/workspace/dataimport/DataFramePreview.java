@@ -0,0 +1,228 @@
+/*
+ * DataFramePreview.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.workspace.dataimport;
+
+import org.rstudio.core.client.CsvReader;
+import org.rstudio.core.client.regex.Pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * The data frame which read.table would read from the start of a data
+ * file with the given settings, as text for the import dialog's preview.
+ *
+ * This follows read.table's defaults: comments and blank lines are
+ * skipped, "NA" is a missing value, the number of columns is taken from
+ * the first five lines, a header one field short of that names the
+ * columns after the row names, and column names are made syntactically
+ * valid and unique. Columns whose values are all numbers (with the given
+ * decimal mark) are shown as numbers. A line with the wrong number of
+ * fields is reported as an error, as it would be by read.table.
+ */
+public class DataFramePreview
+{
+   public static DataFramePreview parse(String sample,
+                                        boolean header,
+                                        String sep,
+                                        String dec,
+                                        String quote)
+   {
+      CsvReader reader = new CsvReader(sample, sep, quote);
+      reader.setNaStrings(new String[] {"NA"});
+      reader.setCommentChar('#');
+
+      // read the lines, skipping blank ones
+      ArrayList<String[]> lines = new ArrayList<String[]>();
+      ArrayList<Integer> lineNumbers = new ArrayList<Integer>();
+      int lineNumber = 0;
+      for (Iterator<String[]> it = reader.iterator(); it.hasNext(); )
+      {
+         String[] fields = it.next();
+         lineNumber++;
+         if (fields.length == 0 ||
+             (fields.length == 1 && "".equals(fields[0])))
+         {
+            continue;
+         }
+         lines.add(fields);
+         lineNumbers.add(lineNumber);
+      }
+
+      int cols = 0;
+      for (int i = 0; i < Math.min(5, lines.size()); i++)
+         cols = Math.max(cols, lines.get(i).length);
+
+      // column names
+      String[] names = new String[cols];
+      int first = 0;
+      if (header && lines.size() > 0)
+      {
+         String[] headerFields = lines.get(0);
+         first = 1;
+
+         // a header one short means the first column holds the row names
+         int offset = cols - headerFields.length;
+         if (offset > 1)
+            return error("more columns than column names");
+         if (offset == 1)
+            names[0] = "";
+         for (int i = 0; i < headerFields.length; i++)
+            names[i + offset] = headerFields[i];
+         makeNames(names, offset);
+      }
+      else
+      {
+         for (int i = 0; i < cols; i++)
+            names[i] = "V" + (i + 1);
+      }
+
+      ArrayList<String[]> rows = new ArrayList<String[]>();
+      for (int i = first; i < lines.size(); i++)
+      {
+         String[] fields = lines.get(i);
+         if (fields.length != cols)
+         {
+            return error("line " + lineNumbers.get(i) +
+                         " did not have " + cols + " elements");
+         }
+         rows.add(fields);
+      }
+
+      convertNumericColumns(rows, cols, dec);
+      return new DataFramePreview(names, rows);
+   }
+
+   private static DataFramePreview error(String message)
+   {
+      ArrayList<String[]> rows = new ArrayList<String[]>();
+      rows.add(new String[] {message});
+      return new DataFramePreview(new String[] {"Error"}, rows);
+   }
+
+   private DataFramePreview(String[] names, ArrayList<String[]> rows)
+   {
+      names_ = names;
+      rows_ = rows;
+   }
+
+   public String[] getNames()
+   {
+      return names_;
+   }
+
+   /**
+    * The rows of the data frame; missing values are null.
+    */
+   public ArrayList<String[]> getRows()
+   {
+      return rows_;
+   }
+
+   // Shows the columns that read.table would read as numbers with a decimal
+   // point (blank fields in them are missing values)
+   private static void convertNumericColumns(ArrayList<String[]> rows,
+                                             int cols,
+                                             String dec)
+   {
+      String point = Pattern.escape(dec);
+      Pattern number = Pattern.create(
+            "^\\s*[-+]?(\\d+(" + point + "\\d*)?|" + point + "\\d+)" +
+            "([eE][-+]?\\d+)?\\s*$", "");
+
+      for (int col = 0; col < cols; col++)
+      {
+         boolean numeric = false;
+         for (String[] row : rows)
+         {
+            String value = row[col];
+            if (value == null || value.trim().length() == 0)
+               continue;
+            if (number.match(value, 0) == null)
+            {
+               numeric = false;
+               break;
+            }
+            numeric = true;
+         }
+
+         if (!numeric)
+            continue;
+
+         for (String[] row : rows)
+         {
+            String value = row[col];
+            if (value == null || value.trim().length() == 0)
+               row[col] = null;
+            else
+               row[col] = value.trim().replace(dec, ".");
+         }
+      }
+   }
+
+   // As with make.names(unique=TRUE), for the names from index start on
+   private static void makeNames(String[] names, int start)
+   {
+      HashSet<String> used = new HashSet<String>();
+      for (int i = start; i < names.length; i++)
+      {
+         String name = makeName(names[i]);
+         String unique = name;
+         for (int suffix = 1; used.contains(unique); suffix++)
+            unique = name + "." + suffix;
+         used.add(unique);
+         names[i] = unique;
+      }
+   }
+
+   private static String makeName(String name)
+   {
+      if (name == null)
+         return "NA.";
+
+      StringBuilder result = new StringBuilder();
+      for (int i = 0; i < name.length(); i++)
+      {
+         char c = name.charAt(i);
+         if (Character.isLetterOrDigit(c) || c == '.' || c == '_')
+            result.append(c);
+         else
+            result.append('.');
+      }
+
+      // must start with a letter, or a dot not followed by a digit
+      if (result.length() == 0 ||
+          !(Character.isLetter(result.charAt(0)) || result.charAt(0) == '.') ||
+          (result.charAt(0) == '.' && result.length() > 1 &&
+           Character.isDigit(result.charAt(1))))
+      {
+         result.insert(0, 'X');
+      }
+
+      String valid = result.toString();
+      if (RESERVED.contains(valid))
+         valid += ".";
+      return valid;
+   }
+
+   private final String[] names_;
+   private final ArrayList<String[]> rows_;
+
+   private static final HashSet<String> RESERVED = new HashSet<String>(
+         Arrays.asList("if", "else", "repeat", "while", "function", "for",
+                       "next", "break", "in", "TRUE", "FALSE", "NULL",
+                       "Inf", "NaN", "NA", "NA_integer_", "NA_real_",
+                       "NA_character_"));
+}
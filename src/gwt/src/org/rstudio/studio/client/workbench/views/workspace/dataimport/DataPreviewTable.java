@@ -0,0 +1,188 @@
+/*
+ * DataPreviewTable.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.workspace.dataimport;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.SpanElement;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+import com.google.gwt.safehtml.shared.SafeHtmlUtils;
+import com.google.gwt.user.client.ui.HTML;
+import com.google.gwt.user.client.ui.ScrollPanel;
+
+import java.util.ArrayList;
+
+/**
+ * Shows a data frame preview in a scroll panel, rendering only the rows in
+ * (or near) view so that updating the preview costs the same however many
+ * rows the sample has. Rows are a fixed height, and the space of the rows
+ * which aren't rendered is taken up by spacer rows. Columns are sized up
+ * front from their longest value (the font is fixed width) so that they
+ * don't change width as rows scroll into view.
+ */
+public class DataPreviewTable
+{
+   public DataPreviewTable(ScrollPanel scrollPanel, String headerStyle)
+   {
+      scrollPanel_ = scrollPanel;
+      headerStyle_ = headerStyle;
+
+      scrollPanel_.setWidget(table_);
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         public void onScroll(ScrollEvent event)
+         {
+            render(false);
+         }
+      });
+   }
+
+   public void setData(DataFramePreview data)
+   {
+      data_ = data;
+
+      String[] names = data.getNames();
+      widths_ = new int[names.length];
+      for (int col = 0; col < names.length; col++)
+         widths_[col] = names[col].length();
+      for (String[] row : data.getRows())
+      {
+         for (int col = 0; col < row.length; col++)
+         {
+            String value = row[col] != null ? row[col] : NA;
+            widths_[col] = Math.max(widths_[col], value.length());
+         }
+      }
+
+      render(true);
+   }
+
+   private void render(boolean force)
+   {
+      if (data_ == null)
+         return;
+
+      // the rows in view (the header takes up the first row's height)
+      int rowCount = data_.getRows().size();
+      int top = scrollPanel_.getVerticalScrollPosition();
+      int height = scrollPanel_.getOffsetHeight();
+      if (height <= 0)
+         height = DEFAULT_HEIGHT_PX;
+      int firstVisible = Math.max(0, top / ROW_HEIGHT_PX - 1);
+      int lastVisible = Math.min(rowCount,
+                                 (top + height) / ROW_HEIGHT_PX + 1);
+
+      if (!force && firstVisible >= first_ && lastVisible <= last_)
+         return;
+
+      first_ = Math.max(0, firstVisible - OVERSCAN_ROWS);
+      last_ = Math.min(rowCount, lastVisible + OVERSCAN_ROWS);
+
+      String[] names = data_.getNames();
+      double charWidth = getCharWidth();
+      int tableWidth = 0;
+      StringBuilder colgroup = new StringBuilder("<colgroup>");
+      for (int col = 0; col < names.length; col++)
+      {
+         int width = (int) Math.ceil(widths_[col] * charWidth) +
+                     CELL_PADDING_PX;
+         tableWidth += width;
+         colgroup.append("<col style=\"width: " + width + "px\"/>");
+      }
+      colgroup.append("</colgroup>");
+
+      StringBuilder html = new StringBuilder();
+      html.append("<table cellpadding=\"0\" cellspacing=\"0\" " +
+                  "style=\"table-layout: fixed; width: " + tableWidth +
+                  "px\">");
+      html.append(colgroup);
+
+      html.append("<tr class=\"" + headerStyle_ + "\">");
+      for (String name : names)
+         appendCell(html, name);
+      html.append("</tr>");
+
+      appendSpacer(html, first_, names.length);
+      ArrayList<String[]> rows = data_.getRows();
+      for (int i = first_; i < last_; i++)
+      {
+         html.append("<tr>");
+         for (String value : rows.get(i))
+            appendCell(html, value != null ? value : NA);
+         html.append("</tr>");
+      }
+      appendSpacer(html, rowCount - last_, names.length);
+
+      html.append("</table>");
+      table_.setHTML(html.toString());
+   }
+
+   private void appendCell(StringBuilder html, String value)
+   {
+      html.append("<td>");
+      html.append(SafeHtmlUtils.htmlEscape(value));
+      html.append("</td>");
+   }
+
+   private void appendSpacer(StringBuilder html, int rows, int cols)
+   {
+      if (rows <= 0)
+         return;
+
+      html.append("<tr style=\"height: " + (rows * ROW_HEIGHT_PX) + "px\">" +
+                  "<td colspan=\"" + Math.max(1, cols) + "\"></td></tr>");
+   }
+
+   // Width of a character in the (fixed width) table font
+   private double getCharWidth()
+   {
+      if (charWidth_ > 0)
+         return charWidth_;
+
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 100; i++)
+         text.append('0');
+      SpanElement span = Document.get().createSpanElement();
+      span.setInnerText(text.toString());
+      table_.getElement().appendChild(span);
+      double width = span.getOffsetWidth() / 100.0;
+      span.removeFromParent();
+
+      // not measurable until the dialog is showing
+      if (width <= 0)
+         return DEFAULT_CHAR_WIDTH_PX;
+
+      charWidth_ = width;
+      return charWidth_;
+   }
+
+   private final ScrollPanel scrollPanel_;
+   private final String headerStyle_;
+   private final HTML table_ = new HTML();
+
+   private DataFramePreview data_;
+   private int[] widths_;
+   private int first_;
+   private int last_;
+   private double charWidth_;
+
+   private static final String NA = "NA";
+
+   // must agree with the output table style in ImportFileSettingsDialog.css
+   private static final int ROW_HEIGHT_PX = 14;
+   private static final int CELL_PADDING_PX = 16;
+
+   private static final int DEFAULT_HEIGHT_PX = 200;
+   private static final double DEFAULT_CHAR_WIDTH_PX = 7;
+   private static final int OVERSCAN_ROWS = 50;
+}
@@ -13,8 +13,6 @@
 package org.rstudio.studio.client.workbench.views.workspace.dataimport;
 
 import com.google.gwt.core.client.GWT;
-import com.google.gwt.core.client.JsArray;
-import com.google.gwt.core.client.JsArrayString;
 import com.google.gwt.dom.client.TextAreaElement;
 import com.google.gwt.event.dom.client.ChangeEvent;
 import com.google.gwt.event.dom.client.ChangeHandler;
@@ -25,10 +23,7 @@ import com.google.gwt.resources.client.CssResource;
 import com.google.gwt.uibinder.client.UiBinder;
 import com.google.gwt.uibinder.client.UiField;
 import com.google.gwt.user.client.ui.*;
-import org.rstudio.core.client.Invalidation;
-import org.rstudio.core.client.Invalidation.Token;
 import org.rstudio.core.client.files.FileSystemItem;
-import org.rstudio.core.client.js.JsObject;
 import org.rstudio.core.client.widget.ModalDialog;
 import org.rstudio.core.client.widget.OperationWithInput;
 import org.rstudio.core.client.widget.ProgressIndicator;
@@ -104,6 +99,7 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
       ((TextAreaElement) outputPanel_.getElement().cast()).setReadOnly(true);
 
       progress_ = addProgressIndicator();
+      previewTable_ = new DataPreviewTable(outputPanel_, styles_.header());
 
       setOkButtonCaption("Import");
    }
@@ -145,53 +141,24 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
 
    private void updateOutput()
    {
-      if (separator_.getSelectedIndex() < 0
+      if (sample_ == null
+          || separator_.getSelectedIndex() < 0
           || quote_.getSelectedIndex() < 0
           || decimal_.getSelectedIndex() < 0)
       {
          return;
       }
 
-      updateRequest_.invalidate();
-      final Token invalidationToken = updateRequest_.getInvalidationToken();
-
-      progress_.onProgress("Updating preview");
-      server_.getOutputPreview(
-            dataFile_.getPath(),
+      previewTable_.setData(DataFramePreview.parse(
+            sample_,
             headingYes_.getValue().booleanValue(),
             separator_.getValue(separator_.getSelectedIndex()),
             decimal_.getValue(decimal_.getSelectedIndex()),
-            quote_.getValue(quote_.getSelectedIndex()),
-            new ServerRequestCallback<DataPreviewResult>()
-            {
-               @Override
-               public void onResponseReceived(DataPreviewResult response)
-               {
-                  if (invalidationToken.isInvalid())
-                     return;
-
-                  progress_.onProgress(null);
-                  populateOutput(response);
-               }
-
-               @Override
-               public void onError(ServerError error)
-               {
-                  if (invalidationToken.isInvalid())
-                     return;
-
-                  progress_.onProgress(null);
-                  globalDisplay_.showErrorMessage(
-                        "Error",
-                        error.getUserMessage());
-               }
-            });
+            quote_.getValue(quote_.getSelectedIndex())));
    }
 
    private void loadData()
    {
-      final Token invalidationToken = updateRequest_.getInvalidationToken();
-
       progress_.onProgress("Detecting data format");
       server_.getDataPreview(
             dataFile_.getPath(),
@@ -201,12 +168,9 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
                public void onResponseReceived(DataPreviewResult response)
                {
                   input_.setHTML(toInputHtml(response));
+                  sample_ = response.getSample();
 
-                  if (invalidationToken.isInvalid())
-                     return;
-                  
                   progress_.onProgress(null);
-                  populateOutput(response);
                   if (response.hasHeader())
                      headingYes_.setValue(true);
                   else
@@ -215,14 +179,14 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
                   selectByValue(separator_, response.getSeparator());
                   selectByValue(decimal_, response.getDecimal());
                   selectByValue(quote_, response.getQuote());
+
+                  // the preview is parsed from the sample from now on
+                  updateOutput();
                }
 
                @Override
                public void onError(ServerError error)
                {
-                  if (invalidationToken.isInvalid())
-                     return;
-
                   progress_.onProgress(null);
                   globalDisplay_.showErrorMessage(
                         "Error",
@@ -253,34 +217,6 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
       return v1.equals(v2);
    }
 
-   private void populateOutput(DataPreviewResult result)
-   {
-      JsArray<JsObject> output = result.getOutput();
-      JsArrayString names = result.getOutputNames();
-
-      int rows = output.length();
-      int cols = names.length();
-      Grid grid = new Grid(rows + 1, cols);
-      grid.setCellPadding(0);
-      grid.setCellSpacing(0);
-      grid.getRowFormatter().addStyleName(0, styles_.header());
-      for (int col = 0; col < cols; col++)
-         grid.setText(0, col, names.get(col));
-
-      for (int row = 0; row < rows; row++)
-      {
-         for (int col = 0; col < cols; col++)
-         {
-            String val = output.get(row).getString(names.get(col), true);
-            if (val == null)
-               val = "NA";
-            grid.setText(row + 1, col, val);
-         }
-      }
-
-      outputPanel_.setWidget(grid);
-   }
-
    private String toInputHtml(DataPreviewResult response)
    {
       String input = response.getInputLines();
@@ -341,7 +277,7 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
    @UiField
    HTML input_;
    @UiField
-   SimplePanel outputPanel_;
+   ScrollPanel outputPanel_;
    @UiField
    RadioButton headingYes_;
    @UiField
@@ -354,6 +290,7 @@ public class ImportFileSettingsDialog extends ModalDialog<ImportFileSettings>
    private final FileSystemItem dataFile_;
    private final GlobalDisplay globalDisplay_;
    private ProgressIndicator progress_;
-   private final Invalidation updateRequest_ = new Invalidation();
+   private final DataPreviewTable previewTable_;
+   private String sample_;
    private final Styles styles_;
 }
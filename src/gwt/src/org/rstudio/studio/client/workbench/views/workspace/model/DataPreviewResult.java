@@ -13,9 +13,6 @@
 package org.rstudio.studio.client.workbench.views.workspace.model;
 
 import com.google.gwt.core.client.JavaScriptObject;
-import com.google.gwt.core.client.JsArray;
-import com.google.gwt.core.client.JsArrayString;
-import org.rstudio.core.client.js.JsObject;
 
 public class DataPreviewResult extends JavaScriptObject
 {
@@ -27,12 +24,10 @@ public class DataPreviewResult extends JavaScriptObject
       return this.inputLines[0];
    }-*/;
 
-   public final native JsArray<JsObject> getOutput() /*-{
-      return this.output;
-   }-*/;
-
-   public final native JsArrayString getOutputNames() /*-{
-      return this.outputNames;
+   // the first lines of the file (more than the input lines), for parsing
+   // on the client
+   public final native String getSample() /*-{
+      return this.sample[0];
    }-*/;
 
    public final native boolean hasHeader() /*-{
@@ -47,12 +47,4 @@ public interface WorkspaceServerOperations
    void getDataPreview(
          String dataFilePath,
          ServerRequestCallback<DataPreviewResult> requestCallback);
-
-   void getOutputPreview(
-         String dataFilePath,
-         boolean heading,
-         String separator,
-         String decimal,
-         String quote,
-         ServerRequestCallback<DataPreviewResult> requestCallback);
 }
@@ -12,13 +12,20 @@
  */
 package org.rstudio.studio.client.workbench.views.workspace.table;
 
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.event.shared.HandlerManager;
+import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
 import com.google.gwt.user.client.ui.HTMLTable;
 import com.google.gwt.user.client.ui.ScrollPanel;
 import com.google.inject.Inject;
+import org.rstudio.core.client.SafeHtmlUtil;
 import org.rstudio.core.client.dom.DomUtils;
 import org.rstudio.core.client.theme.res.ThemeResources;
 import org.rstudio.core.client.theme.res.ThemeStyles;
@@ -30,6 +37,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class WorkspaceObjectTable
 {
@@ -47,7 +56,9 @@ public class WorkspaceObjectTable
     * has one heading row followed by zero or more value rows.
     * 
     * Each element of the sections_ field is a sorted list of names
-    * that appear in that section. 
+    * that appear in that section. sectionByName_ records which section
+    * each name is in, and sectionStarts_ the table row of each section's
+    * first value row, so finding a row is a single binary search.
     */
    private class RowManager
    {
@@ -61,6 +72,7 @@ public class WorkspaceObjectTable
          while (table_.getRowCount() > 0)
             table_.removeRow(0) ;
          sections_.clear() ;
+         sectionByName_.clear() ;
          
          for (int i = 0; i < SECTION_NAMES.length; i++)
          {
@@ -70,8 +82,10 @@ public class WorkspaceObjectTable
                   i,
                   ThemeResources.INSTANCE.themeStyles().workspaceSectionHead());
             sections_.add(new ArrayList<String>()) ;
-            manageHeadingVisibility(i);
          }
+         updateSectionStarts() ;
+         for (int i = 0; i < SECTION_NAMES.length; i++)
+            manageHeadingVisibility(i);
       }
       
       /**
@@ -85,15 +99,21 @@ public class WorkspaceObjectTable
          int sectionId = chooseSection(obj) ;
          
          ArrayList<String> section = sections_.get(sectionId) ;
-         int index = Collections.binarySearch(section, obj.getName()) ;
-         if (index >= 0)
+         Integer currentSection = sectionByName_.get(obj.getName()) ;
+         if (currentSection != null && currentSection == sectionId)
+         {
+            int index = Collections.binarySearch(section, obj.getName()) ;
             return index + getSectionStart(sectionId) ;
+         }
          
          // Just in case this name already exists but in a different section
-         removeRow(obj.getName()) ;
+         if (currentSection != null)
+            removeRow(obj.getName()) ;
          
-         index = -(index+1) ;
+         int index = -(Collections.binarySearch(section, obj.getName()) + 1) ;
          section.add(index, obj.getName()) ;
+         sectionByName_.put(obj.getName(), sectionId) ;
+         updateSectionStarts() ;
          int tableIndex = index + getSectionStart(sectionId) ;
          table_.insertRow(tableIndex) ;
          table_.getRowFormatter().setStylePrimaryName(
@@ -108,18 +128,17 @@ public class WorkspaceObjectTable
       
       public boolean removeRow(String name)
       {
-         for (int i = 0; i < sections_.size(); i++)
-         {
-            int index = Collections.binarySearch(sections_.get(i), name) ;
-            if (index >= 0)
-            {
-               table_.removeRow(getSectionStart(i) + index) ;
-               sections_.get(i).remove(index) ;
-               manageHeadingVisibility(i);
-               return true ;
-            }
-         }
-         return false ;
+         Integer sectionId = sectionByName_.remove(name) ;
+         if (sectionId == null)
+            return false ;
+
+         ArrayList<String> section = sections_.get(sectionId) ;
+         int index = Collections.binarySearch(section, name) ;
+         table_.removeRow(getSectionStart(sectionId) + index) ;
+         section.remove(index) ;
+         updateSectionStarts() ;
+         manageHeadingVisibility(sectionId);
+         return true ;
       }
       
       public ArrayList<String> getObjectNames()
@@ -132,44 +151,57 @@ public class WorkspaceObjectTable
       
       public String getObjectNameForIndex(int index)
       {
-         int pos = 0 ;
-         for (int i = 0; i < sections_.size(); i++)
+         for (int i = sections_.size() - 1; i >= 0; i--)
          {
-            pos++ ;
-            if (index < pos)
+            int start = sectionStarts_[i] ;
+            if (index >= start)
+            {
+               ArrayList<String> section = sections_.get(i) ;
+               return index - start < section.size() ?
+                      section.get(index - start) : null ;
+            }
+            if (index == start - 1)
                return null ;
-            
-            ArrayList<String> section = sections_.get(i) ;
-            if (index - pos < section.size())
-               return section.get(index - pos) ;
-            
-            pos += section.size();
          }
          return null ;
       }
 
       private int getSectionStart(int section)
+      {
+         return sectionStarts_[section] ;
+      }
+
+      private void updateSectionStarts()
       {
          int rows = 0 ;
-         for (int i = 0; i < section; i++)
+         for (int i = 0; i < sections_.size(); i++)
          {
+            sectionStarts_[i] = rows + 1 ;
             rows += 1 + sections_.get(i).size() ;
          }
-         return rows + 1 ;
       }
 
       public int getSectionForRow(int row)
       {
-         int rows = 0 ;
-         for (int i = 0; i < sections_.size(); i++)
+         for (int i = sections_.size() - 1; i >= 0; i--)
          {
-            rows += 1 + sections_.get(i).size() ;
-            if (rows > row)
+            if (row >= sectionStarts_[i] - 1)
                return i;
          }
          return 0;
       }
 
+      /**
+       * Returns true for the heading rows of empty sections, which are
+       * hidden.
+       */
+      public boolean isHiddenRow(int row)
+      {
+         int section = getSectionForRow(row) ;
+         return row == sectionStarts_[section] - 1 &&
+                sections_.get(section).isEmpty() ;
+      }
+
       private int chooseSection(WorkspaceObjectInfo obj)
       {
          String type = obj.getType();
@@ -190,10 +222,13 @@ public class WorkspaceObjectTable
 
       private final ArrayList<ArrayList<String>> sections_
                                           = new ArrayList<ArrayList<String>>();
+      private final HashMap<String, Integer> sectionByName_
+                                          = new HashMap<String, Integer>();
+      private final String[] SECTION_NAMES = {"Data", "Values", "Functions"} ;
+      private final int[] sectionStarts_ = new int[SECTION_NAMES.length] ;
       private static final int SEC_DATA = 0 ;
       private static final int SEC_VAL = 1 ;
       private static final int SEC_FUNC = 2 ;
-      private final String[] SECTION_NAMES = {"Data", "Values", "Functions"} ;
    }
    
    
@@ -224,6 +259,9 @@ public class WorkspaceObjectTable
             if (objectName == null)
                return;
 
+            if (pendingEditors_.containsKey(objectName))
+               createEditor(pendingEditors_.remove(objectName), row) ;
+
             if (editHandlers_.containsKey(objectName))
             {
                editHandlers_.get(objectName).onClick(event);
@@ -243,6 +281,13 @@ public class WorkspaceObjectTable
       
       table_.setWidth("100%");
       scrollPanel_ = new ScrollPanel(table_);
+      scrollPanel_.addScrollHandler(new ScrollHandler()
+      {
+         public void onScroll(ScrollEvent event)
+         {
+            scheduleCreateVisibleEditors() ;
+         }
+      });
       
       rowManager_ = new RowManager() ;
    }
@@ -254,24 +299,83 @@ public class WorkspaceObjectTable
 
    public void clearObjects()
    {
+      pendingUpdates_.clear() ;
+      pendingEditors_.clear() ;
       editHandlers_.clear();
       rowManager_.clearTable() ;
    }
 
+   /**
+    * Removes the object. Like updateObject, the change is queued and
+    * applied together with any others made in the same event loop.
+    */
    public void removeObject(String name)
    {
-      editHandlers_.remove(name);
-      rowManager_.removeRow(name) ;
+      pendingUpdates_.put(name, null) ;
+      scheduleFlush() ;
    }
    
    public ArrayList<String> getObjectNames()
    {
+      flushPendingUpdates() ;
       return rowManager_.getObjectNames();
    }
    
+   /**
+    * Adds or updates the object's row. Assignments tend to arrive in
+    * bursts (e.g. from load()), so they're queued and applied in one pass,
+    * with only the latest value of each object being rendered.
+    */
    public void updateObject(WorkspaceObjectInfo object)
+   {
+      pendingUpdates_.put(object.getName(), object) ;
+      scheduleFlush() ;
+   }
+
+   private void scheduleFlush()
+   {
+      if (flushScheduled_)
+         return ;
+
+      flushScheduled_ = true ;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         public void execute()
+         {
+            flushPendingUpdates() ;
+         }
+      });
+   }
+
+   private void flushPendingUpdates()
+   {
+      flushScheduled_ = false ;
+      if (pendingUpdates_.isEmpty())
+         return ;
+
+      for (Map.Entry<String, WorkspaceObjectInfo> entry :
+                                                   pendingUpdates_.entrySet())
+      {
+         if (entry.getValue() == null)
+         {
+            editHandlers_.remove(entry.getKey());
+            pendingEditors_.remove(entry.getKey()) ;
+            rowManager_.removeRow(entry.getKey()) ;
+         }
+         else
+         {
+            applyUpdate(entry.getValue()) ;
+         }
+      }
+      pendingUpdates_.clear() ;
+
+      scheduleCreateVisibleEditors() ;
+   }
+
+   private void applyUpdate(WorkspaceObjectInfo object)
    {
       editHandlers_.remove(object.getName());
+      pendingEditors_.remove(object.getName()) ;
 
       int index = rowManager_.getRowIndex(object) ;
       String type = object.getType() ;
@@ -285,23 +389,23 @@ public class WorkspaceObjectTable
       else
       {
          table_.setText(index, 0, object.getName()) ;
-         ScalarEdit<?> editor = null ;
-         if (object.getLength() == 1)
-         {
-            if (genericTypes.contains(type)
-                && !"NO_VALUE".equals(object.getValue()))
-            {
-               editor = new ScalarEdit<String>(globalDisplay_,
-                                               new RLiteralConversionStrategy(),
-                                               object.getValue()) ;
-            }
-         }
+         boolean editable = object.getLength() == 1
+                            && genericTypes.contains(type)
+                            && !"NO_VALUE".equals(object.getValue()) ;
 
-         if (editor != null)
+         if (editable)
          {
-            editHandlers_.put(object.getName(), editor);
-            inlineEditorFactory_.create(object, editor) ;
-            table_.setWidget(index, 1, editor);
+            // The editor is only created once the row is scrolled into
+            // view (or clicked); until then the value is rendered just as
+            // the editor would render it
+            SafeHtmlBuilder sb = new SafeHtmlBuilder() ;
+            SafeHtmlUtil.appendDiv(
+                  sb,
+                  ThemeStyles.INSTANCE.scalarEdit(),
+                  new RLiteralConversionStrategy().convertToDisplayString(
+                                                         object.getValue())) ;
+            table_.setHTML(index, 1, sb.toSafeHtml()) ;
+            pendingEditors_.put(object.getName(), object) ;
          }
          else if (isData(type))
          {
@@ -317,6 +421,85 @@ public class WorkspaceObjectTable
       }
    }
 
+   private void createEditor(WorkspaceObjectInfo object, int row)
+   {
+      ScalarEdit<String> editor = new ScalarEdit<String>(
+                                          globalDisplay_,
+                                          new RLiteralConversionStrategy(),
+                                          object.getValue()) ;
+      editHandlers_.put(object.getName(), editor);
+      inlineEditorFactory_.create(object, editor) ;
+      table_.setWidget(row, 1, editor);
+   }
+
+   private void scheduleCreateVisibleEditors()
+   {
+      if (pendingEditors_.isEmpty() || createEditorsScheduled_)
+         return ;
+
+      createEditorsScheduled_ = true ;
+      Scheduler.get().scheduleDeferred(new ScheduledCommand()
+      {
+         public void execute()
+         {
+            createEditorsScheduled_ = false ;
+            createVisibleEditors() ;
+         }
+      });
+   }
+
+   // Creates the editors of the rows within (or near) the visible part of
+   // the table
+   private void createVisibleEditors()
+   {
+      int height = scrollPanel_.getOffsetHeight() ;
+      if (pendingEditors_.isEmpty() || height == 0)
+         return ;
+
+      int top = scrollPanel_.getVerticalScrollPosition() - height ;
+      int bottom = top + 3 * height ;
+
+      // Rows are in increasing vertical order, so binary search for the
+      // first one that reaches the top of the window
+      int rowCount = table_.getRowCount() ;
+      int low = 0 ;
+      int high = rowCount ;
+      while (low < high)
+      {
+         int mid = (low + high) >>> 1 ;
+         if (getRowBottom(mid) <= top)
+            low = mid + 1 ;
+         else
+            high = mid ;
+      }
+
+      for (int row = low; row < rowCount; row++)
+      {
+         if (rowManager_.isHiddenRow(row))
+            continue ;
+
+         TableRowElement rowEl = table_.getRowElement(row) ;
+         if (rowEl.getOffsetTop() >= bottom)
+            break ;
+
+         String name = rowManager_.getObjectNameForIndex(row) ;
+         if (name != null && pendingEditors_.containsKey(name))
+            createEditor(pendingEditors_.remove(name), row) ;
+      }
+   }
+
+   // Hidden rows take the position of the next visible row
+   private int getRowBottom(int row)
+   {
+      while (row < table_.getRowCount() && rowManager_.isHiddenRow(row))
+         row++ ;
+      if (row == table_.getRowCount())
+         return Integer.MAX_VALUE ;
+
+      TableRowElement rowEl = table_.getRowElement(row) ;
+      return rowEl.getOffsetTop() + rowEl.getOffsetHeight() ;
+   }
+
    public void fireEvent(GwtEvent<?> gwtEvent)
    {
       handlerManager_.fireEvent(gwtEvent);
@@ -336,6 +519,14 @@ public class WorkspaceObjectTable
    private final HandlerManager handlerManager_ = new HandlerManager(null);
    private final HashMap<String, ClickHandler> editHandlers_ =
                                             new HashMap<String, ClickHandler>(); 
+   // name => object (or null for a removal) not yet applied to the table
+   private final LinkedHashMap<String, WorkspaceObjectInfo> pendingUpdates_ =
+                           new LinkedHashMap<String, WorkspaceObjectInfo>() ;
+   // name => object for editable rows whose editor hasn't been created
+   private final HashMap<String, WorkspaceObjectInfo> pendingEditors_ =
+                                 new HashMap<String, WorkspaceObjectInfo>() ;
+   private boolean flushScheduled_ ;
+   private boolean createEditorsScheduled_ ;
    private final InlineEditorFactory inlineEditorFactory_;
    private final GlobalDisplay globalDisplay_ ;
    private final FlexTableEx table_;
@@ -0,0 +1,103 @@
+/*
+ * RTokenStreamTest.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.r;
+
+import junit.framework.TestCase;
+import org.rstudio.core.client.patch.SubstringDiff;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class RTokenStreamTest extends TestCase
+{
+   public void testTyping()
+   {
+      RTokenStream stream = new RTokenStream("x <- 1\n");
+      String text = stream.getText();
+      String typed = "foo(bar[[\"baz\"]], `q`) %in% y # done\n";
+      for (int i = 0; i < typed.length(); i++)
+      {
+         stream.applyEdit(text.length() - 1, 0, typed.substring(i, i + 1));
+         text = text.substring(0, text.length() - 1) + typed.charAt(i) + "\n";
+         assertTokens(text, stream);
+      }
+   }
+
+   public void testLateDelimiters()
+   {
+      // Inserting a closing ` or % changes an earlier error token
+      RTokenStream stream = new RTokenStream("a `b c\nd %e f\n");
+      stream.applyEdit(12, 0, "%");
+      assertTokens("a `b c\nd %e %f\n", stream);
+      stream.applyEdit(6, 0, "`");
+      assertTokens("a `b c`\nd %e %f\n", stream);
+   }
+
+   public void testRandomEdits()
+   {
+      Random random = new Random(1);
+      String alphabet = "ab1.eL x_ \n\t\"'`#%\\()[]{}<-=>!:$";
+      for (int doc = 0; doc < 200; doc++)
+      {
+         String text = randomText(random, alphabet, random.nextInt(60));
+         RTokenStream stream = new RTokenStream(text);
+         for (int edit = 0; edit < 50; edit++)
+         {
+            int offset = random.nextInt(text.length() + 1);
+            int removed = random.nextInt(Math.min(4, text.length() - offset) + 1);
+            String inserted = randomText(random, alphabet, random.nextInt(4));
+            text = text.substring(0, offset) + inserted +
+                   text.substring(offset + removed);
+            stream.applyEdit(offset, removed, inserted);
+            assertTokens(text, stream);
+         }
+      }
+   }
+
+   public void testCache()
+   {
+      RTokenStreamCache cache = new RTokenStreamCache();
+      cache.getTokens("doc", "f <- function(x) x\n");
+      RTokenStream stream = cache.getTokens("doc", "f <- function(x, y) x + y\n");
+      assertTokens("f <- function(x, y) x + y\n", stream);
+      assertTrue(stream.getChangedFrom() > 0);
+
+      cache.applyEdit("doc", new SubstringDiff(stream.getText(), "g <- 1\n"));
+      assertTokens("g <- 1\n", cache.getTokens("doc", "g <- 1\n"));
+   }
+
+   private static void assertTokens(String text, RTokenStream stream)
+   {
+      assertEquals(text, stream.getText());
+      ArrayList<RToken> expected = RTokenizer.asTokens(text);
+      assertEquals(text, expected.size(), stream.getTokenCount());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         RToken token = stream.getToken(i);
+         assertEquals(text, expected.get(i), token);
+         if (token instanceof RStringToken)
+         {
+            assertEquals(((RStringToken) expected.get(i)).isWellFormed(),
+                         ((RStringToken) token).isWellFormed());
+         }
+      }
+   }
+
+   private static String randomText(Random random, String alphabet, int length)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < length; i++)
+         sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      return sb.toString();
+   }
+}
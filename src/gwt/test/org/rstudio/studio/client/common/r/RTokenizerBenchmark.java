@@ -0,0 +1,163 @@
+/*
+ * RTokenizerBenchmark.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.r;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Tokenizes a large body of R code on the JVM, once materializing RTokens
+ * (asTokens) and once using offsets only (nextTokenType), and checks that
+ * both modes agree.
+ *
+ * Usage: RTokenizerBenchmark [file-or-directory ...]
+ *
+ * Directories are searched recursively for .R files. If nothing is given,
+ * 20 MB of synthetic R code is used.
+ */
+public class RTokenizerBenchmark
+{
+   public static void main(String[] args) throws Exception
+   {
+      String code;
+      if (args.length > 0)
+      {
+         StringBuilder sb = new StringBuilder();
+         for (String arg : args)
+            readRFiles(new File(arg), sb);
+         code = sb.toString();
+      }
+      else
+      {
+         code = synthesizeCode(20 * 1024 * 1024);
+      }
+
+      // Warm up so the JIT has seen the hot paths
+      for (int i = 0; i < 3; i++)
+      {
+         String slice = code.substring(0, Math.min(code.length(), 1024 * 1024));
+         RTokenizer.asTokens(slice);
+         countTokens(slice);
+      }
+
+      long start = System.nanoTime();
+      ArrayList<RToken> tokens = RTokenizer.asTokens(code);
+      long tokensMs = (System.nanoTime() - start) / 1000000;
+
+      start = System.nanoTime();
+      int count = countTokens(code);
+      long offsetsMs = (System.nanoTime() - start) / 1000000;
+
+      verify(code, tokens);
+
+      System.out.println("Input:    " + code.length() + " chars, " +
+                         tokens.size() + " tokens");
+      System.out.println("asTokens: " + tokensMs + " ms (" +
+                         rate(code.length(), tokensMs) + " KB/ms)");
+      System.out.println("Offsets:  " + offsetsMs + " ms (" +
+                         rate(code.length(), offsetsMs) + " KB/ms)");
+
+      if (count != tokens.size())
+         throw new IllegalStateException("Token counts differ");
+   }
+
+   private static int countTokens(String code)
+   {
+      RTokenizer rt = new RTokenizer(code);
+      int count = 0;
+      while (rt.nextTokenType() != RTokenizer.EOF)
+         count++;
+      return count;
+   }
+
+   // Tokens must cover the input exactly and agree with the offsets mode
+   private static void verify(String code, ArrayList<RToken> tokens)
+   {
+      RTokenizer rt = new RTokenizer(code);
+      int offset = 0;
+      for (RToken token : tokens)
+      {
+         int type = rt.nextTokenType();
+         if (token.getOffset() != offset ||
+             type != token.getTokenType() ||
+             rt.getTokenStart() != token.getOffset() ||
+             rt.getTokenEnd() != offset + token.getLength() ||
+             !code.substring(rt.getTokenStart(), rt.getTokenEnd())
+                                          .equals(token.getContent()))
+         {
+            throw new IllegalStateException("Token mismatch at " + offset);
+         }
+         offset += token.getLength();
+      }
+      if (offset != code.length() || rt.nextTokenType() != RTokenizer.EOF)
+         throw new IllegalStateException("Tokens don't cover the input");
+   }
+
+   private static String rate(int chars, long ms)
+   {
+      return ms == 0 ? "-" : String.valueOf(chars / 1024 / ms);
+   }
+
+   private static String synthesizeCode(int size)
+   {
+      String[] snippets = {
+         "# Fit a model to the data\n",
+         "fit <- lm(mpg ~ wt + hp, data = mtcars)\n",
+         "x[[\"name\"]] <- c(1.5e-3, 0x1FL, 2i, .5, 10L)\n",
+         "result <- sapply(seq_len(n), function(i) {\n" +
+         "   if (i %% 2 == 0 && !is.na(x[i])) x[i] / 2 else -x[i]\n" +
+         "})\n",
+         "df$`odd name` <- paste0('value: ', format(y, nsmall = 2))\n",
+         "out <- data %in% c(\"a\", \"b\\\"c\") | flag != TRUE\n",
+         "   \t\n",
+      };
+
+      Random random = new Random(42);
+      StringBuilder sb = new StringBuilder(size + 256);
+      while (sb.length() < size)
+         sb.append(snippets[random.nextInt(snippets.length)]);
+      return sb.toString();
+   }
+
+   private static void readRFiles(File file, StringBuilder sb)
+         throws IOException
+   {
+      if (file.isDirectory())
+      {
+         File[] children = file.listFiles();
+         if (children != null)
+         {
+            for (File child : children)
+               readRFiles(child, sb);
+         }
+      }
+      else if (file.getName().endsWith(".R") ||
+               file.getName().endsWith(".r"))
+      {
+         Reader reader = new InputStreamReader(new FileInputStream(file),
+                                               "UTF-8");
+         try
+         {
+            char[] buffer = new char[65536];
+            for (int n; -1 != (n = reader.read(buffer)); )
+               sb.append(buffer, 0, n);
+            sb.append('\n');
+         }
+         finally
+         {
+            reader.close();
+         }
+      }
+   }
+}
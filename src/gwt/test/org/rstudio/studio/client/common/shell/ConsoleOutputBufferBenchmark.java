@@ -0,0 +1,145 @@
+/*
+ * ConsoleOutputBufferBenchmark.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.common.shell;
+
+import org.rstudio.core.client.VirtualConsole;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Replays a captured console log into a ConsoleOutputBuffer the same way
+ * ShellWidget streams output: the log is appended in small chunks as
+ * continuous output, so \r and \b in each chunk can rewrite the open line.
+ * The resulting lines are checked against the log interpreted in one go.
+ *
+ * Usage: ConsoleOutputBufferBenchmark [console-log-file] [chunk-size]
+ *
+ * If no log file is given, 50 MB of synthetic R output (progress bars
+ * redrawn with \r and \b, interleaved with ordinary printed lines) is used.
+ * The log shouldn't contain form feeds, since ShellWidget clears the
+ * buffer for those rather than appending them.
+ */
+public class ConsoleOutputBufferBenchmark
+{
+   public static void main(String[] args) throws Exception
+   {
+      String log = args.length > 0 ? readFile(args[0])
+                                   : synthesizeLog(50 * 1024 * 1024);
+      int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+      // Warm up on a slice so the JIT has seen the hot paths
+      replay(log.substring(0, Math.min(log.length(), 1024 * 1024)),
+             chunkSize);
+
+      long start = System.nanoTime();
+      ConsoleOutputBuffer buffer = replay(log, chunkSize);
+      long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+      String output = toString(buffer);
+      if (!output.equals(VirtualConsole.consolify(log)))
+         throw new IllegalStateException("Buffer diverged from console");
+
+      System.out.println("Input:    " + log.length() + " chars in " +
+                         (log.length() + chunkSize - 1) / chunkSize +
+                         " chunks of " + chunkSize);
+      System.out.println("Output:   " + output.length() + " chars, " +
+                         buffer.getLineCount() + " lines");
+      System.out.println("Elapsed:  " + elapsedMs + " ms (" +
+                         (elapsedMs == 0 ? "-" :
+                          String.valueOf(log.length() / 1024 / elapsedMs)) +
+                         " KB/ms)");
+   }
+
+   private static ConsoleOutputBuffer replay(String log, int chunkSize)
+   {
+      ConsoleOutputBuffer buffer = new ConsoleOutputBuffer(-1);
+      for (int i = 0; i < log.length(); i += chunkSize)
+      {
+         buffer.append(log.substring(i, Math.min(log.length(), i + chunkSize)),
+                       "output",
+                       true);
+      }
+      return buffer;
+   }
+
+   private static String toString(ConsoleOutputBuffer buffer)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < buffer.getLineCount(); i++)
+      {
+         ConsoleOutputBuffer.Line line = buffer.getLine(i);
+         for (int j = 0; j < line.getSegmentCount(); j++)
+            sb.append(line.getSegment(j).getText());
+         if (line.isTerminated())
+            sb.append('\n');
+      }
+      return sb.toString();
+   }
+
+   private static String synthesizeLog(int size)
+   {
+      Random random = new Random(42);
+      StringBuilder sb = new StringBuilder(size + 1024);
+      int iteration = 0;
+      while (sb.length() < size)
+      {
+         switch (random.nextInt(4))
+         {
+            case 0:
+               // txtProgressBar(style = 3)
+               for (int pct = 0; pct <= 100; pct += 5)
+               {
+                  sb.append('\r').append("  |");
+                  for (int j = 0; j < 50; j++)
+                     sb.append(j < pct / 2 ? '=' : ' ');
+                  sb.append("| ").append(pct).append('%');
+               }
+               sb.append('\n');
+               break;
+            case 1:
+               // Spinner drawn with backspaces
+               sb.append("Working ");
+               for (int j = 0; j < 40; j++)
+                  sb.append("|/-\\".charAt(j % 4)).append('\b');
+               sb.append("done\n");
+               break;
+            default:
+               // Verbose model fit output
+               sb.append("iter ").append(iteration++)
+                 .append(" value ").append(random.nextDouble())
+                 .append('\n');
+               break;
+         }
+      }
+      return sb.toString();
+   }
+
+   private static String readFile(String path) throws IOException
+   {
+      Reader reader = new InputStreamReader(new FileInputStream(path),
+                                            "UTF-8");
+      try
+      {
+         StringWriter sw = new StringWriter();
+         char[] buffer = new char[65536];
+         for (int n; -1 != (n = reader.read(buffer)); )
+            sw.write(buffer, 0, n);
+         return sw.toString();
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+}
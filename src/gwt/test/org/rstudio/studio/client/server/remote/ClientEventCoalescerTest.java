@@ -0,0 +1,160 @@
+/*
+ * ClientEventCoalescerTest.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.server.remote;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+public class ClientEventCoalescerTest extends TestCase
+{
+   private static class Event
+   {
+      Event(int id, String type, String data)
+      {
+         this.id = id;
+         this.type = type;
+         this.data = data;
+      }
+
+      @Override
+      public String toString()
+      {
+         return id + ":" + type + (data == null ? "" : "=" + data);
+      }
+
+      final int id;
+      final String type;
+      final String data;
+   }
+
+   private static class EventAdapter
+         implements ClientEventCoalescer.Adapter<Event>
+   {
+      public String getType(Event event)
+      {
+         return event.type;
+      }
+
+      public String getText(Event event)
+      {
+         return event.data;
+      }
+
+      public String getObjectName(Event event)
+      {
+         return event.data;
+      }
+
+      public Event withText(Event event, String text)
+      {
+         return new Event(event.id, event.type, text);
+      }
+   }
+
+   public void testMergesAdjacentConsoleOutput() throws Exception
+   {
+      assertCoalesced(
+            "3:console_output=abc, 4:console_error=d, 5:console_output=e",
+            event(1, ClientEvent.ConsoleOutput, "a"),
+            event(2, ClientEvent.ConsoleOutput, "b"),
+            event(3, ClientEvent.ConsoleOutput, "c"),
+            event(4, ClientEvent.ConsoleError, "d"),
+            event(5, ClientEvent.ConsoleOutput, "e"));
+   }
+
+   public void testKeepsLastSnapshotOfEachTypeInARun() throws Exception
+   {
+      assertCoalesced(
+            "3:busy=false, 4:plots_state_changed=p2, 5:console_output=a, " +
+            "6:plots_state_changed=p3",
+            event(1, ClientEvent.Busy, "true"),
+            event(2, ClientEvent.PlotsStateChanged, "p1"),
+            event(3, ClientEvent.Busy, "false"),
+            event(4, ClientEvent.PlotsStateChanged, "p2"),
+            event(5, ClientEvent.ConsoleOutput, "a"),
+            event(6, ClientEvent.PlotsStateChanged, "p3"));
+   }
+
+   public void testKeepsSnapshotsSeparatedByOtherEvents() throws Exception
+   {
+      assertCoalesced(
+            "1:busy=true, 2:console_output=a, 3:busy=false",
+            event(1, ClientEvent.Busy, "true"),
+            event(2, ClientEvent.ConsoleOutput, "a"),
+            event(3, ClientEvent.Busy, "false"));
+   }
+
+   public void testFoldsWorkspaceEventsPerObject() throws Exception
+   {
+      assertCoalesced(
+            "2:workspace_assign=y, 3:workspace_refresh, 5:workspace_assign=x",
+            event(1, ClientEvent.WorkspaceAssign, "x"),
+            event(2, ClientEvent.WorkspaceAssign, "y"),
+            event(3, ClientEvent.WorkspaceRefresh, null),
+            event(4, ClientEvent.WorkspaceRemove, "x"),
+            event(5, ClientEvent.WorkspaceAssign, "x"));
+   }
+
+   public void testPreservesOrderOfOtherEvents() throws Exception
+   {
+      assertCoalesced(
+            "1:console_write_input=x, 2:console_prompt=>, " +
+            "3:async_completion=h1, 4:async_completion=h2",
+            event(1, ClientEvent.ConsoleWriteInput, "x"),
+            event(2, ClientEvent.ConsolePrompt, ">"),
+            event(3, ClientEvent.AsyncCompletion, "h1"),
+            event(4, ClientEvent.AsyncCompletion, "h2"));
+   }
+
+   public void testLastEventIsNeverDropped() throws Exception
+   {
+      ArrayList<Event> events = new ArrayList<Event>();
+      for (int i = 0; i < 100; i++)
+      {
+         events.add(event(3 * i, ClientEvent.ConsoleOutput, "."));
+         events.add(event(3 * i + 1, ClientEvent.Busy, "true"));
+         events.add(event(3 * i + 2, ClientEvent.WorkspaceAssign, "x"));
+      }
+
+      ArrayList<Event> result = coalescer().coalesce(events);
+      assertEquals(events.get(events.size() - 1).id,
+                   result.get(result.size() - 1).id);
+   }
+
+   private void assertCoalesced(String expected, Event... events)
+   {
+      ArrayList<Event> list = new ArrayList<Event>();
+      for (Event event : events)
+         list.add(event);
+
+      StringBuilder actual = new StringBuilder();
+      for (Event event : coalescer().coalesce(list))
+      {
+         if (actual.length() > 0)
+            actual.append(", ");
+         actual.append(event);
+      }
+      assertEquals(expected, actual.toString());
+   }
+
+   private ClientEventCoalescer<Event> coalescer()
+   {
+      return new ClientEventCoalescer<Event>(new EventAdapter());
+   }
+
+   private static Event event(int id, String type, String data)
+   {
+      return new Event(id, type, data);
+   }
+}
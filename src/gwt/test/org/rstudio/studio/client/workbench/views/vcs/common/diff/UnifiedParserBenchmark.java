@@ -0,0 +1,229 @@
+/*
+ * UnifiedParserBenchmark.java
+ *
+ * Copyright (C) 2009-11 by RStudio, Inc.
+ *
+ * This program is licensed to you under the terms of version 3 of the
+ * GNU Affero General Public License. This program is distributed WITHOUT
+ * ANY EXPRESS OR IMPLIED WARRANTY, INCLUDING THOSE OF NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE. Please refer to the
+ * AGPL (http://www.gnu.org/licenses/agpl-3.0.txt) for more details.
+ *
+ */
+package org.rstudio.studio.client.workbench.views.vcs.common.diff;
+
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Compares UnifiedParser and IndexedUnifiedParser on large diffs, in the
+ * manner of a JMH benchmark (warmup iterations, then measured iterations
+ * reported as mean +/- standard deviation). Run from the command line:
+ *
+ *    java ...UnifiedParserBenchmark [diff files...]
+ *
+ * With no arguments a synthetic diff of several megabytes is generated.
+ * Each iteration parses the whole diff and touches every line's text, as
+ * the review pane does for the lines it renders.
+ */
+public class UnifiedParserBenchmark
+{
+   public static void main(String[] args) throws Exception
+   {
+      String data;
+      if (args.length == 0)
+      {
+         data = generateDiff(new Random(1), 8 * 1024 * 1024);
+      }
+      else
+      {
+         StringBuilder sb = new StringBuilder();
+         for (String path : args)
+            sb.append(readFile(path));
+         data = sb.toString();
+      }
+
+      if (!describe(new UnifiedParser(data)).equals(
+                                  describe(new IndexedUnifiedParser(data))))
+      {
+         throw new IllegalStateException("Parsers produced different output");
+      }
+
+      System.out.println("Diff size: " + data.length() + " chars");
+      run("UnifiedParser", data, false);
+      run("IndexedUnifiedParser", data, true);
+   }
+
+   private static void run(String name, String data, boolean indexed)
+   {
+      for (int i = 0; i < WARMUP_ITERATIONS; i++)
+         parse(data, indexed);
+
+      double[] millis = new double[MEASURED_ITERATIONS];
+      long allocated = 0;
+      long checksum = 0;
+      for (int i = 0; i < MEASURED_ITERATIONS; i++)
+      {
+         long bytesBefore = allocatedBytes();
+         long start = System.nanoTime();
+         checksum += parse(data, indexed);
+         millis[i] = (System.nanoTime() - start) / 1e6;
+         allocated += allocatedBytes() - bytesBefore;
+      }
+
+      double mean = 0;
+      for (double m : millis)
+         mean += m;
+      mean /= millis.length;
+      double variance = 0;
+      for (double m : millis)
+         variance += (m - mean) * (m - mean);
+      double stddev = Math.sqrt(variance / (millis.length - 1));
+
+      double mb = data.length() / (1024.0 * 1024.0);
+      System.out.println(String.format(
+            "%-22s %8.2f +/- %6.2f ms  %7.1f MB/s  %s  (checksum %d)",
+            name, mean, stddev, mb / (mean / 1000),
+            allocated < 0 ? "allocation n/a" :
+               String.format("%8.1f MB allocated/op",
+                             allocated / (1024.0 * 1024.0) / millis.length),
+            checksum));
+   }
+
+   private static long parse(String data, boolean indexed)
+   {
+      DiffParser parser = indexed ? new IndexedUnifiedParser(data)
+                                  : new UnifiedParser(data);
+      long result = 0;
+      while (parser.nextFilePair() != null)
+      {
+         DiffChunk chunk;
+         while (null != (chunk = parser.nextChunk()))
+         {
+            for (Line line : chunk.getLines())
+               result += line.getText().length() + line.getNewLine();
+         }
+      }
+      return result;
+   }
+
+   private static String describe(DiffParser parser)
+   {
+      StringBuilder sb = new StringBuilder();
+      DiffFileHeader header;
+      while (null != (header = parser.nextFilePair()))
+      {
+         sb.append(header.getDescription()).append('\n');
+         DiffChunk chunk;
+         while (null != (chunk = parser.nextChunk()))
+         {
+            sb.append(UnifiedEmitter.createChunkString(chunk)).append('\n');
+            for (Line line : chunk.getLines())
+            {
+               sb.append(line.getType()).append(' ')
+                 .append(line.getOldLine()).append(' ')
+                 .append(line.getNewLine()).append(' ')
+                 .append(line.getDiffIndex()).append(' ')
+                 .append(line.getText()).append('\n');
+            }
+         }
+      }
+      return sb.toString();
+   }
+
+   // Returns -1 if the JVM can't measure per-thread allocation
+   private static long allocatedBytes()
+   {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean)
+      {
+         com.sun.management.ThreadMXBean sunBean =
+                                    (com.sun.management.ThreadMXBean) bean;
+         if (sunBean.isThreadAllocatedMemorySupported())
+            return sunBean.getThreadAllocatedBytes(
+                                       Thread.currentThread().getId());
+      }
+      return -1;
+   }
+
+   private static String generateDiff(Random random, int size)
+   {
+      StringBuilder sb = new StringBuilder();
+      for (int file = 0; sb.length() < size; file++)
+      {
+         String path = "src/file" + file + ".c";
+         sb.append("diff --git a/").append(path).append(" b/").append(path)
+           .append("\nindex 0123456..789abcd 100644\n")
+           .append("--- a/").append(path).append("\n")
+           .append("+++ b/").append(path).append("\n");
+
+         int oldLine = 1;
+         int newLine = 1;
+         for (int chunk = 0; chunk < 20; chunk++)
+         {
+            // unchanged lines between chunks
+            int gap = random.nextInt(50);
+            oldLine += gap;
+            newLine += gap;
+
+            StringBuilder body = new StringBuilder();
+            int oldCount = 0;
+            int newCount = 0;
+            int lineCount = 10 + random.nextInt(60);
+            for (int i = 0; i < lineCount; i++)
+            {
+               int kind = random.nextInt(4);
+               char directive = kind == 0 ? '-' : kind == 1 ? '+' : ' ';
+               body.append(directive).append(randomLine(random)).append('\n');
+               if (directive != '+')
+                  oldCount++;
+               if (directive != '-')
+                  newCount++;
+            }
+
+            sb.append("@@ -").append(oldLine).append(',').append(oldCount)
+              .append(" +").append(newLine).append(',').append(newCount)
+              .append(" @@\n").append(body);
+
+            oldLine += oldCount;
+            newLine += newCount;
+         }
+      }
+      return sb.toString();
+   }
+
+   private static String randomLine(Random random)
+   {
+      StringBuilder sb = new StringBuilder("   ");
+      int length = random.nextInt(80);
+      for (int i = 0; i < length; i++)
+         sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+      return sb.toString();
+   }
+
+   private static String readFile(String path) throws Exception
+   {
+      Reader reader = new InputStreamReader(new FileInputStream(path), "UTF-8");
+      try
+      {
+         StringBuilder sb = new StringBuilder();
+         char[] buffer = new char[8192];
+         for (int n; -1 != (n = reader.read(buffer)); )
+            sb.append(buffer, 0, n);
+         return sb.toString();
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+
+   private static final int WARMUP_ITERATIONS = 5;
+   private static final int MEASURED_ITERATIONS = 10;
+   private static final String ALPHABET =
+         "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJ(){};=+-*/0123456789_";
+}
@@ -16,6 +16,7 @@ import junit.framework.TestCase;
 
 import java.io.*;
 import java.net.URL;
+import java.util.Arrays;
 
 public class UnifiedParserTest extends TestCase
 {
@@ -60,6 +61,48 @@ public class UnifiedParserTest extends TestCase
       testFile("diff2");
    }
 
+   public void testIndexedParser() throws Exception
+   {
+      testIndexed(readFileResource("diff1.txt"));
+      testIndexed(readFileResource("diff2.txt"));
+      testIndexed("@@ -1,2 +1,2 @@\r\n-a\r\n+b\r\n c\r\n\\ No newline\r\n");
+   }
+
+   // The indexed parser must produce exactly what UnifiedParser does,
+   // including file headers, line numbers and diff indexes
+   private void testIndexed(String data)
+   {
+      assertEquals(describe(new UnifiedParser(data)),
+                   describe(new IndexedUnifiedParser(data)));
+   }
+
+   private String describe(DiffParser parser)
+   {
+      StringBuilder sb = new StringBuilder();
+      do
+      {
+         DiffChunk chunk;
+         while (null != (chunk = parser.nextChunk()))
+         {
+            sb.append(UnifiedEmitter.createChunkString(chunk))
+              .append(' ').append(chunk.getDiffIndex()).append('\n');
+            for (Line line : chunk.getLines())
+            {
+               sb.append(line.getType()).append(' ')
+                 .append(Arrays.toString(line.getLines())).append(' ')
+                 .append(Arrays.toString(line.getAppliesTo())).append(' ')
+                 .append(line.getDiffIndex()).append(' ')
+                 .append(line.getText()).append('\n');
+            }
+         }
+         DiffFileHeader header = parser.nextFilePair();
+         if (header == null)
+            break;
+         sb.append(header.getDescription()).append('\n');
+      } while (true);
+      return sb.toString();
+   }
+
    private void testFile(String testName) throws Exception
    {
       StringWriter stringWriter = new StringWriter();